@@ -0,0 +1,215 @@
+package dev.abstratium.abstraccount.adapters;
+
+import dev.abstratium.abstraccount.service.AttachmentStore;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * {@link AttachmentStore} keeping content in plain files under
+ * {@code attachment.store.filesystem.dir}, so that cold PDF data does not
+ * bloat the database, its backups and its buffer pool.
+ *
+ * <p>Files are content-addressed: the storage key is
+ * {@code <orgId>/<first two hex digits of the SHA-256>/<SHA-256>.<blobId>}.
+ * Keys are always namespaced by organisation, so two organisations never
+ * share a file. Deduplication happens one level up, in
+ * {@code AttachmentBlobEntity}; the blob id in the file name gives every blob
+ * its own file, so that garbage collecting a blob after its deleting
+ * transaction has committed can never remove the file of a newer blob with
+ * the same content.</p>
+ *
+ * <p>Content is streamed into a temporary file in the same directory tree
+ * (hashing on the fly), forced to disk, and then atomically moved to its
+ * final path, followed by an fsync of the parent directory; readers therefore
+ * never see a partially written file. Because the filesystem is not part of
+ * the JTA transaction, a file created by a transaction that is rolled back
+ * is removed again, and deletions are only carried out once the deleting
+ * transaction has committed.</p>
+ */
+@ApplicationScoped
+public class FilesystemAttachmentStore implements AttachmentStore {
+
+    private static final Logger LOG = Logger.getLogger(FilesystemAttachmentStore.class);
+
+    /** Organisation ids become directory names, so only allow safe characters. */
+    private static final Pattern SAFE_ORG_ID = Pattern.compile("^[A-Za-z0-9._-]{1,64}$");
+
+    private static final String TEMP_DIR = ".tmp";
+
+    private static final int BUFFER_SIZE_BYTES = 64 * 1024;
+
+    @ConfigProperty(name = "attachment.store.filesystem.dir")
+    String baseDir;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    @Override
+    public String backend() {
+        return FILESYSTEM;
+    }
+
+    @Override
+    public StoredContent write(String orgId, String blobId, InputStream content) {
+        if (orgId == null || !SAFE_ORG_ID.matcher(orgId).matches() || orgId.startsWith(".")) {
+            throw new IllegalArgumentException("Unsupported organisation id for filesystem storage: " + orgId);
+        }
+        Path root = root();
+        Path tempFile = root.resolve(TEMP_DIR).resolve(blobId + "-" + UUID.randomUUID() + ".part");
+        try {
+            Files.createDirectories(tempFile.getParent());
+
+            MessageDigest digest = AttachmentStore.newSha256Digest();
+            long sizeBytes = 0;
+            try (FileChannel channel = FileChannel.open(tempFile,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_SIZE_BYTES];
+                int n;
+                while ((n = content.read(buffer)) > 0) {
+                    digest.update(buffer, 0, n);
+                    ByteBuffer bb = ByteBuffer.wrap(buffer, 0, n);
+                    while (bb.hasRemaining()) {
+                        channel.write(bb);
+                    }
+                    sizeBytes += n;
+                }
+                channel.force(true);
+            }
+
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            String storageKey = orgId + "/" + sha256.substring(0, 2) + "/" + sha256 + "." + blobId;
+            Path target = resolve(storageKey);
+            Files.createDirectories(target.getParent());
+
+            if (Files.exists(target)) {
+                // Written before by a transaction of the same blob that
+                // did not get to clean up after itself.
+                Files.delete(tempFile);
+            } else {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+                fsyncDirectory(target.getParent());
+                afterRollback(() -> deleteQuietly(target));
+            }
+            return new StoredContent(storageKey, sizeBytes, sha256);
+        } catch (IOException e) {
+            deleteQuietly(tempFile);
+            throw new UncheckedIOException("Failed to write attachment content", e);
+        }
+    }
+
+    @Override
+    public Optional<InputStream> open(String storageKey) {
+        Path file = resolve(storageKey);
+        try {
+            return Optional.of(Files.newInputStream(file));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open attachment content " + storageKey, e);
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String storageKey) {
+        Path file = resolve(storageKey);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    @Override
+    public void delete(String storageKey) {
+        Path file = resolve(storageKey);
+        afterCommit(() -> deleteQuietly(file));
+    }
+
+    /**
+     * Resolves a storage key against the base directory, refusing any key
+     * that would escape it. Keys are only ever produced by {@link #write},
+     * so this is purely defensive.
+     */
+    Path resolve(String storageKey) {
+        Path root = root();
+        Path file = root.resolve(storageKey).normalize();
+        if (!file.startsWith(root) || file.startsWith(root.resolve(TEMP_DIR))) {
+            throw new IllegalArgumentException("Invalid storage key: " + storageKey);
+        }
+        return file;
+    }
+
+    private Path root() {
+        return Paths.get(baseDir).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Makes a rename durable by forcing the directory entry to disk. Not
+     * every platform supports opening a directory for this purpose, in which
+     * case the rename is still atomic, just not yet guaranteed durable.
+     */
+    private static void fsyncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            LOG.debugf("Could not fsync directory %s: %s", directory, e.getMessage());
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        registerOrRun(action, Status.STATUS_COMMITTED);
+    }
+
+    private void afterRollback(Runnable action) {
+        registerOrRun(action, Status.STATUS_ROLLEDBACK);
+    }
+
+    /**
+     * Runs the action once the current transaction completes with the given
+     * status. Outside of a transaction a commit action runs immediately and a
+     * rollback action is dropped.
+     */
+    private void registerOrRun(Runnable action, int onStatus) {
+        if (transactionSynchronizationRegistry == null
+                || transactionSynchronizationRegistry.getTransactionKey() == null) {
+            if (onStatus == Status.STATUS_COMMITTED) {
+                action.run();
+            }
+            return;
+        }
+        transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == onStatus) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warnf(e, "Failed to delete attachment file %s", file);
+        }
+    }
+}
@@ -4,41 +4,71 @@ import dev.abstratium.abstraccount.model.CreatePartnerResult;
 import dev.abstratium.abstraccount.model.ImportPartnersResult;
 import dev.abstratium.abstraccount.model.PartnerData;
 import dev.abstratium.abstraccount.service.CsvLineParser;
-import io.quarkus.runtime.Startup;
-import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
+import dev.abstratium.abstraccount.service.PartnerPersistenceService;
+import dev.abstratium.core.service.CurrentOrgContext;
+import com.google.common.util.concurrent.Striped;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.control.ActivateRequestContext;
 import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.file.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * Adapter for loading and watching per-organisation partner data from CSV files.
+ * Near cache over the partner registry ({@code T_partner}), and the CSV
+ * import/export format for it.
  *
- * <p>Each organisation has its own file: {@code <partner.data.dir>/<orgId>.csv}.
- * Files are loaded lazily on first access and cached per organisation. A file watcher
- * monitors the directory and reloads only the changed organisation's data.</p>
+ * <p>Partners are stored per organisation in the database (see
+ * {@link PartnerPersistenceService}), so every node sees the same partners.
+ * Because a partner is looked up for every rendered entry, each node keeps
+ * an organisation's partners in memory once read, together with the
+ * organisation's change counter at the time. A cached organisation is
+ * revalidated at most every {@code partner.cache.version-check-interval} by
+ * reading that counter: if it has not moved the cache is kept, otherwise the
+ * partners are reloaded. Changes made on this node update its cache
+ * directly, so they are visible here at once and on other nodes within the
+ * check interval.</p>
  *
- * <p><b>Why orgId is passed explicitly instead of injecting CurrentOrgContext:</b>
+ * <p>Alongside each organisation's partners a {@link PartnerSearchIndex} is
+ * built on the first search after they change, so searching never scans or
+ * copies the partner set.</p>
+ *
+ * <p>Changes are serialised per organisation, not globally: within this node
+ * by a lock striped by orgId, across nodes by the database lock on the
+ * organisation's change counter. Under that lock a writer first catches up
+ * with changes made by other nodes, so a partner number is never handed out
+ * twice. Free partner numbers are tracked in a {@link BitSet} per
+ * organisation.</p>
+ *
+ * <p>Before the registry existed, partners were kept in
+ * {@code <partner.data.dir>/<orgId>.csv}. If an organisation has no partners
+ * in the database yet but has such a file, the file is imported the first
+ * time its partners are read, and not read again afterwards.</p>
+ *
+ * <p><b>Why orgId is passed explicitly instead of reading CurrentOrgContext:</b>
  * This bean is {@code @ApplicationScoped} and its cache spans requests, whereas
- * {@code CurrentOrgContext} is {@code @RequestScoped}. Injecting a request-scoped bean
- * into an application-scoped bean would couple the adapter to an active HTTP request,
+ * {@code CurrentOrgContext} is {@code @RequestScoped}. Depending on the caller's
+ * request context would couple the adapter to an active HTTP request,
  * making it unusable from background tasks, batch imports, scheduled jobs, or unit tests
  * that call the adapter directly without a request context. By accepting {@code orgId}
  * as a parameter, the adapter remains context-agnostic and the tenant boundary stays
- * visible at every call site.</p>
+ * visible at every call site. Database access runs in a request context scoped to
+ * that orgId, activated if there is none, as background jobs do.</p>
  */
 @ApplicationScoped
-@Startup
 public class PartnerDataAdapter {
 
     private static final Logger LOG = Logger.getLogger(PartnerDataAdapter.class);
@@ -46,28 +76,22 @@ public class PartnerDataAdapter {
     @ConfigProperty(name = "partner.data.dir")
     String partnerDataDir;
 
-    private final Map<String, Map<String, PartnerData>> partnerCache = new ConcurrentHashMap<>();
-    private final Set<String> attemptedLoads = ConcurrentHashMap.newKeySet();
+    @ConfigProperty(name = "partner.cache.version-check-interval", defaultValue = "PT5S")
+    Duration versionCheckInterval;
 
     @Inject
-    PartnerFileWatcher fileWatcher;
+    PartnerPersistenceService partnerPersistenceService;
 
-    @PostConstruct
-    void init() {
-        LOG.info("Initializing PartnerDataAdapter with directory: " + partnerDataDir);
+    @Inject
+    CurrentOrgContext currentOrgContext;
 
-        // Wire the file watcher to reload the cache for the changed org
-        fileWatcher.setChangeListener(this::reloadPartnerDataForOrg);
-    }
+    private final Map<String, CachedPartners> cache = new ConcurrentHashMap<>();
 
-    @PreDestroy
-    void cleanup() {
-        LOG.info("Shutting down PartnerDataAdapter");
-    }
+    /** Serialises changes to one organisation's partners within this node. */
+    private final Striped<Lock> orgLocks = Striped.lock(64);
 
     /**
      * Get partner data by organisation and partner number.
-     * Lazy-loads the organisation's file on first access.
      *
      * @param orgId the organisation identifier
      * @param partnerNumber the partner number
@@ -78,13 +102,11 @@ public class PartnerDataAdapter {
             return Optional.empty();
         }
 
-        Map<String, PartnerData> orgCache = getOrgCache(orgId);
-        return Optional.ofNullable(orgCache.get(partnerNumber));
+        return Optional.ofNullable(getCachedPartners(orgId).partners.get(partnerNumber));
     }
 
     /**
      * Get all partner data for an organisation.
-     * Lazy-loads the organisation's file on first access.
      *
      * @param orgId the organisation identifier
      * @return list of partner data
@@ -94,15 +116,36 @@ public class PartnerDataAdapter {
             return List.of();
         }
 
-        Map<String, PartnerData> orgCache = getOrgCache(orgId);
-        return new ArrayList<>(orgCache.values());
+        return new ArrayList<>(getCachedPartners(orgId).partners.values());
+    }
+
+    /**
+     * Search the active partners of an organisation by name or number.
+     *
+     * <p>Matching ignores case and diacritics. Terms of three or more
+     * characters match anywhere in the name or number; shorter terms match
+     * the start of a word of the name or the start of the number. Results are
+     * ranked (exact match, name prefix, word prefix, anywhere), ties in
+     * partner-number order. A blank term returns all active partners in
+     * partner-number order.</p>
+     *
+     * @param orgId      the organisation identifier
+     * @param searchTerm the search term, may be null
+     * @param limit      the maximum number of results
+     * @return the best matching active partners, best first
+     */
+    public List<PartnerData> searchPartners(String orgId, String searchTerm, int limit) {
+        if (orgId == null || orgId.isBlank()) {
+            return List.of();
+        }
+        return getCachedPartners(orgId).searchIndex().search(searchTerm, limit);
     }
 
     private static final Pattern PARTNER_NUMBER_PATTERN = Pattern.compile("^P(\\d{8})$");
     private static final String PARTNER_NUMBER_FORMAT = "P%08d";
 
     /**
-     * Add a new partner to the organisation's CSV file.
+     * Add a new partner to the organisation.
      *
      * <p>The partner number is assigned by the backend as the next available
      * number, filling gaps in the existing sequence. If a partner with the same
@@ -113,7 +156,7 @@ public class PartnerDataAdapter {
      * @param name  the partner name
      * @return result containing the created partner and any warnings
      */
-    public synchronized CreatePartnerResult addPartner(String orgId, String name) {
+    public CreatePartnerResult addPartner(String orgId, String name) {
         if (orgId == null || orgId.isBlank()) {
             throw new IllegalArgumentException("orgId cannot be null or blank");
         }
@@ -122,32 +165,57 @@ public class PartnerDataAdapter {
         }
 
         String trimmedName = name.trim();
-        Map<String, PartnerData> orgCache = getOrgCache(orgId);
-        List<String> warnings = new ArrayList<>();
+        return withOrgLock(orgId, () -> {
+            Creation creation = createPartner(orgId, trimmedName, getCachedPartners(orgId));
+            // Only now that the change is committed may the cache show it
+            CachedPartners partners = creation.partners();
+            if (creation.version() != partners.version) {
+                partners.add(creation.version(), creation.partner());
+                LOG.infof("Created partner %s for org %s", creation.partner().partnerNumber(), orgId);
+            }
+            partners.checkedAt = System.nanoTime();
+            cache.put(orgId, partners);
+            return new CreatePartnerResult(creation.partner(), creation.warnings());
+        });
+    }
+
+    /** The outcome of {@link #createPartner}, applied to the cache after commit. */
+    record Creation(CachedPartners partners, PartnerData partner, List<String> warnings, long version) {
+    }
+
+    /**
+     * Creates a partner unless an active one with the same name exists.
+     *
+     * @param cached the organisation's cached partners; used as they are if
+     *               still current, and never changed
+     */
+    @ActivateRequestContext
+    @Transactional
+    Creation createPartner(String orgId, String trimmedName, CachedPartners cached) {
+        enterOrg(orgId);
+        long version = partnerPersistenceService.lockVersion(orgId);
+        // Another node may have changed the partners since they were cached
+        CachedPartners current = cached.version == version
+            ? cached
+            : new CachedPartners(version, partnerPersistenceService.findAll());
 
         // Check for duplicate name (case-insensitive) among active partners
-        for (PartnerData existing : orgCache.values()) {
+        for (PartnerData existing : current.partners.values()) {
             if (existing.active() && existing.name().equalsIgnoreCase(trimmedName)) {
-                warnings.add("A partner with the name \"" + trimmedName + "\" already exists ("
+                List<String> warnings = List.of("A partner with the name \"" + trimmedName + "\" already exists ("
                     + existing.partnerNumber() + "). No new partner was created.");
                 // Return the existing partner as the "created" one so the UI can
                 // show it, but the warning makes clear it was a duplicate.
-                return new CreatePartnerResult(existing, warnings);
+                return new Creation(current, existing, warnings, version);
             }
         }
 
-        // Compute next available partner number (gap-filling)
-        String nextNumber = computeNextPartnerNumber(orgCache);
+        // Take the lowest free partner number (gap-filling)
+        String nextNumber = String.format(PARTNER_NUMBER_FORMAT, current.usedNumbers().nextClearBit(1));
         PartnerData newPartner = new PartnerData(nextNumber, trimmedName, true);
-
-        // Append to the CSV file
-        appendPartnerToFile(orgId, newPartner);
-
-        // Update the in-memory cache
-        orgCache.put(nextNumber, newPartner);
-
-        LOG.infof("Created partner %s for org %s", nextNumber, orgId);
-        return new CreatePartnerResult(newPartner, warnings);
+        partnerPersistenceService.create(newPartner);
+        partnerPersistenceService.updateVersion(orgId, version + 1);
+        return new Creation(current, newPartner, List.of(), version + 1);
     }
 
     private static final String CSV_HEADER = "\"Partner Number\",\"Name\",\"Active\"";
@@ -155,17 +223,18 @@ public class PartnerDataAdapter {
     /**
      * Replace all partners for an organisation from the supplied CSV content.
      *
-     * <p>The content is fully validated <em>before</em> the existing file is
-     * touched. If any validation error is found the existing file is left
-     * unchanged and the errors are returned. When validation succeeds the
-     * file is overwritten with a normalised version (re-serialised from the
-     * parsed data) and the in-memory cache for the organisation is reloaded.</p>
+     * <p>The content is fully validated <em>before</em> any partner is
+     * touched. If any validation error is found the existing partners are
+     * left unchanged and the errors are returned. When validation succeeds
+     * the organisation's partners are made equal to the parsed ones in one
+     * transaction: partners are matched by number, so only actual changes
+     * are written (and audited).</p>
      *
      * @param orgId      the organisation identifier (from the certificate)
      * @param csvContent the full CSV file content, including the header line
      * @return result with the imported count and any validation errors
      */
-    public synchronized ImportPartnersResult replacePartners(String orgId, String csvContent) {
+    public ImportPartnersResult replacePartners(String orgId, String csvContent) {
         if (orgId == null || orgId.isBlank()) {
             throw new IllegalArgumentException("orgId cannot be null or blank");
         }
@@ -225,13 +294,32 @@ public class PartnerDataAdapter {
             return new ImportPartnersResult(0, errors);
         }
 
-        writePartnersToFile(orgId, partners);
-        reloadPartnerDataForOrg(orgId);
+        withOrgLock(orgId, () -> {
+            CachedPartners replaced = replaceAllPartners(orgId, partners);
+            replaced.checkedAt = System.nanoTime();
+            cache.put(orgId, replaced);
+            return replaced;
+        });
 
         LOG.infof("Replaced partners for org %s with %d partner(s)", orgId, partners.size());
         return new ImportPartnersResult(partners.size(), List.of());
     }
 
+    /**
+     * Replaces the organisation's partners in the database.
+     *
+     * @return the replaced partners, to be cached once committed
+     */
+    @ActivateRequestContext
+    @Transactional
+    CachedPartners replaceAllPartners(String orgId, List<PartnerData> partners) {
+        enterOrg(orgId);
+        long version = partnerPersistenceService.lockVersion(orgId);
+        partnerPersistenceService.replaceAll(partners);
+        partnerPersistenceService.updateVersion(orgId, version + 1);
+        return new CachedPartners(version + 1, partners);
+    }
+
     /**
      * Export all partners for an organisation as CSV content.
      *
@@ -260,32 +348,6 @@ public class PartnerDataAdapter {
         return sb.toString();
     }
 
-    /**
-     * Overwrite the organisation's CSV file with the supplied partners.
-     * The file is written with a header line followed by one line per partner.
-     */
-    private void writePartnersToFile(String orgId, List<PartnerData> partners) {
-        Path filePath = getOrgFilePath(orgId);
-        try {
-            Files.createDirectories(filePath.getParent());
-
-            try (BufferedWriter writer = Files.newBufferedWriter(filePath,
-                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
-                writer.write(CSV_HEADER);
-                writer.newLine();
-                for (PartnerData partner : partners) {
-                    writer.write(formatCsvLine(partner));
-                    writer.newLine();
-                }
-            }
-
-            LOG.debugf("Wrote %d partners to file %s", partners.size(), filePath);
-        } catch (IOException e) {
-            LOG.errorf(e, "Failed to write partners to file %s", filePath);
-            throw new RuntimeException("Failed to import partners: could not write to data file", e);
-        }
-    }
-
     /**
      * Compute the next available partner number, filling gaps in the sequence.
      * Partner numbers follow the format P followed by 8 digits (P00000001, etc.).
@@ -293,55 +355,24 @@ public class PartnerDataAdapter {
      * If no gaps exist, the next number is max+1.
      */
     String computeNextPartnerNumber(Map<String, PartnerData> orgCache) {
-        // Collect all numeric suffixes from existing partner numbers
-        TreeSet<Integer> usedNumbers = new TreeSet<>();
-        for (String number : orgCache.keySet()) {
-            Matcher m = PARTNER_NUMBER_PATTERN.matcher(number);
-            if (m.matches()) {
-                usedNumbers.add(Integer.parseInt(m.group(1)));
-            }
-        }
-
-        // Find the first gap starting from 1
-        int expected = 1;
-        for (int used : usedNumbers) {
-            if (used > expected) {
-                // Gap found at 'expected'
-                return String.format(PARTNER_NUMBER_FORMAT, expected);
-            }
-            expected = used + 1;
-        }
-
-        // No gaps, use the next number after the maximum (or 1 if empty)
-        return String.format(PARTNER_NUMBER_FORMAT, expected);
+        return String.format(PARTNER_NUMBER_FORMAT, usedNumbersOf(orgCache.keySet()).nextClearBit(1));
     }
 
     /**
-     * Append a partner line to the organisation's CSV file.
-     * Creates the file with a header if it does not exist.
+     * The numeric suffixes of the given partner numbers, as a bit set.
      */
-    private void appendPartnerToFile(String orgId, PartnerData partner) {
-        Path filePath = getOrgFilePath(orgId);
-        try {
-            Files.createDirectories(filePath.getParent());
-
-            boolean fileExists = Files.exists(filePath);
-            String csvLine = formatCsvLine(partner);
-
-            try (BufferedWriter writer = Files.newBufferedWriter(filePath,
-                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
-                if (!fileExists) {
-                    writer.write("\"Partner Number\",\"Name\",\"Active\"");
-                    writer.newLine();
-                }
-                writer.write(csvLine);
-                writer.newLine();
-            }
+    private static BitSet usedNumbersOf(Collection<String> partnerNumbers) {
+        BitSet used = new BitSet();
+        for (String number : partnerNumbers) {
+            markUsed(used, number);
+        }
+        return used;
+    }
 
-            LOG.debugf("Appended partner %s to file %s", partner.partnerNumber(), filePath);
-        } catch (IOException e) {
-            LOG.errorf(e, "Failed to write partner %s to file %s", partner.partnerNumber(), filePath);
-            throw new RuntimeException("Failed to create partner: could not write to data file", e);
+    private static void markUsed(BitSet used, String partnerNumber) {
+        Matcher m = PARTNER_NUMBER_PATTERN.matcher(partnerNumber);
+        if (m.matches()) {
+            used.set(Integer.parseInt(m.group(1)));
         }
     }
 
@@ -355,67 +386,174 @@ public class PartnerDataAdapter {
     }
 
     /**
-     * Returns (or loads and caches) the partner map for the given organisation.
-     * Thread-safe: the same organisation loads only once.
+     * Returns the organisation's cached partners, first loading them or
+     * checking that they are still current if they have not been checked
+     * for {@code partner.cache.version-check-interval}.
      */
-    private Map<String, PartnerData> getOrgCache(String orgId) {
-        return partnerCache.computeIfAbsent(orgId, this::loadPartnerDataForOrg);
+    private CachedPartners getCachedPartners(String orgId) {
+        CachedPartners cached = cache.get(orgId);
+        if (cached != null && isFresh(cached, System.nanoTime())) {
+            return cached;
+        }
+        return withOrgLock(orgId, () -> {
+            CachedPartners current = cache.get(orgId);
+            long now = System.nanoTime();
+            // Another thread may have checked while this one was waiting
+            if (current == null || !isFresh(current, now)) {
+                current = loadIfChanged(orgId, current);
+                current.checkedAt = now;
+                cache.put(orgId, current);
+            }
+            return current;
+        });
+    }
+
+    private boolean isFresh(CachedPartners cached, long now) {
+        return now - cached.checkedAt < versionCheckInterval.toNanos();
     }
 
     /**
-     * Force a reload of a specific organisation's partner data.
+     * Returns the given cached partners if the organisation's change counter
+     * has not moved since, otherwise loads them from the database, importing
+     * the organisation's legacy CSV file first if it has never had partners
+     * in the database.
      */
-    void reloadPartnerDataForOrg(String orgId) {
-        partnerCache.put(orgId, loadPartnerDataForOrg(orgId));
+    @ActivateRequestContext
+    @Transactional
+    CachedPartners loadIfChanged(String orgId, CachedPartners cached) {
+        enterOrg(orgId);
+        long version = partnerPersistenceService.findVersion(orgId);
+        if (cached != null && cached.version == version) {
+            return cached;
+        }
+        if (version == PartnerPersistenceService.NO_VERSION && Files.exists(getLegacyFilePath(orgId))) {
+            return importLegacyFile(orgId);
+        }
+        CachedPartners loaded = new CachedPartners(version, partnerPersistenceService.findAll());
+        LOG.debugf("Loaded %d partners for org %s at version %d", (Object) loaded.partners.size(), orgId, Long.valueOf(version));
+        return loaded;
     }
 
     /**
-     * Load partner data for a single organisation from its CSV file.
-     * Returns an empty map if the file does not exist or cannot be read.
+     * Imports {@code <partner.data.dir>/<orgId>.csv} into the database.
+     * Lines that cannot be parsed are logged and skipped, as they were when
+     * the file was read directly.
      */
-    Map<String, PartnerData> loadPartnerDataForOrg(String orgId) {
-        attemptedLoads.add(orgId);
-        Path filePath = getOrgFilePath(orgId);
-
-        if (!Files.exists(filePath)) {
-            LOG.debug("Partner data file does not exist for org " + orgId + ": " + filePath);
-            return new ConcurrentHashMap<>();
+    private CachedPartners importLegacyFile(String orgId) {
+        long version = partnerPersistenceService.lockVersion(orgId);
+        if (version > 0) {
+            // Another node imported it first
+            return new CachedPartners(version, partnerPersistenceService.findAll());
         }
 
-        LOG.info("Loading partner data for org " + orgId + " from: " + filePath);
-
-        Map<String, PartnerData> orgCache = new ConcurrentHashMap<>();
-        try (BufferedReader reader = Files.newBufferedReader(filePath)) {
-            String line;
-            boolean isFirstLine = true;
-            int lineNumber = 0;
-
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-
-                if (isFirstLine) {
-                    isFirstLine = false;
-                    continue;
-                }
-
+        Path filePath = getLegacyFilePath(orgId);
+        Map<String, PartnerData> partners = new LinkedHashMap<>();
+        try {
+            List<String> lines = Files.readAllLines(filePath, StandardCharsets.UTF_8);
+            for (int i = 1; i < lines.size(); i++) {
+                String line = lines.get(i);
                 if (line.trim().isEmpty()) {
                     continue;
                 }
-
                 try {
                     PartnerData partner = parseCsvLine(line);
-                    orgCache.put(partner.partnerNumber(), partner);
+                    partners.put(partner.partnerNumber(), partner);
                 } catch (Exception e) {
-                    LOG.error("Error parsing line " + lineNumber + " for org " + orgId + ": " + line, e);
+                    LOG.error("Error parsing line " + (i + 1) + " for org " + orgId + ": " + line, e);
                 }
             }
-
-            LOG.info("Loaded " + orgCache.size() + " partners for org " + orgId);
         } catch (IOException e) {
             LOG.error("Error reading partner data file for org " + orgId + ": " + filePath, e);
+            throw new RuntimeException("Failed to import partner data file for org " + orgId, e);
         }
 
-        return orgCache;
+        partnerPersistenceService.replaceAll(partners.values());
+        partnerPersistenceService.updateVersion(orgId, version + 1);
+        LOG.infof("Imported %d partners for org %s from %s; the file is no longer read and can be removed",
+            partners.size(), orgId, filePath);
+        return new CachedPartners(version + 1, partners.values());
+    }
+
+    /**
+     * Scopes the current request context, and so the Hibernate tenant, to the
+     * organisation.
+     */
+    private void enterOrg(String orgId) {
+        currentOrgContext.setOrgId(orgId);
+        currentOrgContext.setContextDescription("partner registry");
+    }
+
+    /**
+     * Runs the action holding the organisation's lock. Locks are reentrant,
+     * so the action may call other locked methods for the same organisation.
+     */
+    private <T> T withOrgLock(String orgId, Supplier<T> action) {
+        Lock lock = orgLocks.get(orgId);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The partners of one organisation as of a change counter value.
+     * Replaced as a whole when reloaded; changed in place, under the
+     * organisation's lock, only by changes made on this node.
+     */
+    static final class CachedPartners {
+
+        /** The change counter the partners are current for. */
+        volatile long version;
+
+        /** When {@link #version} was last compared with the database, from {@link System#nanoTime()}. */
+        volatile long checkedAt;
+
+        final Map<String, PartnerData> partners = new ConcurrentHashMap<>();
+
+        private volatile Indexed searchIndex;
+
+        /** Built on first use; guarded by the organisation's lock. */
+        private BitSet usedNumbers;
+
+        CachedPartners(long version, Collection<PartnerData> partners) {
+            this.version = version;
+            partners.forEach(partner -> this.partners.put(partner.partnerNumber(), partner));
+        }
+
+        /**
+         * Returns the search index, rebuilding it if the partners changed
+         * since it was built.
+         */
+        PartnerSearchIndex searchIndex() {
+            // Read the version before the partners: an index built from
+            // partners that changed meanwhile is labelled with the old
+            // version and so rebuilt by the next search.
+            long current = version;
+            Indexed indexed = searchIndex;
+            if (indexed == null || indexed.version() != current) {
+                indexed = new Indexed(current, PartnerSearchIndex.build(partners.values()));
+                searchIndex = indexed;
+            }
+            return indexed.index();
+        }
+
+        BitSet usedNumbers() {
+            if (usedNumbers == null) {
+                usedNumbers = usedNumbersOf(partners.keySet());
+            }
+            return usedNumbers;
+        }
+
+        void add(long newVersion, PartnerData partner) {
+            partners.put(partner.partnerNumber(), partner);
+            markUsed(usedNumbers(), partner.partnerNumber());
+            version = newVersion;
+        }
+
+        private record Indexed(long version, PartnerSearchIndex index) {
+        }
     }
 
     /**
@@ -445,7 +583,7 @@ public class PartnerDataAdapter {
         return CsvLineParser.parseFields(line);
     }
 
-    private Path getOrgFilePath(String orgId) {
+    private Path getLegacyFilePath(String orgId) {
         return Paths.get(partnerDataDir, orgId + ".csv");
     }
 
@@ -453,7 +591,6 @@ public class PartnerDataAdapter {
      * Clear the in-memory cache. Public for test cleanup only.
      */
     public void clearCache() {
-        partnerCache.clear();
-        attemptedLoads.clear();
+        cache.clear();
     }
 }
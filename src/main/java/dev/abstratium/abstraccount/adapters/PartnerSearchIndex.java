@@ -0,0 +1,305 @@
+package dev.abstratium.abstraccount.adapters;
+
+import dev.abstratium.abstraccount.model.PartnerData;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable search index over the active partners of one organisation, used
+ * by the partner autocomplete.
+ *
+ * <p>Names and numbers are normalised (case-folded, diacritics removed, so
+ * that "muller" finds "Müller", whitespace collapsed). Queries of three or
+ * more characters match anywhere in the name or number, looked up in a
+ * trigram index and then verified; shorter queries match the start of a word
+ * of the name or the start of the number, looked up by binary search in a
+ * sorted token array. Neither requires a scan over all partners.</p>
+ *
+ * <p>Matches are ranked: exact name or number first, then names starting with
+ * the query, then a word or the number starting with it, then any other
+ * match. Partners are numbered in partner-number order, so ties are returned
+ * in that order. Only the top {@code limit} are ever sorted.</p>
+ */
+final class PartnerSearchIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final int GRAM = 3;
+
+    private static final int RANK_EXACT = 0;
+    private static final int RANK_NAME_PREFIX = 1;
+    private static final int RANK_WORD_PREFIX = 2;
+    private static final int RANK_CONTAINS = 3;
+
+    static final PartnerSearchIndex EMPTY = new PartnerSearchIndex(List.of());
+
+    /** Active partners sorted by partner number; the position is the partner's id. */
+    private final PartnerData[] partners;
+    private final String[] names;
+    private final String[] numbers;
+
+    /** Ascending partner ids per trigram (see {@link #gram}) of the normalised name and number. */
+    private final Map<Long, int[]> trigrams;
+
+    /** Normalised name words and numbers, sorted, with the partner id of each. */
+    private final String[] tokens;
+    private final int[] tokenIds;
+
+    private PartnerSearchIndex(Collection<PartnerData> all) {
+        partners = all.stream()
+            .filter(PartnerData::active)
+            .sorted(Comparator.comparing(PartnerData::partnerNumber))
+            .toArray(PartnerData[]::new);
+        names = new String[partners.length];
+        numbers = new String[partners.length];
+
+        Map<Long, IntList> postings = new HashMap<>();
+        List<Token> tokenList = new ArrayList<>(partners.length * 3);
+        for (int id = 0; id < partners.length; id++) {
+            names[id] = normalize(partners[id].name());
+            numbers[id] = normalize(partners[id].partnerNumber());
+            addTrigrams(postings, names[id], id);
+            addTrigrams(postings, numbers[id], id);
+            tokenList.add(new Token(numbers[id], id));
+            for (String word : names[id].split(" ")) {
+                if (!word.isEmpty()) {
+                    tokenList.add(new Token(word, id));
+                }
+            }
+        }
+
+        trigrams = new HashMap<>(postings.size() * 2);
+        postings.forEach((gram, ids) -> trigrams.put(gram, ids.toArray()));
+
+        tokenList.sort(Comparator.comparing(Token::text));
+        tokens = new String[tokenList.size()];
+        tokenIds = new int[tokenList.size()];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = tokenList.get(i).text();
+            tokenIds[i] = tokenList.get(i).id();
+        }
+    }
+
+    /**
+     * Builds the index over the active partners among the given ones.
+     */
+    static PartnerSearchIndex build(Collection<PartnerData> partners) {
+        return partners.isEmpty() ? EMPTY : new PartnerSearchIndex(partners);
+    }
+
+    /**
+     * Case-folds, strips diacritics and collapses whitespace.
+     */
+    static String normalize(String text) {
+        String folded = isAscii(text)
+            ? text
+            : DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        StringBuilder sb = new StringBuilder(folded.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of active partners in the index
+     */
+    int size() {
+        return partners.length;
+    }
+
+    /**
+     * Finds the best matching active partners.
+     *
+     * @param query the search term; blank returns all active partners in
+     *              partner-number order
+     * @param limit the maximum number of results
+     * @return the matches, best first; never a copy of the whole partner set
+     *         unless every partner matches
+     */
+    List<PartnerData> search(String query, int limit) {
+        if (limit <= 0 || partners.length == 0) {
+            return List.of();
+        }
+        String q = query == null ? "" : normalize(query);
+        if (q.isEmpty()) {
+            List<PartnerData> all = Collections.unmodifiableList(Arrays.asList(partners));
+            return all.subList(0, Math.min(limit, partners.length));
+        }
+
+        // Max-heap of the best 'limit' matches seen so far, worst on top
+        Comparator<long[]> byRankThenId = Comparator.<long[]>comparingLong(m -> m[0]).thenComparingLong(m -> m[1]);
+        PriorityQueue<long[]> best = new PriorityQueue<>(Math.min(limit, 64) + 1, byRankThenId.reversed());
+        String wordStart = " " + q;
+        int[] candidates = q.length() >= GRAM ? trigramCandidates(q) : prefixCandidates(q);
+        int previous = -1;
+        for (int id : candidates) {
+            if (id == previous) {
+                continue;
+            }
+            previous = id;
+            int rank = rank(q, wordStart, id);
+            // Candidates come in ascending id order, so once 'limit' matches
+            // are kept, a candidate must rank strictly better to get in.
+            if (rank < 0 || (best.size() == limit && rank >= best.peek()[0])) {
+                continue;
+            }
+            best.offer(new long[] {rank, id});
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<long[]> ranked = new ArrayList<>(best);
+        ranked.sort(byRankThenId);
+        List<PartnerData> result = new ArrayList<>(ranked.size());
+        for (long[] match : ranked) {
+            result.add(partners[(int) match[1]]);
+        }
+        return result;
+    }
+
+    /**
+     * @return the rank of a match, or -1 if the partner does not match
+     */
+    private int rank(String q, String wordStart, int id) {
+        String name = names[id];
+        String number = numbers[id];
+        if (name.equals(q) || number.equals(q)) {
+            return RANK_EXACT;
+        }
+        if (name.startsWith(q)) {
+            return RANK_NAME_PREFIX;
+        }
+        if (number.startsWith(q) || name.contains(wordStart)) {
+            return RANK_WORD_PREFIX;
+        }
+        if (name.contains(q) || number.contains(q)) {
+            return RANK_CONTAINS;
+        }
+        return -1;
+    }
+
+    /**
+     * Intersects the posting lists of all trigrams of the query, smallest
+     * first. The result may contain partners that merely contain every
+     * trigram, which {@link #rank(String, String, int)} then rejects.
+     */
+    private int[] trigramCandidates(String q) {
+        List<int[]> lists = new ArrayList<>();
+        for (int i = 0; i + GRAM <= q.length(); i++) {
+            int[] ids = trigrams.get(gram(q, i));
+            if (ids == null) {
+                return new int[0];
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(ids -> ids.length));
+        int[] result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Collects the ids of all tokens starting with the query, in ascending
+     * id order (with duplicates for partners that have several matching
+     * tokens, which the caller skips).
+     */
+    private int[] prefixCandidates(String q) {
+        int from = Arrays.binarySearch(tokens, q);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        int to = from;
+        while (to < tokens.length && tokens[to].startsWith(q)) {
+            to++;
+        }
+        int[] ids = Arrays.copyOfRange(tokenIds, from, to);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static void addTrigrams(Map<Long, IntList> postings, String text, int id) {
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            postings.computeIfAbsent(gram(text, i), gram -> new IntList()).addIfNotLast(id);
+        }
+    }
+
+    /**
+     * Packs the three chars starting at {@code i} into one key, avoiding a
+     * substring per trigram.
+     */
+    private static long gram(String text, int i) {
+        return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+    }
+
+    private record Token(String text, int id) {
+    }
+
+    /** Growable ascending list of ints, avoiding boxing while building postings. */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void addIfNotLast(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -4,7 +4,9 @@ import java.time.Instant;
 
 /**
  * DTO for attachment metadata (no binary content - see the dedicated
- * download endpoint for that).
+ * download endpoint for that). {@code sha256} doubles as the content version:
+ * passing it as {@code ?v=} to the download endpoint yields a URL whose
+ * response may be cached as immutable.
  */
 public record AttachmentDTO(
     String id,
@@ -12,6 +14,7 @@ public record AttachmentDTO(
     String fileName,
     String contentType,
     long sizeBytes,
+    String sha256,
     Instant uploadedAt,
     String uploadedBy
 ) {}
@@ -1,25 +1,31 @@
 package dev.abstratium.abstraccount.boundary;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import org.jboss.logging.Logger;
+import org.jboss.resteasy.reactive.FilePart;
 import org.jboss.resteasy.reactive.RestForm;
 import org.jboss.resteasy.reactive.multipart.FileUpload;
 
 import dev.abstratium.abstraccount.Roles;
 import dev.abstratium.abstraccount.entity.AttachmentEntity;
 import dev.abstratium.abstraccount.service.AttachmentPersistenceService;
+import dev.abstratium.abstraccount.service.AttachmentZipExporter;
 import dev.abstratium.abstraccount.service.JournalLockedException;
 import dev.abstratium.abstraccount.service.JournalPersistenceService;
 import io.quarkus.security.identity.SecurityIdentity;
@@ -29,6 +35,7 @@ import jakarta.transaction.Transactional;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
@@ -36,7 +43,11 @@ import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.StreamingOutput;
 
@@ -58,14 +69,28 @@ public class AttachmentResource {
     /** Only PDFs are accepted for now (see TRANSACTION_ATTACHMENTS.md §7). */
     private static final Set<String> ALLOWED_CONTENT_TYPES = Set.of("application/pdf");
 
-    /** A generous but bounded upload size to avoid unbounded memory usage. */
+    /** A generous but bounded upload size to avoid unbounded storage usage. */
     private static final long MAX_SIZE_BYTES = 20L * 1024 * 1024; // 20MB
 
     private static final byte[] PDF_MAGIC = "%PDF-".getBytes(StandardCharsets.US_ASCII);
 
+    /** For content-addressed URLs ({@code ?v=<sha256>}), which never change. */
+    private static final String CACHE_CONTROL_IMMUTABLE = "private, max-age=31536000, immutable";
+
+    /** For plain attachment URLs, whose content changes on replace. */
+    private static final String CACHE_CONTROL_REVALIDATE = "private, no-cache";
+
+    private static final int COPY_BUFFER_SIZE_BYTES = 64 * 1024;
+
+    /** Bounds the work a single summary request can cause. */
+    private static final int MAX_SUMMARY_TRANSACTION_IDS = 10_000;
+
     @Inject
     AttachmentPersistenceService attachmentPersistenceService;
 
+    @Inject
+    AttachmentZipExporter attachmentZipExporter;
+
     @Inject
     JournalPersistenceService journalPersistenceService;
 
@@ -81,17 +106,18 @@ public class AttachmentResource {
     @Transactional
     public AttachmentDTO upload(@PathParam("transactionId") String transactionId,
                                  @RestForm("file") FileUpload file) {
-        byte[] bytes = readAndValidate(file);
-
+        validate(file);
         try {
             AttachmentEntity attachment = attachmentPersistenceService.create(
-                transactionId, safeFileName(file), file.contentType(), bytes, currentUsername());
+                transactionId, safeFileName(file), file.contentType(), contentOf(file), currentUsername());
             LOG.infof("Uploaded attachment %s for transaction %s", attachment.getId(), transactionId);
             return toDTO(attachment);
         } catch (IllegalArgumentException e) {
             throw new WebApplicationException(e.getMessage(), 404);
         } catch (JournalLockedException e) {
             throw e; // mapped to 423 by JournalLockedExceptionMapper
+        } catch (UncheckedIOException e) {
+            throw new WebApplicationException("Failed to read uploaded file", 500);
         }
     }
 
@@ -107,6 +133,55 @@ public class AttachmentResource {
             .toList();
     }
 
+    /**
+     * Summarises the attachments of a set of transactions in one request, so
+     * that a transaction list does not need to call {@link #list(String)} per
+     * row. Only transactions that have attachments are returned; unknown or
+     * cross-tenant ids match nothing, since attachments are tenant-scoped.
+     */
+    @POST
+    @Path("/summary")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public List<AttachmentSummaryDTO> summary(AttachmentSummaryRequestDTO request) {
+        if (request == null || request.transactionIds() == null) {
+            throw new WebApplicationException("transactionIds is required", 400);
+        }
+        if (request.transactionIds().size() > MAX_SUMMARY_TRANSACTION_IDS) {
+            throw new WebApplicationException(
+                "At most " + MAX_SUMMARY_TRANSACTION_IDS + " transactionIds may be requested at once", 400);
+        }
+        return toSummaries(attachmentPersistenceService.listByTransactionIds(request.transactionIds()));
+    }
+
+    /**
+     * Summarises the attachments of every transaction of a journal whose
+     * transaction date falls within the given (inclusive) range. Only
+     * transactions that have attachments are returned.
+     */
+    @GET
+    @Path("/journal/{journalId}/summary")
+    public List<AttachmentSummaryDTO> journalSummary(@PathParam("journalId") String journalId,
+                                                     @QueryParam("from") String from,
+                                                     @QueryParam("to") String to) {
+        LocalDate fromDate = parseDateOrBadRequest(from, "from");
+        LocalDate toDate = parseDateOrBadRequest(to, "to");
+
+        journalPersistenceService.findJournalById(journalId)
+            .orElseThrow(() -> new WebApplicationException("Journal not found: " + journalId, 404));
+
+        return toSummaries(attachmentPersistenceService.listByJournalAndDateRange(journalId, fromDate, toDate));
+    }
+
+    private List<AttachmentSummaryDTO> toSummaries(List<AttachmentEntity> attachments) {
+        Map<String, List<AttachmentDTO>> byTransaction = new LinkedHashMap<>();
+        for (AttachmentEntity attachment : attachments) {
+            byTransaction.computeIfAbsent(attachment.getTransactionId(), id -> new ArrayList<>()).add(toDTO(attachment));
+        }
+        return byTransaction.entrySet().stream()
+            .map(e -> new AttachmentSummaryDTO(e.getKey(), e.getValue().size(), e.getValue()))
+            .toList();
+    }
+
     /**
      * Verifies that a transaction exists in the caller's organisation
      * (tenant-scoped {@code em.find}, see
@@ -154,23 +229,108 @@ public class AttachmentResource {
     }
 
     /**
-     * Downloads the raw bytes of an attachment.
+     * Downloads the raw bytes of an attachment. Content held in a local file
+     * is handed to the HTTP layer as a {@link java.io.File}, which sends it
+     * with zero-copy {@code sendfile}; content held in the database is
+     * streamed chunk by chunk. Either way the file is never held in memory as
+     * a whole.
+     * <p>
+     * The strong {@code ETag} is the content's SHA-256, so a conditional
+     * {@code If-None-Match} request is answered with {@code 304} without
+     * touching the content. A single {@code Range} is answered with
+     * {@code 206}, which lets PDF viewers fetch pages incrementally. Since the
+     * content behind an attachment id changes on replace, responses are only
+     * marked {@code immutable} when requested with the current hash as
+     * {@code v} query parameter (a content-addressed URL); otherwise clients
+     * must revalidate.
      */
     @GET
     @Path("/{attachmentId}")
     @Produces(MediaType.WILDCARD)
-    public Response download(@PathParam("attachmentId") String attachmentId) {
+    public Response download(@PathParam("attachmentId") String attachmentId,
+                             @QueryParam("v") String version,
+                             @HeaderParam("Range") String rangeHeader,
+                             @HeaderParam("If-Range") String ifRange,
+                             @Context Request request) {
         AttachmentEntity attachment = attachmentPersistenceService.findById(attachmentId)
             .orElseThrow(() -> new WebApplicationException("Attachment not found: " + attachmentId, 404));
 
-        byte[] content = attachmentPersistenceService.loadContent(attachmentId)
-            .orElseThrow(() -> new WebApplicationException("Attachment content not found: " + attachmentId, 404));
+        EntityTag etag = attachment.getSha256() != null ? new EntityTag(attachment.getSha256()) : null;
+        String cacheControl = version != null && version.equals(attachment.getSha256())
+            ? CACHE_CONTROL_IMMUTABLE
+            : CACHE_CONTROL_REVALIDATE;
+        if (etag != null) {
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+            if (notModified != null) {
+                return notModified
+                    .tag(etag)
+                    .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                    .build();
+            }
+        }
+
+        long size = attachment.getSizeBytes();
+        // A range is only honoured if the client's copy is still current.
+        // If-Range compares strongly, so a weak validator never matches.
+        boolean rangeApplies = ifRange == null
+            || (etag != null && ifRange.trim().equals("\"" + attachment.getSha256() + "\""));
+        Optional<ByteRange> range = rangeApplies ? ByteRange.parse(rangeHeader, size) : Optional.empty();
+        if (range.isPresent() && !range.get().isSatisfiable()) {
+            return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header("Content-Range", "bytes */" + size)
+                .build();
+        }
 
-        return Response.ok(content, attachment.getContentType())
+        Response.ResponseBuilder response;
+        Optional<java.nio.file.Path> localFile = attachmentPersistenceService.localContentPath(attachment);
+        if (localFile.isPresent()) {
+            response = range
+                .map(r -> Response.status(Response.Status.PARTIAL_CONTENT)
+                    .entity(new FilePart(localFile.get().toFile(), r.start(), r.length())))
+                .orElseGet(() -> Response.ok(localFile.get().toFile()));
+        } else {
+            long offset = range.map(ByteRange::start).orElse(0L);
+            long length = range.map(ByteRange::length).orElse(size);
+            InputStream content = attachmentPersistenceService.openContent(attachment, offset)
+                .orElseThrow(() -> new WebApplicationException("Attachment content not found: " + attachmentId, 404));
+            StreamingOutput streamingOutput = output -> {
+                try (InputStream in = content) {
+                    copy(in, output, length);
+                }
+            };
+            response = (range.isPresent() ? Response.status(Response.Status.PARTIAL_CONTENT) : Response.ok())
+                .entity(streamingOutput)
+                .header(HttpHeaders.CONTENT_LENGTH, length);
+        }
+        range.ifPresent(r -> response.header("Content-Range", r.contentRange(size)));
+        if (etag != null) {
+            response.tag(etag);
+        }
+        return response
+            .type(attachment.getContentType())
+            .header("Accept-Ranges", "bytes")
+            .header(HttpHeaders.CACHE_CONTROL, cacheControl)
             .header("Content-Disposition", contentDisposition("inline", attachment.getFileName()))
             .build();
     }
 
+    /**
+     * Copies exactly {@code length} bytes, or fewer if the content ends
+     * early.
+     */
+    private static void copy(InputStream in, OutputStream out, long length) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE_BYTES];
+        long remaining = length;
+        while (remaining > 0) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (n < 0) {
+                break;
+            }
+            out.write(buffer, 0, n);
+            remaining -= n;
+        }
+    }
+
     /**
      * Replaces the content of an existing attachment.
      */
@@ -180,16 +340,17 @@ public class AttachmentResource {
     @Transactional
     public AttachmentDTO replace(@PathParam("attachmentId") String attachmentId,
                                   @RestForm("file") FileUpload file) {
-        byte[] bytes = readAndValidate(file);
-
+        validate(file);
         try {
             AttachmentEntity attachment = attachmentPersistenceService.replace(
-                    attachmentId, safeFileName(file), file.contentType(), bytes, currentUsername())
+                    attachmentId, safeFileName(file), file.contentType(), contentOf(file), currentUsername())
                 .orElseThrow(() -> new WebApplicationException("Attachment not found: " + attachmentId, 404));
             LOG.infof("Replaced attachment %s", attachmentId);
             return toDTO(attachment);
         } catch (JournalLockedException e) {
             throw e; // mapped to 423 by JournalLockedExceptionMapper
+        } catch (UncheckedIOException e) {
+            throw new WebApplicationException("Failed to read uploaded file", 500);
         }
     }
 
@@ -218,22 +379,8 @@ public class AttachmentResource {
 
     private Response buildZipResponse(List<AttachmentEntity> attachments, String zipFileName) {
         Map<String, Integer> nameCounts = new HashMap<>();
-        StreamingOutput streamingOutput = output -> {
-            try (ZipOutputStream zip = new ZipOutputStream(output)) {
-                for (AttachmentEntity attachment : attachments) {
-                    byte[] content = attachmentPersistenceService.loadContent(attachment.getId()).orElse(null);
-                    if (content == null) {
-                        continue;
-                    }
-                    String entryName = uniqueEntryName(attachment, nameCounts);
-                    zip.putNextEntry(new ZipEntry(entryName));
-                    zip.write(content);
-                    zip.closeEntry();
-                }
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
-        };
+        StreamingOutput streamingOutput = output -> attachmentZipExporter.writeZip(
+            attachments, attachment -> uniqueEntryName(attachment, nameCounts), output);
         return Response.ok(streamingOutput)
             .header("Content-Disposition", contentDisposition("attachment", zipFileName))
             .build();
@@ -265,11 +412,11 @@ public class AttachmentResource {
     }
 
     /**
-     * Reads the uploaded file's bytes and validates its size, declared
-     * content-type, and magic bytes. Never trusts the client-supplied
-     * content-type alone.
+     * Validates the uploaded file's size, declared content-type, and magic
+     * bytes. Never trusts the client-supplied content-type alone. Only the
+     * first few bytes of the uploaded temp file are read here.
      */
-    private byte[] readAndValidate(FileUpload file) {
+    private void validate(FileUpload file) {
         if (file == null) {
             throw new WebApplicationException("No file was uploaded", 400);
         }
@@ -281,26 +428,23 @@ public class AttachmentResource {
             throw new WebApplicationException("Unsupported content type: " + contentType, 400);
         }
 
-        byte[] bytes;
-        try {
-            bytes = Files.readAllBytes(file.uploadedFile());
+        byte[] header;
+        try (InputStream in = Files.newInputStream(file.uploadedFile())) {
+            header = in.readNBytes(PDF_MAGIC.length);
         } catch (IOException e) {
             throw new WebApplicationException("Failed to read uploaded file", 500);
         }
-
-        if (bytes.length < PDF_MAGIC.length || !startsWith(bytes, PDF_MAGIC)) {
+        if (!Arrays.equals(header, PDF_MAGIC)) {
             throw new WebApplicationException("File does not appear to be a valid PDF", 400);
         }
-        return bytes;
     }
 
-    private static boolean startsWith(byte[] data, byte[] prefix) {
-        for (int i = 0; i < prefix.length; i++) {
-            if (data[i] != prefix[i]) {
-                return false;
-            }
-        }
-        return true;
+    /**
+     * The uploaded temp file as a content source; the persistence service
+     * may read it twice (to hash it, then to store it if it is new).
+     */
+    private static AttachmentPersistenceService.ContentSource contentOf(FileUpload file) {
+        return () -> Files.newInputStream(file.uploadedFile());
     }
 
     /**
@@ -343,6 +487,7 @@ public class AttachmentResource {
             attachment.getFileName(),
             attachment.getContentType(),
             attachment.getSizeBytes(),
+            attachment.getSha256(),
             attachment.getUploadedAt(),
             attachment.getUploadedBy()
         );
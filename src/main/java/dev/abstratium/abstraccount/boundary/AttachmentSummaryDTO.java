@@ -0,0 +1,14 @@
+package dev.abstratium.abstraccount.boundary;
+
+import java.util.List;
+
+/**
+ * DTO summarising the attachments of one transaction, returned by the
+ * batched attachment summary endpoints so that transaction lists need not
+ * request attachments per transaction.
+ */
+public record AttachmentSummaryDTO(
+    String transactionId,
+    int attachmentCount,
+    List<AttachmentDTO> attachments
+) {}
@@ -0,0 +1,10 @@
+package dev.abstratium.abstraccount.boundary;
+
+import java.util.List;
+
+/**
+ * Request DTO for the attachment summary of a set of transactions.
+ */
+public record AttachmentSummaryRequestDTO(
+    List<String> transactionIds
+) {}
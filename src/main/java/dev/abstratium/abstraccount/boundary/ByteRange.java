@@ -0,0 +1,91 @@
+package dev.abstratium.abstraccount.boundary;
+
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A single HTTP byte range ({@code Range: bytes=...}, RFC 9110 §14.1.2),
+ * resolved against the size of the content, with an inclusive
+ * {@link #start()} and {@link #end()}.
+ * <p>
+ * Only single ranges are supported. Multiple ranges, other units and
+ * malformed headers are ignored, which RFC 9110 allows: the server then
+ * simply answers with the full content.
+ */
+record ByteRange(long start, long end) {
+
+    private static final Pattern SINGLE_RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
+    /**
+     * Parses a {@code Range} header.
+     *
+     * @param header the header value, may be null
+     * @param size   the size of the content in bytes
+     * @return the range, or empty if the header is absent or is to be
+     *         ignored; the range is not {@link #isSatisfiable() satisfiable}
+     *         if it lies entirely beyond the end of the content
+     */
+    static Optional<ByteRange> parse(String header, long size) {
+        if (header == null) {
+            return Optional.empty();
+        }
+        Matcher matcher = SINGLE_RANGE.matcher(header.trim());
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        String first = matcher.group(1);
+        String last = matcher.group(2);
+        try {
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    return Optional.empty();
+                }
+                // Suffix range: the last N bytes.
+                long suffixLength = Long.parseLong(last);
+                if (suffixLength == 0 || size == 0) {
+                    return Optional.of(unsatisfiable(size));
+                }
+                return Optional.of(new ByteRange(Math.max(0, size - suffixLength), size - 1));
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Long.parseLong(last);
+            if (end < start) {
+                return Optional.empty();
+            }
+            if (start >= size) {
+                return Optional.of(unsatisfiable(size));
+            }
+            return Optional.of(new ByteRange(start, Math.min(end, size - 1)));
+        } catch (NumberFormatException e) {
+            // Too many digits for a long.
+            return Optional.empty();
+        }
+    }
+
+    private static ByteRange unsatisfiable(long size) {
+        return new ByteRange(size, size - 1);
+    }
+
+    /**
+     * @return {@code false} if the requested range lies entirely beyond the
+     *         end of the content (answered with {@code 416})
+     */
+    boolean isSatisfiable() {
+        return start <= end;
+    }
+
+    /**
+     * @return the number of bytes in the range
+     */
+    long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * @return the {@code Content-Range} header value for this range
+     */
+    String contentRange(long size) {
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+}
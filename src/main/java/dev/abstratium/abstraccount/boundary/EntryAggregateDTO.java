@@ -0,0 +1,20 @@
+package dev.abstratium.abstraccount.boundary;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+import java.util.List;
+
+/**
+ * Compact table of aggregated entries: one row per group, with the values of
+ * the grouping columns followed by the measures, in the order of the columns.
+ *
+ * @param columns    the names of the columns, e.g. {@code ["month", "account", "sum"]}
+ * @param rows       the rows
+ * @param pushedDown whether the database aggregated the entries
+ */
+@RegisterForReflection
+public record EntryAggregateDTO(
+    List<String> columns,
+    List<List<Object>> rows,
+    boolean pushedDown
+) {}
@@ -30,6 +30,7 @@ public record EntrySearchDTO(
     String transactionPartnerId,
     String transactionPartnerName,
     List<TagDTO> transactionTags,
+    int transactionAttachmentCount,
     
     // Journal fields
     String journalId,
@@ -0,0 +1,52 @@
+package dev.abstratium.abstraccount.boundary;
+
+import dev.abstratium.abstraccount.service.EntryQueryPlan;
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+import java.util.List;
+
+/**
+ * How an entry search was planned and what each of its stages cost.
+ *
+ * @param filter         the EQL filter expression
+ * @param plan           how the filter is evaluated
+ * @param fetch          the query that loaded the entries of the search
+ * @param stages         the stages of the search, in order
+ * @param allocatedBytes the bytes allocated by all stages, if the JVM measures them
+ * @param results        the number of entries found
+ */
+@RegisterForReflection
+public record EntrySearchExplainDTO(
+    String filter,
+    EntryQueryPlan plan,
+    Fetch fetch,
+    List<Stage> stages,
+    Long allocatedBytes,
+    int results
+) {
+
+    /**
+     * @param jpql                  the JPQL that loaded the entries, or null if
+     *                              the search ruled out all of them without a query
+     * @param journalIds            the journals all of whose entries were loaded,
+     *                              bound to {@code journalIds}
+     * @param candidateTransactions the number of further transactions whose
+     *                              entries were loaded, bound to {@code transactionIds}
+     * @param accountIds            the accounts the entries were restricted to,
+     *                              bound to {@code accountIds}, or null for all
+     */
+    @RegisterForReflection
+    public record Fetch(String jpql, List<String> journalIds, int candidateTransactions, List<String> accountIds) {
+    }
+
+    /**
+     * @param name           {@code compile}, {@code fetch}, {@code filter} or {@code mapping}
+     * @param rows           the rows the stage produced: candidate transactions,
+     *                       entries loaded, entries matching or results
+     * @param millis         the time spent in the stage
+     * @param allocatedBytes the bytes allocated by the stage, if the JVM measures them
+     */
+    @RegisterForReflection
+    public record Stage(String name, long rows, double millis, Long allocatedBytes) {
+    }
+}
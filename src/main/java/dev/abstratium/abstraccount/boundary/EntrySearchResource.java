@@ -1,13 +1,21 @@
 package dev.abstratium.abstraccount.boundary;
 
+import java.net.URI;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
+import org.jboss.resteasy.reactive.RestResponse;
+
+import com.google.common.base.Suppliers;
 
 import dev.abstratium.abstraccount.Roles;
 import dev.abstratium.abstraccount.adapters.PartnerDataAdapter;
@@ -15,9 +23,18 @@ import dev.abstratium.abstraccount.entity.AccountEntity;
 import dev.abstratium.abstraccount.entity.EntryEntity;
 import dev.abstratium.abstraccount.entity.JournalEntity;
 import dev.abstratium.abstraccount.entity.TransactionEntity;
+import dev.abstratium.abstraccount.service.AccountService;
+import dev.abstratium.abstraccount.service.AttachmentPersistenceService;
+import dev.abstratium.abstraccount.service.EntryAggregation;
+import dev.abstratium.abstraccount.service.EntryAggregationService;
+import dev.abstratium.abstraccount.service.EntryMatcher;
+import dev.abstratium.abstraccount.service.EntryQuery;
 import dev.abstratium.abstraccount.service.EntryQueryParser;
+import dev.abstratium.abstraccount.service.EntryQueryPlan;
 import dev.abstratium.abstraccount.service.JournalPersistenceService;
+import dev.abstratium.abstraccount.service.QueryBudget;
 import dev.abstratium.core.service.CurrentOrgContext;
+import io.vertx.core.http.HttpServerRequest;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.Consumes;
@@ -26,7 +43,9 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.UriInfo;
 
 /**
  * REST resource for entry search operations.
@@ -51,93 +70,189 @@ public class EntrySearchResource {
 
     @Inject
     EntryQueryParser entryQueryParser;
+
+    @Inject
+    AttachmentPersistenceService attachmentPersistenceService;
+
+    @Inject
+    EntryAggregationService entryAggregationService;
+
+    @ConfigProperty(name = "eql.limits.max-rows", defaultValue = "200000")
+    long maxRows;
+
+    @ConfigProperty(name = "eql.limits.max-duration", defaultValue = "PT30S")
+    Duration maxDuration;
     
     /**
-     * Gets all entries with EQL filtering.
+     * Gets all entries with EQL filtering, of one journal, of its chain or of
+     * all journals of the organisation, ordered by date, newest first.
      *
-     * @param journalId required journal ID
-     * @param accountId optional account ID pre-filter (applied at DB level)
+     * @param journalId journal ID, required unless the scope is {@code org}
+     * @param scope     optional {@code journal} (default), {@code chain} for the
+     *                  journals linked to the journal by their previous journals,
+     *                  or {@code org} for all journals
+     * @param accountId optional account ID pre-filter (applied at DB level); in
+     *                  other journals, the accounts with the same path are used
      * @param filter    optional EQL filter expression (see docs/QUERY_LANGUAGE.md)
+     * @param explain   whether to report the time spent in each stage of the
+     *                  search in a {@code Server-Timing} header, and link the
+     *                  plan of the search, at {@link #explain}, in a
+     *                  {@code Link} header with the relation {@code explain}
      * @return list of entry search DTOs
+     * @throws dev.abstratium.abstraccount.service.QueryLimitException if the
+     *         search loads too many entries, takes too long or the client
+     *         disconnects
      */
     @GET
     @Path("/entries")
-    public List<EntrySearchDTO> getAllEntries(
+    public RestResponse<List<EntrySearchDTO>> getAllEntries(
             @QueryParam("journalId") String journalId,
+            @QueryParam("scope") String scope,
             @QueryParam("accountId") String accountId,
-            @QueryParam("filter") String filter) {
+            @QueryParam("filter") String filter,
+            @QueryParam("explain") boolean explain,
+            @Context HttpServerRequest request,
+            @Context UriInfo uriInfo) {
 
-        LOG.debugf("Getting entry search results: journalId=%s, accountId=%s, filter=%s",
-                   journalId, accountId, filter);
+        SearchProfile profile = new SearchProfile();
+        List<EntrySearchDTO> result = search(journalId, scope, accountId, filter, profile, budget(request));
+        if (!explain) {
+            return RestResponse.ok(result);
+        }
+        // The plan is as large as the filter, so it is linked rather than sent in a header
+        URI plan = uriInfo.getBaseUriBuilder()
+            .path(EntrySearchResource.class)
+            .path(EntrySearchResource.class, "explain")
+            .replaceQuery(uriInfo.getRequestUri().getRawQuery())
+            .replaceQueryParam("explain")
+            .build();
+        return RestResponse.ResponseBuilder.ok(result)
+            .header("Server-Timing", profile.serverTiming())
+            .link(plan, "explain")
+            .build();
+    }
+
+    /**
+     * Explains an entry search: how the EQL filter was parsed, which of its
+     * predicates the journal's index answers, and the rows, time and memory
+     * of each stage of the search, which is run without returning its
+     * results. The stages are measured after the filter is explained, so
+     * compiling it is a cache lookup.
+     *
+     * @param journalId required journal ID, whose plan is explained
+     * @param scope     optional scope of the search, see {@link #getAllEntries}
+     * @param accountId optional account ID pre-filter (applied at DB level)
+     * @param filter    optional EQL filter expression (see docs/QUERY_LANGUAGE.md)
+     * @return the plan and profile of the search
+     */
+    @GET
+    @Path("/explain")
+    public EntrySearchExplainDTO explain(
+            @QueryParam("journalId") String journalId,
+            @QueryParam("scope") String scope,
+            @QueryParam("accountId") String accountId,
+            @QueryParam("filter") String filter,
+            @Context HttpServerRequest request) {
 
         if (journalId == null || journalId.isBlank()) {
-            throw new WebApplicationException(
-                jakarta.ws.rs.core.Response.status(400)
-                    .entity(new QueryErrorDTO("missing_parameter", "journalId is required", 0))
-                    .type(MediaType.APPLICATION_JSON)
-                    .build());
+            throw queryError("missing_parameter", "journalId is required", 0);
+        }
+        EntryQueryPlan plan;
+        try {
+            plan = entryQueryParser.explain(filter, () -> accountsById(journalId),
+                currentOrgContext.getOrgId(), journalId);
+        } catch (EntryQueryParser.QueryParseException e) {
+            throw queryError("query_parse_error", e.getMessage(), e.getPosition());
         }
+        SearchProfile profile = new SearchProfile();
+        List<EntrySearchDTO> result = search(journalId, scope, accountId, filter, profile, budget(request));
+        return new EntrySearchExplainDTO(filter, plan, profile.fetch(), profile.stages(), profile.allocatedBytes(),
+            result.size());
+    }
+
+    private List<EntrySearchDTO> search(String journalId, String scope, String accountId, String filter,
+                                        SearchProfile profile, QueryBudget budget) {
+        LOG.debugf("Getting entry search results: journalId=%s, scope=%s, accountId=%s, filter=%s",
+                   journalId, scope, accountId, filter);
 
+        List<String> journalIds = journalIds(journalId, scope);
         String orgId = currentOrgContext.getOrgId();
 
-        // Load accounts (needed both for DB query and for EQL predicate resolution)
-        Map<String, AccountEntity> accountMap = new HashMap<>();
+        // Accounts are loaded once per journal, for the DTOs and, unless the compiled EQL
+        // filter is cached, for its account predicates
+        Map<String, Supplier<Map<String, AccountEntity>>> accounts = new HashMap<>();
         Map<String, JournalEntity> journalMap = new HashMap<>();
+        for (String id : journalIds) {
+            accounts.put(id, Suppliers.memoize(() -> accountsById(id)));
+            journalPersistenceService.findJournalById(id).ifPresent(j -> journalMap.put(j.getId(), j));
+        }
 
-        List<AccountEntity> accounts = journalPersistenceService.loadAllAccounts(journalId);
-        accounts.forEach(acc -> accountMap.put(acc.getId(), acc));
-        journalPersistenceService.findJournalById(journalId)
-            .ifPresent(j -> journalMap.put(j.getId(), j));
-
-        // Parse EQL filter into a predicate
-        Predicate<TransactionEntity> txPredicate;
-        try {
-            txPredicate = entryQueryParser.parse(filter, accountMap, orgId);
-        } catch (EntryQueryParser.QueryParseException e) {
-            throw new WebApplicationException(
-                jakarta.ws.rs.core.Response.status(400)
-                    .entity(new QueryErrorDTO("query_parse_error", e.getMessage(), e.getPosition()))
-                    .type(MediaType.APPLICATION_JSON)
-                    .build());
+        // Compile the EQL filter per journal, as accounts differ between journals; tag and
+        // text predicates are answered from each journal's index, so journals the filter
+        // rules out, e.g. by a journal predicate, are not read at all
+        Map<String, EntryMatcher> entryMatchers = new HashMap<>();
+        List<String> wholeJournals = new ArrayList<>();
+        Map<String, List<String>> candidatesByJournal = new HashMap<>();
+        for (String id : journalIds) {
+            budget.check();
+            EntryQuery entryQuery;
+            try {
+                entryQuery = entryQueryParser.compile(filter, accounts.get(id), orgId, id);
+            } catch (EntryQueryParser.QueryParseException e) {
+                throw queryError("query_parse_error", e.getMessage(), e.getPosition());
+            }
+            entryMatchers.put(id, entryQuery.entryMatcher());
+            if (entryQuery.candidateTransactionIds() == null) {
+                wholeJournals.add(id);
+            } else if (!entryQuery.candidateTransactionIds().isEmpty()) {
+                candidatesByJournal.put(id, entryQuery.candidateTransactionIds());
+            }
         }
+        List<String> candidates = new ArrayList<>();
+        candidatesByJournal.values().forEach(candidates::addAll);
+        if (candidates.size() > EntryQueryParser.MAX_CANDIDATES) {
+            wholeJournals.addAll(candidatesByJournal.keySet());
+            candidates.clear();
+        }
+        profile.stage("compile", candidates.size());
 
-        // Broad DB query: journal + optional account pre-filter only
+        // One DB query over all journals: optional account pre-filter, and the candidates
+        // of the EQL query where it has few
         List<String> accountIds = accountId != null && !accountId.isEmpty()
-            ? List.of(accountId)
+            ? accountIdsWithPathOf(accountId, journalIds, accounts)
             : null;
 
-        List<EntryEntity> entryEntities = journalPersistenceService.queryEntriesWithFilters(
-            journalId, null, null, null, null, accountIds,
-            null, null, null, null
-        );
+        profile.fetch(new EntrySearchExplainDTO.Fetch(
+            JournalPersistenceService.entriesOfJournalsJpql(wholeJournals, candidates, accountIds),
+            wholeJournals, candidates.size(), accountIds));
+        List<EntryEntity> entryEntities = journalPersistenceService.queryEntriesOfJournals(
+            wholeJournals, candidates, accountIds, budget);
 
-        LOG.debugf("Loaded %d accounts into map", accountMap.size());
-        LOG.infof("Fetched %d entries from database for journalId=%s", entryEntities.size(), journalId);
+        LOG.infof("Fetched %d entries from database for %d journals", entryEntities.size(), journalIds.size());
+        profile.stage("fetch", entryEntities.size());
 
-        // Apply the EQL predicate per individual entry using a synthetic single-entry
+        // Apply the EQL query per individual entry, as if it were the only entry of its
         // transaction. This ensures that entry-level predicates (accountname, accounttype,
         // commodity, amount, note) filter to matching entries only — not all sibling entries
         // of a matching transaction. Transaction-level predicates (date, description, partner,
-        // status, tag) still work correctly because the synthetic tx carries all those fields.
-        List<EntrySearchDTO> result = new ArrayList<>();
+        // status, tag) are evaluated once per transaction.
+        List<EntryEntity> matching = new ArrayList<>();
         for (EntryEntity entry : entryEntities) {
-            TransactionEntity tx = entry.getTransaction();
-
-            // Build a synthetic transaction containing only this one entry
-            TransactionEntity synthetic = new TransactionEntity();
-            synthetic.setId(tx.getId());
-            synthetic.setTransactionDate(tx.getTransactionDate());
-            synthetic.setStatus(tx.getStatus());
-            synthetic.setDescription(tx.getDescription());
-            synthetic.setPartnerId(tx.getPartnerId());
-            synthetic.setJournalId(tx.getJournalId());
-            synthetic.setTags(tx.getTags());
-            synthetic.getEntries().add(entry);
-
-            if (!txPredicate.test(synthetic)) {
-                continue;
+            budget.check();
+            if (entryMatchers.get(entry.getTransaction().getJournalId()).matches(entry)) {
+                matching.add(entry);
             }
-            AccountEntity account = accountMap.get(entry.getAccountId());
+        }
+        profile.stage("filter", matching.size());
+
+        Map<String, Long> attachmentCounts = attachmentPersistenceService.countByTransactionIds(
+            matching.stream().map(entry -> entry.getTransaction().getId()).toList());
+
+        List<EntrySearchDTO> result = new ArrayList<>(matching.size());
+        for (EntryEntity entry : matching) {
+            budget.check();
+            TransactionEntity tx = entry.getTransaction();
+            AccountEntity account = accounts.get(tx.getJournalId()).get().get(entry.getAccountId());
             JournalEntity journal = journalMap.get(tx.getJournalId());
 
             List<TagDTO> tags = tx.getTags().stream()
@@ -168,6 +283,7 @@ public class EntrySearchResource {
                 tx.getPartnerId(),
                 partnerName,
                 tags,
+                attachmentCounts.getOrDefault(tx.getId(), 0L).intValue(),
 
                 journal != null ? journal.getId() : tx.getJournalId(),
                 journal != null ? journal.getTitle() : "",
@@ -175,7 +291,179 @@ public class EntrySearchResource {
             ));
         }
 
-        LOG.infof("Returning %d entry search results for journalId=%s", result.size(), journalId);
+        profile.stage("mapping", result.size());
+
+        LOG.infof("Returning %d entry search results for journalId=%s, scope=%s", result.size(), journalId, scope);
         return result;
     }
+
+    /**
+     * Sums and counts the entries an EQL filter selects, per group. The
+     * entries are selected like {@link #getAllEntries} selects them, and
+     * grouped by the database where the filter allows it.
+     *
+     * @param journalId required journal ID
+     * @param filter    optional EQL filter expression (see docs/QUERY_LANGUAGE.md)
+     * @param groupBy   optional comma separated dimensions: day, month, year,
+     *                  account, commodity, partner, status
+     * @param measure   optional comma separated measures: sum (default), count
+     * @return one row per group with entries
+     */
+    @GET
+    @Path("/aggregate")
+    public EntryAggregateDTO aggregate(
+            @QueryParam("journalId") String journalId,
+            @QueryParam("filter") String filter,
+            @QueryParam("groupBy") String groupBy,
+            @QueryParam("measure") String measure,
+            @Context HttpServerRequest request) {
+
+        LOG.debugf("Aggregating entries: journalId=%s, filter=%s, groupBy=%s, measure=%s",
+                   journalId, filter, groupBy, measure);
+
+        if (journalId == null || journalId.isBlank()) {
+            throw queryError("missing_parameter", "journalId is required", 0);
+        }
+        List<EntryAggregation.Dimension> dimensions = new ArrayList<>();
+        for (String name : names(groupBy, "")) {
+            EntryAggregation.Dimension dimension = parseName(EntryAggregation.Dimension.class, name, "groupBy");
+            if (!dimensions.contains(dimension)) {
+                dimensions.add(dimension);
+            }
+        }
+        List<String> measures = new ArrayList<>();
+        for (String name : names(measure, "sum")) {
+            if (!name.equals("sum") && !name.equals("count")) {
+                throw queryError("invalid_parameter", "Unknown measure '" + name + "' (expected sum or count)", 0);
+            }
+            if (!measures.contains(name)) {
+                measures.add(name);
+            }
+        }
+
+        EntryQuery entryQuery;
+        try {
+            entryQuery = entryQueryParser.compile(filter, () -> accountsById(journalId),
+                currentOrgContext.getOrgId(), journalId);
+        } catch (EntryQueryParser.QueryParseException e) {
+            throw queryError("query_parse_error", e.getMessage(), e.getPosition());
+        }
+        EntryAggregation aggregation = entryAggregationService.aggregate(journalId, entryQuery, dimensions,
+            budget(request));
+
+        List<String> columns = new ArrayList<>();
+        dimensions.forEach(dimension -> columns.add(dimension.name().toLowerCase(Locale.ROOT)));
+        columns.addAll(measures);
+        List<List<Object>> rows = new ArrayList<>(aggregation.rows().size());
+        for (EntryAggregation.Row row : aggregation.rows()) {
+            List<Object> values = new ArrayList<>(row.group());
+            for (String name : measures) {
+                values.add(name.equals("sum") ? row.sum() : row.count());
+            }
+            rows.add(values);
+        }
+        LOG.infof("Returning %d aggregated rows for journalId=%s (%s)", rows.size(), journalId,
+                  aggregation.pushedDown() ? "grouped by the database" : "grouped in memory");
+        return new EntryAggregateDTO(columns, rows, aggregation.pushedDown());
+    }
+
+    /**
+     * @return the budget of a query of the request, cancelled when its client
+     *         disconnects, so that an abandoned search stops at its next check
+     */
+    private QueryBudget budget(HttpServerRequest request) {
+        QueryBudget budget = new QueryBudget(maxRows, maxDuration);
+        if (request != null) {
+            request.response().closeHandler(v -> budget.cancel());
+        }
+        return budget;
+    }
+
+    /** @return the IDs of the journals searched */
+    private List<String> journalIds(String journalId, String scope) {
+        String name = scope == null || scope.isBlank() ? "journal" : scope.toLowerCase(Locale.ROOT);
+        if (name.equals("org")) {
+            return journalPersistenceService.findAllJournals().stream().map(JournalEntity::getId).toList();
+        }
+        if (!name.equals("journal") && !name.equals("chain")) {
+            throw queryError("invalid_parameter", "Unknown scope '" + scope + "' (expected one of journal, chain, org)", 0);
+        }
+        if (journalId == null || journalId.isBlank()) {
+            throw queryError("missing_parameter", "journalId is required", 0);
+        }
+        if (name.equals("chain")) {
+            List<String> chain = journalPersistenceService.getJournalChainIds(journalId);
+            return chain.isEmpty() ? List.of(journalId) : chain;
+        }
+        return List.of(journalId);
+    }
+
+    /**
+     * Accounts have different IDs in every journal of a chain, so an account
+     * is matched across journals by its code path, e.g. "6:60:6000", which
+     * unlike its name does not change when an account is renamed.
+     *
+     * @return the account, and the accounts with its code path in the other journals
+     */
+    private static List<String> accountIdsWithPathOf(String accountId, List<String> journalIds,
+                                                     Map<String, Supplier<Map<String, AccountEntity>>> accounts) {
+        if (journalIds.size() == 1) {
+            return List.of(accountId);
+        }
+        String codePath = null;
+        for (String journalId : journalIds) {
+            Map<String, AccountEntity> journalAccounts = accounts.get(journalId).get();
+            AccountEntity account = journalAccounts.get(accountId);
+            if (account != null) {
+                codePath = AccountService.buildCodePath(account, List.copyOf(journalAccounts.values()));
+                break;
+            }
+        }
+        if (codePath == null) {
+            return List.of(accountId);
+        }
+        List<String> accountIds = new ArrayList<>();
+        for (String journalId : journalIds) {
+            List<AccountEntity> journalAccounts = List.copyOf(accounts.get(journalId).get().values());
+            for (AccountEntity account : journalAccounts) {
+                if (codePath.equals(AccountService.buildCodePath(account, journalAccounts))) {
+                    accountIds.add(account.getId());
+                }
+            }
+        }
+        return accountIds;
+    }
+
+    private Map<String, AccountEntity> accountsById(String journalId) {
+        Map<String, AccountEntity> accountMap = new HashMap<>();
+        journalPersistenceService.loadAllAccounts(journalId).forEach(acc -> accountMap.put(acc.getId(), acc));
+        return accountMap;
+    }
+
+    /** @return the lower case names of a comma separated parameter, or the default's */
+    private static List<String> names(String parameter, String defaultValue) {
+        String value = parameter == null || parameter.isBlank() ? defaultValue : parameter;
+        return Arrays.stream(value.split(","))
+            .map(name -> name.trim().toLowerCase(Locale.ROOT))
+            .filter(name -> !name.isEmpty())
+            .toList();
+    }
+
+    private static <E extends Enum<E>> E parseName(Class<E> type, String name, String parameter) {
+        try {
+            return Enum.valueOf(type, name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw queryError("invalid_parameter", "Unknown " + parameter + " '" + name + "' (expected one of "
+                + Arrays.stream(type.getEnumConstants()).map(c -> c.name().toLowerCase(Locale.ROOT))
+                    .collect(Collectors.joining(", ")) + ")", 0);
+        }
+    }
+
+    private static WebApplicationException queryError(String error, String message, int position) {
+        return new WebApplicationException(
+            jakarta.ws.rs.core.Response.status(400)
+                .entity(new QueryErrorDTO(error, message, position))
+                .type(MediaType.APPLICATION_JSON)
+                .build());
+    }
 }
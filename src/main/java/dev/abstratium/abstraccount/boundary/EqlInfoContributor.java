@@ -0,0 +1,37 @@
+package dev.abstratium.abstraccount.boundary;
+
+import com.google.common.cache.CacheStats;
+import dev.abstratium.abstraccount.service.EntryQueryParser;
+import io.quarkus.info.runtime.spi.InfoContributor;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.Map;
+
+/**
+ * Contributes the statistics of the cache of compiled EQL expressions, of this
+ * node since startup, to the /info endpoint.
+ */
+@ApplicationScoped
+public class EqlInfoContributor implements InfoContributor {
+
+    @Inject
+    EntryQueryParser entryQueryParser;
+
+    @Override
+    public String name() {
+        return "eql";
+    }
+
+    @Override
+    public Map<String, Object> data() {
+        CacheStats stats = entryQueryParser.expressionCacheStats();
+        return Map.of(
+            "expressionCacheSize", entryQueryParser.expressionCacheSize(),
+            "expressionCacheHits", stats.hitCount(),
+            "expressionCacheMisses", stats.missCount(),
+            "expressionCacheHitRate", stats.hitRate(),
+            "expressionCacheEvictions", stats.evictionCount()
+        );
+    }
+}
@@ -1,25 +1,35 @@
 package dev.abstratium.abstraccount.boundary;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
+import com.google.common.base.Suppliers;
+
 import dev.abstratium.abstraccount.Roles;
 import dev.abstratium.abstraccount.adapters.PartnerDataAdapter;
 import dev.abstratium.abstraccount.entity.JournalEntity;
+import dev.abstratium.abstraccount.model.AccountType;
 import dev.abstratium.abstraccount.model.Journal;
+import dev.abstratium.abstraccount.service.AttachmentPersistenceService;
+import dev.abstratium.abstraccount.service.EntryQuery;
 import dev.abstratium.abstraccount.service.EntryQueryParser;
 import dev.abstratium.abstraccount.service.JournalCreationService;
 import dev.abstratium.abstraccount.service.JournalLockedException;
 import dev.abstratium.abstraccount.service.JournalParser;
 import dev.abstratium.abstraccount.service.JournalPersistenceService;
 import dev.abstratium.abstraccount.service.JournalSerializer;
+import dev.abstratium.abstraccount.service.QueryBudget;
 import dev.abstratium.core.service.CurrentOrgContext;
+import io.vertx.core.http.HttpServerRequest;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.Consumes;
@@ -31,6 +41,7 @@ import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 
 /**
@@ -68,6 +79,15 @@ public class JournalResource {
 
     @Inject
     JournalSerializer journalSerializer;
+
+    @Inject
+    AttachmentPersistenceService attachmentPersistenceService;
+
+    @ConfigProperty(name = "eql.limits.max-rows", defaultValue = "200000")
+    long maxRows;
+
+    @ConfigProperty(name = "eql.limits.max-duration", defaultValue = "PT30S")
+    Duration maxDuration;
     
     /**
      * Gets transactions with their entries and tags.
@@ -79,6 +99,9 @@ public class JournalResource {
      * @param partnerId optional partner ID filter
      * @param status optional transaction status filter
      * @param filter optional EQL filter expression (see docs/QUERY_LANGUAGE.md)
+     * @throws dev.abstratium.abstraccount.service.QueryLimitException if the
+     *         transactions have too many entries, take too long or the client
+     *         disconnects
      */
     @GET
     @Path("/{journalId}/transactions")
@@ -88,23 +111,25 @@ public class JournalResource {
             @QueryParam("endDate") String endDate,
             @QueryParam("partnerId") String partnerId,
             @QueryParam("status") String status,
-            @QueryParam("filter") String filter) {
+            @QueryParam("filter") String filter,
+            @Context HttpServerRequest request) {
 
         String orgId = currentOrgContext.getOrgId();
-
-        // Load all accounts eagerly so the parser can resolve account names / types
-        List<dev.abstratium.abstraccount.entity.AccountEntity> accounts =
-            journalPersistenceService.loadAllAccounts(journalId);
-        Map<String, dev.abstratium.abstraccount.entity.AccountEntity> accountMap = accounts.stream()
-            .collect(Collectors.toMap(
-                dev.abstratium.abstraccount.entity.AccountEntity::getId,
-                acc -> acc
-            ));
-
-        // Parse the EQL expression into a predicate
-        java.util.function.Predicate<dev.abstratium.abstraccount.entity.TransactionEntity> txPredicate;
+        QueryBudget budget = budget(request);
+
+        // Accounts are loaded once, for the DTOs and, unless the compiled EQL expression
+        // is cached, so the parser can resolve account names / types
+        Supplier<Map<String, dev.abstratium.abstraccount.entity.AccountEntity>> accounts = Suppliers.memoize(() ->
+            journalPersistenceService.loadAllAccounts(journalId).stream()
+                .collect(Collectors.toMap(
+                    dev.abstratium.abstraccount.entity.AccountEntity::getId,
+                    acc -> acc
+                )));
+
+        // Compile the EQL expression; tag and text predicates are answered from the journal's index
+        EntryQuery entryQuery;
         try {
-            txPredicate = entryQueryParser.parse(filter, accountMap, orgId);
+            entryQuery = entryQueryParser.compile(filter, accounts, orgId, journalId);
         } catch (EntryQueryParser.QueryParseException e) {
             throw new WebApplicationException(
                 jakarta.ws.rs.core.Response.status(400)
@@ -113,8 +138,9 @@ public class JournalResource {
                     .build());
         }
 
-        // Broad DB query: only use the simple indexed filters for the SQL query;
-        // the EQL predicate will post-filter in memory.
+        // Broad DB query: only use the simple indexed filters for the SQL query, and
+        // the candidates of the EQL query if it has few; the EQL predicate will
+        // post-filter in memory.
         LocalDate startLocalDate = startDate != null ? LocalDate.parse(startDate) : null;
         LocalDate endLocalDate = endDate != null ? LocalDate.parse(endDate) : null;
 
@@ -129,7 +155,9 @@ public class JournalResource {
                 null,
                 null,
                 null,
-                null
+                null,
+                entryQuery.candidateTransactionIds(),
+                budget
             );
 
         // Deduplicate to get unique transactions while preserving order from database
@@ -139,12 +167,21 @@ public class JournalResource {
         }
 
         // Apply EQL post-filter
-        transactionMap.values().removeIf(tx -> !txPredicate.test(tx));
+        transactionMap.values().removeIf(tx -> {
+            budget.check();
+            return !entryQuery.predicate().test(tx);
+        });
         
+        // One grouped query instead of an attachment request per transaction
+        Map<String, Long> attachmentCounts =
+            attachmentPersistenceService.countByTransactionIds(transactionMap.keySet());
+
         // Convert to DTOs
+        Map<String, dev.abstratium.abstraccount.entity.AccountEntity> accountMap = accounts.get();
         List<TransactionDTO> transactionDTOs = new ArrayList<>();
         
         for (dev.abstratium.abstraccount.entity.TransactionEntity txEntity : transactionMap.values()) {
+            budget.check();
             // Convert tags
             List<TagDTO> tags = txEntity.getTags().stream()
                 .map(tag -> new TagDTO(tag.getTagKey(), tag.getTagValue()))
@@ -183,12 +220,25 @@ public class JournalResource {
                 txPartnerId,
                 txPartnerName,
                 tags,
-                entries
+                entries,
+                attachmentCounts.getOrDefault(txEntity.getId(), 0L).intValue()
             ));
         }
         
         return transactionDTOs;
     }
+
+    /**
+     * @return the budget of a query of the request, cancelled when its client
+     *         disconnects, like the budget of an entry search
+     */
+    private QueryBudget budget(HttpServerRequest request) {
+        QueryBudget budget = new QueryBudget(maxRows, maxDuration);
+        if (request != null) {
+            request.response().closeHandler(v -> budget.cancel());
+        }
+        return budget;
+    }
     
     /**
      * Gets all distinct tags for a journal.
@@ -273,12 +323,13 @@ public class JournalResource {
         JournalEntity journal = journalPersistenceService.findJournalById(journalId)
             .orElseThrow(() -> new WebApplicationException("Journal not found: " + journalId, 404));
 
-        java.math.BigDecimal assets      = journalPersistenceService.sumByAccountType(journalId, "ASSET")
-                                    .add(journalPersistenceService.sumByAccountType(journalId, "CASH"));
-        java.math.BigDecimal liabilities = journalPersistenceService.sumByAccountType(journalId, "LIABILITY");
-        java.math.BigDecimal equity      = journalPersistenceService.sumByAccountType(journalId, "EQUITY");
-        java.math.BigDecimal revenue     = journalPersistenceService.sumByAccountType(journalId, "REVENUE");
-        java.math.BigDecimal expenses    = journalPersistenceService.sumByAccountType(journalId, "EXPENSE");
+        Map<AccountType, java.math.BigDecimal> sums = journalPersistenceService.sumsByAccountType(journalId);
+        java.math.BigDecimal assets      = sums.getOrDefault(AccountType.ASSET, java.math.BigDecimal.ZERO)
+                                    .add(sums.getOrDefault(AccountType.CASH, java.math.BigDecimal.ZERO));
+        java.math.BigDecimal liabilities = sums.getOrDefault(AccountType.LIABILITY, java.math.BigDecimal.ZERO);
+        java.math.BigDecimal equity      = sums.getOrDefault(AccountType.EQUITY, java.math.BigDecimal.ZERO);
+        java.math.BigDecimal revenue     = sums.getOrDefault(AccountType.REVENUE, java.math.BigDecimal.ZERO);
+        java.math.BigDecimal expenses    = sums.getOrDefault(AccountType.EXPENSE, java.math.BigDecimal.ZERO);
 
         return new JournalKpiDTO(assets, liabilities, equity, revenue, expenses, journal.getCurrency());
     }
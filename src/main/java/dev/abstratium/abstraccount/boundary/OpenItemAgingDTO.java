@@ -0,0 +1,16 @@
+package dev.abstratium.abstraccount.boundary;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO with the open balances of one commodity bucketed by invoice age.
+ */
+public record OpenItemAgingDTO(
+    String commodity,
+    int itemCount,
+    BigDecimal days0To30,
+    BigDecimal days31To60,
+    BigDecimal days61To90,
+    BigDecimal over90,
+    BigDecimal total
+) {}
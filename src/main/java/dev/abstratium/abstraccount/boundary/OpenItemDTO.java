@@ -0,0 +1,21 @@
+package dev.abstratium.abstraccount.boundary;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * DTO for an unpaid (or overpaid) invoice.
+ *
+ * @param balance the open balance, positive while unpaid
+ * @param ageDays days between the invoice date and the reference date
+ */
+public record OpenItemDTO(
+    String tagValue,
+    String partnerId,
+    String partnerName,
+    String commodity,
+    LocalDate invoiceDate,
+    LocalDate lastActivity,
+    BigDecimal balance,
+    long ageDays
+) {}
@@ -0,0 +1,155 @@
+package dev.abstratium.abstraccount.boundary;
+
+import dev.abstratium.abstraccount.Roles;
+import dev.abstratium.abstraccount.adapters.PartnerDataAdapter;
+import dev.abstratium.abstraccount.model.OpenItem;
+import dev.abstratium.abstraccount.model.PartnerData;
+import dev.abstratium.abstraccount.service.JournalPersistenceService;
+import dev.abstratium.abstraccount.service.OpenItemService;
+import dev.abstratium.core.service.CurrentOrgContext;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * REST resource for open items (unpaid sales and purchase invoices), read
+ * from the maintained open items of {@link OpenItemService}.
+ */
+@Path("/api/open-items")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+@RolesAllowed({Roles.USER})
+public class OpenItemResource {
+
+    private static final Logger LOG = Logger.getLogger(OpenItemResource.class);
+
+    @Inject
+    OpenItemService openItemService;
+
+    @Inject
+    JournalPersistenceService journalPersistenceService;
+
+    @Inject
+    PartnerDataAdapter partnerDataAdapter;
+
+    @Inject
+    CurrentOrgContext currentOrgContext;
+
+    /**
+     * Lists the open items of a journal's chain (or of the journal alone),
+     * oldest invoice first.
+     *
+     * @param journalId the journal ID
+     * @param chain whether to include the journals of the chain, default true,
+     *              so that invoices paid in a later year are not listed
+     * @param kind receivable (default) or payable
+     * @param asOf the date the age of the invoices is measured at, default today
+     * @return the open items
+     */
+    @GET
+    public List<OpenItemDTO> getOpenItems(
+            @QueryParam("journalId") String journalId,
+            @QueryParam("chain") @DefaultValue("true") boolean chain,
+            @QueryParam("kind") String kind,
+            @QueryParam("asOf") String asOf) {
+        LOG.debugf("Getting %s open items for journal: %s (chain: %s)", kind, journalId, chain);
+        OpenItemService.Kind openItemKind = parseKind(kind);
+        LocalDate referenceDate = parseAsOf(asOf);
+        String orgId = currentOrgContext.getOrgId();
+
+        return openItemService.findOpenItems(journalIds(journalId, chain), openItemKind).stream()
+            .map(item -> toDTO(orgId, item, referenceDate))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Sums the open items of a journal's chain (or of the journal alone) into
+     * aging buckets of 0-30, 31-60, 61-90 and over 90 days since the invoice
+     * date.
+     *
+     * @param journalId the journal ID
+     * @param chain whether to include the journals of the chain, default true
+     * @param kind receivable (default) or payable
+     * @param asOf the date the age is measured at, default today
+     * @return one entry per commodity
+     */
+    @GET
+    @Path("/aging")
+    public List<OpenItemAgingDTO> getAging(
+            @QueryParam("journalId") String journalId,
+            @QueryParam("chain") @DefaultValue("true") boolean chain,
+            @QueryParam("kind") String kind,
+            @QueryParam("asOf") String asOf) {
+        LOG.debugf("Getting %s aging for journal: %s (chain: %s)", kind, journalId, chain);
+        OpenItemService.Kind openItemKind = parseKind(kind);
+        LocalDate referenceDate = parseAsOf(asOf);
+
+        return openItemService.findAging(journalIds(journalId, chain), openItemKind, referenceDate).stream()
+            .map(aging -> new OpenItemAgingDTO(
+                aging.commodity(),
+                aging.itemCount(),
+                aging.days0To30(),
+                aging.days31To60(),
+                aging.days61To90(),
+                aging.over90(),
+                aging.total()))
+            .collect(Collectors.toList());
+    }
+
+    private List<String> journalIds(String journalId, boolean chain) {
+        if (journalId == null || journalId.isEmpty()) {
+            throw new BadRequestException("journalId is required");
+        }
+        // Tenant-scoped lookup: the open items of another organisation's
+        // journal are never read or built.
+        if (journalPersistenceService.findJournalById(journalId).isEmpty()) {
+            throw new NotFoundException("Journal not found: " + journalId);
+        }
+        return chain ? journalPersistenceService.getJournalChainIds(journalId) : List.of(journalId);
+    }
+
+    private static OpenItemService.Kind parseKind(String kind) {
+        if (kind == null) {
+            return OpenItemService.Kind.RECEIVABLE;
+        }
+        try {
+            return OpenItemService.Kind.valueOf(kind.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("kind must be receivable or payable");
+        }
+    }
+
+    private static LocalDate parseAsOf(String asOf) {
+        if (asOf == null || asOf.isEmpty()) {
+            return LocalDate.now();
+        }
+        try {
+            return LocalDate.parse(asOf);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("asOf must be a date like 2025-12-31");
+        }
+    }
+
+    private OpenItemDTO toDTO(String orgId, OpenItem item, LocalDate asOf) {
+        String partnerName = item.partnerId() == null ? null
+            : partnerDataAdapter.getPartner(orgId, item.partnerId()).map(PartnerData::name).orElse(null);
+        return new OpenItemDTO(
+            item.tagValue(),
+            item.partnerId(),
+            partnerName,
+            item.commodity(),
+            item.invoiceDate(),
+            item.lastActivity(),
+            item.balance(),
+            ChronoUnit.DAYS.between(item.invoiceDate(), asOf));
+    }
+}
@@ -5,6 +5,8 @@ import dev.abstratium.abstraccount.adapters.PartnerDataAdapter;
 import dev.abstratium.abstraccount.model.CreatePartnerResult;
 import dev.abstratium.abstraccount.model.ImportPartnersResult;
 import dev.abstratium.abstraccount.model.PartnerData;
+import dev.abstratium.abstraccount.service.JournalPersistenceService;
+import dev.abstratium.abstraccount.service.PartnerStatisticsService;
 import dev.abstratium.abstraccount.service.TagService;
 import dev.abstratium.core.service.CurrentOrgContext;
 import jakarta.annotation.security.RolesAllowed;
@@ -15,6 +17,8 @@ import jakarta.ws.rs.core.Response;
 import org.jboss.logging.Logger;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -27,6 +31,19 @@ import java.util.stream.Collectors;
 public class PartnerResource {
     
     private static final Logger LOG = Logger.getLogger(PartnerResource.class);
+
+    private static final int DEFAULT_STATISTICS_LIMIT = 50;
+    private static final int MAX_STATISTICS_LIMIT = 1000;
+
+    private static final Map<String, PartnerStatisticsService.Sort> STATISTICS_SORTS = Map.of(
+        "revenue", PartnerStatisticsService.Sort.REVENUE,
+        "expenses", PartnerStatisticsService.Sort.EXPENSES,
+        "receivable", PartnerStatisticsService.Sort.RECEIVABLE,
+        "payable", PartnerStatisticsService.Sort.PAYABLE,
+        "transactions", PartnerStatisticsService.Sort.TRANSACTIONS,
+        "lastactivity", PartnerStatisticsService.Sort.LAST_ACTIVITY,
+        "partner", PartnerStatisticsService.Sort.PARTNER
+    );
     
     @Inject
     PartnerDataAdapter partnerDataAdapter;
@@ -36,45 +53,110 @@ public class PartnerResource {
 
     @Inject
     TagService tagService;
+
+    @Inject
+    PartnerStatisticsService partnerStatisticsService;
+
+    @Inject
+    JournalPersistenceService journalPersistenceService;
     
     /**
      * Search for partners by name or number.
-     * Returns active partners only.
+     * Returns active partners only, best matches first (see
+     * {@link PartnerDataAdapter#searchPartners}); without a search term, all
+     * active partners sorted by partner number.
      * 
      * @param searchTerm optional search term to filter partners
+     * @param limit optional maximum number of results, e.g. for autocomplete
      * @return list of matching partners
      */
     @GET
     @Path("/partners/search")
-    public List<PartnerDTO> searchPartners(@QueryParam("q") String searchTerm) {
+    public List<PartnerDTO> searchPartners(@QueryParam("q") String searchTerm,
+                                           @QueryParam("limit") Integer limit) {
         String orgId = currentOrgContext.getOrgId();
         LOG.debugf("Searching partners with term: %s for org: %s", searchTerm, orgId);
 
-        List<PartnerData> allPartners = partnerDataAdapter.getAllPartners(orgId);
-        
-        // Filter to active partners only
-        List<PartnerData> activePartners = allPartners.stream()
-            .filter(PartnerData::active)
-            .collect(Collectors.toList());
-        
-        // Apply search filter if provided
-        if (searchTerm != null && !searchTerm.trim().isEmpty()) {
-            String lowerSearchTerm = searchTerm.trim().toLowerCase();
-            activePartners = activePartners.stream()
-                .filter(p -> 
-                    p.partnerNumber().toLowerCase().contains(lowerSearchTerm) ||
-                    p.name().toLowerCase().contains(lowerSearchTerm)
-                )
-                .collect(Collectors.toList());
+        if (limit != null && limit < 1) {
+            throw new BadRequestException("limit must be at least 1");
         }
-        
-        // Convert to DTOs and sort by partner number
-        return activePartners.stream()
-            .sorted((a, b) -> a.partnerNumber().compareTo(b.partnerNumber()))
+
+        return partnerDataAdapter.searchPartners(orgId, searchTerm, limit != null ? limit : Integer.MAX_VALUE).stream()
             .map(p -> new PartnerDTO(p.partnerNumber(), p.name()))
             .collect(Collectors.toList());
     }
     
+    /**
+     * Turnover, open balances and last activity per partner and commodity,
+     * e.g. the top customers by revenue. Aggregated in the database over all
+     * transactions with a partner, except closing transactions.
+     *
+     * <p>Open balances of a single journal only contain what happened in that
+     * journal; use {@code chain=true} to include the journals it was carried
+     * over from and to.</p>
+     *
+     * @param journalId the journal ID
+     * @param chain whether to aggregate the journal's whole chain
+     * @param commodity optional commodity to restrict the statistics to
+     * @param sort one of revenue (default), expenses, receivable, payable,
+     *             transactions, lastActivity or partner
+     * @param order asc or desc; defaults to desc, or asc when sorting by partner
+     * @param offset the number of results to skip, default 0
+     * @param limit the maximum number of results, default 50, at most 1000
+     * @return one page of statistics
+     */
+    @GET
+    @Path("/partners/statistics")
+    public List<PartnerStatisticsDTO> getPartnerStatistics(
+            @QueryParam("journalId") String journalId,
+            @QueryParam("chain") boolean chain,
+            @QueryParam("commodity") String commodity,
+            @QueryParam("sort") String sort,
+            @QueryParam("order") String order,
+            @QueryParam("offset") Integer offset,
+            @QueryParam("limit") Integer limit) {
+        String orgId = currentOrgContext.getOrgId();
+        LOG.debugf("Getting partner statistics for journal: %s (chain: %s), sort: %s %s", journalId, chain, sort, order);
+
+        if (journalId == null || journalId.isEmpty()) {
+            throw new BadRequestException("journalId is required");
+        }
+        PartnerStatisticsService.Sort sortBy = sort == null
+            ? PartnerStatisticsService.Sort.REVENUE
+            : STATISTICS_SORTS.get(sort.toLowerCase(Locale.ROOT));
+        if (sortBy == null) {
+            throw new BadRequestException("sort must be one of revenue, expenses, receivable, payable, transactions, lastActivity, partner");
+        }
+        if (order != null && !order.equalsIgnoreCase("asc") && !order.equalsIgnoreCase("desc")) {
+            throw new BadRequestException("order must be asc or desc");
+        }
+        boolean descending = order == null ? sortBy != PartnerStatisticsService.Sort.PARTNER : order.equalsIgnoreCase("desc");
+        if (offset != null && offset < 0) {
+            throw new BadRequestException("offset must not be negative");
+        }
+        if (limit != null && (limit < 1 || limit > MAX_STATISTICS_LIMIT)) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_STATISTICS_LIMIT);
+        }
+
+        List<String> journalIds = chain ? journalPersistenceService.getJournalChainIds(journalId) : List.of(journalId);
+        return partnerStatisticsService.findPartnerStatistics(journalIds,
+                commodity == null || commodity.isBlank() ? null : commodity,
+                sortBy, descending,
+                offset != null ? offset : 0,
+                limit != null ? limit : DEFAULT_STATISTICS_LIMIT).stream()
+            .map(s -> new PartnerStatisticsDTO(
+                s.partnerNumber(),
+                partnerDataAdapter.getPartner(orgId, s.partnerNumber()).map(PartnerData::name).orElse(null),
+                s.commodity(),
+                s.transactionCount(),
+                s.revenue(),
+                s.expenses(),
+                s.receivable(),
+                s.payable(),
+                s.lastActivity()))
+            .collect(Collectors.toList());
+    }
+
     /**
      * Get a specific partner by number.
      *
@@ -148,9 +230,9 @@ public class PartnerResource {
      * Replace all partners for the current organisation from an imported CSV file.
      *
      * <p>The request body is the raw CSV content (text/csv). The backend fully
-     * validates the content before overwriting the organisation's partner file.
+     * validates the content before replacing the organisation's partners.
      * If validation fails the response is HTTP 400 with the list of errors and
-     * the existing file is left unchanged.</p>
+     * the existing partners are left unchanged.</p>
      *
      * <p><b>Warning:</b> this replaces all existing partners. Transactions only
      * store the partner number, so after a replace they may refer to different
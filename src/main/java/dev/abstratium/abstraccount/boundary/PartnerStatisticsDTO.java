@@ -0,0 +1,25 @@
+package dev.abstratium.abstraccount.boundary;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * DTO with the turnover and open balances of one partner in one commodity.
+ * See {@link dev.abstratium.abstraccount.model.PartnerStatistics} for the
+ * meaning and sign of the amounts.
+ *
+ * @param partnerName the partner's name, or null if the partner number is
+ *                    not (or no longer) in the partner list
+ */
+public record PartnerStatisticsDTO(
+    String partnerNumber,
+    String partnerName,
+    String commodity,
+    long transactionCount,
+    BigDecimal revenue,
+    BigDecimal expenses,
+    BigDecimal receivable,
+    BigDecimal payable,
+    LocalDate lastActivity
+) {
+}
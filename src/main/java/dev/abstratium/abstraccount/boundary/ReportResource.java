@@ -2,6 +2,7 @@ package dev.abstratium.abstraccount.boundary;
 
 import dev.abstratium.abstraccount.Roles;
 import dev.abstratium.abstraccount.entity.ReportTemplateEntity;
+import dev.abstratium.abstraccount.service.ReferenceCache;
 import dev.abstratium.abstraccount.service.ReportTemplateImportExportService;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
@@ -32,6 +33,9 @@ public class ReportResource {
     @Inject
     ReportTemplateImportExportService reportTemplateImportExportService;
 
+    @Inject
+    ReferenceCache referenceCache;
+
     /**
      * Lists all available report templates.
      * 
@@ -68,6 +72,7 @@ public class ReportResource {
     public ReportTemplateDTO getTemplate(@PathParam("templateId") String templateId) {
         LOG.debugf("Getting report template: %s", templateId);
         
+        referenceCache.expireStale();
         ReportTemplateEntity template = em.find(ReportTemplateEntity.class, templateId);
         if (template == null) {
             throw new jakarta.ws.rs.NotFoundException("Report template not found: " + templateId);
@@ -0,0 +1,71 @@
+package dev.abstratium.abstraccount.boundary;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Times the stages of one entry search, on the thread running it, and
+ * measures what they allocate where the JVM supports it.
+ */
+final class SearchProfile {
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private final List<EntrySearchExplainDTO.Stage> stages = new ArrayList<>();
+    private EntrySearchExplainDTO.Fetch fetch;
+    private long start = System.nanoTime();
+    private long allocated = threadAllocatedBytes();
+
+    /** Ends the current stage and starts the next. */
+    void stage(String name, long rows) {
+        long now = System.nanoTime();
+        long allocatedNow = threadAllocatedBytes();
+        stages.add(new EntrySearchExplainDTO.Stage(name, rows, (now - start) / 1_000_000.0,
+            allocatedNow < 0 ? null : allocatedNow - allocated));
+        start = now;
+        allocated = allocatedNow;
+    }
+
+    /** Records the query that loads the entries. */
+    void fetch(EntrySearchExplainDTO.Fetch fetch) {
+        this.fetch = fetch;
+    }
+
+    EntrySearchExplainDTO.Fetch fetch() {
+        return fetch;
+    }
+
+    List<EntrySearchExplainDTO.Stage> stages() {
+        return stages;
+    }
+
+    /** @return the bytes allocated by all stages, or null if not measured */
+    Long allocatedBytes() {
+        return stages.stream().allMatch(stage -> stage.allocatedBytes() != null)
+            ? stages.stream().mapToLong(EntrySearchExplainDTO.Stage::allocatedBytes).sum()
+            : null;
+    }
+
+    /** @return the stages as the value of a {@code Server-Timing} header */
+    String serverTiming() {
+        return stages.stream()
+            .map(stage -> String.format(Locale.ROOT, "%s;dur=%.3f;desc=\"%d rows\"",
+                stage.name(), stage.millis(), stage.rows()))
+            .collect(Collectors.joining(", "));
+    }
+
+    private static long threadAllocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads;
+        }
+        return null;
+    }
+}
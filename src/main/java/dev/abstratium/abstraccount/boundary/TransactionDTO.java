@@ -4,7 +4,9 @@ import java.time.LocalDate;
 import java.util.List;
 
 /**
- * DTO for Transaction entity matching the data model.
+ * DTO for Transaction entity matching the data model. {@code attachmentCount}
+ * lets transaction lists show which transactions have receipts without
+ * loading the attachments themselves.
  */
 public record TransactionDTO(
     String id,
@@ -14,5 +16,6 @@ public record TransactionDTO(
     String partnerId,
     String partnerName,
     List<TagDTO> tags,
-    List<EntryDTO> entries
+    List<EntryDTO> entries,
+    int attachmentCount
 ) {}
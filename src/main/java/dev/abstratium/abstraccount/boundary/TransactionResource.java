@@ -14,6 +14,7 @@ import dev.abstratium.abstraccount.entity.EntryEntity;
 import dev.abstratium.abstraccount.entity.TagEntity;
 import dev.abstratium.abstraccount.entity.TransactionEntity;
 import dev.abstratium.abstraccount.model.TransactionStatus;
+import dev.abstratium.abstraccount.service.AttachmentPersistenceService;
 import dev.abstratium.abstraccount.service.JournalLockedException;
 import dev.abstratium.abstraccount.service.JournalPersistenceService;
 import dev.abstratium.core.service.CurrentOrgContext;
@@ -51,6 +52,9 @@ public class TransactionResource {
 
     @Inject
     CurrentOrgContext currentOrgContext;
+
+    @Inject
+    AttachmentPersistenceService attachmentPersistenceService;
     
     /**
      * Creates a new transaction with entries and tags.
@@ -138,7 +142,7 @@ public class TransactionResource {
     public TransactionDTO getTransaction(@PathParam("transactionId") String transactionId) {
         LOG.debugf("Getting transaction: %s", transactionId);
         
-        TransactionEntity transaction = journalPersistenceService.findTransactionById(transactionId)
+        TransactionEntity transaction = journalPersistenceService.findTransactionWithEntriesAndTags(transactionId)
             .orElseThrow(() -> new WebApplicationException("Transaction not found: " + transactionId, 404));
         
         return toDTO(transaction);
@@ -360,7 +364,9 @@ public class TransactionResource {
             partnerId,
             partnerName,
             tags,
-            entries
+            entries,
+            attachmentPersistenceService.countByTransactionIds(List.of(transaction.getId()))
+                .getOrDefault(transaction.getId(), 0L).intValue()
         );
     }
 }
@@ -9,10 +9,12 @@ import java.util.UUID;
 /**
  * JPA entity for Account.
  * Loaded without transactions/entries.
+ * Cached in the second-level cache, see {@code ReferenceCache}.
  */
 @Entity
 @Table(name = "T_account")
 @Audited
+@Cacheable
 public class AccountEntity {
     
     @Id
@@ -0,0 +1,113 @@
+package dev.abstratium.abstraccount.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * JPA entity for one chunk of the binary content of an
+ * {@link AttachmentBlobEntity} held in the database.
+ * <p>
+ * Content is split into fixed-size chunks (see
+ * {@code DatabaseAttachmentStore.CHUNK_SIZE_BYTES}) so that uploads and
+ * downloads only ever hold a single chunk in memory, rather than the whole
+ * file (MySQL Connector/J materialises a {@code Blob} fully on the client, so
+ * a single {@code LONGBLOB} value cannot be streamed). Rows that were
+ * migrated from the former single-row {@code T_attachment_content} table are
+ * stored as one (possibly large) chunk with index {@code 0}; readers make no
+ * assumption about the chunk size.
+ * <p>
+ * This entity intentionally has <b>no {@code org_id}/{@code @TenantId}
+ * column</b> and is never queried directly from user-supplied input. It is
+ * only ever reached via the storage key of a previously tenant-filtered
+ * {@link AttachmentBlobEntity} (see {@code AttachmentPersistenceService}).
+ * This keeps the single security-critical tenant check in exactly one place.
+ * <p>
+ * Not {@code @Audited}: auditing full binary content would multiply storage
+ * for little benefit; the attachment metadata entity is audited instead so
+ * who uploaded/replaced/deleted an attachment and when is still tracked.
+ */
+@Entity
+@Table(name = "T_attachment_blob_chunk")
+@IdClass(AttachmentBlobChunkEntity.Key.class)
+public class AttachmentBlobChunkEntity {
+
+    @Id
+    @Column(name = "blob_id", length = 36)
+    private String blobId;
+
+    @Id
+    @Column(name = "chunk_index")
+    private int chunkIndex;
+
+    @Lob
+    @Column(name = "content", nullable = false)
+    private byte[] data;
+
+    public AttachmentBlobChunkEntity() {
+    }
+
+    public AttachmentBlobChunkEntity(String blobId, int chunkIndex, byte[] data) {
+        this.blobId = blobId;
+        this.chunkIndex = chunkIndex;
+        this.data = data;
+    }
+
+    public String getBlobId() {
+        return blobId;
+    }
+
+    public void setBlobId(String blobId) {
+        this.blobId = blobId;
+    }
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public void setChunkIndex(int chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Composite primary key: {@code (blob_id, chunk_index)}.
+     */
+    public static class Key implements Serializable {
+
+        private String blobId;
+        private int chunkIndex;
+
+        public Key() {
+        }
+
+        public Key(String blobId, int chunkIndex) {
+            this.blobId = blobId;
+            this.chunkIndex = chunkIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            return chunkIndex == other.chunkIndex && Objects.equals(blobId, other.blobId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(blobId, chunkIndex);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package dev.abstratium.abstraccount.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.TenantId;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * JPA entity for a piece of attachment content, stored once per
+ * (organisation, SHA-256) and shared by every {@link AttachmentEntity} of
+ * that organisation with identical content (e.g. a monthly statement
+ * attached to several transactions).
+ * <p>
+ * {@link #getRefCount()} is the number of attachments referencing the blob.
+ * It is only ever changed while holding a pessimistic write lock on the row,
+ * so concurrent uploads and deletes of the same content serialise on it.
+ * When the count drops to zero the blob is not deleted straight away:
+ * {@link #getReleasedAt()} is set and a background garbage collection pass
+ * deletes the content and the row once a grace period has passed, unless an
+ * upload of the same content has picked the blob up again in the meantime.
+ * <p>
+ * Not {@code @Audited}: this is storage bookkeeping. Who attached which
+ * content is tracked by the audited {@link AttachmentEntity}.
+ */
+@Entity
+@Table(name = "T_attachment_blob")
+public class AttachmentBlobEntity {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @TenantId
+    @Column(name = "org_id", nullable = false, updatable = false, length = 36)
+    private String orgId;
+
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "storage_backend", nullable = false, length = 20)
+    private String storageBackend;
+
+    @Column(name = "storage_key", nullable = false, length = 255)
+    private String storageKey;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "released_at")
+    private Instant releasedAt;
+
+    public AttachmentBlobEntity() {
+        this.id = UUID.randomUUID().toString();
+        this.createdAt = Instant.now();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * The owning organisation, populated by Hibernate from the current tenant
+     * when the entity is persisted.
+     */
+    public String getOrgId() {
+        return orgId;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public String getStorageBackend() {
+        return storageBackend;
+    }
+
+    public void setStorageBackend(String storageBackend) {
+        this.storageBackend = storageBackend;
+    }
+
+    public String getStorageKey() {
+        return storageKey;
+    }
+
+    public void setStorageKey(String storageKey) {
+        this.storageKey = storageKey;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getReleasedAt() {
+        return releasedAt;
+    }
+
+    public void setReleasedAt(Instant releasedAt) {
+        this.releasedAt = releasedAt;
+    }
+}
@@ -8,9 +8,11 @@ import java.util.UUID;
 
 /**
  * JPA entity for attachment metadata (e.g. a receipt PDF) linked to a
- * transaction. The binary content itself is stored separately in
- * {@link AttachmentContentEntity} so that listing/loading attachments never
- * has to pull the (potentially large) bytes along with the metadata.
+ * transaction. The binary content itself is stored separately, once per
+ * organisation and SHA-256, in the {@link AttachmentBlobEntity} named by
+ * {@link #getBlobId()}, so that listing/loading attachments never has to pull
+ * the (potentially large) bytes along with the metadata, and identical
+ * receipts attached to several transactions are only stored once.
  */
 @Entity
 @Table(name = "T_attachment")
@@ -46,6 +48,9 @@ public class AttachmentEntity {
     @Column(name = "uploaded_by", length = 255)
     private String uploadedBy;
 
+    @Column(name = "blob_id", nullable = false, length = 36)
+    private String blobId;
+
     public AttachmentEntity() {
         this.id = UUID.randomUUID().toString();
         this.uploadedAt = Instant.now();
@@ -59,6 +64,14 @@ public class AttachmentEntity {
         this.id = id;
     }
 
+    /**
+     * The owning organisation, populated by Hibernate from the current tenant
+     * when the entity is persisted.
+     */
+    public String getOrgId() {
+        return orgId;
+    }
+
     public String getTransactionId() {
         return transactionId;
     }
@@ -114,4 +127,12 @@ public class AttachmentEntity {
     public void setUploadedBy(String uploadedBy) {
         this.uploadedBy = uploadedBy;
     }
+
+    public String getBlobId() {
+        return blobId;
+    }
+
+    public void setBlobId(String blobId) {
+        this.blobId = blobId;
+    }
 }
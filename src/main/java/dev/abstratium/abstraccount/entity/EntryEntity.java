@@ -45,6 +45,14 @@ public class EntryEntity {
     public EntryEntity() {
         this.id = UUID.randomUUID().toString();
     }
+
+    /**
+     * Creates an entry with a known ID, e.g. read by a projection query,
+     * which is not managed by any persistence context.
+     */
+    public EntryEntity(String id) {
+        this.id = id;
+    }
     
     public String getId() {
         return id;
@@ -1,6 +1,8 @@
 package dev.abstratium.abstraccount.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.TenantId;
 import org.hibernate.envers.Audited;
 import java.util.HashMap;
@@ -10,11 +12,20 @@ import java.util.UUID;
 /**
  * JPA entity for Journal metadata.
  * Does not contain references to accounts or transactions.
+ * Commodities are loaded lazily, or with the journal by the
+ * {@link #WITH_COMMODITIES} entity graph.
+ * Journals and their commodities are cached in the second-level cache, see
+ * {@code ReferenceCache}.
  */
 @Entity
 @Table(name = "T_journal")
 @Audited
+@Cacheable
+@NamedEntityGraph(name = JournalEntity.WITH_COMMODITIES, attributeNodes = @NamedAttributeNode("commodities"))
 public class JournalEntity {
+
+    /** The entity graph loading a journal with its commodities, for showing or exporting it. */
+    public static final String WITH_COMMODITIES = "JournalEntity.withCommodities";
     
     @Id
     @Column(length = 36)
@@ -49,12 +60,13 @@ public class JournalEntity {
     @Column(name = "locked", nullable = false)
     private boolean locked = false;
 
-    @ElementCollection(fetch = FetchType.EAGER)
+    @ElementCollection(fetch = FetchType.LAZY)
     @CollectionTable(name = "T_journal_commodity", joinColumns = {
         @JoinColumn(name = "journal_id", referencedColumnName = "id"),
         @JoinColumn(name = "org_id", referencedColumnName = "org_id")
     })
     @MapKeyColumn(name = "commodity_code")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @Column(name = "display_precision", length = 20)
     private Map<String, String> commodities = new HashMap<>();
     
@@ -10,10 +10,12 @@ import java.util.UUID;
  * JPA entity for Macro.
  * Macros are transaction templates that can be executed through the UI.
  * Macros are independent of journals and can be used across all journals.
+ * Cached in the second-level cache, see {@code ReferenceCache}.
  */
 @Entity
 @Table(name = "T_macro")
 @Audited
+@Cacheable
 public class MacroEntity {
     
     @Id
@@ -0,0 +1,139 @@
+package dev.abstratium.abstraccount.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.TenantId;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * JPA entity for the open item of one invoice in one journal and commodity:
+ * the net balance of all transactions tagged with the invoice on the
+ * receivable and payable accounts configured in
+ * {@link dev.abstratium.abstraccount.service.OpenItemService}.
+ * <p>
+ * An invoice booked in one journal and paid in the next has a row in each;
+ * the invoice is open in the chain if the rows do not sum to zero.
+ * <p>
+ * Not {@code @Audited}: the rows are derived from the audited transactions
+ * and are recomputed whenever those change.
+ */
+@Entity
+@Table(name = "T_open_item")
+public class OpenItemEntity {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @TenantId
+    @Column(name = "org_id", nullable = false, updatable = false, length = 36)
+    private String orgId;
+
+    @Column(name = "journal_id", nullable = false, length = 36)
+    private String journalId;
+
+    @Column(name = "tag_value", nullable = false, length = 500)
+    private String tagValue;
+
+    @Column(nullable = false, length = 10)
+    private String commodity;
+
+    @Column(name = "partner_id", length = 100)
+    private String partnerId;
+
+    @Column(name = "first_date", nullable = false)
+    private LocalDate firstDate;
+
+    @Column(name = "last_date", nullable = false)
+    private LocalDate lastDate;
+
+    /** Debit balance on the receivable accounts, positive while the partner owes money. */
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal receivable;
+
+    /** Credit balance on the payable accounts, positive while money is owed to the partner. */
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal payable;
+
+    public OpenItemEntity() {
+        this.id = UUID.randomUUID().toString();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getOrgId() {
+        return orgId;
+    }
+
+    public String getJournalId() {
+        return journalId;
+    }
+
+    public void setJournalId(String journalId) {
+        this.journalId = journalId;
+    }
+
+    public String getTagValue() {
+        return tagValue;
+    }
+
+    public void setTagValue(String tagValue) {
+        this.tagValue = tagValue;
+    }
+
+    public String getCommodity() {
+        return commodity;
+    }
+
+    public void setCommodity(String commodity) {
+        this.commodity = commodity;
+    }
+
+    public String getPartnerId() {
+        return partnerId;
+    }
+
+    public void setPartnerId(String partnerId) {
+        this.partnerId = partnerId;
+    }
+
+    public LocalDate getFirstDate() {
+        return firstDate;
+    }
+
+    public void setFirstDate(LocalDate firstDate) {
+        this.firstDate = firstDate;
+    }
+
+    public LocalDate getLastDate() {
+        return lastDate;
+    }
+
+    public void setLastDate(LocalDate lastDate) {
+        this.lastDate = lastDate;
+    }
+
+    public BigDecimal getReceivable() {
+        return receivable;
+    }
+
+    public void setReceivable(BigDecimal receivable) {
+        this.receivable = receivable;
+    }
+
+    public BigDecimal getPayable() {
+        return payable;
+    }
+
+    public void setPayable(BigDecimal payable) {
+        this.payable = payable;
+    }
+}
@@ -0,0 +1,54 @@
+package dev.abstratium.abstraccount.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.TenantId;
+
+/**
+ * JPA entity marking the open items ({@link OpenItemEntity}) of a journal as
+ * complete, computed with the given definition. Journals without a state
+ * have no open items yet and are built on demand.
+ * <p>
+ * The table is keyed by organisation and journal; the tenant restriction
+ * makes the journal ID alone unique within a session.
+ * <p>
+ * Not {@code @Audited}: bookkeeping for derived data.
+ */
+@Entity
+@Table(name = "T_open_item_state")
+public class OpenItemStateEntity {
+
+    @Id
+    @Column(name = "journal_id", length = 36)
+    private String journalId;
+
+    @TenantId
+    @Column(name = "org_id", nullable = false, updatable = false, length = 36)
+    private String orgId;
+
+    @Column(nullable = false, length = 1000)
+    private String definition;
+
+    public OpenItemStateEntity() {
+    }
+
+    public OpenItemStateEntity(String journalId, String definition) {
+        this.journalId = journalId;
+        this.definition = definition;
+    }
+
+    public String getJournalId() {
+        return journalId;
+    }
+
+    public String getOrgId() {
+        return orgId;
+    }
+
+    public String getDefinition() {
+        return definition;
+    }
+
+    public void setDefinition(String definition) {
+        this.definition = definition;
+    }
+}
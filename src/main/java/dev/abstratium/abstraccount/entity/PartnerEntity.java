@@ -0,0 +1,80 @@
+package dev.abstratium.abstraccount.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.TenantId;
+import org.hibernate.envers.Audited;
+import java.util.UUID;
+
+/**
+ * JPA entity for a partner (customer, supplier, ...) of an organisation.
+ * Entries refer to partners by {@link #getPartnerNumber() partner number},
+ * which is unique within the organisation.
+ * <p>
+ * Read through the near cache in
+ * {@link dev.abstratium.abstraccount.adapters.PartnerDataAdapter}; written
+ * only via {@link dev.abstratium.abstraccount.service.PartnerPersistenceService},
+ * which also maintains the organisation's change counter that the cache is
+ * validated against.
+ */
+@Entity
+@Table(name = "T_partner")
+@Audited
+public class PartnerEntity {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @TenantId
+    @Column(name = "org_id", nullable = false, updatable = false, length = 36)
+    private String orgId;
+
+    @Column(name = "partner_number", nullable = false, updatable = false, length = 50)
+    private String partnerNumber;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(nullable = false)
+    private boolean active;
+
+    public PartnerEntity() {
+        this.id = UUID.randomUUID().toString();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getOrgId() {
+        return orgId;
+    }
+
+    public String getPartnerNumber() {
+        return partnerNumber;
+    }
+
+    public void setPartnerNumber(String partnerNumber) {
+        this.partnerNumber = partnerNumber;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+}
@@ -9,10 +9,12 @@ import java.util.UUID;
 /**
  * JPA entity for report templates.
  * Stores report definitions that can be dynamically rendered with account entry data.
+ * Cached in the second-level cache, see {@code ReferenceCache}.
  */
 @Entity
 @Table(name = "T_report_template")
 @Audited
+@Cacheable
 public class ReportTemplateEntity {
     
     @Id
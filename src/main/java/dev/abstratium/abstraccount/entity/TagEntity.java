@@ -35,6 +35,14 @@ public class TagEntity {
     public TagEntity() {
         this.id = UUID.randomUUID().toString();
     }
+
+    /**
+     * Creates a tag with a known ID, e.g. read by a projection query, which
+     * is not managed by any persistence context.
+     */
+    public TagEntity(String id) {
+        this.id = id;
+    }
     
     public String getId() {
         return id;
@@ -13,12 +13,21 @@ import java.util.UUID;
 
 /**
  * JPA entity for Transaction.
- * Eagerly loads entries and tags.
+ * Entries and tags are loaded lazily, in batches of transactions (see
+ * {@code quarkus.hibernate-orm.fetch.batch-size}), or with the transaction by
+ * the {@link #WITH_ENTRIES_AND_TAGS} entity graph.
  */
 @Entity
 @Table(name = "T_transaction")
 @Audited
+@NamedEntityGraph(name = TransactionEntity.WITH_ENTRIES_AND_TAGS, attributeNodes = {
+    @NamedAttributeNode("entries"),
+    @NamedAttributeNode("tags")
+})
 public class TransactionEntity {
+
+    /** The entity graph loading a transaction with its entries and tags, for editing it. */
+    public static final String WITH_ENTRIES_AND_TAGS = "TransactionEntity.withEntriesAndTags";
     
     @Id
     @Column(length = 36)
@@ -47,17 +56,25 @@ public class TransactionEntity {
     @Column(name = "transaction_order")
     private Long transactionOrder;
     
-    @OneToMany(mappedBy = "transaction", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "transaction", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @OrderBy("entryOrder ASC")
     private List<EntryEntity> entries = new ArrayList<>();
     
-    @OneToMany(mappedBy = "transaction", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "transaction", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private Set<TagEntity> tags = new HashSet<>();
     
     public TransactionEntity() {
         this.id = UUID.randomUUID().toString();
         this.transactionOrder = System.currentTimeMillis();
     }
+
+    /**
+     * Creates a transaction with a known ID, e.g. read by a projection query,
+     * which is not managed by any persistence context.
+     */
+    public TransactionEntity(String id) {
+        this.id = id;
+    }
     
     public String getId() {
         return id;
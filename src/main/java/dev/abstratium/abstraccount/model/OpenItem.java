@@ -0,0 +1,25 @@
+package dev.abstratium.abstraccount.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * An invoice whose receivable or payable balance is not settled.
+ *
+ * @param tagValue     the invoice tag value, e.g. "SI20251010491"
+ * @param partnerId    the partner of the invoice's transactions, may be null
+ * @param commodity    the commodity of the balance
+ * @param invoiceDate  the date of the invoice's first transaction
+ * @param lastActivity the date of the invoice's latest transaction
+ * @param balance      the open balance, positive while unpaid and negative
+ *                     when overpaid
+ */
+public record OpenItem(
+    String tagValue,
+    String partnerId,
+    String commodity,
+    LocalDate invoiceDate,
+    LocalDate lastActivity,
+    BigDecimal balance
+) {
+}
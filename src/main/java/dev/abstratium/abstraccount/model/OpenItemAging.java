@@ -0,0 +1,27 @@
+package dev.abstratium.abstraccount.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Open balances of one commodity, bucketed by the age of their invoices in
+ * days.
+ *
+ * @param commodity  the commodity of the balances
+ * @param itemCount  the number of open items
+ * @param days0To30  balance of invoices up to 30 days old (or dated after the
+ *                   reference date)
+ * @param days31To60 balance of invoices 31 to 60 days old
+ * @param days61To90 balance of invoices 61 to 90 days old
+ * @param over90     balance of invoices more than 90 days old
+ * @param total      the sum of all buckets
+ */
+public record OpenItemAging(
+    String commodity,
+    int itemCount,
+    BigDecimal days0To30,
+    BigDecimal days31To60,
+    BigDecimal days61To90,
+    BigDecimal over90,
+    BigDecimal total
+) {
+}
@@ -0,0 +1,35 @@
+package dev.abstratium.abstraccount.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Activity of one partner in one commodity, aggregated over the partner's
+ * transactions.
+ *
+ * <p>Amounts are signed so that the usual case is positive: revenue and
+ * payables are the negated (credit) balances of revenue and payable
+ * accounts, expenses and receivables the (debit) balances of expense and
+ * receivable accounts. Receivable and payable accounts are those of the
+ * open items.</p>
+ *
+ * @param partnerNumber    the partner number stored on the transactions
+ * @param commodity        the commodity of the amounts
+ * @param transactionCount the number of transactions with entries in the commodity
+ * @param revenue          turnover booked on revenue accounts
+ * @param expenses         turnover booked on expense accounts
+ * @param receivable       open balance on receivable accounts, i.e. owed by the partner
+ * @param payable          open balance on payable accounts, i.e. owed to the partner
+ * @param lastActivity     the date of the partner's latest transaction
+ */
+public record PartnerStatistics(
+    String partnerNumber,
+    String commodity,
+    long transactionCount,
+    BigDecimal revenue,
+    BigDecimal expenses,
+    BigDecimal receivable,
+    BigDecimal payable,
+    LocalDate lastActivity
+) {
+}
@@ -2,13 +2,16 @@ package dev.abstratium.abstraccount.service;
 
 import dev.abstratium.abstraccount.entity.AccountEntity;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
+import org.hibernate.jpa.HibernateHints;
 import org.jboss.logging.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.regex.Pattern;
 
 /**
@@ -21,6 +24,15 @@ public class AccountService {
     
     @PersistenceContext
     EntityManager em;
+
+    @Inject
+    OpenItemService openItemService;
+
+    @Inject
+    JournalIndexService journalIndexService;
+
+    @Inject
+    ReferenceCache referenceCache;
     
     /**
      * Loads all accounts for a given journal.
@@ -31,11 +43,14 @@ public class AccountService {
     @Transactional
     public List<AccountEntity> loadAllAccounts(String journalId) {
         LOG.debugf("Loading all accounts for journal: %s", journalId);
+        referenceCache.expireStale();
         return em.createQuery(
             "SELECT a FROM AccountEntity a WHERE a.journalId = :journalId ORDER BY a.accountOrder",
             AccountEntity.class
         )
         .setParameter("journalId", journalId)
+        .setHint(HibernateHints.HINT_CACHEABLE, true)
+        .setHint(HibernateHints.HINT_CACHE_REGION, ReferenceCache.ACCOUNT_LISTS)
         .getResultList();
     }
     
@@ -100,7 +115,7 @@ public class AccountService {
      * Builds the code path for an account by traversing up the hierarchy.
      * Each level's code is the first word of the account name.
      */
-    private String buildCodePath(AccountEntity account, List<AccountEntity> allAccounts) {
+    public static String buildCodePath(AccountEntity account, List<AccountEntity> allAccounts) {
         List<String> codes = new ArrayList<>();
         AccountEntity current = account;
         
@@ -137,6 +152,7 @@ public class AccountService {
         LOG.debugf("Creating account: %s in journal: %s", account.getName(), account.getJournalId());
         em.persist(account);
         em.flush();
+        journalIndexService.accountsChanged(account.getJournalId());
         return account;
     }
     
@@ -155,7 +171,12 @@ public class AccountService {
         if (account == null) {
             throw new IllegalArgumentException("Account not found: " + accountId);
         }
-        
+
+        if (!Objects.equals(account.getName(), updatedAccount.getName())
+                || !Objects.equals(account.getParentAccountId(), updatedAccount.getParentAccountId())) {
+            // The account's code path decides whether its entries count towards open items
+            openItemService.invalidate(account.getJournalId());
+        }
         account.setName(updatedAccount.getName());
         account.setType(updatedAccount.getType());
         account.setNote(updatedAccount.getNote());
@@ -163,6 +184,7 @@ public class AccountService {
         account.setAccountOrder(updatedAccount.getAccountOrder());
         
         em.flush();
+        journalIndexService.accountsChanged(account.getJournalId());
         return account;
     }
     
@@ -217,6 +239,7 @@ public class AccountService {
         
         em.remove(account);
         em.flush();
+        journalIndexService.accountsChanged(journalId);
     }
     
     /**
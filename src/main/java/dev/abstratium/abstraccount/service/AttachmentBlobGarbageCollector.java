@@ -0,0 +1,158 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.core.service.CurrentOrgContext;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.control.ActivateRequestContext;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically deletes attachment blobs (and their content) that no
+ * attachment has referenced for at least {@code attachment.gc.grace-period}.
+ *
+ * <p>The grace period means that content which is deleted and uploaded again
+ * shortly afterwards (e.g. while re-importing a journal) is reused rather
+ * than stored anew. Each blob is deleted in its own short transaction by
+ * {@link AttachmentPersistenceService#deleteBlobIfUnreferenced(String, Instant)},
+ * which re-checks the reference count under a row lock.</p>
+ *
+ * <p>The collector runs every {@code attachment.gc.interval} on a single
+ * daemon thread. It can be disabled with {@code attachment.gc.enabled=false},
+ * which is used in tests that call {@link #collectAll(Instant)} directly.</p>
+ */
+@ApplicationScoped
+public class AttachmentBlobGarbageCollector {
+
+    private static final Logger LOG = Logger.getLogger(AttachmentBlobGarbageCollector.class);
+
+    private static final int BATCH_SIZE = 100;
+
+    @ConfigProperty(name = "attachment.gc.enabled", defaultValue = "true")
+    boolean gcEnabled;
+
+    @ConfigProperty(name = "attachment.gc.interval", defaultValue = "PT1H")
+    Duration interval;
+
+    @ConfigProperty(name = "attachment.gc.grace-period", defaultValue = "PT1H")
+    Duration gracePeriod;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    AttachmentPersistenceService attachmentPersistenceService;
+
+    @Inject
+    CurrentOrgContext currentOrgContext;
+
+    private ScheduledExecutorService executor;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!gcEnabled) {
+            LOG.info("Attachment blob garbage collection is disabled (attachment.gc.enabled=false)");
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attachment-blob-gc");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::runQuietly,
+            interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void runQuietly() {
+        try {
+            collectAll(Instant.now().minus(gracePeriod));
+        } catch (RuntimeException e) {
+            LOG.error("Attachment blob garbage collection failed", e);
+        }
+    }
+
+    /**
+     * Deletes the blobs of every organisation that have been unreferenced
+     * since before the given instant.
+     *
+     * @param releasedBefore the cut-off
+     * @return the number of blobs deleted
+     */
+    public int collectAll(Instant releasedBefore) {
+        int deleted = 0;
+        for (String orgId : findOrgIdsWithGarbage(releasedBefore)) {
+            deleted += collectOrg(orgId, releasedBefore);
+        }
+        if (deleted > 0) {
+            LOG.infof("Garbage collected %d unreferenced attachment blob(s)", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes the blobs of one organisation that have been unreferenced since
+     * before the given instant. Runs in its own request context so that the
+     * tenant resolver scopes every query to that organisation.
+     *
+     * @param orgId          the organisation
+     * @param releasedBefore the cut-off
+     * @return the number of blobs deleted
+     */
+    @ActivateRequestContext
+    public int collectOrg(String orgId, Instant releasedBefore) {
+        currentOrgContext.setOrgId(orgId);
+        currentOrgContext.setContextDescription("attachment blob garbage collection");
+        int deleted = 0;
+        List<String> batch;
+        do {
+            batch = attachmentPersistenceService.findGarbageBlobIds(releasedBefore, BATCH_SIZE);
+            int deletedInBatch = 0;
+            for (String blobId : batch) {
+                try {
+                    if (attachmentPersistenceService.deleteBlobIfUnreferenced(blobId, releasedBefore)) {
+                        deletedInBatch++;
+                    }
+                } catch (RuntimeException e) {
+                    LOG.warnf(e, "Failed to garbage collect attachment blob %s", blobId);
+                }
+            }
+            deleted += deletedInBatch;
+            // A batch in which nothing could be deleted would be returned again.
+            if (deletedInBatch == 0) {
+                break;
+            }
+        } while (batch.size() == BATCH_SIZE);
+        return deleted;
+    }
+
+    /**
+     * Lists the organisations that have garbage. This is the only query that
+     * has to see all tenants, hence a native query: Hibernate's discriminator
+     * filter would otherwise restrict it to the default organisation.
+     */
+    @Transactional
+    @SuppressWarnings("unchecked")
+    List<String> findOrgIdsWithGarbage(Instant releasedBefore) {
+        return entityManager.createNativeQuery(
+                "SELECT DISTINCT org_id FROM T_attachment_blob WHERE ref_count = 0 AND released_at < ?1")
+            .setParameter(1, releasedBefore)
+            .getResultList();
+    }
+}
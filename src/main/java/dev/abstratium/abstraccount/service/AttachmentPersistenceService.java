@@ -1,19 +1,33 @@
 package dev.abstratium.abstraccount.service;
 
-import dev.abstratium.abstraccount.entity.AttachmentContentEntity;
+import com.google.common.collect.Lists;
+import dev.abstratium.abstraccount.adapters.FilesystemAttachmentStore;
+import dev.abstratium.abstraccount.entity.AttachmentBlobEntity;
 import dev.abstratium.abstraccount.entity.AttachmentEntity;
 import dev.abstratium.abstraccount.entity.TransactionEntity;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.TypedQuery;
 import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.exception.ConstraintViolationException;
+import org.jboss.logging.Logger;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HexFormat;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -23,20 +37,62 @@ import java.util.Optional;
  * Every read/write of attachment metadata goes through {@link EntityManager}
  * (either {@code find} or JPQL), so Hibernate's discriminator multi-tenancy
  * (see {@code docs/HIBERNATE_DISCRIMINATOR_MULTITENANCY.md}) automatically
- * scopes every operation to the caller's organisation. The binary content in
- * {@link AttachmentContentEntity} has no tenant column of its own and is only
- * ever loaded by the id of an {@link AttachmentEntity} that has already been
- * confirmed to belong to the current tenant - see {@link #loadContent(String)}.
+ * scopes every operation to the caller's organisation. The binary content is
+ * held by an {@link AttachmentStore}, which has no notion of tenants and is
+ * only ever given the storage key of an {@link AttachmentBlobEntity} that has
+ * already been loaded for the current tenant - see
+ * {@link #openContent(AttachmentEntity)}.
+ * <p>
+ * Content is deduplicated per organisation: an upload is hashed first, and
+ * if a blob with the same SHA-256 already exists its reference count is
+ * incremented instead of storing the bytes again. Deleting or replacing an
+ * attachment decrements the count; unreferenced blobs are removed later by
+ * {@link AttachmentBlobGarbageCollector}. Reference counts are only changed
+ * under a pessimistic lock on the blob row.
+ * <p>
+ * New content is written to the store configured by {@code attachment.store}
+ * ({@code database} or {@code filesystem}); existing content is always read
+ * from the store recorded on its blob, so both can coexist while
+ * {@link AttachmentStoreMigrationJob} moves content between them.
  */
 @ApplicationScoped
 public class AttachmentPersistenceService {
 
+    private static final Logger LOG = Logger.getLogger(AttachmentPersistenceService.class);
+
+    private static final int HASH_BUFFER_SIZE_BYTES = 64 * 1024;
+
+    /** Transaction ids per {@code IN} list, well below database and driver limits. */
+    private static final int IN_CLAUSE_BATCH_SIZE = 1000;
+
+    /**
+     * Provides the content of an upload. Content that is not yet stored is
+     * read twice: once to hash it (and find an existing blob), and once more
+     * to store it.
+     */
+    @FunctionalInterface
+    public interface ContentSource {
+        /**
+         * @return a new stream over the content, closed by the caller
+         */
+        InputStream open() throws IOException;
+    }
+
+    @ConfigProperty(name = "attachment.store", defaultValue = AttachmentStore.DATABASE)
+    String writeBackend;
+
     @Inject
     EntityManager entityManager;
 
     @Inject
     JournalPersistenceService journalPersistenceService;
 
+    @Inject
+    DatabaseAttachmentStore databaseAttachmentStore;
+
+    @Inject
+    FilesystemAttachmentStore filesystemAttachmentStore;
+
     /**
      * Finds an attachment by id, scoped to the current tenant.
      *
@@ -64,6 +120,53 @@ public class AttachmentPersistenceService {
         return query.getResultList();
     }
 
+    /**
+     * Lists the attachments of many transactions at once, grouped by
+     * transaction id and most recently uploaded first within each
+     * transaction. Ids of unknown or cross-tenant transactions simply match
+     * nothing.
+     *
+     * @param transactionIds the transaction ids
+     * @return list of attachment metadata
+     */
+    @Transactional
+    public List<AttachmentEntity> listByTransactionIds(Collection<String> transactionIds) {
+        List<AttachmentEntity> result = new ArrayList<>();
+        for (List<String> batch : Lists.partition(List.copyOf(new LinkedHashSet<>(transactionIds)), IN_CLAUSE_BATCH_SIZE)) {
+            result.addAll(entityManager.createQuery(
+                    "SELECT a FROM AttachmentEntity a WHERE a.transactionId IN :transactionIds " +
+                    "ORDER BY a.transactionId, a.uploadedAt DESC",
+                    AttachmentEntity.class)
+                .setParameter("transactionIds", batch)
+                .getResultList());
+        }
+        return result;
+    }
+
+    /**
+     * Counts the attachments of many transactions with one grouped query per
+     * {@value #IN_CLAUSE_BATCH_SIZE} ids, so that transaction lists can show
+     * which transactions have receipts without a request per transaction.
+     *
+     * @param transactionIds the transaction ids
+     * @return attachment count by transaction id; transactions without
+     *         attachments are absent
+     */
+    @Transactional
+    public Map<String, Long> countByTransactionIds(Collection<String> transactionIds) {
+        Map<String, Long> counts = new HashMap<>();
+        for (List<String> batch : Lists.partition(List.copyOf(new LinkedHashSet<>(transactionIds)), IN_CLAUSE_BATCH_SIZE)) {
+            entityManager.createQuery(
+                    "SELECT a.transactionId, COUNT(a) FROM AttachmentEntity a " +
+                    "WHERE a.transactionId IN :transactionIds GROUP BY a.transactionId",
+                    Object[].class)
+                .setParameter("transactionIds", batch)
+                .getResultList()
+                .forEach(row -> counts.put((String) row[0], (Long) row[1]));
+        }
+        return counts;
+    }
+
     /**
      * Lists all attachments for every transaction of a journal whose
      * transaction date falls within the given (inclusive) range, most
@@ -102,17 +205,46 @@ public class AttachmentPersistenceService {
     }
 
     /**
-     * Loads the binary content for an attachment that has already been
+     * Opens the binary content of an attachment that has already been
      * confirmed to belong to the current tenant (i.e. was obtained via
-     * {@link #findById(String)} or one of the list methods above).
+     * {@link #findById(String)} or one of the list methods above). The
+     * returned stream may be consumed after this method's transaction has
+     * ended, e.g. from a JAX-RS {@code StreamingOutput}.
+     *
+     * @param attachment the tenant-verified attachment
+     * @return a stream over the raw bytes, or empty if no content exists
+     */
+    @Transactional
+    public Optional<InputStream> openContent(AttachmentEntity attachment) {
+        return openContent(attachment, 0);
+    }
+
+    /**
+     * Like {@link #openContent(AttachmentEntity)}, but starts at the given
+     * byte offset, e.g. to serve an HTTP range request.
+     *
+     * @param attachment the tenant-verified attachment
+     * @param offset     the number of leading bytes to skip
+     * @return a stream over the remaining bytes, or empty if no content exists
+     */
+    @Transactional
+    public Optional<InputStream> openContent(AttachmentEntity attachment, long offset) {
+        return findBlob(attachment)
+            .flatMap(blob -> storeFor(blob.getStorageBackend()).open(blob.getStorageKey(), offset));
+    }
+
+    /**
+     * Returns the local file holding an attachment's content, if its backend
+     * stores content as plain files, so that it can be sent with zero-copy
+     * I/O.
      *
-     * @param attachmentId the attachment id (must already be tenant-verified)
-     * @return the raw bytes, or empty if no content row exists
+     * @param attachment the tenant-verified attachment
+     * @return the file, or empty if the content is not held in a local file
      */
     @Transactional
-    public Optional<byte[]> loadContent(String attachmentId) {
-        AttachmentContentEntity content = entityManager.find(AttachmentContentEntity.class, attachmentId);
-        return Optional.ofNullable(content).map(AttachmentContentEntity::getContent);
+    public Optional<Path> localContentPath(AttachmentEntity attachment) {
+        return findBlob(attachment)
+            .flatMap(blob -> storeFor(blob.getStorageBackend()).localPath(blob.getStorageKey()));
     }
 
     /**
@@ -122,31 +254,33 @@ public class AttachmentPersistenceService {
      * @param transactionId the transaction id
      * @param fileName      the original file name
      * @param contentType   the content type (e.g. application/pdf)
-     * @param bytes         the raw file bytes
+     * @param content       the raw file content
      * @param uploadedBy    the principal name of the uploader, may be null
      * @return the persisted attachment metadata
      * @throws IllegalArgumentException if the transaction does not exist
      * @throws JournalLockedException   if the owning journal is locked
+     * @throws UncheckedIOException     if the content cannot be read
      */
     @Transactional
-    public AttachmentEntity create(String transactionId, String fileName, String contentType, byte[] bytes, String uploadedBy) {
+    public AttachmentEntity create(String transactionId, String fileName, String contentType, ContentSource content, String uploadedBy) {
         TransactionEntity transaction = entityManager.find(TransactionEntity.class, transactionId);
         if (transaction == null) {
             throw new IllegalArgumentException("Transaction not found: " + transactionId);
         }
         journalPersistenceService.requireNotLocked(transaction.getJournalId());
 
+        AttachmentBlobEntity blob = acquireBlob(content);
+
         AttachmentEntity attachment = new AttachmentEntity();
         attachment.setTransactionId(transactionId);
         attachment.setFileName(fileName);
         attachment.setContentType(contentType);
-        attachment.setSizeBytes(bytes.length);
-        attachment.setSha256(sha256(bytes));
         attachment.setUploadedAt(Instant.now());
         attachment.setUploadedBy(uploadedBy);
-
+        attachment.setBlobId(blob.getId());
+        attachment.setSizeBytes(blob.getSizeBytes());
+        attachment.setSha256(blob.getSha256());
         entityManager.persist(attachment);
-        entityManager.persist(new AttachmentContentEntity(attachment.getId(), bytes));
         return attachment;
     }
 
@@ -157,39 +291,41 @@ public class AttachmentPersistenceService {
      * @param attachmentId the attachment id (tenant-scoped lookup)
      * @param fileName     the new file name
      * @param contentType  the new content type
-     * @param bytes        the new raw file bytes
+     * @param content      the new raw file content
      * @param uploadedBy   the principal name of the uploader, may be null
      * @return the updated attachment metadata, or empty if not found for this tenant
      * @throws JournalLockedException if the owning journal is locked
+     * @throws UncheckedIOException   if the content cannot be read
      */
     @Transactional
-    public Optional<AttachmentEntity> replace(String attachmentId, String fileName, String contentType, byte[] bytes, String uploadedBy) {
-        AttachmentEntity attachment = entityManager.find(AttachmentEntity.class, attachmentId);
+    public Optional<AttachmentEntity> replace(String attachmentId, String fileName, String contentType, ContentSource content, String uploadedBy) {
+        AttachmentEntity attachment = entityManager.find(AttachmentEntity.class, attachmentId, LockModeType.PESSIMISTIC_WRITE);
         if (attachment == null) {
             return Optional.empty();
         }
         TransactionEntity transaction = entityManager.find(TransactionEntity.class, attachment.getTransactionId());
         journalPersistenceService.requireNotLocked(transaction != null ? transaction.getJournalId() : null);
 
+        // Acquire before releasing, so that replacing content with identical
+        // content never takes the count down to zero.
+        AttachmentBlobEntity blob = acquireBlob(content);
+        String previousBlobId = attachment.getBlobId();
+
         attachment.setFileName(fileName);
         attachment.setContentType(contentType);
-        attachment.setSizeBytes(bytes.length);
-        attachment.setSha256(sha256(bytes));
         attachment.setUploadedAt(Instant.now());
         attachment.setUploadedBy(uploadedBy);
+        attachment.setBlobId(blob.getId());
+        attachment.setSizeBytes(blob.getSizeBytes());
+        attachment.setSha256(blob.getSha256());
 
-        AttachmentContentEntity content = entityManager.find(AttachmentContentEntity.class, attachmentId);
-        if (content == null) {
-            entityManager.persist(new AttachmentContentEntity(attachmentId, bytes));
-        } else {
-            content.setContent(bytes);
-        }
+        releaseBlob(previousBlobId);
         return Optional.of(attachment);
     }
 
     /**
-     * Deletes an attachment (metadata and content). Rejects the deletion if
-     * the owning journal is locked.
+     * Deletes an attachment and releases its content. Rejects the deletion
+     * if the owning journal is locked.
      *
      * @param attachmentId the attachment id (tenant-scoped lookup)
      * @return {@code true} if an attachment was deleted, {@code false} if
@@ -198,28 +334,286 @@ public class AttachmentPersistenceService {
      */
     @Transactional
     public boolean delete(String attachmentId) {
-        AttachmentEntity attachment = entityManager.find(AttachmentEntity.class, attachmentId);
+        AttachmentEntity attachment = entityManager.find(AttachmentEntity.class, attachmentId, LockModeType.PESSIMISTIC_WRITE);
         if (attachment == null) {
             return false;
         }
         TransactionEntity transaction = entityManager.find(TransactionEntity.class, attachment.getTransactionId());
         journalPersistenceService.requireNotLocked(transaction != null ? transaction.getJournalId() : null);
 
-        AttachmentContentEntity content = entityManager.find(AttachmentContentEntity.class, attachmentId);
-        if (content != null) {
-            entityManager.remove(content);
+        remove(attachment);
+        return true;
+    }
+
+    /**
+     * Deletes all attachments of a transaction that is itself being deleted
+     * and releases their content. Does not check the journal lock; callers
+     * are expected to have done so for the transaction.
+     *
+     * @param transactionId the transaction id (tenant-scoped lookup)
+     */
+    @Transactional
+    public void deleteAllForTransaction(String transactionId) {
+        listByTransaction(transactionId).forEach(this::remove);
+    }
+
+    /**
+     * Moves a blob's content to another backend, verifying its hash on the
+     * way. The blob is locked for the duration, so that concurrent uploads of
+     * the same content and garbage collection wait for the move to finish.
+     * The old copy is deleted together with the commit. Does nothing if the
+     * content is already in the target backend.
+     *
+     * @param blobId        the blob id (tenant-scoped lookup)
+     * @param targetBackend the backend to move the content to
+     * @return {@code true} if the content was moved
+     * @throws IllegalStateException if the content is missing or does not
+     *                               match the recorded hash
+     */
+    @Transactional
+    public boolean moveContent(String blobId, String targetBackend) {
+        AttachmentBlobEntity blob = entityManager.find(AttachmentBlobEntity.class, blobId, LockModeType.PESSIMISTIC_WRITE);
+        if (blob == null || targetBackend.equals(blob.getStorageBackend())) {
+            return false;
         }
-        entityManager.remove(attachment);
+        String oldBackend = blob.getStorageBackend();
+        String oldKey = blob.getStorageKey();
+        AttachmentStore target = storeFor(targetBackend);
+
+        AttachmentStore.StoredContent stored;
+        try (InputStream in = storeFor(oldBackend).open(oldKey)
+                .orElseThrow(() -> new IllegalStateException("Content missing for blob " + blobId))) {
+            stored = target.write(blob.getOrgId(), blobId, in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (blob.getSha256() != null && !blob.getSha256().equals(stored.sha256())) {
+            throw new IllegalStateException("Content of blob " + blobId
+                + " does not match its recorded SHA-256; not moving it");
+        }
+        blob.setStorageBackend(target.backend());
+        blob.setStorageKey(stored.storageKey());
+        storeFor(oldBackend).delete(oldKey);
+        LOG.debugf("Moved content of blob %s from %s to %s", blobId, oldBackend, targetBackend);
+        return true;
+    }
+
+    /**
+     * Lists the ids of referenced blobs whose content is not yet stored in
+     * the given backend. Unreferenced blobs are left to garbage collection.
+     *
+     * @param backend    the target backend
+     * @param maxResults the maximum number of ids to return
+     * @return blob ids, oldest first
+     */
+    @Transactional
+    public List<String> findBlobIdsNotInBackend(String backend, int maxResults) {
+        return entityManager.createQuery(
+                "SELECT b.id FROM AttachmentBlobEntity b " +
+                "WHERE b.storageBackend <> :backend AND b.refCount > 0 ORDER BY b.createdAt, b.id",
+                String.class)
+            .setParameter("backend", backend)
+            .setMaxResults(maxResults)
+            .getResultList();
+    }
+
+    /**
+     * Lists the ids of blobs that have been unreferenced since before the
+     * given instant.
+     *
+     * @param releasedBefore the cut-off
+     * @param maxResults     the maximum number of ids to return
+     * @return blob ids
+     */
+    @Transactional
+    public List<String> findGarbageBlobIds(Instant releasedBefore, int maxResults) {
+        return entityManager.createQuery(
+                "SELECT b.id FROM AttachmentBlobEntity b WHERE b.refCount = 0 AND b.releasedAt < :releasedBefore",
+                String.class)
+            .setParameter("releasedBefore", releasedBefore)
+            .setMaxResults(maxResults)
+            .getResultList();
+    }
+
+    /**
+     * Deletes a blob and its content if it is still unreferenced and was
+     * released before the given instant. The check is repeated under a lock,
+     * so an upload that picked the blob up again in the meantime wins.
+     *
+     * @param blobId         the blob id (tenant-scoped lookup)
+     * @param releasedBefore the cut-off
+     * @return {@code true} if the blob was deleted
+     */
+    @Transactional
+    public boolean deleteBlobIfUnreferenced(String blobId, Instant releasedBefore) {
+        AttachmentBlobEntity blob = entityManager.find(AttachmentBlobEntity.class, blobId, LockModeType.PESSIMISTIC_WRITE);
+        if (blob == null || blob.getRefCount() > 0
+                || blob.getReleasedAt() == null || !blob.getReleasedAt().isBefore(releasedBefore)) {
+            return false;
+        }
+        // Content first: database chunks reference the blob row.
+        storeFor(blob.getStorageBackend()).delete(blob.getStorageKey());
+        entityManager.remove(blob);
         return true;
     }
 
-    private static String sha256(byte[] bytes) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            return HexFormat.of().formatHex(digest.digest(bytes));
-        } catch (NoSuchAlgorithmException e) {
-            // SHA-256 is guaranteed to be available on every JVM; this is unreachable.
-            throw new IllegalStateException(e);
+    /**
+     * @return the backend that new content is written to
+     */
+    public String getWriteBackend() {
+        return writeStore().backend();
+    }
+
+    private void remove(AttachmentEntity attachment) {
+        String blobId = attachment.getBlobId();
+        entityManager.remove(attachment);
+        releaseBlob(blobId);
+    }
+
+    private Optional<AttachmentBlobEntity> findBlob(AttachmentEntity attachment) {
+        return Optional.ofNullable(entityManager.find(AttachmentBlobEntity.class, attachment.getBlobId()));
+    }
+
+    /**
+     * Returns the locked blob holding the given content, taking a reference
+     * on it. Existing content is found by its hash and not stored again; new
+     * content is first stored by {@link #storeIfAbsent(String, ContentSource)}.
+     * <p>
+     * The row lock only covers blobs that exist, so new content is stored in
+     * a transaction of its own: concurrent first uploads of the same content
+     * then meet on the unique hash instead of each inserting a blob, and the
+     * one that loses simply takes a reference on the winner's blob.
+     */
+    private AttachmentBlobEntity acquireBlob(ContentSource content) {
+        String sha256 = hash(content);
+        if (findBlobBySha256(sha256, LockModeType.NONE).isEmpty()) {
+            try {
+                storeIfAbsent(sha256, content);
+            } catch (RuntimeException e) {
+                if (!isConstraintViolation(e)) {
+                    throw e;
+                }
+                LOG.debugf("Content %s was stored concurrently", sha256);
+            }
+        }
+        Optional<AttachmentBlobEntity> existing = findBlobBySha256(sha256, LockModeType.PESSIMISTIC_WRITE);
+        if (existing.isEmpty()) {
+            // Released content that was collected since it was looked up;
+            // the lock now keeps others from storing it until this commits.
+            return newBlob(sha256, content, 1);
+        }
+        AttachmentBlobEntity blob = existing.get();
+        blob.setRefCount(blob.getRefCount() + 1);
+        blob.setReleasedAt(null);
+        LOG.debugf("Reusing stored content %s (%d references)", blob.getId(), blob.getRefCount());
+        return blob;
+    }
+
+    /**
+     * Stores new content as an unreferenced blob, unless a blob with the same
+     * hash exists. Runs in a transaction of its own, so that the blob is
+     * visible to concurrent uploads as soon as it is stored; it is released
+     * as of now, so that the garbage collector removes it if the upload that
+     * stored it fails before taking a reference.
+     *
+     * @throws org.hibernate.exception.ConstraintViolationException if a
+     *         concurrent upload stored the same content first
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void storeIfAbsent(String sha256, ContentSource content) {
+        if (findBlobBySha256(sha256, LockModeType.NONE).isEmpty()) {
+            newBlob(sha256, content, 0);
+        }
+    }
+
+    private Optional<AttachmentBlobEntity> findBlobBySha256(String sha256, LockModeType lockMode) {
+        return entityManager.createQuery(
+                "SELECT b FROM AttachmentBlobEntity b WHERE b.sha256 = :sha256", AttachmentBlobEntity.class)
+            .setParameter("sha256", sha256)
+            .setLockMode(lockMode)
+            .getResultStream()
+            .findFirst();
+    }
+
+    private AttachmentBlobEntity newBlob(String sha256, ContentSource content, int refCount) {
+        AttachmentStore store = writeStore();
+        AttachmentBlobEntity blob = new AttachmentBlobEntity();
+        blob.setSha256(sha256);
+        blob.setStorageBackend(store.backend());
+        // Placeholder until the store has assigned the real key; the row must
+        // exist before any content that references it is flushed.
+        blob.setStorageKey(blob.getId());
+        blob.setRefCount(refCount);
+        if (refCount == 0) {
+            blob.setReleasedAt(Instant.now());
+        }
+        entityManager.persist(blob);
+        entityManager.flush();
+
+        AttachmentStore.StoredContent stored;
+        try (InputStream in = content.open()) {
+            stored = store.write(blob.getOrgId(), blob.getId(), in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read attachment content", e);
+        }
+        if (!sha256.equals(stored.sha256())) {
+            throw new IllegalStateException("Attachment content changed while it was being stored");
+        }
+        blob.setStorageKey(stored.storageKey());
+        blob.setSizeBytes(stored.sizeBytes());
+        return blob;
+    }
+
+    private static boolean isConstraintViolation(Throwable throwable) {
+        while (throwable != null) {
+            if (throwable instanceof ConstraintViolationException) {
+                return true;
+            }
+            throwable = throwable.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * Drops a reference from a blob. A blob that is no longer referenced is
+     * kept until {@link AttachmentBlobGarbageCollector} removes it.
+     */
+    private void releaseBlob(String blobId) {
+        AttachmentBlobEntity blob = entityManager.find(AttachmentBlobEntity.class, blobId, LockModeType.PESSIMISTIC_WRITE);
+        if (blob == null) {
+            return;
+        }
+        blob.setRefCount(Math.max(0, blob.getRefCount() - 1));
+        if (blob.getRefCount() == 0) {
+            blob.setReleasedAt(Instant.now());
+        }
+    }
+
+    private static String hash(ContentSource content) {
+        MessageDigest digest = AttachmentStore.newSha256Digest();
+        byte[] buffer = new byte[HASH_BUFFER_SIZE_BYTES];
+        try (InputStream in = content.open()) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read attachment content", e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private AttachmentStore writeStore() {
+        return storeFor(writeBackend);
+    }
+
+    AttachmentStore storeFor(String backend) {
+        if (backend == null || AttachmentStore.DATABASE.equals(backend)) {
+            return databaseAttachmentStore;
+        }
+        if (AttachmentStore.FILESYSTEM.equals(backend)) {
+            return filesystemAttachmentStore;
         }
+        throw new IllegalStateException("Unknown attachment storage backend: " + backend);
     }
 }
@@ -0,0 +1,124 @@
+package dev.abstratium.abstraccount.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+
+/**
+ * Storage backend for the binary content of attachments.
+ * <p>
+ * Implementations only deal with bytes addressed by an opaque
+ * {@code storageKey}; all tenant checks happen before a store is ever
+ * called, in {@link AttachmentPersistenceService}, which only passes keys
+ * taken from a tenant-filtered {@code AttachmentBlobEntity}. The backend that
+ * holds a blob's content is recorded per blob
+ * ({@code T_attachment_blob.storage_backend}), so content written by
+ * different backends can coexist while it is being migrated (see
+ * {@link AttachmentStoreMigrationJob}).
+ * <p>
+ * Methods are called from within the caller's JTA transaction. Backends
+ * that are not transactional themselves must make sure that a rollback never
+ * leaves committed metadata pointing at missing content.
+ */
+public interface AttachmentStore {
+
+    /** Backend identifier of {@link DatabaseAttachmentStore}. */
+    String DATABASE = "database";
+
+    /** Backend identifier of {@code FilesystemAttachmentStore}. */
+    String FILESYSTEM = "filesystem";
+
+    /**
+     * @return the identifier persisted in {@code T_attachment_blob.storage_backend}
+     */
+    String backend();
+
+    /**
+     * Stores the content, computing its size and SHA-256 while it is read.
+     *
+     * @param orgId   the owning organisation
+     * @param blobId  the blob the content belongs to
+     * @param content the raw content, read to the end but not closed
+     * @return where and what was stored
+     * @throws java.io.UncheckedIOException if the content cannot be read or written
+     */
+    StoredContent write(String orgId, String blobId, InputStream content);
+
+    /**
+     * Opens the content stored under the given key.
+     *
+     * @param storageKey the key returned by {@link #write}
+     * @return the content, or empty if nothing is stored under that key
+     */
+    Optional<InputStream> open(String storageKey);
+
+    /**
+     * Opens the content stored under the given key, starting at the given
+     * byte offset (for HTTP range requests). Backends override this when they
+     * can seek without reading the skipped bytes.
+     *
+     * @param storageKey the key returned by {@link #write}
+     * @param offset     the number of leading bytes to skip
+     * @return the remaining content, or empty if nothing is stored under that key
+     * @throws java.io.UncheckedIOException if the bytes cannot be skipped
+     */
+    default Optional<InputStream> open(String storageKey, long offset) {
+        Optional<InputStream> content = open(storageKey);
+        if (offset > 0 && content.isPresent()) {
+            try {
+                content.get().skipNBytes(offset);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to seek in attachment content " + storageKey, e);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Returns the local file holding the content, for backends that keep
+     * content in plain files. Callers can then hand the file to the HTTP
+     * layer, which sends it with zero-copy {@code FileChannel.transferTo}
+     * ({@code sendfile}) instead of copying it through the heap.
+     *
+     * @param storageKey the key returned by {@link #write}
+     * @return the file, or empty if the backend does not use local files or
+     *         nothing is stored under that key
+     */
+    default Optional<Path> localPath(String storageKey) {
+        return Optional.empty();
+    }
+
+    /**
+     * Deletes the content stored under the given key. Callers must make sure
+     * the key is no longer referenced by any blob.
+     *
+     * @param storageKey the key returned by {@link #write}
+     */
+    void delete(String storageKey);
+
+    /**
+     * @return a new SHA-256 digest, for computing content hashes on the fly
+     */
+    static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is guaranteed to be available on every JVM; this is unreachable.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The outcome of {@link #write}.
+     *
+     * @param storageKey the key under which the content can be read back
+     * @param sizeBytes  the number of bytes stored
+     * @param sha256     the lower-case hex SHA-256 of the content
+     */
+    record StoredContent(String storageKey, long sizeBytes, String sha256) {
+    }
+}
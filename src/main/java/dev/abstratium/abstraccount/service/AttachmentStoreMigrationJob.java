@@ -0,0 +1,157 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.core.service.CurrentOrgContext;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.control.ActivateRequestContext;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.List;
+
+/**
+ * Moves attachment content from whichever backend it is stored in to the
+ * backend configured by {@code attachment.store}, while the application keeps
+ * serving requests.
+ *
+ * <p>Each blob is moved in its own short transaction by
+ * {@link AttachmentPersistenceService#moveContent(String, String)}, which
+ * locks the blob row, copies and verifies the content, switches the blob
+ * over and only then releases the old copy. Reads in the meantime keep using
+ * the old copy; concurrent uploads of the same content simply wait for the
+ * row lock. The job can therefore be stopped and restarted at any point.</p>
+ *
+ * <p>The job is off by default. Setting
+ * {@code attachment.store.migration.enabled=true} starts it on a background
+ * thread at startup; it stops once all referenced content is in the target
+ * backend.</p>
+ */
+@ApplicationScoped
+public class AttachmentStoreMigrationJob {
+
+    private static final Logger LOG = Logger.getLogger(AttachmentStoreMigrationJob.class);
+
+    @ConfigProperty(name = "attachment.store.migration.enabled", defaultValue = "false")
+    boolean migrationEnabled;
+
+    @ConfigProperty(name = "attachment.store.migration.batch-size", defaultValue = "50")
+    int batchSize;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    AttachmentPersistenceService attachmentPersistenceService;
+
+    @Inject
+    CurrentOrgContext currentOrgContext;
+
+    private volatile Thread migrationThread;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!migrationEnabled) {
+            return;
+        }
+        migrationThread = new Thread(this::runQuietly, "attachment-store-migration");
+        migrationThread.setDaemon(true);
+        migrationThread.start();
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        Thread thread = migrationThread;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void runQuietly() {
+        try {
+            migrateAll(attachmentPersistenceService.getWriteBackend());
+        } catch (RuntimeException e) {
+            LOG.error("Attachment store migration aborted", e);
+        }
+    }
+
+    /**
+     * Moves all referenced content of every organisation to the given
+     * backend.
+     *
+     * @param targetBackend the backend to move content to
+     * @return the number of blobs moved
+     */
+    public int migrateAll(String targetBackend) {
+        LOG.infof("Migrating attachment content to the %s store", targetBackend);
+        int moved = 0;
+        for (String orgId : findOrgIdsNotInBackend(targetBackend)) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            moved += migrateOrg(orgId, targetBackend);
+        }
+        LOG.infof("Migrated %d blob(s) to the %s store", moved, targetBackend);
+        return moved;
+    }
+
+    /**
+     * Moves all referenced content of one organisation to the given
+     * backend, in batches of {@code attachment.store.migration.batch-size}.
+     * Runs in its own request context so that the tenant resolver scopes
+     * every query to that organisation.
+     *
+     * @param orgId         the organisation
+     * @param targetBackend the backend to move content to
+     * @return the number of blobs moved
+     */
+    @ActivateRequestContext
+    public int migrateOrg(String orgId, String targetBackend) {
+        currentOrgContext.setOrgId(orgId);
+        currentOrgContext.setContextDescription("attachment store migration");
+        int moved = 0;
+        List<String> batch;
+        do {
+            batch = attachmentPersistenceService.findBlobIdsNotInBackend(targetBackend, batchSize);
+            int movedInBatch = 0;
+            for (String blobId : batch) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return moved;
+                }
+                try {
+                    if (attachmentPersistenceService.moveContent(blobId, targetBackend)) {
+                        movedInBatch++;
+                    }
+                } catch (RuntimeException e) {
+                    LOG.warnf(e, "Failed to move blob %s to the %s store", blobId, targetBackend);
+                }
+            }
+            moved += movedInBatch;
+            // A batch in which nothing could be moved would be returned again.
+            if (movedInBatch == 0) {
+                break;
+            }
+        } while (batch.size() == batchSize);
+        if (moved > 0) {
+            LOG.infof("Moved %d blob(s) of org %s to the %s store", moved, orgId, targetBackend);
+        }
+        return moved;
+    }
+
+    /**
+     * Lists the organisations that still have referenced content outside the
+     * target backend. This is the only query that has to see all tenants, hence a
+     * native query: Hibernate's discriminator filter would otherwise restrict
+     * it to the default organisation.
+     */
+    @Transactional
+    @SuppressWarnings("unchecked")
+    List<String> findOrgIdsNotInBackend(String targetBackend) {
+        return entityManager.createNativeQuery(
+                "SELECT DISTINCT org_id FROM T_attachment_blob WHERE storage_backend <> ?1 AND ref_count > 0")
+            .setParameter(1, targetBackend)
+            .getResultList();
+    }
+}
@@ -0,0 +1,233 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.AttachmentEntity;
+import dev.abstratium.core.service.CurrentOrgContext;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.control.ActivateRequestContext;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes attachments into a ZIP stream, reading the content of the next few
+ * attachments in parallel while the current one is being written.
+ *
+ * <p>Content is read by a small shared worker pool
+ * ({@code attachment.zip.prefetch.threads}) into memory, in the order the
+ * entries are written. The read-ahead is bounded both by the number of
+ * attachments in flight per export and by a byte budget shared by all
+ * exports ({@code attachment.zip.prefetch.max-bytes}), so concurrent exports
+ * never hold more than that in heap together, regardless of how many
+ * attachments they contain. Attachments that do not fit the budget, because
+ * they are larger or because other exports hold it, are not read ahead but
+ * streamed from the store straight into the ZIP when their turn comes.</p>
+ *
+ * <p>Content types that are already compressed (PDFs compress their own
+ * streams) are not deflated a second time for no gain: read-ahead content
+ * is written as {@code STORED} entries, whose CRC the in-memory copy makes
+ * cheap to compute up front, and streamed content is written without
+ * compression.</p>
+ *
+ * <p>The workers have no request context of their own, so each read runs in
+ * a fresh one scoped to the attachment's organisation. The attachments passed
+ * in must already have been loaded for the current tenant.</p>
+ */
+@ApplicationScoped
+public class AttachmentZipExporter {
+
+    /** Content types whose content does not benefit from deflating. */
+    private static final Set<String> STORED_CONTENT_TYPES = Set.of("application/pdf");
+
+    @ConfigProperty(name = "attachment.zip.prefetch.threads", defaultValue = "4")
+    int prefetchThreads;
+
+    @ConfigProperty(name = "attachment.zip.prefetch.max-bytes", defaultValue = "33554432")
+    int prefetchMaxBytes;
+
+    @Inject
+    AttachmentPersistenceService attachmentPersistenceService;
+
+    @Inject
+    CurrentOrgContext currentOrgContext;
+
+    private ExecutorService executor;
+
+    /** Bytes that may be read ahead, shared by all exports. */
+    Semaphore budget;
+
+    @PostConstruct
+    void init() {
+        budget = new Semaphore(prefetchMaxBytes);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(prefetchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "attachment-zip-prefetch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void cleanup() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Writes one ZIP entry per attachment, in list order. Attachments without
+     * content are skipped. The output stream is finished but not closed.
+     *
+     * @param attachments tenant-verified attachments
+     * @param entryName   computes the entry name of each attachment; called
+     *                    on the calling thread, in list order
+     * @param output      where to write the ZIP
+     * @throws IOException if content cannot be read or the output cannot be
+     *                     written
+     */
+    public void writeZip(List<AttachmentEntity> attachments,
+                         Function<AttachmentEntity, String> entryName,
+                         OutputStream output) throws IOException {
+        Deque<Prefetch> window = new ArrayDeque<>();
+        int nextToSubmit = 0;
+        ZipOutputStream zip = new ZipOutputStream(output);
+        try {
+            for (int i = 0; i < attachments.size(); i++) {
+                // Top up the read-ahead window with the following attachments
+                // that fit the budget. The window always starts at the current
+                // attachment, so an empty one means it was not read ahead.
+                while (nextToSubmit < attachments.size() && window.size() < prefetchThreads) {
+                    AttachmentEntity next = attachments.get(nextToSubmit);
+                    if (next.getSizeBytes() >= prefetchMaxBytes) {
+                        break;
+                    }
+                    int permits = (int) Math.max(next.getSizeBytes(), 1);
+                    if (!budget.tryAcquire(permits)) {
+                        break;
+                    }
+                    window.add(new Prefetch(next, permits, executor.submit(() -> readContent(next))));
+                    nextToSubmit++;
+                }
+
+                Prefetch current = window.poll();
+                if (current == null) {
+                    writeStreamedEntry(zip, attachments.get(i), entryName);
+                    nextToSubmit++;
+                    continue;
+                }
+                try {
+                    Optional<byte[]> content = await(current.content());
+                    if (content.isPresent()) {
+                        writeEntry(zip, entryName.apply(current.attachment()), current.attachment(), content.get());
+                    }
+                } finally {
+                    budget.release(current.permits());
+                }
+            }
+            zip.finish();
+        } finally {
+            window.forEach(prefetch -> {
+                prefetch.content().cancel(true);
+                budget.release(prefetch.permits());
+            });
+        }
+    }
+
+    /**
+     * Reads an attachment's content fully, in a request context of its own
+     * scoped to the attachment's organisation.
+     */
+    @ActivateRequestContext
+    Optional<byte[]> readContent(AttachmentEntity attachment) throws IOException {
+        Optional<InputStream> content = openContent(attachment);
+        if (content.isEmpty()) {
+            return Optional.empty();
+        }
+        try (InputStream in = content.get()) {
+            return Optional.of(in.readAllBytes());
+        }
+    }
+
+    /**
+     * Copies an attachment's content from the store into a new entry without
+     * holding it in memory, in a request context scoped to the attachment's
+     * organisation. Attachments without content are skipped.
+     */
+    @ActivateRequestContext
+    void writeStreamedEntry(ZipOutputStream zip, AttachmentEntity attachment,
+                            Function<AttachmentEntity, String> entryName) throws IOException {
+        Optional<InputStream> content = openContent(attachment);
+        if (content.isEmpty()) {
+            return;
+        }
+        try (InputStream in = content.get()) {
+            zip.setLevel(isStored(attachment) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+            zip.putNextEntry(new ZipEntry(entryName.apply(attachment)));
+            in.transferTo(zip);
+            zip.closeEntry();
+        } finally {
+            zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+        }
+    }
+
+    private Optional<InputStream> openContent(AttachmentEntity attachment) {
+        currentOrgContext.setOrgId(attachment.getOrgId());
+        currentOrgContext.setContextDescription("attachment zip export");
+        return attachmentPersistenceService.openContent(attachment);
+    }
+
+    private static Optional<byte[]> await(Future<Optional<byte[]>> content) throws IOException {
+        try {
+            return content.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading attachment content");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Failed to read attachment content", e.getCause());
+        }
+    }
+
+    private static void writeEntry(ZipOutputStream zip, String name, AttachmentEntity attachment, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (isStored(attachment)) {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+            entry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private static boolean isStored(AttachmentEntity attachment) {
+        return attachment.getContentType() != null && STORED_CONTENT_TYPES.contains(attachment.getContentType());
+    }
+
+    private record Prefetch(AttachmentEntity attachment, int permits, Future<Optional<byte[]>> content) {
+    }
+}
@@ -0,0 +1,99 @@
+package dev.abstratium.abstraccount.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.IntFunction;
+
+/**
+ * An {@link InputStream} over chunked attachment content that fetches one
+ * chunk at a time, on demand. At most a single chunk is held in memory,
+ * regardless of the total size of the content.
+ * <p>
+ * The stream can start part-way into the content (for HTTP range
+ * requests): chunks before the first requested one are never loaded.
+ * <p>
+ * The chunk loader is called lazily from whatever thread reads the stream
+ * (typically the thread writing a JAX-RS {@code StreamingOutput}), so it
+ * must open its own short database transaction per chunk rather than rely on
+ * the caller's.
+ */
+final class ChunkedContentInputStream extends InputStream {
+
+    private final int chunkCount;
+    private final IntFunction<byte[]> chunkLoader;
+
+    private int nextChunkIndex;
+    private byte[] current = new byte[0];
+    private int position;
+    private int pendingSkip;
+
+    ChunkedContentInputStream(int chunkCount, IntFunction<byte[]> chunkLoader) {
+        this(chunkCount, chunkLoader, 0, 0);
+    }
+
+    /**
+     * @param firstChunkIndex the index of the first chunk to load
+     * @param skipInFirstChunk the number of bytes to skip within that chunk
+     */
+    ChunkedContentInputStream(int chunkCount, IntFunction<byte[]> chunkLoader, int firstChunkIndex, int skipInFirstChunk) {
+        this.chunkCount = chunkCount;
+        this.chunkLoader = chunkLoader;
+        this.nextChunkIndex = firstChunkIndex;
+        this.pendingSkip = skipInFirstChunk;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int n = Math.min(length, current.length - position);
+        System.arraycopy(current, position, buffer, offset, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() {
+        current = new byte[0];
+        position = 0;
+        nextChunkIndex = chunkCount;
+    }
+
+    /**
+     * Loads the next non-empty chunk if the current one is exhausted.
+     *
+     * @return {@code false} once all chunks have been consumed
+     */
+    private boolean ensureAvailable() throws IOException {
+        while (position >= current.length) {
+            if (nextChunkIndex >= chunkCount) {
+                return false;
+            }
+            byte[] chunk = chunkLoader.apply(nextChunkIndex++);
+            if (chunk == null) {
+                throw new IOException("Attachment content chunk " + (nextChunkIndex - 1) + " is missing");
+            }
+            current = chunk;
+            position = Math.min(pendingSkip, chunk.length);
+            pendingSkip = 0;
+        }
+        return true;
+    }
+}
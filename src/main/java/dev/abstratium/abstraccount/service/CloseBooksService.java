@@ -47,6 +47,9 @@ public class CloseBooksService {
     @Inject
     JournalPersistenceService journalPersistenceService;
 
+    @Inject
+    JournalIndexService journalIndexService;
+
     /**
      * Previews the closing entries without persisting anything.
      *
@@ -213,6 +216,7 @@ public class CloseBooksService {
         tx.addEntry(accountEntry);
 
         em.persist(tx);
+        journalIndexService.transactionSaved(tx);
         LOG.debugf("Persisted closing transaction %s for account %s", tx.getId(), preview.accountFullName());
         return tx.getId();
     }
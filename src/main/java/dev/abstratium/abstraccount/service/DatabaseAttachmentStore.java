@@ -0,0 +1,155 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.AttachmentBlobChunkEntity;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link AttachmentStore} keeping content in MySQL, as
+ * {@link #CHUNK_SIZE_BYTES}-sized rows of {@code T_attachment_blob_chunk}
+ * (see {@link AttachmentBlobChunkEntity} for why content is chunked).
+ * <p>
+ * The storage key is the id of the blob the content belongs to. Being part
+ * of the caller's JTA transaction, writes and deletes are rolled back
+ * together with the blob row.
+ */
+@ApplicationScoped
+public class DatabaseAttachmentStore implements AttachmentStore {
+
+    /** Size of each stored content chunk (the last chunk may be shorter). */
+    static final int CHUNK_SIZE_BYTES = 256 * 1024;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Override
+    public String backend() {
+        return DATABASE;
+    }
+
+    /**
+     * Streams the content into chunk rows, computing the size and SHA-256 on
+     * the fly. Each chunk is flushed and detached as soon as it is written so
+     * the persistence context never accumulates the file's bytes. The blob
+     * row must already have been flushed, since the chunks reference it.
+     */
+    @Override
+    @Transactional
+    public StoredContent write(String orgId, String blobId, InputStream content) {
+        MessageDigest digest = AttachmentStore.newSha256Digest();
+        byte[] buffer = new byte[CHUNK_SIZE_BYTES];
+        long sizeBytes = 0;
+        int chunkIndex = 0;
+        // Not closed here: the caller owns the underlying stream.
+        DigestInputStream in = new DigestInputStream(content, digest);
+        try {
+            int n;
+            while ((n = in.readNBytes(buffer, 0, buffer.length)) > 0) {
+                AttachmentBlobChunkEntity chunk =
+                    new AttachmentBlobChunkEntity(blobId, chunkIndex++, Arrays.copyOf(buffer, n));
+                entityManager.persist(chunk);
+                entityManager.flush();
+                entityManager.detach(chunk);
+                sizeBytes += n;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read attachment content", e);
+        }
+        return new StoredContent(blobId, sizeBytes, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * Opens the content as a lazy stream: each chunk is loaded in its own
+     * short transaction when it is first read, so the stream may be consumed
+     * after the caller's transaction has ended (e.g. from a JAX-RS
+     * {@code StreamingOutput}) without holding a database connection for the
+     * whole download.
+     */
+    @Override
+    @Transactional
+    public Optional<InputStream> open(String storageKey) {
+        return open(storageKey, 0);
+    }
+
+    /**
+     * Like {@link #open(String)}, but starts with the chunk containing the
+     * offset, so the chunks before it are never loaded. Every chunk except
+     * the last is {@link #CHUNK_SIZE_BYTES} long; content migrated as a
+     * single chunk of arbitrary size is skipped into instead.
+     */
+    @Override
+    @Transactional
+    public Optional<InputStream> open(String storageKey, long offset) {
+        Long chunkCount = entityManager.createQuery(
+                "SELECT COUNT(c.chunkIndex) FROM AttachmentBlobChunkEntity c WHERE c.blobId = :blobId",
+                Long.class)
+            .setParameter("blobId", storageKey)
+            .getSingleResult();
+        if (chunkCount == 0) {
+            return Optional.empty();
+        }
+        int firstChunkIndex = 0;
+        long skip = offset;
+        if (chunkCount > 1) {
+            firstChunkIndex = (int) Math.min(offset / CHUNK_SIZE_BYTES, chunkCount);
+            skip = offset - (long) firstChunkIndex * CHUNK_SIZE_BYTES;
+        }
+        if (skip > Integer.MAX_VALUE) {
+            // Beyond the end of a single legacy chunk.
+            firstChunkIndex = chunkCount.intValue();
+            skip = 0;
+        }
+        return Optional.of(new ChunkedContentInputStream(chunkCount.intValue(),
+            chunkIndex -> readChunk(storageKey, chunkIndex), firstChunkIndex, (int) skip));
+    }
+
+    /**
+     * Loads a single content chunk in its own transaction. Selects the bytes
+     * only (rather than the entity), so that the chunk is never attached to a
+     * persistence context and can be garbage collected as soon as it has
+     * been written out. Called by the stream returned from
+     * {@link #open(String)}, relying on Quarkus' intercepted self-invocation
+     * for the transaction boundary.
+     *
+     * @param blobId     the blob id (must already be tenant-verified)
+     * @param chunkIndex the zero-based chunk index
+     * @return the chunk's bytes, or {@code null} if there is no such chunk
+     */
+    @Transactional
+    public byte[] readChunk(String blobId, int chunkIndex) {
+        List<byte[]> result = entityManager.createQuery(
+                "SELECT c.data FROM AttachmentBlobChunkEntity c " +
+                "WHERE c.blobId = :blobId AND c.chunkIndex = :chunkIndex",
+                byte[].class)
+            .setParameter("blobId", blobId)
+            .setParameter("chunkIndex", chunkIndex)
+            .getResultList();
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * Deletes all chunks. A bulk JPQL delete is used deliberately: chunks are
+     * neither audited nor tenant-discriminated, and loading them as managed
+     * entities just to remove them would pull the whole file into memory.
+     */
+    @Override
+    @Transactional
+    public void delete(String storageKey) {
+        entityManager.createQuery(
+                "DELETE FROM AttachmentBlobChunkEntity c WHERE c.blobId = :blobId")
+            .setParameter("blobId", storageKey)
+            .executeUpdate();
+    }
+}
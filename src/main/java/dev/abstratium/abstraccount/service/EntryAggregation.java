@@ -0,0 +1,95 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.EntryEntity;
+import dev.abstratium.abstraccount.model.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The entries matching an EQL query, summed and counted per group, as
+ * computed by {@link EntryAggregationService}.
+ *
+ * @param groupBy    what the entries are grouped by, in the order of the
+ *                   values of each row's group
+ * @param rows       one per group with entries, ordered by group
+ * @param pushedDown whether the database grouped the entries, rather than
+ *                   the service after loading them
+ */
+public record EntryAggregation(List<Dimension> groupBy, List<Row> rows, boolean pushedDown) {
+
+    /**
+     * @param group the values of the dimensions, e.g. {@code ["2025-01", "<account ID>"]}
+     * @param sum   the sum of the amounts, across commodities unless grouped by commodity
+     * @param count the number of entries
+     */
+    public record Row(List<Object> group, BigDecimal sum, long count) {
+    }
+
+    /** What entries can be grouped by. */
+    public enum Dimension {
+
+        /** The transaction date. */
+        DAY(List.of("t.transactionDate"),
+            columns -> columns[0],
+            entry -> entry.getTransaction().getTransactionDate()),
+
+        /** The month of the transaction date, like {@code 2025-01}. */
+        MONTH(List.of("year(t.transactionDate)", "month(t.transactionDate)"),
+            columns -> YearMonth.of(((Number) columns[0]).intValue(), ((Number) columns[1]).intValue()).toString(),
+            entry -> YearMonth.from(entry.getTransaction().getTransactionDate()).toString()),
+
+        /** The year of the transaction date. */
+        YEAR(List.of("year(t.transactionDate)"),
+            columns -> ((Number) columns[0]).intValue(),
+            entry -> entry.getTransaction().getTransactionDate().getYear()),
+
+        /** The account ID. */
+        ACCOUNT(List.of("e.accountId"),
+            columns -> columns[0],
+            EntryEntity::getAccountId),
+
+        /** The commodity of the entry. */
+        COMMODITY(List.of("e.commodity"),
+            columns -> columns[0],
+            EntryEntity::getCommodity),
+
+        /** The partner ID of the transaction, null for none. */
+        PARTNER(List.of("t.partnerId"),
+            columns -> columns[0],
+            entry -> entry.getTransaction().getPartnerId()),
+
+        /** The status of the transaction. */
+        STATUS(List.of("t.status"),
+            columns -> ((TransactionStatus) columns[0]).name(),
+            entry -> entry.getTransaction().getStatus().name());
+
+        private final List<String> expressions;
+        private final Function<Object[], Object> fromColumns;
+        private final Function<EntryEntity, Object> fromEntry;
+
+        Dimension(List<String> expressions, Function<Object[], Object> fromColumns,
+                  Function<EntryEntity, Object> fromEntry) {
+            this.expressions = expressions;
+            this.fromColumns = fromColumns;
+            this.fromEntry = fromEntry;
+        }
+
+        /** @return the JPQL expressions the value is selected and grouped by */
+        List<String> expressions() {
+            return expressions;
+        }
+
+        /** @return the value, from the columns selected by {@link #expressions()} */
+        Object value(Object[] columns) {
+            return fromColumns.apply(columns);
+        }
+
+        /** @return the value of an entry */
+        Object value(EntryEntity entry) {
+            return fromEntry.apply(entry);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.EntryEntity;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.QueryTimeoutException;
+import jakarta.persistence.TypedQuery;
+import jakarta.transaction.Transactional;
+import org.hibernate.jpa.HibernateHints;
+import org.jboss.logging.Logger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sums and counts the entries matching an EQL query per group, like entry
+ * search would select them: each entry is tested as if it were the only
+ * entry of its transaction.
+ * <p>
+ * If all predicates of the query can be written in JPQL, see
+ * {@link EntryQuery#condition()}, the database groups the entries with one
+ * {@code GROUP BY} query. Otherwise the entries of the query's candidate
+ * transactions, or of the whole journal, are loaded, tested and grouped
+ * here.
+ */
+@ApplicationScoped
+public class EntryAggregationService {
+
+    private static final Logger LOG = Logger.getLogger(EntryAggregationService.class);
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    JournalPersistenceService journalPersistenceService;
+
+    /**
+     * @param journalId the journal whose entries to aggregate
+     * @param query     the compiled query selecting the entries
+     * @param groupBy   what to group the entries by; none for one row with
+     *                  the totals
+     * @param budget    how long the aggregation may run and how many entries
+     *                  it may load
+     * @return the groups with entries
+     * @throws QueryLimitException if the aggregation exceeds its budget
+     */
+    @Transactional
+    public EntryAggregation aggregate(String journalId, EntryQuery query, List<EntryAggregation.Dimension> groupBy,
+                                      QueryBudget budget) {
+        long start = System.nanoTime();
+        EntryAggregation aggregation = query.condition() != null
+            ? aggregateInDatabase(journalId, query.condition(), groupBy, budget)
+            : aggregateLoaded(journalId, query, groupBy, budget);
+        LOG.debugf("Aggregated entries of journal %s into %d rows by %s in %d ms (%s)", journalId,
+            aggregation.rows().size(), groupBy, (System.nanoTime() - start) / 1_000_000,
+            aggregation.pushedDown() ? "in the database" : "loaded");
+        return aggregation;
+    }
+
+    private EntryAggregation aggregateInDatabase(String journalId, EntryQueryParser.Condition condition,
+                                                 List<EntryAggregation.Dimension> groupBy, QueryBudget budget) {
+        List<String> expressions = groupBy.stream()
+            .flatMap(dimension -> dimension.expressions().stream())
+            .toList();
+        String groups = String.join(", ", expressions);
+        StringBuilder jpql = new StringBuilder("SELECT ");
+        if (!expressions.isEmpty()) {
+            jpql.append(groups).append(", ");
+        }
+        jpql.append("SUM(e.amount), COUNT(e) FROM EntryEntity e JOIN e.transaction t ")
+            .append("WHERE t.journalId = :journalId AND (").append(condition.render("p")).append(")");
+        if (!expressions.isEmpty()) {
+            jpql.append(" GROUP BY ").append(groups);
+        }
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class)
+            .setParameter("journalId", journalId)
+            .setHint(HibernateHints.HINT_TIMEOUT, budget.timeoutSeconds());
+        for (int i = 0; i < condition.parameters().size(); i++) {
+            query.setParameter("p" + i, condition.parameters().get(i));
+        }
+        List<Object[]> results;
+        try {
+            results = query.getResultList();
+        } catch (QueryTimeoutException e) {
+            throw budget.timedOut();
+        }
+
+        List<EntryAggregation.Row> rows = new ArrayList<>();
+        for (Object[] columns : results) {
+            long count = ((Number) columns[expressions.size() + 1]).longValue();
+            if (count == 0) {
+                // The totals row of no entries
+                continue;
+            }
+            List<Object> group = new ArrayList<>(groupBy.size());
+            int column = 0;
+            for (EntryAggregation.Dimension dimension : groupBy) {
+                int width = dimension.expressions().size();
+                group.add(dimension.value(Arrays.copyOfRange(columns, column, column + width)));
+                column += width;
+            }
+            rows.add(new EntryAggregation.Row(group, (BigDecimal) columns[expressions.size()], count));
+        }
+        return new EntryAggregation(groupBy, sorted(rows), true);
+    }
+
+    private EntryAggregation aggregateLoaded(String journalId, EntryQuery query,
+                                             List<EntryAggregation.Dimension> groupBy, QueryBudget budget) {
+        List<String> candidates = query.candidateTransactionIds();
+        List<EntryEntity> entries = journalPersistenceService.queryEntriesOfJournals(
+            candidates == null ? List.of(journalId) : List.of(),
+            candidates == null ? List.of() : candidates,
+            null, budget);
+        EntryMatcher entryMatcher = query.entryMatcher();
+        Map<List<Object>, BigDecimal> sums = new HashMap<>();
+        Map<List<Object>, Long> counts = new HashMap<>();
+        for (EntryEntity entry : entries) {
+            budget.check();
+            if (!entryMatcher.matches(entry)) {
+                continue;
+            }
+            Object[] values = new Object[groupBy.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = groupBy.get(i).value(entry);
+            }
+            // Not List.of, as partners may be null
+            List<Object> group = Arrays.asList(values);
+            sums.merge(group, entry.getAmount(), BigDecimal::add);
+            counts.merge(group, 1L, Long::sum);
+        }
+
+        List<EntryAggregation.Row> rows = new ArrayList<>();
+        sums.forEach((group, sum) -> rows.add(new EntryAggregation.Row(group, sum, counts.get(group))));
+        return new EntryAggregation(groupBy, sorted(rows), false);
+    }
+
+    /** Orders rows by their group values, nulls first, whichever way they were grouped. */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<EntryAggregation.Row> sorted(List<EntryAggregation.Row> rows) {
+        Comparator<Object> values = Comparator.nullsFirst((a, b) -> ((Comparable) a).compareTo(b));
+        rows.sort((a, b) -> {
+            for (int i = 0; i < a.group().size(); i++) {
+                int order = values.compare(a.group().get(i), b.group().get(i));
+                if (order != 0) {
+                    return order;
+                }
+            }
+            return 0;
+        });
+        return rows;
+    }
+}
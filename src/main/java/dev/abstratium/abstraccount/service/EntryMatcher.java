@@ -0,0 +1,208 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.EntryEntity;
+import dev.abstratium.abstraccount.entity.TransactionEntity;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Tests entries one at a time against an EQL expression, as if each entry
+ * were the only entry of its transaction: entry predicates (e.g.
+ * {@code accounttype}, {@code amount}) test the entry, and transaction
+ * predicates (e.g. {@code date}, {@code tag}) its transaction.
+ *
+ * <p>The results of the transaction predicates are remembered while the
+ * entries tested belong to the same transaction, so that each is evaluated at
+ * most once per transaction however many entries it has. Testing an entry
+ * allocates nothing beyond what its entry predicates need.</p>
+ *
+ * <p>Not thread-safe: use one per search, from {@link EntryQuery#entryMatcher()}.</p>
+ */
+public final class EntryMatcher {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+
+    private final Node root;
+    private final byte[] results;
+    private TransactionEntity transaction;
+
+    EntryMatcher(Plan plan) {
+        this.root = plan.root();
+        this.results = new byte[plan.transactionTests()];
+    }
+
+    /** @return whether the entry, as the only entry of its transaction, matches */
+    public boolean matches(EntryEntity entry) {
+        TransactionEntity tx = entry.getTransaction();
+        if (tx != transaction) {
+            transaction = tx;
+            Arrays.fill(results, UNKNOWN);
+        }
+        return root.test(this, entry);
+    }
+
+    private boolean test(TransactionTest node) {
+        byte result = results[node.slot];
+        if (result == UNKNOWN) {
+            result = node.predicate.test(transaction) ? TRUE : FALSE;
+            results[node.slot] = result;
+        }
+        return result == TRUE;
+    }
+
+    /**
+     * A compiled expression, shareable between threads.
+     *
+     * @param root             the expression
+     * @param transactionTests the number of transaction predicates in it
+     */
+    record Plan(Node root, int transactionTests) {
+
+        static final Plan ALL = of(entry(entry -> true));
+
+        /** Numbers the transaction predicates of the expression. */
+        static Plan of(Node root) {
+            return new Plan(root, root.number(0));
+        }
+    }
+
+    /** A node of an expression tree, built by {@link EntryQueryParser}. */
+    abstract static class Node {
+
+        abstract boolean test(EntryMatcher matcher, EntryEntity entry);
+
+        /**
+         * Assigns the transaction predicates of the subtree the slots from
+         * {@code next} on.
+         *
+         * @return the next free slot
+         */
+        abstract int number(int next);
+    }
+
+    /** @return a node testing the transaction, once per transaction */
+    static Node transaction(Predicate<TransactionEntity> predicate) {
+        return new TransactionTest(predicate);
+    }
+
+    /** @return a node testing the entry */
+    static Node entry(Predicate<EntryEntity> predicate) {
+        return new EntryTest(predicate);
+    }
+
+    static Node and(Node left, Node right) {
+        return new And(left, right);
+    }
+
+    static Node or(Node left, Node right) {
+        return new Or(left, right);
+    }
+
+    static Node not(Node node) {
+        return new Not(node);
+    }
+
+    private static final class TransactionTest extends Node {
+
+        private final Predicate<TransactionEntity> predicate;
+        private int slot = -1;
+
+        TransactionTest(Predicate<TransactionEntity> predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        boolean test(EntryMatcher matcher, EntryEntity entry) {
+            return matcher.test(this);
+        }
+
+        @Override
+        int number(int next) {
+            slot = next;
+            return next + 1;
+        }
+    }
+
+    private static final class EntryTest extends Node {
+
+        private final Predicate<EntryEntity> predicate;
+
+        EntryTest(Predicate<EntryEntity> predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        boolean test(EntryMatcher matcher, EntryEntity entry) {
+            return predicate.test(entry);
+        }
+
+        @Override
+        int number(int next) {
+            return next;
+        }
+    }
+
+    private static final class And extends Node {
+
+        private final Node left;
+        private final Node right;
+
+        And(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean test(EntryMatcher matcher, EntryEntity entry) {
+            return left.test(matcher, entry) && right.test(matcher, entry);
+        }
+
+        @Override
+        int number(int next) {
+            return right.number(left.number(next));
+        }
+    }
+
+    private static final class Or extends Node {
+
+        private final Node left;
+        private final Node right;
+
+        Or(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean test(EntryMatcher matcher, EntryEntity entry) {
+            return left.test(matcher, entry) || right.test(matcher, entry);
+        }
+
+        @Override
+        int number(int next) {
+            return right.number(left.number(next));
+        }
+    }
+
+    private static final class Not extends Node {
+
+        private final Node node;
+
+        Not(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        boolean test(EntryMatcher matcher, EntryEntity entry) {
+            return !node.test(matcher, entry);
+        }
+
+        @Override
+        int number(int next) {
+            return node.number(next);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.TransactionEntity;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * An EQL expression compiled for one journal by
+ * {@link EntryQueryParser#compile}.
+ *
+ * @param predicate               tests whether a transaction matches
+ * @param candidateTransactionIds the IDs of the only transactions that can
+ *                                match, if the expression's indexed
+ *                                predicates narrow it down to a few, otherwise
+ *                                null; as of when the journal's index was read
+ * @param entryPlan               the expression compiled for testing single
+ *                                entries
+ * @param condition               the expression as a JPQL condition testing
+ *                                single entries, if all its predicates can be
+ *                                written as one, otherwise null
+ */
+public record EntryQuery(Predicate<TransactionEntity> predicate, List<String> candidateTransactionIds,
+                         EntryMatcher.Plan entryPlan, EntryQueryParser.Condition condition) {
+
+    /** @return a matcher for testing the entries of one search, one by one */
+    public EntryMatcher entryMatcher() {
+        return new EntryMatcher(entryPlan);
+    }
+}
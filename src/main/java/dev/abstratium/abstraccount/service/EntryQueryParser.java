@@ -2,29 +2,42 @@ package dev.abstratium.abstraccount.service;
 
 import dev.abstratium.abstraccount.adapters.PartnerDataAdapter;
 import dev.abstratium.abstraccount.entity.AccountEntity;
+import dev.abstratium.abstraccount.entity.EntryEntity;
+import dev.abstratium.abstraccount.entity.JournalEntity;
 import dev.abstratium.abstraccount.entity.TransactionEntity;
 import dev.abstratium.abstraccount.model.AccountType;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 /**
  * Parses an Entry Query Language (EQL) expression into a {@link Predicate} over
- * {@link TransactionEntity}.
+ * {@link TransactionEntity}, or, given the journal, into an {@link EntryQuery}
+ * whose predicates are answered, as far as possible, from the journal's
+ * {@link JournalIndex} and its {@link JournalColumns}.
  *
  * <p>EQL grammar (simplified EBNF):
  * <pre>
@@ -34,19 +47,52 @@ import java.util.regex.PatternSyntaxException;
  *   not_expr   ::= NOT not_expr | atom
  *   atom       ::= '(' or_expr ')' | predicate
  *   predicate  ::= date_pred | partner_pred | description_pred | commodity_pred
- *                | amount_pred | note_pred | tag_pred
- *                | accounttype_pred | accountname_pred
+ *                | amount_pred | note_pred | tag_pred | text_pred
+ *                | accounttype_pred | accountname_pred | journal_pred
  * </pre>
  *
  * <p>Adjacent atoms separated only by whitespace are treated as implicit AND.
  * See docs/QUERY_LANGUAGE.md for the full specification.
+ *
+ * <p>Expressions compiled for a journal are cached, up to
+ * {@code eql.expression-cache.max-size} of them, by organisation, journal,
+ * the journal's account version and query text, so that repeated queries
+ * skip lexing, parsing, compiling patterns and resolving account names.
  */
 @ApplicationScoped
 public class EntryQueryParser {
 
+    /** Above this many candidates, {@link EntryQuery#candidateTransactionIds()} is not worth an IN list. */
+    public static final int MAX_CANDIDATES = 1000;
+
     @Inject
     PartnerDataAdapter partnerDataAdapter;
 
+    @Inject
+    JournalIndexService journalIndexService;
+
+    @Inject
+    JournalPersistenceService journalPersistenceService;
+
+    @Inject
+    ReferenceCache referenceCache;
+
+    @ConfigProperty(name = "eql.expression-cache.max-size", defaultValue = "1000")
+    long expressionCacheMaxSize;
+
+    @ConfigProperty(name = "eql.limits.regex-steps", defaultValue = "1000000")
+    long maxRegexSteps = StringMatcher.MAX_REGEX_STEPS;
+
+    private Cache<ExpressionKey, Expression> expressions;
+
+    @PostConstruct
+    void init() {
+        expressions = CacheBuilder.newBuilder()
+                .maximumSize(expressionCacheMaxSize)
+                .recordStats()
+                .build();
+    }
+
     // -------------------------------------------------------------------------
     // Public API
     // -------------------------------------------------------------------------
@@ -64,13 +110,143 @@ public class EntryQueryParser {
         if (query == null || query.isBlank()) {
             return tx -> true;
         }
+        return parser(query, accountsById, orgId).parse().bind(null).predicate();
+    }
+
+    /**
+     * Compiles a query over the transactions of a journal. Tag, text, date,
+     * partner and entry predicates are answered from the journal's index, and
+     * where they restrict the query to few transactions, the query knows which.
+     *
+     * <p>The accounts are only needed if the expression is not cached. They
+     * are loaded after the journal's account version is read, and not from
+     * cached accounts older than that version (see
+     * {@link ReferenceCache#accountVersionRead}), so that an expression is
+     * never cached under a version newer than its accounts.</p>
+     *
+     * @param query        the EQL expression (may be {@code null} or blank)
+     * @param accountsById supplies the map of account ID → entity of the
+     *                     journal, used for accountname / accounttype predicates
+     * @param orgId        the organisation identifier for partner-name lookup
+     * @param journalId    the journal whose transactions will be tested
+     * @return the compiled query
+     * @throws QueryParseException if the expression is syntactically invalid
+     */
+    public EntryQuery compile(String query, Supplier<Map<String, AccountEntity>> accountsById, String orgId,
+                              String journalId) {
+        if (query == null || query.isBlank()) {
+            return new EntryQuery(tx -> true, null, EntryMatcher.Plan.ALL, Condition.TRUE);
+        }
+        ExpressionKey key = new ExpressionKey(orgId, journalId, accountVersion(journalId), query);
+        return compile(expression(key, accountsById), journalIndexService.get(journalId));
+    }
+
+    EntryQuery compile(String query, Map<String, AccountEntity> accountsById, String orgId, JournalIndex index) {
+        return compile(parser(query, accountsById, orgId).parse(), index);
+    }
+
+    static EntryQuery compile(Expression expression, JournalIndex index) {
+        Filter filter = expression.bind(index);
+        EntryMatcher.Plan entryPlan = EntryMatcher.Plan.of(filter.entries());
+        if (filter.candidates() == null || filter.candidates().cardinality() > MAX_CANDIDATES) {
+            return new EntryQuery(filter.predicate(), null, entryPlan, expression.condition());
+        }
+        List<String> candidates = new ArrayList<>(filter.candidates().cardinality());
+        filter.candidates().forEach(ordinal -> candidates.add(index.transactionId(ordinal)));
+        return new EntryQuery(filter.predicate(), candidates, entryPlan, expression.condition());
+    }
+
+    /**
+     * Describes how {@link #compile} evaluates a query over a journal: how
+     * it was parsed, which of its predicates the journal's index answers and
+     * how many transactions the index leaves to be loaded and tested.
+     *
+     * @param query        the EQL expression (may be {@code null} or blank)
+     * @param accountsById supplies the map of account ID → entity of the journal
+     * @param orgId        the organisation identifier for partner-name lookup
+     * @param journalId    the journal whose transactions would be tested
+     * @return the plan of the query
+     * @throws QueryParseException if the expression is syntactically invalid
+     */
+    public EntryQueryPlan explain(String query, Supplier<Map<String, AccountEntity>> accountsById, String orgId,
+                                  String journalId) {
+        if (query == null || query.isBlank()) {
+            return new EntryQueryPlan(null, false, null, Condition.TRUE.jpql(), List.of());
+        }
+        ExpressionKey key = new ExpressionKey(orgId, journalId, accountVersion(journalId), query);
+        boolean cached = expressions.asMap().containsKey(key);
+        Expression expression = expression(key, accountsById);
+        JournalIndex index = journalIndexService.get(journalId);
+        List<String> candidates = compile(expression, index).candidateTransactionIds();
+        Condition condition = expression.condition();
+        return new EntryQueryPlan(explain(expression, index), cached,
+                candidates == null ? null : candidates.size(),
+                condition == null ? null : condition.render("p"),
+                condition == null ? List.of() : condition.parameters());
+    }
+
+    /** @param expression an expression returned by {@link Parser#parse}, which wraps every part in {@link Parsed} */
+    static EntryQueryPlan.Node explain(Expression expression, JournalIndex index) {
+        Parsed parsed = (Parsed) expression;
+        Filter filter = parsed.bind(index);
+        EntryQueryPlan.Evaluation evaluation = filter.matches() != null ? EntryQueryPlan.Evaluation.INDEX
+                : filter.candidates() != null ? EntryQueryPlan.Evaluation.NARROWED
+                : EntryQueryPlan.Evaluation.MEMORY;
+        OrdinalSet transactions = filter.matches() != null ? filter.matches() : filter.candidates();
+        Condition condition = parsed.condition();
+        return new EntryQueryPlan.Node(parsed.operator(), parsed.predicate(), parsed.position(), evaluation,
+                transactions == null ? null : transactions.cardinality(),
+                condition == null ? null : condition.render("p"),
+                parsed.operands().stream().map(operand -> explain(operand, index)).toList());
+    }
+
+    /** @return the statistics of the cache of compiled expressions, since startup */
+    public CacheStats expressionCacheStats() {
+        return expressions.stats();
+    }
+
+    /** @return the number of compiled expressions cached */
+    public long expressionCacheSize() {
+        return expressions.size();
+    }
+
+    /** Drops all cached expressions, e.g. in tests. */
+    public void clearCache() {
+        expressions.invalidateAll();
+    }
+
+    private long accountVersion(String journalId) {
+        long accountVersion = journalIndexService.accountVersion(journalId);
+        referenceCache.accountVersionRead(journalId, accountVersion);
+        return accountVersion;
+    }
+
+    private Expression expression(ExpressionKey key, Supplier<Map<String, AccountEntity>> accountsById) {
+        Expression expression = expressions.getIfPresent(key);
+        if (expression == null) {
+            expression = parser(key.query(), accountsById.get(), key.orgId()).parse();
+            expressions.put(key, expression);
+        }
+        return expression;
+    }
+
+    private Parser parser(String query, Map<String, AccountEntity> accountsById, String orgId) {
         Function<String, Optional<String>> partnerNameLookup = partnerDataAdapter != null
                 ? id -> partnerDataAdapter.getPartner(orgId, id).map(p -> p.name())
                 : id -> Optional.empty();
+        Function<String, Optional<String>> journalTitleLookup = journalPersistenceService != null
+                ? id -> journalPersistenceService.findJournalById(id).map(JournalEntity::getTitle)
+                : id -> Optional.empty();
         Lexer lexer = new Lexer(query);
         List<Token> tokens = lexer.tokenize();
-        Parser parser = new Parser(tokens, accountsById, partnerNameLookup);
-        return parser.parse();
+        return new Parser(tokens, accountsById, partnerNameLookup, journalTitleLookup, maxRegexSteps);
+    }
+
+    /**
+     * The cache key of an expression compiled for a journal. The
+     * organisation is part of it as partner names are looked up in it.
+     */
+    private record ExpressionKey(String orgId, String journalId, long accountVersion, String query) {
     }
 
     // -------------------------------------------------------------------------
@@ -108,6 +284,233 @@ public class EntryQueryParser {
         }
     }
 
+    /**
+     * A parsed (sub-)expression, before it is bound to a journal's index.
+     * What the parser resolves, like patterns and the accounts that account
+     * predicates match, is shared by all bindings, so an expression can be
+     * cached and bound by several threads at once.
+     */
+    @FunctionalInterface
+    interface Expression {
+
+        /**
+         * @param index the index of the journal to query, or null to test
+         *              transactions without one
+         * @return the expression's filter, with new entry matcher nodes
+         */
+        Filter bind(JournalIndex index);
+
+        /**
+         * @return the expression as a JPQL condition, or null if it has a
+         *         predicate that cannot be written as one
+         */
+        default Condition condition() {
+            return null;
+        }
+
+        default Expression and(Expression other) {
+            return of(index -> bind(index).and(other.bind(index), index), Condition.and(condition(), other.condition()));
+        }
+
+        default Expression or(Expression other) {
+            return of(index -> bind(index).or(other.bind(index), index), Condition.or(condition(), other.condition()));
+        }
+
+        default Expression negate() {
+            return of(index -> bind(index).negate(index), Condition.not(condition()));
+        }
+
+        /** @return the expression, written as the given JPQL condition */
+        static Expression of(Expression expression, Condition condition) {
+            if (condition == null) {
+                return expression;
+            }
+            return new Expression() {
+                @Override
+                public Filter bind(JournalIndex index) {
+                    return expression.bind(index);
+                }
+
+                @Override
+                public Condition condition() {
+                    return condition;
+                }
+            };
+        }
+    }
+
+    /**
+     * An expression with the operator or predicate it was parsed from, so
+     * that {@link #explain} can describe how each part of a query is
+     * evaluated.
+     *
+     * @param operator   {@code AND}, {@code OR}, {@code NOT} or {@code PREDICATE}
+     * @param predicate  the predicate as written, for a {@code PREDICATE}
+     * @param position   where in the query the expression starts
+     * @param operands   the parsed operands of an operator
+     * @param expression the expression
+     */
+    record Parsed(String operator, String predicate, int position, List<Expression> operands,
+                  Expression expression) implements Expression {
+
+        @Override
+        public Filter bind(JournalIndex index) {
+            return expression.bind(index);
+        }
+
+        @Override
+        public Condition condition() {
+            return expression.condition();
+        }
+    }
+
+    /**
+     * An expression as a JPQL condition on an entry {@code e} and its
+     * transaction {@code t}, which, like {@link EntryMatcher}, tests each
+     * entry as if it were the only entry of its transaction. Values are
+     * parameters, written {@code ?} in the condition and named when it is
+     * rendered, so that conditions can be combined.
+     *
+     * @param jpql       the condition
+     * @param parameters the values of its parameters, in order
+     */
+    record Condition(String jpql, List<Object> parameters) {
+
+        static final Condition TRUE = new Condition("1 = 1", List.of());
+        static final Condition FALSE = new Condition("1 = 0", List.of());
+
+        static Condition of(String jpql, Object... parameters) {
+            return new Condition(jpql, List.of(parameters));
+        }
+
+        /** @return both conditions, or null if either is null */
+        static Condition and(Condition left, Condition right) {
+            return combine(left, " AND ", right);
+        }
+
+        /** @return either condition, or null if either is null */
+        static Condition or(Condition left, Condition right) {
+            return combine(left, " OR ", right);
+        }
+
+        /** @return the negated condition, or null if it is null */
+        static Condition not(Condition condition) {
+            return condition == null ? null : new Condition("NOT (" + condition.jpql + ")", condition.parameters);
+        }
+
+        private static Condition combine(Condition left, String operator, Condition right) {
+            if (left == null || right == null) {
+                return null;
+            }
+            List<Object> parameters = new ArrayList<>(left.parameters);
+            parameters.addAll(right.parameters);
+            return new Condition("(" + left.jpql + ")" + operator + "(" + right.jpql + ")", parameters);
+        }
+
+        /**
+         * @return the condition with its parameters named {@code prefix0},
+         *         {@code prefix1} and so on, in order
+         */
+        String render(String prefix) {
+            StringBuilder sb = new StringBuilder();
+            int parameter = 0;
+            for (int i = 0; i < jpql.length(); i++) {
+                char c = jpql.charAt(i);
+                if (c == '?') {
+                    sb.append(':').append(prefix).append(parameter++);
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * A (sub-)expression bound to a journal's index.
+     *
+     * @param predicate  tests a transaction
+     * @param matches    the ordinals of exactly the transactions matching, if
+     *                   the expression could be answered from the index,
+     *                   otherwise null
+     * @param candidates the ordinals of a superset of the transactions
+     *                   matching, if known, otherwise null
+     * @param entries    the expression as tested on single entries
+     */
+    record Filter(Predicate<TransactionEntity> predicate, OrdinalSet matches, OrdinalSet candidates,
+                  EntryMatcher.Node entries) {
+
+        /** A predicate on the transaction only. */
+        static Filter of(Predicate<TransactionEntity> predicate) {
+            return of(predicate, EntryMatcher.transaction(predicate));
+        }
+
+        /** A predicate tested on single entries as given. */
+        static Filter of(Predicate<TransactionEntity> predicate, EntryMatcher.Node entries) {
+            return new Filter(predicate, null, null, entries);
+        }
+
+        /** A predicate on entries, which a transaction matches if any of its entries does. */
+        static Filter ofEntries(Predicate<EntryEntity> predicate) {
+            return of(tx -> tx.getEntries().stream().anyMatch(predicate), EntryMatcher.entry(predicate));
+        }
+
+        /**
+         * Transactions missing from the index, e.g. created since it was
+         * read, are tested with the fallback predicate.
+         */
+        static Filter of(OrdinalSet matches, JournalIndex index, Predicate<TransactionEntity> fallback) {
+            Predicate<TransactionEntity> predicate = tx -> {
+                int ordinal = index.ordinalOf(tx.getId());
+                return ordinal >= 0 ? matches.contains(ordinal) : fallback.test(tx);
+            };
+            return new Filter(predicate, matches, matches, EntryMatcher.transaction(predicate));
+        }
+
+        /**
+         * Transactions known to the index but not among the candidates are
+         * rejected without testing the filter.
+         */
+        static Filter within(OrdinalSet candidates, JournalIndex index, Filter filter) {
+            Predicate<TransactionEntity> candidate = tx -> {
+                int ordinal = index.ordinalOf(tx.getId());
+                return ordinal < 0 || candidates.contains(ordinal);
+            };
+            return new Filter(candidate.and(filter.predicate), null, candidates,
+                EntryMatcher.and(EntryMatcher.transaction(candidate), filter.entries));
+        }
+
+        Filter and(Filter other, JournalIndex index) {
+            // Test the operand narrowed down by the index first, so that the other only sees its candidates
+            boolean otherFirst = candidates == null && other.candidates != null;
+            Filter first = otherFirst ? other : this;
+            Filter second = otherFirst ? this : other;
+            Predicate<TransactionEntity> fallback = first.predicate.and(second.predicate);
+            if (matches != null && other.matches != null) {
+                return of(matches.and(other.matches), index, fallback);
+            }
+            OrdinalSet bound = candidates == null ? other.candidates
+                : other.candidates == null ? candidates : candidates.and(other.candidates);
+            return new Filter(fallback, null, bound, EntryMatcher.and(first.entries, second.entries));
+        }
+
+        Filter or(Filter other, JournalIndex index) {
+            Predicate<TransactionEntity> fallback = predicate.or(other.predicate);
+            if (matches != null && other.matches != null) {
+                return of(matches.or(other.matches), index, fallback);
+            }
+            OrdinalSet bound = candidates == null || other.candidates == null ? null : candidates.or(other.candidates);
+            return new Filter(fallback, null, bound, EntryMatcher.or(entries, other.entries));
+        }
+
+        Filter negate(JournalIndex index) {
+            if (matches != null) {
+                return of(index.all().andNot(matches), index, predicate.negate());
+            }
+            return of(predicate.negate(), EntryMatcher.not(entries));
+        }
+    }
+
     // -------------------------------------------------------------------------
     // Lexer
     // -------------------------------------------------------------------------
@@ -240,42 +643,61 @@ public class EntryQueryParser {
         private int idx = 0;
         private final Map<String, AccountEntity> accountsById;
         private final Function<String, Optional<String>> partnerNameLookup;
+        private final Function<String, Optional<String>> journalTitleLookup;
+        private final long maxRegexSteps;
 
         Parser(List<Token> tokens, Map<String, AccountEntity> accountsById, Function<String, Optional<String>> partnerNameLookup) {
+            this(tokens, accountsById, partnerNameLookup, id -> Optional.empty(), StringMatcher.MAX_REGEX_STEPS);
+        }
+
+        Parser(List<Token> tokens, Map<String, AccountEntity> accountsById, Function<String, Optional<String>> partnerNameLookup,
+               Function<String, Optional<String>> journalTitleLookup, long maxRegexSteps) {
             this.tokens = tokens;
             this.accountsById = accountsById;
             this.partnerNameLookup = partnerNameLookup;
+            this.journalTitleLookup = journalTitleLookup;
+            this.maxRegexSteps = maxRegexSteps;
+        }
+
+        private StringMatcher matcher(String token) {
+            return StringMatcher.of(token, maxRegexSteps);
         }
 
-        Predicate<TransactionEntity> parse() {
-            Predicate<TransactionEntity> filter = parseOrExpr();
+        Expression parse() {
+            Expression expression = parseOrExpr();
             Token eof = peek();
             if (eof.type() != TokenType.EOF) {
                 throw new QueryParseException("Unexpected token '" + eof.value() + "'", eof.position());
             }
-            return filter;
+            return expression;
         }
 
-        private Predicate<TransactionEntity> parseOrExpr() {
-            Predicate<TransactionEntity> left = parseAndExpr();
+        private Expression parseOrExpr() {
+            int position = peek().position();
+            Expression left = parseAndExpr();
+            List<Expression> operands = new ArrayList<>(List.of(left));
             while (peek().type() == TokenType.OR) {
                 consume(TokenType.OR);
-                Predicate<TransactionEntity> right = parseAndExpr();
+                Expression right = parseAndExpr();
+                operands.add(right);
                 left = left.or(right);
             }
-            return left;
+            return operands.size() == 1 ? left : new Parsed("OR", null, position, operands, left);
         }
 
-        private Predicate<TransactionEntity> parseAndExpr() {
-            Predicate<TransactionEntity> left = parseNotExpr();
+        private Expression parseAndExpr() {
+            int position = peek().position();
+            Expression left = parseNotExpr();
+            List<Expression> operands = new ArrayList<>(List.of(left));
             while (isStartOfAtom() || peek().type() == TokenType.AND) {
                 if (peek().type() == TokenType.AND) {
                     consume(TokenType.AND);
                 }
-                Predicate<TransactionEntity> right = parseNotExpr();
+                Expression right = parseNotExpr();
+                operands.add(right);
                 left = left.and(right);
             }
-            return left;
+            return operands.size() == 1 ? left : new Parsed("AND", null, position, operands, left);
         }
 
         private boolean isStartOfAtom() {
@@ -283,22 +705,22 @@ public class EntryQueryParser {
             return t == TokenType.NOT || t == TokenType.LPAREN || t == TokenType.PREDICATE;
         }
 
-        private Predicate<TransactionEntity> parseNotExpr() {
+        private Expression parseNotExpr() {
             if (peek().type() == TokenType.NOT) {
                 Token notToken = consume(TokenType.NOT);
                 if (!isStartOfAtom()) {
                     throw new QueryParseException("Expected expression after NOT", notToken.position());
                 }
-                Predicate<TransactionEntity> inner = parseNotExpr();
-                return inner.negate();
+                Expression inner = parseNotExpr();
+                return new Parsed("NOT", null, notToken.position(), List.of(inner), inner.negate());
             }
             return parseAtom();
         }
 
-        private Predicate<TransactionEntity> parseAtom() {
+        private Expression parseAtom() {
             if (peek().type() == TokenType.LPAREN) {
                 consume(TokenType.LPAREN);
-                Predicate<TransactionEntity> inner = parseOrExpr();
+                Expression inner = parseOrExpr();
                 if (peek().type() != TokenType.RPAREN) {
                     throw new QueryParseException("Expected ')'", peek().position());
                 }
@@ -306,7 +728,8 @@ public class EntryQueryParser {
                 return inner;
             }
             Token token = consume(TokenType.PREDICATE);
-            return buildPredicateFilter(token.value(), token.position());
+            return new Parsed("PREDICATE", token.value(), token.position(), List.of(),
+                    buildPredicateExpression(token.value(), token.position()));
         }
 
         private Token peek() {
@@ -327,7 +750,7 @@ public class EntryQueryParser {
         // Predicate builder
         // ------------------------------------------------------------------
 
-        private Predicate<TransactionEntity> buildPredicateFilter(String raw, int position) {
+        private Expression buildPredicateExpression(String raw, int position) {
             List<String> parts = splitPredicateParts(raw);
             if (parts.isEmpty()) {
                 throw new QueryParseException("Empty predicate", position);
@@ -342,8 +765,10 @@ public class EntryQueryParser {
                 case "amount"      -> buildAmountFilter(parts, position);
                 case "note"        -> buildNoteFilter(parts, position);
                 case "tag"         -> buildTagFilter(parts, position);
+                case "text"        -> buildTextFilter(parts, position);
                 case "accounttype" -> buildAccountTypeFilter(parts, position);
                 case "accountname" -> buildAccountNameFilter(parts, position);
+                case "journal"     -> buildJournalFilter(parts, position);
                 default            -> throw new QueryParseException("Unknown predicate keyword '" + keyword + "'", position);
             };
         }
@@ -417,7 +842,7 @@ public class EntryQueryParser {
         // Individual predicate builders
         // ------------------------------------------------------------------
 
-        private Predicate<TransactionEntity> buildDateFilter(List<String> parts, int position) {
+        private Expression buildDateFilter(List<String> parts, int position) {
             if (parts.size() < 3) {
                 throw new QueryParseException("date predicate requires format: date:op:value", position);
             }
@@ -431,20 +856,44 @@ public class EntryQueryParser {
                 }
                 LocalDate from = parseDate(range[0], position);
                 LocalDate to   = parseDate(range[1], position);
-                return tx -> !tx.getTransactionDate().isBefore(from) && !tx.getTransactionDate().isAfter(to);
+                return dateFilter(from.toEpochDay(), to.toEpochDay(),
+                    tx -> !tx.getTransactionDate().isBefore(from) && !tx.getTransactionDate().isAfter(to),
+                    Condition.of("t.transactionDate >= ? AND t.transactionDate <= ?", from, to));
             }
 
             LocalDate date = parseDate(value, position);
+            long day = date.toEpochDay();
             return switch (op) {
-                case "eq"  -> tx -> tx.getTransactionDate().isEqual(date);
-                case "lt"  -> tx -> tx.getTransactionDate().isBefore(date);
-                case "lte" -> tx -> !tx.getTransactionDate().isAfter(date);
-                case "gt"  -> tx -> tx.getTransactionDate().isAfter(date);
-                case "gte" -> tx -> !tx.getTransactionDate().isBefore(date);
+                case "eq"  -> dateFilter(day, day, tx -> tx.getTransactionDate().isEqual(date),
+                        Condition.of("t.transactionDate = ?", date));
+                case "lt"  -> dateFilter(Long.MIN_VALUE, day - 1, tx -> tx.getTransactionDate().isBefore(date),
+                        Condition.of("t.transactionDate < ?", date));
+                case "lte" -> dateFilter(Long.MIN_VALUE, day, tx -> !tx.getTransactionDate().isAfter(date),
+                        Condition.of("t.transactionDate <= ?", date));
+                case "gt"  -> dateFilter(day + 1, Long.MAX_VALUE, tx -> tx.getTransactionDate().isAfter(date),
+                        Condition.of("t.transactionDate > ?", date));
+                case "gte" -> dateFilter(day, Long.MAX_VALUE, tx -> !tx.getTransactionDate().isBefore(date),
+                        Condition.of("t.transactionDate >= ?", date));
                 default    -> throw new QueryParseException("Unknown date operator '" + op + "'", position);
             };
         }
 
+        /**
+         * Answers a date predicate from the columns, if they are available,
+         * as the transactions dated from epoch day {@code fromDay} to
+         * {@code toDay}.
+         */
+        private static Expression dateFilter(long fromDay, long toDay, Predicate<TransactionEntity> predicate,
+                                             Condition condition) {
+            return Expression.of(index -> {
+                JournalColumns columns = columns(index);
+                if (columns == null) {
+                    return Filter.of(predicate);
+                }
+                return Filter.of(columns.dated(index.all(), fromDay, toDay), index, predicate);
+            }, condition);
+        }
+
         private LocalDate parseDate(String value, int position) {
             try {
                 return LocalDate.parse(value);
@@ -453,38 +902,74 @@ public class EntryQueryParser {
             }
         }
 
-        private Predicate<TransactionEntity> buildPartnerFilter(List<String> parts, int position) {
+        private Expression buildPartnerFilter(List<String> parts, int position) {
             if (parts.size() < 2) {
                 throw new QueryParseException("partner predicate requires a value", position);
             }
-            StringMatcher matcher = StringMatcher.of(parts.get(1));
-            return tx -> {
-                String partnerId = tx.getPartnerId();
-                if (partnerId == null) return false;
+            StringMatcher matcher = matcher(parts.get(1));
+            // A local, so that cached expressions do not keep the parser alive
+            Function<String, Optional<String>> partnerNameLookup = this.partnerNameLookup;
+            Predicate<String> partnerMatches = partnerId -> {
                 if (matcher.matches(partnerId)) return true;
                 Optional<String> partnerName = partnerNameLookup.apply(partnerId);
                 return partnerName.isPresent() && matcher.matches(partnerName.get());
             };
+            Predicate<TransactionEntity> predicate = tx -> tx.getPartnerId() != null && partnerMatches.test(tx.getPartnerId());
+            return index -> {
+                JournalColumns columns = columns(index);
+                if (columns == null) {
+                    return Filter.of(predicate);
+                }
+                // Each distinct partner is looked up once rather than once per transaction
+                return Filter.of(columns.withPartner(index.all(), partnerMatches), index, predicate);
+            };
+        }
+
+        private Expression buildJournalFilter(List<String> parts, int position) {
+            if (parts.size() < 2) {
+                throw new QueryParseException("journal predicate requires a value", position);
+            }
+            StringMatcher matcher = matcher(parts.get(1));
+            // A local, so that cached expressions do not keep the parser alive
+            Function<String, Optional<String>> journalTitleLookup = this.journalTitleLookup;
+            Predicate<String> journalMatches = journalId -> {
+                if (matcher.matches(journalId)) return true;
+                Optional<String> title = journalTitleLookup.apply(journalId);
+                return title.isPresent() && matcher.matches(title.get());
+            };
+            return index -> {
+                // Each journal is looked up once, as its title may change while the expression is cached
+                Map<String, Boolean> matching = new HashMap<>();
+                Predicate<TransactionEntity> predicate =
+                        tx -> matching.computeIfAbsent(tx.getJournalId(), journalMatches::test);
+                if (index == null) {
+                    return Filter.of(predicate);
+                }
+                boolean matches = journalMatches.test(index.journalId());
+                return Filter.of(matches ? index.all() : OrdinalSet.EMPTY, index, predicate);
+            };
         }
 
-        private Predicate<TransactionEntity> buildDescriptionFilter(List<String> parts, int position) {
+        private Expression buildDescriptionFilter(List<String> parts, int position) {
             if (parts.size() < 2) {
                 throw new QueryParseException("description predicate requires a value", position);
             }
-            StringMatcher matcher = StringMatcher.of(parts.get(1));
-            return tx -> matcher.matches(tx.getDescription());
+            StringMatcher matcher = matcher(parts.get(1));
+            return textFilter(JournalIndex.Field.DESCRIPTION, matcher,
+                    index -> Filter.of(tx -> matcher.matches(tx.getDescription())));
         }
 
-        private Predicate<TransactionEntity> buildCommodityFilter(List<String> parts, int position) {
+        private Expression buildCommodityFilter(List<String> parts, int position) {
             if (parts.size() < 2) {
                 throw new QueryParseException("commodity predicate requires a value", position);
             }
             String commodity = parts.get(1).toUpperCase();
-            return tx -> tx.getEntries().stream()
-                    .anyMatch(e -> commodity.equalsIgnoreCase(e.getCommodity()));
+            return entryFilter(null, commodity::equalsIgnoreCase, null,
+                    Expression.of(index -> Filter.ofEntries(e -> commodity.equalsIgnoreCase(e.getCommodity())),
+                            Condition.of("UPPER(e.commodity) = ?", commodity)));
         }
 
-        private Predicate<TransactionEntity> buildAmountFilter(List<String> parts, int position) {
+        private Expression buildAmountFilter(List<String> parts, int position) {
             if (parts.size() < 3) {
                 throw new QueryParseException("amount predicate requires format: amount:op:value", position);
             }
@@ -495,42 +980,146 @@ public class EntryQueryParser {
             } catch (NumberFormatException e) {
                 throw new QueryParseException("Invalid amount value '" + parts.get(2) + "'", position);
             }
-            return switch (op) {
-                case "eq"  -> tx -> tx.getEntries().stream().anyMatch(e -> e.getAmount().compareTo(value) == 0);
-                case "lt"  -> tx -> tx.getEntries().stream().anyMatch(e -> e.getAmount().compareTo(value) < 0);
-                case "lte" -> tx -> tx.getEntries().stream().anyMatch(e -> e.getAmount().compareTo(value) <= 0);
-                case "gt"  -> tx -> tx.getEntries().stream().anyMatch(e -> e.getAmount().compareTo(value) > 0);
-                case "gte" -> tx -> tx.getEntries().stream().anyMatch(e -> e.getAmount().compareTo(value) >= 0);
+            Predicate<EntryEntity> predicate = switch (op) {
+                case "eq"  -> e -> e.getAmount().compareTo(value) == 0;
+                case "lt"  -> e -> e.getAmount().compareTo(value) < 0;
+                case "lte" -> e -> e.getAmount().compareTo(value) <= 0;
+                case "gt"  -> e -> e.getAmount().compareTo(value) > 0;
+                case "gte" -> e -> e.getAmount().compareTo(value) >= 0;
                 default    -> throw new QueryParseException("Unknown amount operator '" + op + "'", position);
             };
+            String operator = switch (op) {
+                case "eq"  -> "=";
+                case "lt"  -> "<";
+                case "lte" -> "<=";
+                case "gt"  -> ">";
+                default    -> ">=";
+            };
+            Expression expression = Expression.of(index -> Filter.ofEntries(predicate),
+                    Condition.of("e.amount " + operator + " ?", value));
+            // Amounts with more decimals than stored are left to the predicate
+            Long units = JournalColumns.units(value);
+            if (units == null) {
+                return expression;
+            }
+            long v = units;
+            LongPredicate unitsMatch = switch (op) {
+                case "eq"  -> amount -> amount == v;
+                case "lt"  -> amount -> amount < v;
+                case "lte" -> amount -> amount <= v;
+                case "gt"  -> amount -> amount > v;
+                default    -> amount -> amount >= v;
+            };
+            return entryFilter(null, null, unitsMatch, expression);
+        }
+
+        /**
+         * Restricts a filter on entries to the transactions with an entry
+         * passing the tests, if the columns are available. The filter is
+         * still tested, as entry search tests single entries.
+         */
+        private static Expression entryFilter(Predicate<String> account, Predicate<String> commodity,
+                                              LongPredicate units, Expression expression) {
+            return Expression.of(index -> {
+                Filter filter = expression.bind(index);
+                JournalColumns columns = columns(index);
+                if (columns == null) {
+                    return filter;
+                }
+                return Filter.within(columns.withEntry(index.all(), account, commodity, units), index, filter);
+            }, expression.condition());
         }
 
-        private Predicate<TransactionEntity> buildNoteFilter(List<String> parts, int position) {
+        private static JournalColumns columns(JournalIndex index) {
+            return index == null ? null : index.columns();
+        }
+
+        private Expression buildNoteFilter(List<String> parts, int position) {
             if (parts.size() < 2) {
                 throw new QueryParseException("note predicate requires a value", position);
             }
-            StringMatcher matcher = StringMatcher.of(parts.get(1));
-            return tx -> tx.getEntries().stream()
-                    .anyMatch(e -> e.getNote() != null && matcher.matches(e.getNote()));
+            StringMatcher matcher = matcher(parts.get(1));
+            return textFilter(JournalIndex.Field.NOTE, matcher,
+                    index -> Filter.ofEntries(e -> e.getNote() != null && matcher.matches(e.getNote())));
+        }
+
+        /**
+         * Restricts a filter on a text field to the transactions containing
+         * the words the matcher requires, if the index is available and the
+         * matcher requires any.
+         */
+        private static Expression textFilter(JournalIndex.Field field, StringMatcher matcher, Expression expression) {
+            return index -> {
+                Filter filter = expression.bind(index);
+                if (index == null || matcher.wordPatterns().isEmpty()) {
+                    return filter;
+                }
+                return Filter.within(index.containing(Set.of(field), matcher.wordPatterns()), index, filter);
+            };
         }
 
-        private Predicate<TransactionEntity> buildTagFilter(List<String> parts, int position) {
+        /**
+         * Free text search: the words of the value, one after the other, in
+         * the description, an entry note, or a tag key or value. A trailing
+         * {@code *} makes the last word a prefix.
+         */
+        private Expression buildTextFilter(List<String> parts, int position) {
+            if (parts.size() < 2) {
+                throw new QueryParseException("text predicate requires a value", position);
+            }
+            String value = String.join(":", parts.subList(1, parts.size()));
+            if (value.length() >= 2 && ((value.startsWith("\"") && value.endsWith("\""))
+                    || (value.startsWith("'") && value.endsWith("'")))) {
+                value = value.substring(1, value.length() - 1);
+            }
+            boolean lastIsPrefix = value.endsWith("*");
+            List<String> phrase = TextTerms.words(value);
+            if (phrase.isEmpty()) {
+                throw new QueryParseException("text predicate requires a word", position);
+            }
+            Predicate<TransactionEntity> inTransaction = tx ->
+                    TextTerms.containsPhrase(tx.getDescription(), phrase, lastIsPrefix)
+                    || tx.getTags().stream().anyMatch(tag -> TextTerms.containsPhrase(tag.getTagKey(), phrase, lastIsPrefix)
+                            || TextTerms.containsPhrase(tag.getTagValue(), phrase, lastIsPrefix));
+            Predicate<EntryEntity> inNote = e -> TextTerms.containsPhrase(e.getNote(), phrase, lastIsPrefix);
+            Predicate<TransactionEntity> predicate = inTransaction.or(tx -> tx.getEntries().stream().anyMatch(inNote));
+            List<TextTerms.WordPattern> patterns = new ArrayList<>();
+            for (int i = 0; i < phrase.size(); i++) {
+                patterns.add(new TextTerms.WordPattern(phrase.get(i), false, lastIsPrefix && i == phrase.size() - 1));
+            }
+            return index -> {
+                Filter filter = Filter.of(predicate,
+                        EntryMatcher.or(EntryMatcher.transaction(inTransaction), EntryMatcher.entry(inNote)));
+                if (index == null) {
+                    return filter;
+                }
+                // Still tested per transaction: the words must be in order, and entry search tests single entries
+                return Filter.within(index.containing(EnumSet.allOf(JournalIndex.Field.class), patterns), index, filter);
+            };
+        }
+
+        private Expression buildTagFilter(List<String> parts, int position) {
             if (parts.size() < 2) {
                 throw new QueryParseException("tag predicate requires at least a key", position);
             }
-            StringMatcher keyMatcher = StringMatcher.of(parts.get(1));
+            StringMatcher keyMatcher = matcher(parts.get(1));
             if (parts.size() >= 3) {
-                StringMatcher valueMatcher = StringMatcher.of(parts.get(2));
-                return tx -> tx.getTags().stream()
+                StringMatcher valueMatcher = matcher(parts.get(2));
+                Predicate<TransactionEntity> predicate = tx -> tx.getTags().stream()
                         .anyMatch(tag -> keyMatcher.matches(tag.getTagKey())
                                 && valueMatcher.matches(tag.getTagValue() != null ? tag.getTagValue() : ""));
-            } else {
-                return tx -> tx.getTags().stream()
-                        .anyMatch(tag -> keyMatcher.matches(tag.getTagKey()));
+                return index -> index != null
+                        ? Filter.of(index.tagged(keyMatcher, valueMatcher), index, predicate)
+                        : Filter.of(predicate);
             }
+            Predicate<TransactionEntity> predicate = tx -> tx.getTags().stream()
+                    .anyMatch(tag -> keyMatcher.matches(tag.getTagKey()));
+            return index -> index != null
+                    ? Filter.of(index.tagged(keyMatcher), index, predicate)
+                    : Filter.of(predicate);
         }
 
-        private Predicate<TransactionEntity> buildAccountTypeFilter(List<String> parts, int position) {
+        private Expression buildAccountTypeFilter(List<String> parts, int position) {
             if (parts.size() < 2) {
                 throw new QueryParseException("accounttype predicate requires a value", position);
             }
@@ -540,18 +1129,20 @@ public class EntryQueryParser {
             } catch (IllegalArgumentException e) {
                 throw new QueryParseException("Unknown account type '" + parts.get(1) + "'", position);
             }
-            return tx -> tx.getEntries().stream()
-                    .anyMatch(entry -> {
-                        AccountEntity acc = accountsById.get(entry.getAccountId());
-                        return acc != null && acc.getType() == type;
-                    });
+            Set<String> matchingIds = new HashSet<>();
+            for (AccountEntity account : accountsById.values()) {
+                if (account.getType() == type) {
+                    matchingIds.add(account.getId());
+                }
+            }
+            return accountFilter(matchingIds);
         }
 
-        private Predicate<TransactionEntity> buildAccountNameFilter(List<String> parts, int position) {
+        private Expression buildAccountNameFilter(List<String> parts, int position) {
             if (parts.size() < 2) {
                 throw new QueryParseException("accountname predicate requires a value", position);
             }
-            StringMatcher matcher = StringMatcher.of(parts.get(1));
+            StringMatcher matcher = matcher(parts.get(1));
             Set<String> matchingIds = new HashSet<>();
             for (AccountEntity account : accountsById.values()) {
                 String path = buildAccountPath(account, accountsById);
@@ -559,8 +1150,16 @@ public class EntryQueryParser {
                     matchingIds.add(account.getId());
                 }
             }
-            return tx -> tx.getEntries().stream()
-                    .anyMatch(entry -> matchingIds.contains(entry.getAccountId()));
+            return accountFilter(matchingIds);
+        }
+
+        /** Matches the entries booked on the given accounts. */
+        private static Expression accountFilter(Set<String> accountIds) {
+            Condition condition = accountIds.isEmpty()
+                    ? Condition.FALSE
+                    : Condition.of("e.accountId IN ?", List.copyOf(accountIds));
+            return entryFilter(accountIds::contains, null, null,
+                    Expression.of(index -> Filter.ofEntries(entry -> accountIds.contains(entry.getAccountId())), condition));
         }
 
         /**
@@ -594,34 +1193,143 @@ public class EntryQueryParser {
      */
     static final class StringMatcher {
 
+        /** How many characters a pattern may read to match one value, by default. */
+        static final long MAX_REGEX_STEPS = 1_000_000;
+
+        /** The pattern to find, unless the matcher matches a literal. */
         private final Pattern pattern;
+        private final String literal;
+        private final String prefix;
+        private final List<TextTerms.WordPattern> wordPatterns;
+        private final long maxSteps;
 
-        private StringMatcher(Pattern pattern) {
+        private StringMatcher(Pattern pattern, String literal, String prefix, List<TextTerms.WordPattern> wordPatterns,
+                              long maxSteps) {
             this.pattern = pattern;
+            this.literal = literal;
+            this.prefix = prefix;
+            this.wordPatterns = wordPatterns;
+            this.maxSteps = maxSteps;
         }
 
         boolean matches(String input) {
-            return pattern.matcher(input).find();
+            return literal != null ? matchesLiteral(input) : pattern.matcher(new StepLimitedInput(input)).find();
+        }
+
+        /**
+         * The input of a pattern, which counts the characters the pattern
+         * reads, so that a pattern backtracking catastrophically, like
+         * {@code /(.*a){12}z/}, fails after a bounded number of steps instead of
+         * running for ages.
+         */
+        private final class StepLimitedInput implements CharSequence {
+
+            private final String input;
+            private long steps;
+
+            StepLimitedInput(String input) {
+                this.input = input;
+            }
+
+            @Override
+            public char charAt(int index) {
+                if (++steps > maxSteps) {
+                    throw new QueryLimitException(QueryLimitException.Limit.REGEX_STEPS,
+                            "The pattern '" + pattern.pattern() + "' took more than " + maxSteps
+                                    + " steps to match a value; simplify it");
+                }
+                return input.charAt(index);
+            }
+
+            @Override
+            public int length() {
+                return input.length();
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                return input.subSequence(start, end);
+            }
+
+            @Override
+            public String toString() {
+                return input;
+            }
+        }
+
+        /**
+         * Matches like {@code (?i)^literal$} without allocating a
+         * {@link java.util.regex.Matcher}: ignoring the case of ASCII
+         * letters only, and allowing one line terminator at the end.
+         */
+        private boolean matchesLiteral(String input) {
+            int n = literal.length();
+            if (input.length() < n || input.length() > n + 2) {
+                return false;
+            }
+            for (int i = 0; i < n; i++) {
+                if (asciiLowerCase(input.charAt(i)) != asciiLowerCase(literal.charAt(i))) {
+                    return false;
+                }
+            }
+            if (input.length() == n) {
+                return true;
+            }
+            char c = input.charAt(n);
+            if (input.length() == n + 2) {
+                return c == '\r' && input.charAt(n + 1) == '\n';
+            }
+            if (c == '\n') {
+                // $ does not match between \r and \n
+                return n == 0 || input.charAt(n - 1) != '\r';
+            }
+            return c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+
+        private static char asciiLowerCase(char c) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+
+        /**
+         * @return text every matching input starts with, ignoring case; empty
+         *         for regular expressions and globs starting with a wildcard
+         */
+        String prefix() {
+            return prefix;
+        }
+
+        /**
+         * @return the words every matching input contains; none for regular
+         *         expressions
+         */
+        List<TextTerms.WordPattern> wordPatterns() {
+            return wordPatterns;
         }
 
         static StringMatcher of(String token) {
+            return of(token, MAX_REGEX_STEPS);
+        }
+
+        /**
+         * @param maxSteps how many characters a regular expression or glob may
+         *                 read to match one value
+         */
+        static StringMatcher of(String token, long maxSteps) {
             if (token.startsWith("/") && token.length() >= 2) {
-                return fromRegexToken(token);
+                return fromRegexToken(token, maxSteps);
             }
             if ((token.startsWith("\"") && token.endsWith("\"")) ||
                 (token.startsWith("'") && token.endsWith("'"))) {
                 String literal = token.substring(1, token.length() - 1);
-                return new StringMatcher(Pattern.compile(
-                        "(?i)^" + Pattern.quote(literal) + "$"));
+                return new StringMatcher(null, literal, literal, TextTerms.wordPatterns(literal, false), maxSteps);
             }
             if (token.contains("*") || token.contains("?")) {
-                return fromGlob(token);
+                return fromGlob(token, maxSteps);
             }
-            return new StringMatcher(Pattern.compile(
-                    "(?i)^" + Pattern.quote(token) + "$"));
+            return new StringMatcher(null, token, token, TextTerms.wordPatterns(token, false), maxSteps);
         }
 
-        private static StringMatcher fromRegexToken(String token) {
+        private static StringMatcher fromRegexToken(String token, long maxSteps) {
             int lastSlash = token.lastIndexOf('/');
             String flags;
             String patternStr;
@@ -637,13 +1345,13 @@ public class EntryQueryParser {
                 if (f == 'i') flagBits |= Pattern.CASE_INSENSITIVE;
             }
             try {
-                return new StringMatcher(Pattern.compile(patternStr, flagBits));
+                return new StringMatcher(Pattern.compile(patternStr, flagBits), null, "", List.of(), maxSteps);
             } catch (PatternSyntaxException e) {
                 throw new QueryParseException("Invalid regex '" + patternStr + "': " + e.getDescription(), 0);
             }
         }
 
-        private static StringMatcher fromGlob(String glob) {
+        private static StringMatcher fromGlob(String glob, long maxSteps) {
             StringBuilder sb = new StringBuilder("(?i)^");
             for (int i = 0; i < glob.length(); i++) {
                 char c = glob.charAt(i);
@@ -656,7 +1364,12 @@ public class EntryQueryParser {
                 }
             }
             sb.append('$');
-            return new StringMatcher(Pattern.compile(sb.toString()));
+            int wildcard = 0;
+            while (wildcard < glob.length() && glob.charAt(wildcard) != '*' && glob.charAt(wildcard) != '?') {
+                wildcard++;
+            }
+            return new StringMatcher(Pattern.compile(sb.toString()), null, glob.substring(0, wildcard),
+                    TextTerms.wordPatterns(glob, true), maxSteps);
         }
     }
 }
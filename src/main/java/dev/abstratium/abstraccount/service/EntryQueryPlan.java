@@ -0,0 +1,46 @@
+package dev.abstratium.abstraccount.service;
+
+import java.util.List;
+
+/**
+ * How an EQL query is evaluated over a journal, as described by
+ * {@link EntryQueryParser#explain}.
+ *
+ * @param root                  the parsed query, null if it is blank
+ * @param cached                whether the compiled query was cached already
+ * @param candidateTransactions the number of transactions whose entries are
+ *                              loaded, if the index narrows the query down to
+ *                              few, otherwise null for all of the journal's
+ * @param jpql                  the query as a JPQL condition, as aggregations
+ *                              run it in the database, or null if it has
+ *                              predicates that are only evaluated in memory
+ * @param parameters            the values of the condition's parameters
+ *                              {@code p0}, {@code p1} and so on
+ */
+public record EntryQueryPlan(Node root, boolean cached, Integer candidateTransactions, String jpql,
+                             List<Object> parameters) {
+
+    /** How a (sub-)expression is evaluated. */
+    public enum Evaluation {
+        /** Answered from the journal's index, without testing transactions. */
+        INDEX,
+        /** Narrowed down to candidate transactions by the index, which are tested in memory. */
+        NARROWED,
+        /** Tested in memory on every transaction loaded. */
+        MEMORY
+    }
+
+    /**
+     * @param operator     {@code AND}, {@code OR}, {@code NOT} or {@code PREDICATE}
+     * @param predicate    the predicate as written, for a {@code PREDICATE}
+     * @param position     where in the query the expression starts
+     * @param evaluation   how the expression is evaluated
+     * @param transactions the number of transactions matching, if answered
+     *                     from the index, or of candidates, if narrowed down
+     * @param jpql         the expression as a JPQL condition, or null
+     * @param operands     the operands of an operator
+     */
+    public record Node(String operator, String predicate, int position, Evaluation evaluation,
+                       Integer transactions, String jpql, List<Node> operands) {
+    }
+}
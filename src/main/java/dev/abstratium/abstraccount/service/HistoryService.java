@@ -7,6 +7,7 @@ import dev.abstratium.abstraccount.entity.AccountEntity;
 import dev.abstratium.abstraccount.entity.EntryEntity;
 import dev.abstratium.abstraccount.entity.JournalEntity;
 import dev.abstratium.abstraccount.entity.MacroEntity;
+import dev.abstratium.abstraccount.entity.PartnerEntity;
 import dev.abstratium.abstraccount.entity.ReportTemplateEntity;
 import dev.abstratium.abstraccount.entity.RevisionInfo;
 import dev.abstratium.abstraccount.entity.TagEntity;
@@ -82,6 +83,7 @@ public class HistoryService {
             case "entry" -> EntryEntity.class;
             case "tag" -> TagEntity.class;
             case "macro" -> MacroEntity.class;
+            case "partner" -> PartnerEntity.class;
             case "reporttemplate", "report_template", "report-template" -> ReportTemplateEntity.class;
             default -> throw new IllegalArgumentException("Unknown entity type: " + entityType);
         };
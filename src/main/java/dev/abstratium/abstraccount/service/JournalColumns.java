@@ -0,0 +1,326 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.model.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Immutable columnar snapshot of the transactions and entries of one journal,
+ * held by its {@link JournalIndex} and numbered by the same ordinals.
+ *
+ * <p>Per transaction ordinal it holds the date as epoch day, the status and
+ * the dictionary code of the partner. The entries of ordinal {@code o} are
+ * the positions {@code entryStart[o]} to {@code entryStart[o + 1]} of the
+ * entry columns: the dictionary codes of account and commodity, and the
+ * amount in units of {@code 10^-AMOUNT_SCALE}, the scale amounts are stored
+ * with. Scans are loops over these arrays, and string predicates are tested
+ * once per dictionary code rather than once per row.</p>
+ *
+ * <p>Like the index, changes append: a changed transaction's new state gets
+ * a new ordinal and entries at the end, and its old state stays until the
+ * index is rebuilt, excluded by {@link JournalIndex#all()}.</p>
+ */
+final class JournalColumns {
+
+    /** The scale of {@code T_entry.amount}. */
+    static final int AMOUNT_SCALE = 4;
+
+    private static final int NO_PARTNER = -1;
+
+    private final int[] dates;
+    private final byte[] statuses;
+    private final int[] partners;
+    private final int[] entryStart;
+    private final int[] accounts;
+    private final int[] commodities;
+    private final long[] amounts;
+    private final Dictionary partnerIds;
+    private final Dictionary accountIds;
+    private final Dictionary commodityCodes;
+
+    private JournalColumns(int[] dates, byte[] statuses, int[] partners, int[] entryStart,
+                           int[] accounts, int[] commodities, long[] amounts,
+                           Dictionary partnerIds, Dictionary accountIds, Dictionary commodityCodes) {
+        this.dates = dates;
+        this.statuses = statuses;
+        this.partners = partners;
+        this.entryStart = entryStart;
+        this.accounts = accounts;
+        this.commodities = commodities;
+        this.amounts = amounts;
+        this.partnerIds = partnerIds;
+        this.accountIds = accountIds;
+        this.commodityCodes = commodityCodes;
+    }
+
+    /** @return the approximate heap size of columns for the given numbers of rows */
+    static long estimateBytes(long transactions, long entries) {
+        return transactions * (4 + 1 + 4 + 4) + entries * (4 + 4 + 8);
+    }
+
+    /**
+     * @param ordinals     the ordinals of the journal's transactions
+     * @param transactions the journal's transactions as (ID, description,
+     *                     date, status, partner ID) rows
+     * @param entries      the journal's entries as (transaction ID, account
+     *                     ID, commodity, amount) rows
+     * @return the columns, or null if an amount does not fit
+     */
+    static JournalColumns build(Map<String, Integer> ordinals, List<Object[]> transactions, List<Object[]> entries) {
+        int size = ordinals.size();
+        int[] dates = new int[size];
+        byte[] statuses = new byte[size];
+        int[] partners = new int[size];
+        Dictionary partnerIds = new Dictionary();
+        for (Object[] transaction : transactions) {
+            int ordinal = ordinals.get((String) transaction[0]);
+            dates[ordinal] = (int) ((LocalDate) transaction[2]).toEpochDay();
+            statuses[ordinal] = (byte) ((TransactionStatus) transaction[3]).ordinal();
+            partners[ordinal] = transaction[4] == null ? NO_PARTNER : partnerIds.code((String) transaction[4]);
+        }
+
+        // Counting sort of the entries by their transaction's ordinal
+        int[] entryStart = new int[size + 1];
+        int[] entryOrdinals = new int[entries.size()];
+        for (int i = 0; i < entryOrdinals.length; i++) {
+            Integer ordinal = ordinals.get((String) entries.get(i)[0]);
+            entryOrdinals[i] = ordinal == null ? -1 : ordinal;
+            if (ordinal != null) {
+                entryStart[ordinal + 1]++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            entryStart[i + 1] += entryStart[i];
+        }
+        int[] next = Arrays.copyOf(entryStart, size);
+        int[] accounts = new int[entryStart[size]];
+        int[] commodities = new int[entryStart[size]];
+        long[] amounts = new long[entryStart[size]];
+        Dictionary accountIds = new Dictionary();
+        Dictionary commodityCodes = new Dictionary();
+        for (int i = 0; i < entryOrdinals.length; i++) {
+            if (entryOrdinals[i] < 0) {
+                continue;
+            }
+            Object[] entry = entries.get(i);
+            Long units = units((BigDecimal) entry[3]);
+            if (units == null) {
+                return null;
+            }
+            int position = next[entryOrdinals[i]]++;
+            accounts[position] = accountIds.code((String) entry[1]);
+            commodities[position] = commodityCodes.code((String) entry[2]);
+            amounts[position] = units;
+        }
+        return new JournalColumns(dates, statuses, partners, entryStart, accounts, commodities, amounts,
+            partnerIds, accountIds, commodityCodes);
+    }
+
+    /**
+     * Appends the new states of the saved transactions of the changes, in
+     * the order {@link JournalIndex#apply} numbers them.
+     *
+     * @param size the number of ordinals before the changes
+     * @return the columns with the changes appended, or null if an amount
+     *         does not fit
+     */
+    JournalColumns append(int size, Collection<JournalIndex.Change> changes) {
+        int added = 0;
+        int addedEntries = 0;
+        for (JournalIndex.Change change : changes) {
+            if (!change.isDeleted()) {
+                added++;
+                addedEntries += change.entries().size();
+            }
+        }
+        int entryCount = entryStart[size];
+        int[] newDates = Arrays.copyOf(dates, size + added);
+        byte[] newStatuses = Arrays.copyOf(statuses, size + added);
+        int[] newPartners = Arrays.copyOf(partners, size + added);
+        int[] newEntryStart = Arrays.copyOf(entryStart, size + added + 1);
+        int[] newAccounts = Arrays.copyOf(accounts, entryCount + addedEntries);
+        int[] newCommodities = Arrays.copyOf(commodities, entryCount + addedEntries);
+        long[] newAmounts = Arrays.copyOf(amounts, entryCount + addedEntries);
+        Dictionary newPartnerIds = partnerIds.copy();
+        Dictionary newAccountIds = accountIds.copy();
+        Dictionary newCommodityCodes = commodityCodes.copy();
+
+        int ordinal = size;
+        int position = entryCount;
+        for (JournalIndex.Change change : changes) {
+            if (change.isDeleted()) {
+                continue;
+            }
+            newDates[ordinal] = (int) change.date().toEpochDay();
+            newStatuses[ordinal] = (byte) change.status().ordinal();
+            newPartners[ordinal] = change.partnerId() == null ? NO_PARTNER : newPartnerIds.code(change.partnerId());
+            for (JournalIndex.Posting entry : change.entries()) {
+                Long units = units(entry.amount());
+                if (units == null) {
+                    return null;
+                }
+                newAccounts[position] = newAccountIds.code(entry.accountId());
+                newCommodities[position] = newCommodityCodes.code(entry.commodity());
+                newAmounts[position] = units;
+                position++;
+            }
+            ordinal++;
+            newEntryStart[ordinal] = position;
+        }
+        return new JournalColumns(newDates, newStatuses, newPartners, newEntryStart, newAccounts, newCommodities,
+            newAmounts, newPartnerIds, newAccountIds, newCommodityCodes);
+    }
+
+    /** @return the approximate heap size of the columns in bytes */
+    long bytes() {
+        return estimateBytes(dates.length, amounts.length);
+    }
+
+    /**
+     * @return the transactions among the given ones dated from epoch day
+     *         {@code fromDay} to {@code toDay}, both inclusive
+     */
+    OrdinalSet dated(OrdinalSet among, long fromDay, long toDay) {
+        OrdinalSet.Builder result = new OrdinalSet.Builder();
+        among.forEach(ordinal -> {
+            if (dates[ordinal] >= fromDay && dates[ordinal] <= toDay) {
+                result.add(ordinal);
+            }
+        });
+        return result.build();
+    }
+
+    /** @return the transactions among the given ones with a partner that matches */
+    OrdinalSet withPartner(OrdinalSet among, Predicate<String> partnerId) {
+        boolean[] matching = partnerIds.matching(partnerId);
+        OrdinalSet.Builder result = new OrdinalSet.Builder();
+        among.forEach(ordinal -> {
+            if (partners[ordinal] != NO_PARTNER && matching[partners[ordinal]]) {
+                result.add(ordinal);
+            }
+        });
+        return result.build();
+    }
+
+    /**
+     * @param account   tests the account ID, or null for any
+     * @param commodity tests the commodity, or null for any
+     * @param units     tests the amount in units of {@code 10^-AMOUNT_SCALE},
+     *                  or null for any
+     * @return the transactions among the given ones with an entry that
+     *         passes all tests
+     */
+    OrdinalSet withEntry(OrdinalSet among, Predicate<String> account, Predicate<String> commodity, LongPredicate units) {
+        boolean[] matchingAccounts = account == null ? null : accountIds.matching(account);
+        boolean[] matchingCommodities = commodity == null ? null : commodityCodes.matching(commodity);
+        OrdinalSet.Builder result = new OrdinalSet.Builder();
+        among.forEach(ordinal -> {
+            for (int i = entryStart[ordinal]; i < entryStart[ordinal + 1]; i++) {
+                if ((matchingAccounts == null || matchingAccounts[accounts[i]])
+                        && (matchingCommodities == null || matchingCommodities[commodities[i]])
+                        && (units == null || units.test(amounts[i]))) {
+                    result.add(ordinal);
+                    return;
+                }
+            }
+        });
+        return result.build();
+    }
+
+    /**
+     * Sums amounts across commodities, like {@code SUM(amount)} in SQL.
+     *
+     * @return the sums of the amounts of the entries of the given
+     *         transactions per account ID, for accounts with entries; null if
+     *         a sum overflows
+     */
+    Map<String, BigDecimal> sumByAccount(OrdinalSet among) {
+        long[] sums = new long[accountIds.size()];
+        boolean[] used = new boolean[accountIds.size()];
+        boolean[] overflow = {false};
+        among.forEach(ordinal -> {
+            for (int i = entryStart[ordinal]; i < entryStart[ordinal + 1]; i++) {
+                long sum = sums[accounts[i]] + amounts[i];
+                // Overflow if both operands have the sign the sum does not have
+                overflow[0] |= ((sums[accounts[i]] ^ sum) & (amounts[i] ^ sum)) < 0;
+                sums[accounts[i]] = sum;
+                used[accounts[i]] = true;
+            }
+        });
+        if (overflow[0]) {
+            return null;
+        }
+        Map<String, BigDecimal> result = new HashMap<>();
+        for (int code = 0; code < sums.length; code++) {
+            if (used[code]) {
+                result.put(accountIds.value(code), BigDecimal.valueOf(sums[code], AMOUNT_SCALE));
+            }
+        }
+        return result;
+    }
+
+    /** @return the amount in units of {@code 10^-AMOUNT_SCALE}, or null if it does not fit a long */
+    static Long units(BigDecimal amount) {
+        try {
+            return amount.setScale(AMOUNT_SCALE).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Numbers distinct strings in order of appearance. Copied rather than
+     * shared when appending, so that older snapshots stay immutable.
+     */
+    private static final class Dictionary {
+
+        private final List<String> values;
+        private final Map<String, Integer> codes;
+
+        Dictionary() {
+            this(new ArrayList<>(), new HashMap<>());
+        }
+
+        private Dictionary(List<String> values, Map<String, Integer> codes) {
+            this.values = values;
+            this.codes = codes;
+        }
+
+        Dictionary copy() {
+            return new Dictionary(new ArrayList<>(values), new HashMap<>(codes));
+        }
+
+        int code(String value) {
+            return codes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        String value(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        /** @return per code, whether its value passes the test */
+        boolean[] matching(Predicate<String> test) {
+            boolean[] matching = new boolean[values.size()];
+            for (int code = 0; code < matching.length; code++) {
+                matching[code] = test.test(values.get(code));
+            }
+            return matching;
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.TagEntity;
+import dev.abstratium.abstraccount.entity.TransactionEntity;
+import dev.abstratium.abstraccount.model.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable in-memory index over the transactions of one journal, built and
+ * kept up to date by {@link JournalIndexService}.
+ *
+ * <p>Every transaction has an ordinal, its position in {@link #ids}. For every
+ * tag key, and for every value of every key, the index holds the
+ * {@link OrdinalSet} of the transactions tagged with it, so that EQL tag
+ * predicates are answered with a few set operations instead of walking the
+ * tags of every transaction. Likewise, for every word (see {@link TextTerms})
+ * of the descriptions, of the entry notes and of the tags, it holds the
+ * transactions containing it, so that text predicates only test the
+ * transactions containing the words they require. If the memory budget
+ * allows, it also holds the {@link JournalColumns} of the journal, over which
+ * predicates on dates, partners and entries, and sums, are loops over
+ * arrays.</p>
+ *
+ * <p>Changes never renumber: a changed transaction gets a new ordinal at the
+ * end and its old one, like that of a deleted transaction, is dropped from
+ * {@link #live}. The tag sets may therefore contain dropped ordinals, and
+ * every lookup is intersected with {@code live}. Once more than half of the
+ * ordinals are dropped, {@link #apply} gives up and the index is rebuilt.</p>
+ */
+final class JournalIndex {
+
+    /** Orders tag values case-insensitively, so that case-insensitive prefixes select a contiguous range. */
+    private static final Comparator<String> VALUE_ORDER =
+        String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    private final String journalId;
+    private final long version;
+    private final String[] ids;
+    private final Map<String, Integer> ordinals;
+    private final OrdinalSet live;
+    private final Map<String, OrdinalSet> keys;
+    private final Map<String, NavigableMap<String, OrdinalSet>> values;
+    private final Map<Field, NavigableMap<String, OrdinalSet>> words;
+    private final JournalColumns columns;
+
+    /** The texts of a transaction whose words are indexed. */
+    enum Field {
+        DESCRIPTION, NOTE, TAG
+    }
+
+    private JournalIndex(String journalId, long version, String[] ids, Map<String, Integer> ordinals, OrdinalSet live,
+                         Map<String, OrdinalSet> keys, Map<String, NavigableMap<String, OrdinalSet>> values,
+                         Map<Field, NavigableMap<String, OrdinalSet>> words, JournalColumns columns) {
+        this.journalId = journalId;
+        this.version = version;
+        this.ids = ids;
+        this.ordinals = ordinals;
+        this.live = live;
+        this.keys = keys;
+        this.values = values;
+        this.words = words;
+        this.columns = columns;
+    }
+
+    /**
+     * Builds the index of a journal.
+     *
+     * @param journalId    the journal
+     * @param version      the journal's change counter the data was read at
+     * @param transactions all transactions of the journal as (ID, description,
+     *                     date, status, partner ID) rows
+     * @param entries      the journal's entries as (transaction ID, account
+     *                     ID, commodity, amount, note) rows
+     * @param tags         the journal's tags as (transaction ID, key, value)
+     *                     rows
+     * @param withColumns  whether to build the {@link #columns()}
+     */
+    static JournalIndex build(String journalId, long version, List<Object[]> transactions, List<Object[]> entries,
+                              List<Object[]> tags, boolean withColumns) {
+        String[] ids = new String[transactions.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (String) transactions.get(i)[0];
+        }
+        Arrays.sort(ids);
+        Map<String, Integer> ordinals = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            ordinals.put(ids[i], i);
+        }
+
+        Map<String, OrdinalSet.Builder> keyBuilders = new HashMap<>();
+        Map<String, Map<String, OrdinalSet.Builder>> valueBuilders = new HashMap<>();
+        Map<Field, Map<String, OrdinalSet.Builder>> wordBuilders = new EnumMap<>(Field.class);
+        for (Field field : Field.values()) {
+            wordBuilders.put(field, new HashMap<>());
+        }
+        for (Object[] transaction : transactions) {
+            addWords(wordBuilders.get(Field.DESCRIPTION), (String) transaction[1], ordinals.get((String) transaction[0]));
+        }
+        for (Object[] entry : entries) {
+            Integer ordinal = ordinals.get((String) entry[0]);
+            if (ordinal != null && entry[4] != null) {
+                addWords(wordBuilders.get(Field.NOTE), (String) entry[4], ordinal);
+            }
+        }
+        for (Object[] tag : tags) {
+            Integer ordinal = ordinals.get((String) tag[0]);
+            if (ordinal == null) {
+                continue;
+            }
+            String key = (String) tag[1];
+            String value = tag[2] == null ? "" : (String) tag[2];
+            keyBuilders.computeIfAbsent(key, k -> new OrdinalSet.Builder()).add(ordinal);
+            valueBuilders.computeIfAbsent(key, k -> new HashMap<>())
+                .computeIfAbsent(value, v -> new OrdinalSet.Builder()).add(ordinal);
+            addWords(wordBuilders.get(Field.TAG), key, ordinal);
+            addWords(wordBuilders.get(Field.TAG), value, ordinal);
+        }
+
+        Map<String, OrdinalSet> keys = new HashMap<>(keyBuilders.size() * 2);
+        keyBuilders.forEach((key, builder) -> keys.put(key, builder.build()));
+        Map<String, NavigableMap<String, OrdinalSet>> values = new HashMap<>(valueBuilders.size() * 2);
+        valueBuilders.forEach((key, builders) -> {
+            NavigableMap<String, OrdinalSet> byValue = new TreeMap<>(VALUE_ORDER);
+            builders.forEach((value, builder) -> byValue.put(value, builder.build()));
+            values.put(key, byValue);
+        });
+        Map<Field, NavigableMap<String, OrdinalSet>> words = new EnumMap<>(Field.class);
+        wordBuilders.forEach((field, builders) -> {
+            NavigableMap<String, OrdinalSet> byWord = new TreeMap<>();
+            builders.forEach((word, builder) -> byWord.put(word, builder.build()));
+            words.put(field, byWord);
+        });
+        JournalColumns columns = withColumns ? JournalColumns.build(ordinals, transactions, entries) : null;
+        return new JournalIndex(journalId, version, ids, ordinals, OrdinalSet.range(ids.length), keys, values, words, columns);
+    }
+
+    private static void addWords(Map<String, OrdinalSet.Builder> builders, String text, int ordinal) {
+        for (String word : TextTerms.words(text)) {
+            builders.computeIfAbsent(word, w -> new OrdinalSet.Builder()).add(ordinal);
+        }
+    }
+
+    /**
+     * The word maps are copied once per call, so changes should be applied in
+     * batches, e.g. per database transaction.
+     *
+     * @return the index with the given changes applied, or null if it has
+     *         accumulated so many dropped ordinals that it should be rebuilt
+     */
+    JournalIndex apply(Collection<Change> changes, long newVersion) {
+        String[] newIds = Arrays.copyOf(ids, ids.length + changes.size());
+        Map<String, Integer> newOrdinals = new HashMap<>(ordinals);
+        OrdinalSet newLive = live;
+        Map<String, OrdinalSet> newKeys = new HashMap<>(keys);
+        Map<String, NavigableMap<String, OrdinalSet>> newValues = new HashMap<>(values);
+        Map<String, NavigableMap<String, OrdinalSet>> copied = new HashMap<>();
+        Map<Field, NavigableMap<String, OrdinalSet>> newWords = new EnumMap<>(Field.class);
+        words.forEach((field, byWord) -> newWords.put(field, new TreeMap<>(byWord)));
+
+        int size = ids.length;
+        for (Change change : changes) {
+            Integer previous = newOrdinals.remove(change.transactionId());
+            if (previous != null) {
+                newLive = newLive.without(previous);
+            }
+            if (change.isDeleted()) {
+                continue;
+            }
+            int ordinal = size++;
+            newIds[ordinal] = change.transactionId();
+            newOrdinals.put(change.transactionId(), ordinal);
+            newLive = newLive.with(ordinal);
+            for (String[] tag : change.tags()) {
+                newKeys.merge(tag[0], OrdinalSet.EMPTY.with(ordinal), (set, added) -> set.with(ordinal));
+                NavigableMap<String, OrdinalSet> byValue = copied.computeIfAbsent(tag[0], key -> {
+                    NavigableMap<String, OrdinalSet> original = values.get(key);
+                    return original == null ? new TreeMap<>(VALUE_ORDER) : new TreeMap<>(original);
+                });
+                byValue.merge(tag[1], OrdinalSet.EMPTY.with(ordinal), (set, added) -> set.with(ordinal));
+            }
+            addWords(newWords.get(Field.DESCRIPTION), Collections.singletonList(change.description()), ordinal);
+            addWords(newWords.get(Field.NOTE), change.notes(), ordinal);
+            addWords(newWords.get(Field.TAG), change.tags().stream().flatMap(Arrays::stream).toList(), ordinal);
+        }
+        if (size > 2 * newLive.cardinality() + 64) {
+            return null;
+        }
+        newValues.putAll(copied);
+        JournalColumns newColumns = columns == null ? null : columns.append(ids.length, changes);
+        return new JournalIndex(journalId, newVersion, Arrays.copyOf(newIds, size), newOrdinals, newLive, newKeys, newValues,
+            newWords, newColumns);
+    }
+
+    private static void addWords(NavigableMap<String, OrdinalSet> byWord, List<String> texts, int ordinal) {
+        Set<String> distinct = new HashSet<>();
+        texts.forEach(text -> distinct.addAll(TextTerms.words(text)));
+        for (String word : distinct) {
+            byWord.merge(word, OrdinalSet.EMPTY.with(ordinal), (set, added) -> set.with(ordinal));
+        }
+    }
+
+    /** @return the journal this index covers */
+    String journalId() {
+        return journalId;
+    }
+
+    /** @return the journal's change counter this index reflects */
+    long version() {
+        return version;
+    }
+
+    /**
+     * @return the columnar snapshot of the journal, or null if it did not fit
+     *         the memory budget
+     */
+    JournalColumns columns() {
+        return columns;
+    }
+
+    /** @return the ordinals of all transactions of the journal */
+    OrdinalSet all() {
+        return live;
+    }
+
+    /** @return the ordinal of a transaction, or -1 if it is not in the index */
+    int ordinalOf(String transactionId) {
+        Integer ordinal = ordinals.get(transactionId);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    String transactionId(int ordinal) {
+        return ids[ordinal];
+    }
+
+    /** @return the transactions with a tag whose key matches */
+    OrdinalSet tagged(EntryQueryParser.StringMatcher key) {
+        List<OrdinalSet> found = new ArrayList<>();
+        for (Map.Entry<String, OrdinalSet> entry : keys.entrySet()) {
+            if (key.matches(entry.getKey())) {
+                found.add(entry.getValue());
+            }
+        }
+        return OrdinalSet.union(found).and(live);
+    }
+
+    /**
+     * Only values sharing the matcher's literal prefix, if it has one, are
+     * looked at, so e.g. {@code invoice:PI*} does not test sales invoices.
+     *
+     * @return the transactions with a tag whose key and value match; a tag
+     *         without value has the value {@code ""}
+     */
+    OrdinalSet tagged(EntryQueryParser.StringMatcher key, EntryQueryParser.StringMatcher value) {
+        List<OrdinalSet> found = new ArrayList<>();
+        String prefix = value.prefix();
+        for (Map.Entry<String, NavigableMap<String, OrdinalSet>> entry : values.entrySet()) {
+            if (!key.matches(entry.getKey())) {
+                continue;
+            }
+            NavigableMap<String, OrdinalSet> candidates = withPrefix(entry.getValue(), prefix);
+            for (Map.Entry<String, OrdinalSet> candidate : candidates.entrySet()) {
+                if (value.matches(candidate.getKey())) {
+                    found.add(candidate.getValue());
+                }
+            }
+        }
+        return OrdinalSet.union(found).and(live);
+    }
+
+    /**
+     * Words matched only at their start are looked up by prefix; words
+     * matched at their end or in their middle by testing every word of the
+     * fields, which are far fewer than the texts containing them.
+     *
+     * @return the transactions containing every one of the words in one of
+     *         the fields, though not necessarily in the same text
+     */
+    OrdinalSet containing(Set<Field> fields, List<TextTerms.WordPattern> patterns) {
+        OrdinalSet result = live;
+        for (TextTerms.WordPattern pattern : patterns) {
+            List<OrdinalSet> found = new ArrayList<>();
+            for (Field field : fields) {
+                NavigableMap<String, OrdinalSet> byWord = words.get(field);
+                if (!pattern.anyBefore() && !pattern.anyAfter()) {
+                    OrdinalSet set = byWord.get(pattern.word());
+                    if (set != null) {
+                        found.add(set);
+                    }
+                    continue;
+                }
+                Map<String, OrdinalSet> candidates = pattern.anyBefore()
+                    ? byWord
+                    : byWord.subMap(pattern.word(), true, pattern.word() + Character.MAX_VALUE, true);
+                candidates.forEach((word, set) -> {
+                    if (pattern.matches(word)) {
+                        found.add(set);
+                    }
+                });
+            }
+            result = result.and(OrdinalSet.union(found));
+        }
+        return result;
+    }
+
+    /**
+     * @return the entries whose key starts with the prefix, ignoring case,
+     *         and possibly a few more
+     */
+    private static NavigableMap<String, OrdinalSet> withPrefix(NavigableMap<String, OrdinalSet> map, String prefix) {
+        if (prefix.isEmpty()) {
+            return map;
+        }
+        // Keys equal to the prefix but for case may sort before it
+        String from = prefix;
+        String lower;
+        while ((lower = map.lowerKey(from)) != null && String.CASE_INSENSITIVE_ORDER.compare(lower, prefix) == 0) {
+            from = lower;
+        }
+        return map.subMap(from, true, prefix + Character.MAX_VALUE, true);
+    }
+
+    /**
+     * What the index needs to know about a created, changed or deleted
+     * transaction, captured when the change is made.
+     *
+     * @param transactionId the transaction
+     * @param description   its description
+     * @param date          its date
+     * @param status        its status
+     * @param partnerId     its partner, if any
+     * @param entries       its entries
+     * @param tags          its tags as (key, value) pairs, or null if it was
+     *                      deleted
+     */
+    record Change(String transactionId, String description, LocalDate date, TransactionStatus status,
+                  String partnerId, List<Posting> entries, List<String[]> tags) {
+
+        static Change of(TransactionEntity transaction) {
+            return new Change(transaction.getId(), transaction.getDescription(), transaction.getTransactionDate(),
+                transaction.getStatus(), transaction.getPartnerId(),
+                transaction.getEntries().stream()
+                    .map(entry -> new Posting(entry.getAccountId(), entry.getCommodity(), entry.getAmount(),
+                        entry.getNote()))
+                    .toList(),
+                transaction.getTags().stream()
+                    .map(JournalIndex::tagOf)
+                    .toList());
+        }
+
+        static Change deleted(String transactionId) {
+            return new Change(transactionId, null, null, null, null, null, null);
+        }
+
+        boolean isDeleted() {
+            return tags == null;
+        }
+
+        /** @return the notes of its entries */
+        List<String> notes() {
+            return entries.stream()
+                .map(Posting::note)
+                .filter(Objects::nonNull)
+                .toList();
+        }
+    }
+
+    /** An entry of a {@link Change}. */
+    record Posting(String accountId, String commodity, BigDecimal amount, String note) {
+    }
+
+    private static String[] tagOf(TagEntity tag) {
+        return new String[] {tag.getTagKey(), tag.getTagValue() == null ? "" : tag.getTagValue()};
+    }
+}
@@ -0,0 +1,276 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.TransactionEntity;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Builds, caches and maintains the {@link JournalIndex} of each journal.
+ * <p>
+ * Every change to a journal's transactions increments the journal's change
+ * counter in {@code T_journal_version}, after locking the journal's row, in
+ * the transaction making the change. A cached index is used only while its
+ * version equals the counter, so indexes on other nodes notice changes with
+ * one primary key lookup per query and are rebuilt lazily. On the node making
+ * the change, the change is applied to the cached index once the transaction
+ * commits, so that it need not be rebuilt.
+ * <p>
+ * An index includes the journal's {@link JournalColumns} if they fit in what
+ * is left of {@code journal-index.columns.max-bytes} by the columns of the
+ * other cached indexes when it is built. Columns grow with the index as
+ * changes are applied, so the budget may be exceeded until the next rebuild.
+ * <p>
+ * Writers report their changes with {@link #transactionSaved},
+ * {@link #transactionDeleted} and {@link #journalDeleted}, after making them.
+ * Changes to a journal's accounts, reported with {@link #accountsChanged},
+ * increment a second counter, read with {@link #accountVersion}, which
+ * leaves the indexes alone.
+ */
+@ApplicationScoped
+public class JournalIndexService {
+
+    private static final Logger LOG = Logger.getLogger(JournalIndexService.class);
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    @ConfigProperty(name = "journal-index.columns.max-bytes", defaultValue = "268435456")
+    long columnsMaxBytes;
+
+    /** Indexes by organisation and journal ID. */
+    private final ConcurrentMap<String, JournalIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * @return the up to date index of a journal of the current organisation,
+     *         built if necessary
+     */
+    @Transactional
+    JournalIndex get(String journalId) {
+        String cacheKey = cacheKey(journalId);
+        long version = findVersion(journalId);
+        JournalIndex cached = indexes.get(cacheKey);
+        if (cached != null && cached.version() == version) {
+            return cached;
+        }
+
+        long start = System.nanoTime();
+        List<Object[]> transactions = entityManager.createQuery(
+                "SELECT t.id, t.description, t.transactionDate, t.status, t.partnerId FROM TransactionEntity t "
+                    + "WHERE t.journalId = :journalId", Object[].class)
+            .setParameter("journalId", journalId)
+            .getResultList();
+        List<Object[]> entries = entityManager.createQuery(
+                "SELECT t.id, e.accountId, e.commodity, e.amount, e.note FROM EntryEntity e JOIN e.transaction t "
+                    + "WHERE t.journalId = :journalId", Object[].class)
+            .setParameter("journalId", journalId)
+            .getResultList();
+        List<Object[]> tags = entityManager.createQuery(
+                "SELECT t.id, tag.tagKey, tag.tagValue FROM TagEntity tag JOIN tag.transaction t "
+                    + "WHERE t.journalId = :journalId", Object[].class)
+            .setParameter("journalId", journalId)
+            .getResultList();
+        long otherColumns = indexes.entrySet().stream()
+            .filter(entry -> !entry.getKey().equals(cacheKey) && entry.getValue().columns() != null)
+            .mapToLong(entry -> entry.getValue().columns().bytes())
+            .sum();
+        boolean withColumns =
+            JournalColumns.estimateBytes(transactions.size(), entries.size()) <= columnsMaxBytes - otherColumns;
+        JournalIndex built = JournalIndex.build(journalId, version, transactions, entries, tags, withColumns);
+        // Concurrent builders may have read another version; keep the newer one
+        indexes.merge(cacheKey, built, (old, fresh) -> old.version() > fresh.version() ? old : fresh);
+        LOG.debugf("Indexed %d transactions, %d entries and %d tags of journal %s in %d ms, %s columns",
+            transactions.size(), entries.size(), tags.size(), journalId, (System.nanoTime() - start) / 1_000_000,
+            built.columns() != null ? "with" : "without");
+        return built;
+    }
+
+    /**
+     * Records that a transaction was created or changed in the current
+     * transaction. Call after the change is made.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    void transactionSaved(TransactionEntity transaction) {
+        pending().add(transaction.getJournalId(), JournalIndex.Change.of(transaction));
+    }
+
+    /**
+     * Records that a transaction was deleted from, or moved out of, a journal
+     * in the current transaction.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    void transactionDeleted(String journalId, String transactionId) {
+        pending().add(journalId, JournalIndex.Change.deleted(transactionId));
+    }
+
+    /**
+     * Records that a journal is deleted in the current transaction, and
+     * deletes its change counter.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    void journalDeleted(String journalId) {
+        pending().deleted.add(cacheKey(journalId));
+        versionUpdate("DELETE FROM T_journal_version WHERE journal_id = ?1")
+            .setParameter(1, journalId)
+            .executeUpdate();
+    }
+
+    /**
+     * Records that accounts of a journal were created, changed or deleted in
+     * the current transaction, by incrementing the journal's account counter.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    void accountsChanged(String journalId) {
+        pending().accountsChanged(journalId);
+    }
+
+    /** @return the account counter of a journal, 0 if its accounts have never changed */
+    @Transactional
+    long accountVersion(String journalId) {
+        return findCounter(journalId, "account_version");
+    }
+
+    /** Drops all cached indexes, e.g. in tests. */
+    public void clearCache() {
+        indexes.clear();
+    }
+
+    private long findVersion(String journalId) {
+        return findCounter(journalId, "version");
+    }
+
+    private long findCounter(String journalId, String counter) {
+        List<?> values = entityManager.createNativeQuery(
+                "SELECT " + counter + " FROM T_journal_version WHERE journal_id = ?1")
+            .setParameter(1, journalId)
+            .getResultList();
+        return values.isEmpty() ? 0 : ((Number) values.get(0)).longValue();
+    }
+
+    /**
+     * Increments a change counter of a journal, locking it until the end of
+     * the transaction. Locking the journal's row first serialises writers of
+     * the journal, including creating its counters.
+     *
+     * @param counter {@code version} or {@code account_version}
+     * @return the value of the counter before the increment
+     */
+    private long increment(String journalId, String counter) {
+        entityManager.flush();
+        entityManager.createNativeQuery("SELECT id FROM T_journal WHERE id = ?1 FOR UPDATE")
+            .setParameter(1, journalId)
+            .getResultList();
+        List<?> values = entityManager.createNativeQuery(
+                "SELECT " + counter + " FROM T_journal_version WHERE journal_id = ?1")
+            .setParameter(1, journalId)
+            .getResultList();
+        if (values.isEmpty()) {
+            versionUpdate(
+                    "INSERT INTO T_journal_version (journal_id, version, account_version) VALUES (?1, 0, 0)")
+                .setParameter(1, journalId)
+                .executeUpdate();
+        }
+        versionUpdate(
+                "UPDATE T_journal_version SET " + counter + " = " + counter + " + 1 WHERE journal_id = ?1")
+            .setParameter(1, journalId)
+            .executeUpdate();
+        return values.isEmpty() ? 0 : ((Number) values.get(0)).longValue();
+    }
+
+    /**
+     * Creates a native statement changing only {@code T_journal_version}, so
+     * that executing it does not invalidate the whole second-level cache.
+     */
+    private Query versionUpdate(String sql) {
+        return entityManager.createNativeQuery(sql)
+            .unwrap(NativeQuery.class)
+            .addSynchronizedQuerySpace("T_journal_version");
+    }
+
+    private String cacheKey(String journalId) {
+        return entityManager.unwrap(Session.class).getTenantIdentifierValue() + ":" + journalId;
+    }
+
+    /**
+     * @return the changes of the current transaction, registered to be
+     *         applied to the cached indexes once it commits
+     */
+    private Pending pending() {
+        Pending pending = (Pending) transactionSynchronizationRegistry.getResource(Pending.class);
+        if (pending == null) {
+            pending = new Pending();
+            transactionSynchronizationRegistry.putResource(Pending.class, pending);
+            transactionSynchronizationRegistry.registerInterposedSynchronization(pending);
+        }
+        return pending;
+    }
+
+    /**
+     * The changes of one transaction, per journal, with the version of the
+     * journal they apply to.
+     */
+    private final class Pending implements Synchronization {
+
+        private final Map<String, Long> versions = new HashMap<>();
+        private final Map<String, Map<String, JournalIndex.Change>> changes = new LinkedHashMap<>();
+        private final List<String> deleted = new ArrayList<>();
+        private final Set<String> accountsChanged = new HashSet<>();
+
+        void add(String journalId, JournalIndex.Change change) {
+            String cacheKey = cacheKey(journalId);
+            if (!versions.containsKey(cacheKey)) {
+                versions.put(cacheKey, increment(journalId, "version"));
+            }
+            // A transaction changed twice is applied once, in its final state
+            Map<String, JournalIndex.Change> journalChanges = changes.computeIfAbsent(cacheKey, key -> new LinkedHashMap<>());
+            journalChanges.remove(change.transactionId());
+            journalChanges.put(change.transactionId(), change);
+        }
+
+        void accountsChanged(String journalId) {
+            if (accountsChanged.add(journalId)) {
+                increment(journalId, "account_version");
+            }
+        }
+
+        @Override
+        public void beforeCompletion() {
+            // nothing to do
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status != Status.STATUS_COMMITTED) {
+                return;
+            }
+            changes.forEach((cacheKey, journalChanges) -> {
+                long version = versions.get(cacheKey);
+                indexes.computeIfPresent(cacheKey, (key, index) ->
+                    index.version() == version ? index.apply(journalChanges.values(), version + 1) : null);
+            });
+            deleted.forEach(indexes::remove);
+        }
+    }
+}
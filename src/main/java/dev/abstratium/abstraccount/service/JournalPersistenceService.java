@@ -1,26 +1,41 @@
 package dev.abstratium.abstraccount.service;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
 import dev.abstratium.abstraccount.entity.AccountEntity;
-import dev.abstratium.abstraccount.entity.AttachmentContentEntity;
-import dev.abstratium.abstraccount.entity.AttachmentEntity;
 import dev.abstratium.abstraccount.entity.EntryEntity;
 import dev.abstratium.abstraccount.entity.JournalEntity;
 import dev.abstratium.abstraccount.entity.TagEntity;
 import dev.abstratium.abstraccount.entity.TransactionEntity;
+import dev.abstratium.abstraccount.model.AccountType;
+import dev.abstratium.abstraccount.model.TransactionStatus;
+
+import com.google.common.collect.Lists;
+
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.persistence.CacheRetrieveMode;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.QueryTimeoutException;
 import jakarta.persistence.TypedQuery;
 import jakarta.transaction.Transactional;
+import org.hibernate.FlushMode;
+import org.hibernate.Hibernate;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
 
 /**
  * Service for persisting and loading journal data.
@@ -28,19 +43,44 @@ import jakarta.transaction.Transactional;
  */
 @ApplicationScoped
 public class JournalPersistenceService {
+
+    /**
+     * The columns of an entry and its transaction read by
+     * {@link #readEntries}, instead of managed entities, by the queries
+     * behind list endpoints.
+     */
+    private static final String ENTRY_COLUMNS =
+        "e.id, e.accountId, e.commodity, e.amount, e.note, e.entryOrder, " +
+        "t.id, t.transactionDate, t.status, t.description, t.partnerId, t.journalId, t.transactionOrder";
+
+    /** The most transaction IDs of one IN clause. */
+    private static final int IN_CLAUSE_BATCH_SIZE = 1000;
     
     @Inject
     EntityManager entityManager;
+
+    @Inject
+    AttachmentPersistenceService attachmentPersistenceService;
+
+    @Inject
+    OpenItemService openItemService;
+
+    @Inject
+    JournalIndexService journalIndexService;
+
+    @Inject
+    ReferenceCache referenceCache;
     
     /**
      * Finds all journals in the database.
      * 
-     * @return List of all journals
+     * @return List of all journals, with their commodities
      */
     @Transactional
     public List<JournalEntity> findAllJournals() {
         TypedQuery<JournalEntity> query = entityManager.createQuery(
-            "SELECT j FROM JournalEntity j ORDER BY j.title", JournalEntity.class);
+            "SELECT j FROM JournalEntity j ORDER BY j.title", JournalEntity.class)
+            .setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, entityManager.getEntityGraph(JournalEntity.WITH_COMMODITIES));
         return query.getResultList();
     }
     
@@ -48,16 +88,19 @@ public class JournalPersistenceService {
      * Finds a journal by its ID.
      * 
      * @param journalId the journal ID
-     * @return Optional containing the journal, or empty if not found
+     * @return Optional containing the journal with its commodities, or empty if not found
      */
     @Transactional
     public Optional<JournalEntity> findJournalById(String journalId) {
-        JournalEntity journal = entityManager.find(JournalEntity.class, journalId);
+        referenceCache.expireStale();
+        JournalEntity journal = entityManager.find(JournalEntity.class, journalId,
+            fetchGraph(JournalEntity.WITH_COMMODITIES));
         return Optional.ofNullable(journal);
     }
     
     /**
-     * Finds a transaction by its ID.
+     * Finds a transaction by its ID, without its entries and tags, e.g. to
+     * check that it exists or to read its journal.
      *
      * @param transactionId the transaction ID
      * @return Optional containing the transaction, or empty if not found
@@ -67,6 +110,24 @@ public class JournalPersistenceService {
         TransactionEntity transaction = entityManager.find(TransactionEntity.class, transactionId);
         return Optional.ofNullable(transaction);
     }
+
+    /**
+     * Finds a transaction by its ID, with its entries and tags loaded by the
+     * same select, for showing or editing it.
+     *
+     * @param transactionId the transaction ID
+     * @return Optional containing the transaction, or empty if not found
+     */
+    @Transactional
+    public Optional<TransactionEntity> findTransactionWithEntriesAndTags(String transactionId) {
+        TransactionEntity transaction = entityManager.find(TransactionEntity.class, transactionId,
+            fetchGraph(TransactionEntity.WITH_ENTRIES_AND_TAGS));
+        return Optional.ofNullable(transaction);
+    }
+
+    private Map<String, Object> fetchGraph(String name) {
+        return Map.of(SpecHints.HINT_SPEC_FETCH_GRAPH, entityManager.getEntityGraph(name));
+    }
     
     /**
      * Finds all journals with the given title (case-sensitive, exact match).
@@ -85,23 +146,27 @@ public class JournalPersistenceService {
     
     /**
      * Loads all accounts for a specific journal.
-     * Accounts are loaded without their transactions/entries.
+     * Accounts are loaded without their transactions/entries, from the
+     * second-level cache once read (see {@link ReferenceCache}).
      * 
      * @return List of all accounts
      */
     @Transactional
     public List<AccountEntity> loadAllAccounts(String journalId) {
+        referenceCache.expireStale();
         return entityManager.createQuery(
             "SELECT a FROM AccountEntity a WHERE a.journalId = :journalId ORDER BY a.name", 
             AccountEntity.class)
             .setParameter("journalId", journalId)
+            .setHint(HibernateHints.HINT_CACHEABLE, true)
+            .setHint(HibernateHints.HINT_CACHE_REGION, ReferenceCache.ACCOUNT_LISTS)
             .getResultList();
     }
     
     /**
      * Loads entries within a date range.
      * The from date is inclusive, the to date is exclusive.
-     * Transactions, entries, and tags are all eagerly loaded.
+     * Transactions, entries, and tags are all loaded.
      * 
      * @param from the start date (inclusive)
      * @param to the end date (exclusive)
@@ -116,7 +181,7 @@ public class JournalPersistenceService {
             throw new IllegalArgumentException("From date must not be after to date");
         }
         
-        return entityManager.createQuery(
+        List<EntryEntity> entries = entityManager.createQuery(
             "SELECT e FROM EntryEntity e " +
             "JOIN FETCH e.transaction t " +
             "WHERE t.transactionDate >= :from AND t.transactionDate < :to " +
@@ -125,6 +190,8 @@ public class JournalPersistenceService {
             .setParameter("from", from)
             .setParameter("to", to)
             .getResultList();
+        fetchTransactionCollections(entries);
+        return entries;
     }
     
     /**
@@ -161,7 +228,10 @@ public class JournalPersistenceService {
      */
     @Transactional
     public Optional<JournalEntity> setJournalLocked(String journalId, boolean locked) {
-        JournalEntity existing = entityManager.find(JournalEntity.class, journalId);
+        // Not from the second-level cache, so that a change made on another node is not overwritten
+        Map<String, Object> hints = new HashMap<>(fetchGraph(JournalEntity.WITH_COMMODITIES));
+        hints.put(SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS);
+        JournalEntity existing = entityManager.find(JournalEntity.class, journalId, hints);
         if (existing == null) {
             return Optional.empty();
         }
@@ -182,7 +252,9 @@ public class JournalPersistenceService {
         if (journalId == null) {
             return;
         }
-        JournalEntity journal = entityManager.find(JournalEntity.class, journalId);
+        // Not from the second-level cache, which may not have seen the journal being locked on another node
+        JournalEntity journal = entityManager.find(JournalEntity.class, journalId,
+            Map.of(SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS));
         if (journal != null && journal.isLocked()) {
             throw new JournalLockedException(journalId, journal.getTitle());
         }
@@ -199,19 +271,27 @@ public class JournalPersistenceService {
         AccountEntity existing = entityManager.find(AccountEntity.class, account.getId());
         if (existing == null) {
             entityManager.persist(account);
+            journalIndexService.accountsChanged(account.getJournalId());
             return account;
         }
+        if (!Objects.equals(existing.getName(), account.getName())
+                || !Objects.equals(existing.getParentAccountId(), account.getParentAccountId())) {
+            // The account's code path decides whether its entries count towards open items
+            openItemService.invalidate(existing.getJournalId());
+        }
         existing.setName(account.getName());
         existing.setType(account.getType());
         existing.setNote(account.getNote());
         existing.setParentAccountId(account.getParentAccountId());
         existing.setJournalId(account.getJournalId());
         existing.setAccountOrder(account.getAccountOrder());
+        journalIndexService.accountsChanged(existing.getJournalId());
         return existing;
     }
     
     /**
-     * Saves or updates a transaction entity.
+     * Saves or updates a transaction entity, and updates the open items of
+     * the invoices it is tagged with and the journal's index.
      * 
      * @param transaction the transaction to save
      * @return the persisted transaction
@@ -221,8 +301,14 @@ public class JournalPersistenceService {
         TransactionEntity existing = entityManager.find(TransactionEntity.class, transaction.getId());
         if (existing == null) {
             entityManager.persist(transaction);
+            openItemService.update(OpenItemService.Contribution.NONE, openItemService.contributionOf(transaction));
+            journalIndexService.transactionSaved(transaction);
             return transaction;
         }
+        OpenItemService.Contribution before = openItemService.contributionOf(existing);
+        if (!Objects.equals(existing.getJournalId(), transaction.getJournalId())) {
+            journalIndexService.transactionDeleted(existing.getJournalId(), existing.getId());
+        }
         existing.setTransactionDate(transaction.getTransactionDate());
         existing.setStatus(transaction.getStatus());
         existing.setDescription(transaction.getDescription());
@@ -230,6 +316,8 @@ public class JournalPersistenceService {
         existing.setJournalId(transaction.getJournalId());
         existing.setTransactionOrder(transaction.getTransactionOrder());
         if (existing == transaction) {
+            openItemService.update(before, openItemService.contributionOf(existing));
+            journalIndexService.transactionSaved(existing);
             return existing;
         }
         new ArrayList<>(existing.getEntries()).forEach(existing::removeEntry);
@@ -269,12 +357,16 @@ public class JournalPersistenceService {
             targetTag.setTagValue(sourceTag.getTagValue());
             existing.addTag(targetTag);
         }
+        openItemService.update(before, openItemService.contributionOf(existing));
+        journalIndexService.transactionSaved(existing);
         return existing;
     }
     
     /**
      * Deletes a transaction. Its entries and tags are cascade-removed via JPA
-     * so that Envers lifecycle listeners can capture each deletion.
+     * so that Envers lifecycle listeners can capture each deletion, and its
+     * contribution is removed from the open items of its invoices and from
+     * the journal's index.
      *
      * @param transactionId the transaction ID
      * @throws IllegalArgumentException if the transaction does not exist
@@ -285,8 +377,11 @@ public class JournalPersistenceService {
         if (transaction == null) {
             throw new IllegalArgumentException("Transaction not found: " + transactionId);
         }
+        OpenItemService.Contribution before = openItemService.contributionOf(transaction);
         entityManager.remove(transaction);
         entityManager.flush();
+        openItemService.update(before, OpenItemService.Contribution.NONE);
+        journalIndexService.transactionDeleted(transaction.getJournalId(), transactionId);
     }
     
     /**
@@ -303,7 +398,9 @@ public class JournalPersistenceService {
      * @param tagKeyValuePairs map of tag key-value pairs to filter by (optional, value can contain SQL wildcards)
      * @param notTagKeys list of tag keys to exclude (optional, matches if transaction does NOT have these keys)
      * @param notTagKeyValuePairs map of tag key-value pairs to exclude (optional, value can contain SQL wildcards)
-     * @return list of matching entries with their transactions eagerly loaded
+     * @return list of matching entries with their transactions, whose
+     *         entries are the matching ones, and tags; not managed, see
+     *         {@link #queryEntriesOfJournals}
      */
     @Transactional
     public List<EntryEntity> queryEntriesWithFilters(
@@ -317,10 +414,48 @@ public class JournalPersistenceService {
             java.util.Map<String, String> tagKeyValuePairs,
             List<String> notTagKeys,
             java.util.Map<String, String> notTagKeyValuePairs) {
+        return queryEntriesWithFilters(journalId, startDate, endDate, partnerId, status, accountIds,
+            tagKeys, tagKeyValuePairs, notTagKeys, notTagKeyValuePairs, null, null);
+    }
+
+    /**
+     * Queries entries with optional filters, like
+     * {@link #queryEntriesWithFilters(String, LocalDate, LocalDate, String, String, List, List, java.util.Map, List, java.util.Map)},
+     * optionally restricted to the entries of some transactions, e.g. the
+     * candidates of an {@link EntryQuery}.
+     *
+     * @param transactionIds the transactions whose entries to return
+     *                       (optional)
+     * @param budget         the rows and time the query may take, like
+     *                       {@link #queryEntriesOfJournals} takes them
+     *                       (optional, unbounded if null)
+     * @return the matching entries, read by a projection like
+     *         {@link #queryEntriesOfJournals}, with their transactions,
+     *         whose entries are the matching ones, and tags
+     * @throws QueryLimitException if there are more entries than the budget
+     *                             allows, or the database takes too long
+     */
+    @Transactional
+    public List<EntryEntity> queryEntriesWithFilters(
+            String journalId,
+            LocalDate startDate,
+            LocalDate endDate,
+            String partnerId,
+            String status,
+            List<String> accountIds,
+            List<String> tagKeys,
+            java.util.Map<String, String> tagKeyValuePairs,
+            List<String> notTagKeys,
+            java.util.Map<String, String> notTagKeyValuePairs,
+            Collection<String> transactionIds,
+            QueryBudget budget) {
+        if (transactionIds != null && transactionIds.isEmpty()) {
+            return new ArrayList<>();
+        }
         
         StringBuilder jpql = new StringBuilder(
-            "SELECT e FROM EntryEntity e " +
-            "JOIN FETCH e.transaction t " +
+            "SELECT " + ENTRY_COLUMNS + " FROM EntryEntity e " +
+            "JOIN e.transaction t " +
             "WHERE t.journalId = :journalId"
         );
         
@@ -339,6 +474,9 @@ public class JournalPersistenceService {
         if (accountIds != null && !accountIds.isEmpty()) {
             jpql.append(" AND e.accountId IN :accountIds");
         }
+        if (transactionIds != null) {
+            jpql.append(" AND t.id IN :transactionIds");
+        }
         
         // Positive tag filtering: transaction must have tags matching the criteria
         if ((tagKeys != null && !tagKeys.isEmpty()) || (tagKeyValuePairs != null && !tagKeyValuePairs.isEmpty())) {
@@ -379,7 +517,7 @@ public class JournalPersistenceService {
         
         jpql.append(" ORDER BY t.transactionDate DESC, t.transactionOrder DESC, e.entryOrder");
         
-        var query = entityManager.createQuery(jpql.toString(), EntryEntity.class)
+        var query = readOnly(entityManager.createQuery(jpql.toString(), Object[].class))
             .setParameter("journalId", journalId);
         
         if (startDate != null) {
@@ -397,6 +535,9 @@ public class JournalPersistenceService {
         if (accountIds != null && !accountIds.isEmpty()) {
             query.setParameter("accountIds", accountIds);
         }
+        if (transactionIds != null) {
+            query.setParameter("transactionIds", transactionIds);
+        }
         if (tagKeys != null && !tagKeys.isEmpty()) {
             query.setParameter("tagKeys", tagKeys);
         }
@@ -420,9 +561,178 @@ public class JournalPersistenceService {
             }
         }
         
-        return query.getResultList();
+        if (budget == null) {
+            return readEntries(query.getResultList(), null);
+        }
+        // One row more than allowed tells that there are too many, without loading them all
+        query.setMaxResults((int) Math.min(Integer.MAX_VALUE, budget.maxRows() + 1))
+            .setHint(HibernateHints.HINT_TIMEOUT, budget.timeoutSeconds());
+        try {
+            List<Object[]> rows = query.getResultList();
+            budget.checkRows(rows.size());
+            return readEntries(rows, budget.timeoutSeconds());
+        } catch (QueryTimeoutException e) {
+            throw budget.timedOut();
+        }
     }
     
+    /**
+     * Queries the entries of several journals at once, ordered by date across
+     * them like {@link #queryEntriesWithFilters} orders the entries of one.
+     *
+     * @param journalIds     the journals all of whose entries to return
+     * @param transactionIds further transactions whose entries to return,
+     *                       e.g. the candidates of the {@link EntryQuery}s of
+     *                       other journals
+     * @param accountIds     the accounts to restrict the entries to (optional)
+     * @param budget         the rows and time the query may take
+     * @return the matching entries with their transactions, whose entries
+     *         are the matching ones, and tags; read by a projection and a
+     *         query of the tags keyed by transaction, so they are not
+     *         managed, and changing them changes nothing in the database
+     * @throws QueryLimitException if there are more entries than the budget
+     *                             allows, or the database takes too long
+     */
+    @Transactional
+    public List<EntryEntity> queryEntriesOfJournals(Collection<String> journalIds, Collection<String> transactionIds,
+                                                    Collection<String> accountIds, QueryBudget budget) {
+        String jpql = entriesOfJournalsJpql(journalIds, transactionIds, accountIds);
+        if (jpql == null) {
+            return new ArrayList<>();
+        }
+
+        // One row more than allowed tells that there are too many, without loading them all
+        var query = readOnly(entityManager.createQuery(jpql, Object[].class))
+            .setMaxResults((int) Math.min(Integer.MAX_VALUE, budget.maxRows() + 1))
+            .setHint(HibernateHints.HINT_TIMEOUT, budget.timeoutSeconds());
+        if (!journalIds.isEmpty()) {
+            query.setParameter("journalIds", journalIds);
+        }
+        if (!transactionIds.isEmpty()) {
+            query.setParameter("transactionIds", transactionIds);
+        }
+        if (accountIds != null) {
+            query.setParameter("accountIds", accountIds);
+        }
+        try {
+            List<Object[]> rows = query.getResultList();
+            budget.checkRows(rows.size());
+            return readEntries(rows, budget.timeoutSeconds());
+        } catch (QueryTimeoutException e) {
+            throw budget.timedOut();
+        }
+    }
+
+    /**
+     * The query {@link #queryEntriesOfJournals} runs for the given scopes,
+     * with the parameters {@code journalIds}, {@code transactionIds} and
+     * {@code accountIds} of the scopes that are bound.
+     *
+     * @return the JPQL, or null if the scopes select no entries, so that no
+     *         query is run at all
+     */
+    public static String entriesOfJournalsJpql(Collection<String> journalIds, Collection<String> transactionIds,
+                                               Collection<String> accountIds) {
+        if ((journalIds.isEmpty() && transactionIds.isEmpty()) || (accountIds != null && accountIds.isEmpty())) {
+            return null;
+        }
+        List<String> scopes = new ArrayList<>();
+        if (!journalIds.isEmpty()) {
+            scopes.add("t.journalId IN :journalIds");
+        }
+        if (!transactionIds.isEmpty()) {
+            scopes.add("t.id IN :transactionIds");
+        }
+        StringBuilder jpql = new StringBuilder(
+            "SELECT " + ENTRY_COLUMNS + " FROM EntryEntity e " +
+            "JOIN e.transaction t " +
+            "WHERE (" + String.join(" OR ", scopes) + ")"
+        );
+        if (accountIds != null) {
+            jpql.append(" AND e.accountId IN :accountIds");
+        }
+        return jpql.append(" ORDER BY t.transactionDate DESC, t.transactionOrder DESC, t.id, e.entryOrder")
+            .toString();
+    }
+
+    /**
+     * Creates the entries and transactions of rows selecting
+     * {@link #ENTRY_COLUMNS}, and reads the transactions' tags, keyed by
+     * transaction, {@value #IN_CLAUSE_BATCH_SIZE} transactions per query.
+     *
+     * @param timeoutSeconds the timeout of the tag queries, null for none
+     */
+    private List<EntryEntity> readEntries(List<Object[]> rows, Integer timeoutSeconds) {
+        Map<String, TransactionEntity> transactions = new LinkedHashMap<>();
+        List<EntryEntity> entries = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            TransactionEntity transaction = transactions.computeIfAbsent((String) row[6], id -> {
+                TransactionEntity tx = new TransactionEntity(id);
+                tx.setTransactionDate((LocalDate) row[7]);
+                tx.setStatus((TransactionStatus) row[8]);
+                tx.setDescription((String) row[9]);
+                tx.setPartnerId((String) row[10]);
+                tx.setJournalId((String) row[11]);
+                tx.setTransactionOrder((Long) row[12]);
+                return tx;
+            });
+            EntryEntity entry = new EntryEntity((String) row[0]);
+            entry.setAccountId((String) row[1]);
+            entry.setCommodity((String) row[2]);
+            entry.setAmount((BigDecimal) row[3]);
+            entry.setNote((String) row[4]);
+            entry.setEntryOrder((Integer) row[5]);
+            transaction.addEntry(entry);
+            entries.add(entry);
+        }
+
+        for (List<String> batch : Lists.partition(List.copyOf(transactions.keySet()), IN_CLAUSE_BATCH_SIZE)) {
+            var query = readOnly(entityManager.createQuery(
+                    "SELECT g.transaction.id, g.id, g.tagKey, g.tagValue FROM TagEntity g " +
+                    "WHERE g.transaction.id IN :transactionIds",
+                    Object[].class))
+                .setParameter("transactionIds", batch);
+            if (timeoutSeconds != null) {
+                query.setHint(HibernateHints.HINT_TIMEOUT, timeoutSeconds);
+            }
+            for (Object[] row : query.getResultList()) {
+                TagEntity tag = new TagEntity((String) row[1]);
+                tag.setTagKey((String) row[2]);
+                tag.setTagValue((String) row[3]);
+                transactions.get((String) row[0]).addTag(tag);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Marks a query as only reading: it does not flush the persistence
+     * context first, and Hibernate keeps no snapshots of entities it loads.
+     */
+    private static <T> TypedQuery<T> readOnly(TypedQuery<T> query) {
+        return query
+            .setHint(HibernateHints.HINT_READ_ONLY, true)
+            .setHint(HibernateHints.HINT_FLUSH_MODE, FlushMode.MANUAL);
+    }
+
+    /**
+     * Loads the entries and tags of the transactions of entries, so that
+     * callers can read them after this service's transaction ended.
+     * Initializing one transaction's collection loads those of the following
+     * transactions too, a batch per select, instead of a select per
+     * transaction.
+     */
+    private static void fetchTransactionCollections(List<EntryEntity> entries) {
+        Set<String> fetched = new HashSet<>();
+        for (EntryEntity entry : entries) {
+            TransactionEntity transaction = entry.getTransaction();
+            if (fetched.add(transaction.getId())) {
+                Hibernate.initialize(transaction.getTags());
+                Hibernate.initialize(transaction.getEntries());
+            }
+        }
+    }
+
     /**
      * Gets all distinct tag keys and values for a journal.
      * 
@@ -456,31 +766,52 @@ public class JournalPersistenceService {
     }
     
     /**
-     * Computes the sum of entry amounts for a given account type in a journal,
-     * excluding any transactions tagged with "Closing".
+     * Computes the sums of entry amounts per account type in a journal,
+     * excluding any transactions tagged with "Closing". The sums are taken in
+     * one pass over the journal's columns if they are available, and with one
+     * query otherwise.
      *
-     * @param journalId   the journal ID
-     * @param accountType the account type name (e.g. "ASSET")
-     * @return the sum, or zero if no entries
+     * @param journalId the journal ID
+     * @return the sums of the account types with entries
      */
     @Transactional
-    public java.math.BigDecimal sumByAccountType(String journalId, String accountType) {
-        List<java.math.BigDecimal> results = entityManager.createQuery(
-            "SELECT SUM(e.amount) FROM EntryEntity e " +
+    public Map<AccountType, java.math.BigDecimal> sumsByAccountType(String journalId) {
+        JournalIndex index = journalIndexService.get(journalId);
+        if (index.columns() != null) {
+            OrdinalSet notClosing = index.all().andNot(index.tagged(EntryQueryParser.StringMatcher.of("\"Closing\"")));
+            Map<String, java.math.BigDecimal> byAccount = index.columns().sumByAccount(notClosing);
+            if (byAccount != null) {
+                Map<String, AccountType> types = new HashMap<>();
+                entityManager.createQuery(
+                        "SELECT a.id, a.type FROM AccountEntity a WHERE a.journalId = :journalId", Object[].class)
+                    .setParameter("journalId", journalId)
+                    .getResultList()
+                    .forEach(row -> types.put((String) row[0], (AccountType) row[1]));
+                Map<AccountType, java.math.BigDecimal> sums = new EnumMap<>(AccountType.class);
+                byAccount.forEach((accountId, sum) -> {
+                    AccountType type = types.get(accountId);
+                    if (type != null) {
+                        sums.merge(type, sum, java.math.BigDecimal::add);
+                    }
+                });
+                return sums;
+            }
+        }
+
+        Map<AccountType, java.math.BigDecimal> sums = new EnumMap<>(AccountType.class);
+        entityManager.createQuery(
+            "SELECT a.type, SUM(e.amount) FROM EntryEntity e " +
             "JOIN e.transaction t " +
             "JOIN AccountEntity a ON a.id = e.accountId " +
             "WHERE t.journalId = :journalId " +
-            "AND a.type = :accountType " +
-            "AND NOT EXISTS (SELECT tag FROM TagEntity tag WHERE tag.transaction = t AND tag.tagKey = :closingTag)",
-            java.math.BigDecimal.class)
+            "AND NOT EXISTS (SELECT tag FROM TagEntity tag WHERE tag.transaction = t AND tag.tagKey = :closingTag) " +
+            "GROUP BY a.type",
+            Object[].class)
             .setParameter("journalId", journalId)
-            .setParameter("accountType", dev.abstratium.abstraccount.model.AccountType.valueOf(accountType))
             .setParameter("closingTag", "Closing")
-            .getResultList();
-        if (results.isEmpty() || results.get(0) == null) {
-            return java.math.BigDecimal.ZERO;
-        }
-        return results.get(0);
+            .getResultList()
+            .forEach(row -> sums.put((AccountType) row[0], (java.math.BigDecimal) row[1]));
+        return sums;
     }
 
     /**
@@ -495,6 +826,8 @@ public class JournalPersistenceService {
         if (journal == null) {
             return;
         }
+        openItemService.invalidate(journalId);
+        journalIndexService.journalDeleted(journalId);
 
         List<JournalEntity> successors = entityManager.createQuery(
                 "SELECT j FROM JournalEntity j WHERE j.previousJournalId = :journalId",
@@ -513,21 +846,12 @@ public class JournalPersistenceService {
         // Delete attachments (metadata + content) for each transaction before
         // removing the transactions themselves, otherwise a foreign-key
         // constraint on T_attachment.transaction_id prevents the deletion.
-        // Use managed entity removal (not bulk/native DELETE) so that Envers
-        // captures the deletions — see docs/ENVERS_AUDITING.md.
+        // The attachment service uses managed entity removal (not bulk/native
+        // DELETE) for the audited metadata so that Envers captures the
+        // deletions — see docs/ENVERS_AUDITING.md — and releases the content
+        // from whichever store holds it.
         for (TransactionEntity tx : transactions) {
-            List<AttachmentEntity> attachments = entityManager.createQuery(
-                    "SELECT a FROM AttachmentEntity a WHERE a.transactionId = :txId",
-                    AttachmentEntity.class)
-                    .setParameter("txId", tx.getId())
-                    .getResultList();
-            for (AttachmentEntity attachment : attachments) {
-                AttachmentContentEntity content = entityManager.find(AttachmentContentEntity.class, attachment.getId());
-                if (content != null) {
-                    entityManager.remove(content);
-                }
-                entityManager.remove(attachment);
-            }
+            attachmentPersistenceService.deleteAllForTransaction(tx.getId());
         }
         entityManager.flush();
 
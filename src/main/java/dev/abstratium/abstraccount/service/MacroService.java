@@ -33,6 +33,9 @@ public class MacroService {
     
     @Inject
     JournalPersistenceService journalPersistenceService;
+
+    @Inject
+    ReferenceCache referenceCache;
     
     /**
      * Loads all macros.
@@ -59,6 +62,7 @@ public class MacroService {
     @Transactional
     public MacroEntity loadMacro(String macroId) {
         LOG.debugf("Loading macro: %s", macroId);
+        referenceCache.expireStale();
         return em.find(MacroEntity.class, macroId);
     }
     
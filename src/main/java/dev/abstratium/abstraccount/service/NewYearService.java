@@ -44,6 +44,9 @@ public class NewYearService {
     @Inject
     JournalPersistenceService journalPersistenceService;
 
+    @Inject
+    JournalIndexService journalIndexService;
+
     @Inject
     AccountService accountService;
 
@@ -338,6 +341,7 @@ public class NewYearService {
         tx.addEntry(entry);
 
         em.persist(tx);
+        journalIndexService.transactionSaved(tx);
     }
 
     record ProfitLossTransferResult(String transactionId, BigDecimal balance, String commodity, AccountEntity sourceAnnualProfitLossAccount) {}
@@ -396,6 +400,7 @@ public class NewYearService {
         tx.addEntry(retainedEarningsEntry);
 
         em.persist(tx);
+        journalIndexService.transactionSaved(tx);
         return new ProfitLossTransferResult(tx.getId(), profitLossBalance, commodity, annualProfitLossAccount);
     }
 
@@ -0,0 +1,542 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.AccountEntity;
+import dev.abstratium.abstraccount.entity.EntryEntity;
+import dev.abstratium.abstraccount.entity.OpenItemEntity;
+import dev.abstratium.abstraccount.entity.OpenItemStateEntity;
+import dev.abstratium.abstraccount.entity.TagEntity;
+import dev.abstratium.abstraccount.entity.TransactionEntity;
+import dev.abstratium.abstraccount.model.OpenItem;
+import dev.abstratium.abstraccount.model.OpenItemAging;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+import org.jboss.logging.Logger;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the open items of each journal ({@code T_open_item}): per invoice
+ * tag value and commodity, the net balance of the tagged transactions on the
+ * receivable and payable accounts, so that unpaid invoices and their aging
+ * can be read without loading any transactions.
+ *
+ * <p>Receivable and payable accounts are those whose code path (e.g.
+ * {@code 1:10:110:1100}) matches {@code open-items.receivable-account-regex}
+ * and {@code open-items.payable-account-regex}; invoices are tagged with
+ * {@code open-items.tag-key}.</p>
+ *
+ * <p>Writers pass a transaction's {@link #contributionOf contribution} before
+ * and after a change to {@link #update}, which adds the difference to the
+ * affected rows. Balances are only ever changed by such deltas on rows read
+ * with a write lock, so concurrent writers cannot lose each other's changes
+ * whatever snapshot their transaction reads from. The journal row is locked
+ * first, which serialises maintenance of one journal.</p>
+ *
+ * <p>A journal's open items are built from scratch the first time they are
+ * queried, and again after anything invalidated them: a change of the
+ * configuration, or of the accounts whose code paths decide which entries
+ * count ({@link #invalidate}). Until then writers leave the journal's open
+ * items alone, so e.g. importing a journal does not maintain them
+ * transaction by transaction.</p>
+ */
+@ApplicationScoped
+public class OpenItemService {
+
+    private static final Logger LOG = Logger.getLogger(OpenItemService.class);
+
+    /** The two sides of open items. */
+    public enum Kind {
+        RECEIVABLE("o.receivable"),
+        PAYABLE("o.payable");
+
+        private final String column;
+
+        Kind(String column) {
+            this.column = column;
+        }
+    }
+
+    @ConfigProperty(name = "open-items.tag-key", defaultValue = "invoice")
+    String tagKey;
+
+    @ConfigProperty(name = "open-items.receivable-account-regex", defaultValue = "(^|:)1100$")
+    String receivableAccountRegex;
+
+    @ConfigProperty(name = "open-items.payable-account-regex", defaultValue = "(^|:)2000$")
+    String payableAccountRegex;
+
+    @Inject
+    EntityManager entityManager;
+
+    private Pattern receivableAccounts;
+    private Pattern payableAccounts;
+    private String definition;
+
+    @PostConstruct
+    void init() {
+        receivableAccounts = Pattern.compile(receivableAccountRegex);
+        payableAccounts = Pattern.compile(payableAccountRegex);
+        definition = tagKey + "\n" + receivableAccountRegex + "\n" + payableAccountRegex;
+    }
+
+    /**
+     * Finds the open items of the given journals, summed over the journals so
+     * that an invoice paid in a later journal of a chain is not open.
+     *
+     * @param journalIds the journals, e.g. a journal chain
+     * @param kind       receivables or payables
+     * @return the open items, oldest invoice first
+     */
+    @Transactional
+    public List<OpenItem> findOpenItems(Collection<String> journalIds, Kind kind) {
+        if (journalIds.isEmpty()) {
+            return List.of();
+        }
+        journalIds.stream()
+            .filter(journalId -> !isBuilt(journalId))
+            .forEach(this::ensureBuilt);
+
+        List<Object[]> rows = entityManager.createQuery(
+                "SELECT o.tagValue, o.commodity, MIN(o.partnerId), MIN(o.firstDate), MAX(o.lastDate), SUM(" + kind.column + ") "
+                    + "FROM OpenItemEntity o "
+                    + "WHERE o.journalId IN :journalIds "
+                    + "GROUP BY o.tagValue, o.commodity "
+                    + "HAVING SUM(" + kind.column + ") <> 0 "
+                    + "ORDER BY MIN(o.firstDate), o.tagValue, o.commodity",
+                Object[].class)
+            .setParameter("journalIds", journalIds)
+            .getResultList();
+        return rows.stream()
+            .map(row -> new OpenItem(
+                (String) row[0],
+                (String) row[2],
+                (String) row[1],
+                (LocalDate) row[3],
+                (LocalDate) row[4],
+                (BigDecimal) row[5]))
+            .toList();
+    }
+
+    /**
+     * Finds the receivable or payable accounts of the given journals, i.e.
+     * those whose code path matches the configured pattern.
+     *
+     * @param journalIds the journals, e.g. a journal chain
+     * @param kind       receivables or payables
+     * @return the IDs of the matching accounts
+     */
+    @Transactional
+    public Set<String> findAccountIds(Collection<String> journalIds, Kind kind) {
+        Set<String> accountIds = new HashSet<>();
+        for (String journalId : journalIds) {
+            classifyAccounts(journalId).forEach((accountId, accountKind) -> {
+                if (accountKind == kind) {
+                    accountIds.add(accountId);
+                }
+            });
+        }
+        return accountIds;
+    }
+
+    /**
+     * Buckets the open items of the given journals by the age of their
+     * invoice date (0-30, 31-60, 61-90 and over 90 days).
+     *
+     * @param journalIds the journals, e.g. a journal chain
+     * @param kind       receivables or payables
+     * @param asOf       the date the age is measured at
+     * @return one entry per commodity, sorted by commodity
+     */
+    @Transactional
+    public List<OpenItemAging> findAging(Collection<String> journalIds, Kind kind, LocalDate asOf) {
+        Map<String, BigDecimal[]> buckets = new TreeMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (OpenItem item : findOpenItems(journalIds, kind)) {
+            long age = ChronoUnit.DAYS.between(item.invoiceDate(), asOf);
+            int bucket = age <= 30 ? 0 : age <= 60 ? 1 : age <= 90 ? 2 : 3;
+            BigDecimal[] sums = buckets.computeIfAbsent(item.commodity(),
+                commodity -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO});
+            sums[bucket] = sums[bucket].add(item.balance());
+            counts.merge(item.commodity(), 1, Integer::sum);
+        }
+        List<OpenItemAging> result = new ArrayList<>(buckets.size());
+        buckets.forEach((commodity, sums) -> result.add(new OpenItemAging(
+            commodity, counts.get(commodity), sums[0], sums[1], sums[2], sums[3],
+            sums[0].add(sums[1]).add(sums[2]).add(sums[3]))));
+        return result;
+    }
+
+    /**
+     * Checks whether the open items of a journal are up to date, without
+     * locking anything. Reads in a transaction of its own, so that neither
+     * the caller's transaction nor {@link #ensureBuilt} takes its snapshot
+     * before the journal is built.
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    boolean isBuilt(String journalId) {
+        OpenItemStateEntity current = entityManager.find(OpenItemStateEntity.class, journalId);
+        return current != null && definition.equals(current.getDefinition());
+    }
+
+    /**
+     * Builds the open items of a journal unless they are up to date. Runs in
+     * a transaction of its own that takes the journal lock before reading
+     * anything, so that its snapshot, and thus the transactions it reads,
+     * include everything committed by writers that skipped the journal
+     * because it was not built yet.
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void ensureBuilt(String journalId) {
+        if (!lockJournal(journalId)) {
+            return;
+        }
+        String built = lockState(journalId);
+        if (definition.equals(built)) {
+            return;
+        }
+        deleteOpenItems(journalId);
+        Map<Key, Totals> totals = aggregate(journalId, null);
+        totals.forEach((key, total) -> entityManager.persist(total.toEntity(journalId, key)));
+
+        if (built == null) {
+            entityManager.persist(new OpenItemStateEntity(journalId, definition));
+        } else {
+            entityManager.createQuery("UPDATE OpenItemStateEntity s SET s.definition = :definition WHERE s.journalId = :journalId")
+                .setParameter("definition", definition)
+                .setParameter("journalId", journalId)
+                .executeUpdate();
+        }
+        LOG.debugf("Built %d open items for journal %s", totals.size(), journalId);
+    }
+
+    /**
+     * Drops the open items of a journal, to be rebuilt when next queried.
+     * Called when its accounts change or the journal is deleted.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void invalidate(String journalId) {
+        entityManager.flush();
+        if (lockJournal(journalId) && lockState(journalId) != null) {
+            dropJournal(journalId);
+        }
+    }
+
+    /**
+     * Captures what a transaction, in its current state, contributes to the
+     * open items of its journal. To be called before and after changing the
+     * transaction, in the transaction that changes it.
+     *
+     * @param transaction the transaction, or null for none
+     */
+    Contribution contributionOf(TransactionEntity transaction) {
+        if (transaction == null || transaction.getJournalId() == null) {
+            return Contribution.NONE;
+        }
+        Set<String> tagValues = new LinkedHashSet<>();
+        for (TagEntity tag : transaction.getTags()) {
+            if (tagKey.equals(tag.getTagKey()) && tag.getTagValue() != null && !tag.getTagValue().isEmpty()) {
+                tagValues.add(tag.getTagValue());
+            }
+        }
+        if (tagValues.isEmpty()) {
+            return new Contribution(transaction.getJournalId(), Map.of());
+        }
+
+        Map<String, Kind> kinds = classifyAccounts(transaction.getJournalId());
+        Map<Key, Totals> totals = new LinkedHashMap<>();
+        for (EntryEntity entry : transaction.getEntries()) {
+            Kind kind = kinds.get(entry.getAccountId());
+            if (kind == null) {
+                continue;
+            }
+            for (String tagValue : tagValues) {
+                Totals total = totals.computeIfAbsent(new Key(tagValue, entry.getCommodity()), key -> new Totals());
+                total.add(kind, entry.getAmount());
+                total.seen(transaction.getTransactionDate(), transaction.getPartnerId());
+            }
+        }
+        return new Contribution(transaction.getJournalId(), totals);
+    }
+
+    /**
+     * Applies the change of a transaction to the open items of the journals
+     * it was and is in, if those journals are built.
+     *
+     * @param before the transaction's contribution before the change
+     * @param after  its contribution after the change
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    void update(Contribution before, Contribution after) {
+        Set<String> journalIds = new LinkedHashSet<>();
+        if (before.journalId() != null) {
+            journalIds.add(before.journalId());
+        }
+        if (after.journalId() != null) {
+            journalIds.add(after.journalId());
+        }
+        for (String journalId : journalIds) {
+            Map<Key, Totals> old = journalId.equals(before.journalId()) ? before.totals() : Map.of();
+            Map<Key, Totals> current = journalId.equals(after.journalId()) ? after.totals() : Map.of();
+            if (old.isEmpty() && current.isEmpty()) {
+                continue;
+            }
+            entityManager.flush();
+            if (!lockJournal(journalId)) {
+                continue;
+            }
+            String state = lockState(journalId);
+            if (state == null) {
+                continue;
+            }
+            if (!definition.equals(state)) {
+                dropJournal(journalId);
+                continue;
+            }
+            applyDelta(journalId, old, current);
+        }
+    }
+
+    private void applyDelta(String journalId, Map<Key, Totals> old, Map<Key, Totals> current) {
+        Set<Key> keys = new LinkedHashSet<>(old.keySet());
+        keys.addAll(current.keySet());
+        Set<String> tagValues = new HashSet<>();
+        keys.forEach(key -> tagValues.add(key.tagValue()));
+
+        Map<Key, OpenItemEntity> rows = new HashMap<>();
+        for (OpenItemEntity row : entityManager.createQuery(
+                "SELECT o FROM OpenItemEntity o WHERE o.journalId = :journalId AND o.tagValue IN :tagValues",
+                OpenItemEntity.class)
+                .setParameter("journalId", journalId)
+                .setParameter("tagValues", tagValues)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList()) {
+            rows.put(new Key(row.getTagValue(), row.getCommodity()), row);
+        }
+
+        // Dates and partner are not additive, so they are taken from the
+        // transactions still carrying the tags.
+        Map<Key, Totals> remaining = aggregate(journalId, tagValues);
+        for (Key key : keys) {
+            Totals delta = Totals.difference(current.get(key), old.get(key));
+            Totals now = remaining.get(key);
+            OpenItemEntity row = rows.get(key);
+            if (row == null) {
+                if (now == null) {
+                    continue;
+                }
+                row = now.toEntity(journalId, key);
+                row.setReceivable(delta.receivable);
+                row.setPayable(delta.payable);
+                entityManager.persist(row);
+                continue;
+            }
+            row.setReceivable(row.getReceivable().add(delta.receivable));
+            row.setPayable(row.getPayable().add(delta.payable));
+            if (now != null) {
+                row.setFirstDate(now.firstDate);
+                row.setLastDate(now.lastDate);
+                row.setPartnerId(now.partnerId);
+            } else if (row.getReceivable().signum() == 0 && row.getPayable().signum() == 0) {
+                entityManager.remove(row);
+            }
+        }
+    }
+
+    /**
+     * Sums the entries on receivable and payable accounts of a journal's
+     * transactions per invoice tag value and commodity.
+     *
+     * @param tagValues only these tag values, or null for all
+     */
+    private Map<Key, Totals> aggregate(String journalId, Collection<String> tagValues) {
+        Map<String, Kind> kinds = classifyAccounts(journalId);
+        Map<Key, Totals> totals = new LinkedHashMap<>();
+        if (kinds.isEmpty()) {
+            return totals;
+        }
+        var query = entityManager.createQuery(
+                "SELECT tag.tagValue, e.commodity, e.accountId, t.partnerId, "
+                    + "MIN(t.transactionDate), MAX(t.transactionDate), SUM(e.amount) "
+                    + "FROM TagEntity tag "
+                    + "JOIN tag.transaction t "
+                    + "JOIN EntryEntity e ON e.transaction = t "
+                    + "WHERE t.journalId = :journalId "
+                    + "AND tag.tagKey = :tagKey "
+                    + (tagValues == null ? "AND tag.tagValue <> '' " : "AND tag.tagValue IN :tagValues ")
+                    + "AND e.accountId IN :accountIds "
+                    + "GROUP BY tag.tagValue, e.commodity, e.accountId, t.partnerId",
+                Object[].class)
+            .setParameter("journalId", journalId)
+            .setParameter("tagKey", tagKey)
+            .setParameter("accountIds", kinds.keySet());
+        if (tagValues != null) {
+            query.setParameter("tagValues", tagValues);
+        }
+        for (Object[] row : query.getResultList()) {
+            Totals total = totals.computeIfAbsent(new Key((String) row[0], (String) row[1]), key -> new Totals());
+            total.add(kinds.get((String) row[2]), (BigDecimal) row[6]);
+            total.seen((LocalDate) row[4], (String) row[3]);
+            total.seen((LocalDate) row[5], null);
+        }
+        return totals;
+    }
+
+    /**
+     * @return the receivable and payable accounts of the journal by ID
+     */
+    private Map<String, Kind> classifyAccounts(String journalId) {
+        List<AccountEntity> accounts = entityManager.createQuery(
+                "SELECT a FROM AccountEntity a WHERE a.journalId = :journalId", AccountEntity.class)
+            .setParameter("journalId", journalId)
+            .getResultList();
+        Map<String, Kind> kinds = new HashMap<>();
+        for (AccountEntity account : accounts) {
+            String codePath = AccountService.buildCodePath(account, accounts);
+            if (receivableAccounts.matcher(codePath).find()) {
+                kinds.put(account.getId(), Kind.RECEIVABLE);
+            } else if (payableAccounts.matcher(codePath).find()) {
+                kinds.put(account.getId(), Kind.PAYABLE);
+            }
+        }
+        return kinds;
+    }
+
+    /**
+     * Locks the journal row until the end of the transaction. Native queries
+     * are not restricted to the tenant, so the organisation is matched
+     * explicitly.
+     *
+     * @return false if the journal does not exist for the organisation
+     */
+    private boolean lockJournal(String journalId) {
+        return !entityManager.createNativeQuery("SELECT id FROM T_journal WHERE id = ?1 AND org_id = ?2 FOR UPDATE")
+            .setParameter(1, journalId)
+            .setParameter(2, orgId())
+            .getResultList()
+            .isEmpty();
+    }
+
+    /**
+     * Reads the journal's state with a locking read, which sees the latest
+     * committed row regardless of the transaction's snapshot.
+     *
+     * @return the definition the journal's open items were built with, or
+     *         null if they are not built
+     */
+    private String lockState(String journalId) {
+        List<?> definitions = entityManager.createNativeQuery(
+                "SELECT definition FROM T_open_item_state WHERE journal_id = ?1 AND org_id = ?2 FOR UPDATE")
+            .setParameter(1, journalId)
+            .setParameter(2, orgId())
+            .getResultList();
+        return definitions.isEmpty() ? null : (String) definitions.get(0);
+    }
+
+    private String orgId() {
+        return entityManager.unwrap(Session.class).getTenantIdentifierValue().toString();
+    }
+
+    private void dropJournal(String journalId) {
+        deleteOpenItems(journalId);
+        entityManager.createQuery("DELETE FROM OpenItemStateEntity s WHERE s.journalId = :journalId")
+            .setParameter("journalId", journalId)
+            .executeUpdate();
+    }
+
+    private void deleteOpenItems(String journalId) {
+        entityManager.createQuery("DELETE FROM OpenItemEntity o WHERE o.journalId = :journalId")
+            .setParameter("journalId", journalId)
+            .executeUpdate();
+    }
+
+    /** Identifies an open item within a journal. */
+    record Key(String tagValue, String commodity) {
+    }
+
+    /**
+     * What one transaction contributes to the open items of its journal.
+     *
+     * @param journalId the transaction's journal, or null for none
+     */
+    record Contribution(String journalId, Map<Key, Totals> totals) {
+        static final Contribution NONE = new Contribution(null, Map.of());
+    }
+
+    /** Running totals of one open item. */
+    static final class Totals {
+        private BigDecimal receivable = BigDecimal.ZERO;
+        private BigDecimal payable = BigDecimal.ZERO;
+        private LocalDate firstDate;
+        private LocalDate lastDate;
+        private String partnerId;
+
+        void add(Kind kind, BigDecimal amount) {
+            if (kind == Kind.RECEIVABLE) {
+                receivable = receivable.add(amount);
+            } else {
+                payable = payable.subtract(amount);
+            }
+        }
+
+        /**
+         * Records a transaction of the open item. The partner is that of the
+         * first transaction with a partner.
+         */
+        void seen(LocalDate date, String partner) {
+            if (firstDate == null || date.isBefore(firstDate)) {
+                firstDate = date;
+                partnerId = partner != null ? partner : partnerId;
+            } else if (partnerId == null) {
+                partnerId = partner;
+            }
+            if (lastDate == null || date.isAfter(lastDate)) {
+                lastDate = date;
+            }
+        }
+
+        static Totals difference(Totals minuend, Totals subtrahend) {
+            Totals difference = new Totals();
+            if (minuend != null) {
+                difference.receivable = minuend.receivable;
+                difference.payable = minuend.payable;
+            }
+            if (subtrahend != null) {
+                difference.receivable = difference.receivable.subtract(subtrahend.receivable);
+                difference.payable = difference.payable.subtract(subtrahend.payable);
+            }
+            return difference;
+        }
+
+        OpenItemEntity toEntity(String journalId, Key key) {
+            OpenItemEntity entity = new OpenItemEntity();
+            entity.setJournalId(journalId);
+            entity.setTagValue(key.tagValue());
+            entity.setCommodity(key.commodity());
+            entity.setPartnerId(partnerId);
+            entity.setFirstDate(firstDate);
+            entity.setLastDate(lastDate);
+            entity.setReceivable(receivable);
+            entity.setPayable(payable);
+            return entity;
+        }
+    }
+}
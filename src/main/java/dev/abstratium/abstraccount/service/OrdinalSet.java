@@ -0,0 +1,362 @@
+package dev.abstratium.abstraccount.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable set of ordinals (non-negative ints numbering the transactions of
+ * a {@link JournalIndex}).
+ *
+ * <p>A set is stored as a sorted array while sparse and as a bitmap once it
+ * holds more than one in 32 of the ordinals below its largest, whichever is
+ * smaller, so that a tag on three transactions costs twelve bytes and a tag
+ * on nearly all of them one bit per transaction. Set operations pick the
+ * algorithm for the representations at hand: merging two arrays, probing the
+ * bitmap for each array element, or combining bitmaps word by word.</p>
+ */
+final class OrdinalSet {
+
+    static final OrdinalSet EMPTY = new OrdinalSet(new int[0], 0);
+
+    /** Sorted ordinals, if sparse; only the first {@link #cardinality} are used. */
+    private final int[] values;
+
+    /** Bit {@code i % 64} of word {@code i / 64} is set if ordinal {@code i} is contained, if dense. */
+    private final long[] words;
+
+    private final int cardinality;
+
+    private OrdinalSet(int[] values, int cardinality) {
+        this.values = values;
+        this.words = null;
+        this.cardinality = cardinality;
+    }
+
+    private OrdinalSet(long[] words, int cardinality) {
+        this.values = null;
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * @return the set of the ordinals from 0 (inclusive) to {@code size}
+     *         (exclusive)
+     */
+    static OrdinalSet range(int size) {
+        if (size <= 0) {
+            return EMPTY;
+        }
+        long[] words = new long[wordCount(size)];
+        Arrays.fill(words, -1L);
+        int rest = size % 64;
+        if (rest != 0) {
+            words[words.length - 1] = (1L << rest) - 1;
+        }
+        return new OrdinalSet(words, size);
+    }
+
+    /**
+     * @return the union of the sets, computed in one pass over a bitmap
+     *         rather than pair by pair
+     */
+    static OrdinalSet union(List<OrdinalSet> sets) {
+        if (sets.size() < 3) {
+            return sets.isEmpty() ? EMPTY : sets.size() == 1 ? sets.get(0) : sets.get(0).or(sets.get(1));
+        }
+        int max = -1;
+        for (OrdinalSet set : sets) {
+            if (!set.isEmpty()) {
+                max = Math.max(max, set.max());
+            }
+        }
+        long[] words = new long[wordCount(max + 1)];
+        for (OrdinalSet set : sets) {
+            set.orInto(words);
+        }
+        return ofWords(words);
+    }
+
+    boolean contains(int ordinal) {
+        if (ordinal < 0) {
+            return false;
+        }
+        if (words != null) {
+            int word = ordinal >>> 6;
+            return word < words.length && (words[word] & (1L << ordinal)) != 0;
+        }
+        return Arrays.binarySearch(values, 0, cardinality, ordinal) >= 0;
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /** @return the approximate heap size of the set in bytes */
+    long bytes() {
+        return 16 + (words != null ? 8L * words.length : 4L * values.length);
+    }
+
+    void forEach(IntConsumer action) {
+        if (words == null) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(values[i]);
+            }
+            return;
+        }
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                action.accept((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    /** @return the ordinals in ascending order */
+    int[] toArray() {
+        if (words == null) {
+            return Arrays.copyOf(values, cardinality);
+        }
+        int[] result = new int[cardinality];
+        int[] i = {0};
+        forEach(ordinal -> result[i[0]++] = ordinal);
+        return result;
+    }
+
+    OrdinalSet and(OrdinalSet other) {
+        if (isEmpty() || other.isEmpty()) {
+            return EMPTY;
+        }
+        if (words != null && other.words != null) {
+            long[] result = new long[Math.min(words.length, other.words.length)];
+            for (int w = 0; w < result.length; w++) {
+                result[w] = words[w] & other.words[w];
+            }
+            return ofWords(result);
+        }
+        if (words != null) {
+            return other.and(this);
+        }
+        int[] result = new int[Math.min(cardinality, other.cardinality)];
+        int n = 0;
+        if (other.words != null) {
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    result[n++] = values[i];
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < other.cardinality) {
+                int a = values[i];
+                int b = other.values[j];
+                if (a == b) {
+                    result[n++] = a;
+                    i++;
+                    j++;
+                } else if (a < b) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+        }
+        return new OrdinalSet(result, n);
+    }
+
+    OrdinalSet or(OrdinalSet other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        if (words == null && other.words == null) {
+            int[] result = new int[cardinality + other.cardinality];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < other.cardinality) {
+                if (j == other.cardinality || (i < cardinality && values[i] < other.values[j])) {
+                    result[n++] = values[i++];
+                } else if (i == cardinality || other.values[j] < values[i]) {
+                    result[n++] = other.values[j++];
+                } else {
+                    result[n++] = values[i++];
+                    j++;
+                }
+            }
+            return ofValues(result, n);
+        }
+        long[] result = new long[Math.max(wordCount(max() + 1), wordCount(other.max() + 1))];
+        orInto(result);
+        other.orInto(result);
+        return ofWords(result);
+    }
+
+    /** @return the ordinals of this set that are not in {@code other} */
+    OrdinalSet andNot(OrdinalSet other) {
+        if (isEmpty() || other.isEmpty()) {
+            return this;
+        }
+        if (words == null) {
+            int[] result = new int[cardinality];
+            int n = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) {
+                    result[n++] = values[i];
+                }
+            }
+            return n == cardinality ? this : new OrdinalSet(result, n);
+        }
+        long[] result = words.clone();
+        if (other.words != null) {
+            for (int w = 0; w < Math.min(result.length, other.words.length); w++) {
+                result[w] &= ~other.words[w];
+            }
+        } else {
+            for (int i = 0; i < other.cardinality; i++) {
+                int ordinal = other.values[i];
+                if (ordinal >>> 6 < result.length) {
+                    result[ordinal >>> 6] &= ~(1L << ordinal);
+                }
+            }
+        }
+        return ofWords(result);
+    }
+
+    /** @return this set with the given ordinal added */
+    OrdinalSet with(int ordinal) {
+        if (contains(ordinal)) {
+            return this;
+        }
+        if (words != null) {
+            long[] result = Arrays.copyOf(words, Math.max(words.length, wordCount(ordinal + 1)));
+            result[ordinal >>> 6] |= 1L << ordinal;
+            return ofWords(result);
+        }
+        int insertAt = -Arrays.binarySearch(values, 0, cardinality, ordinal) - 1;
+        int[] result = new int[cardinality + 1];
+        System.arraycopy(values, 0, result, 0, insertAt);
+        result[insertAt] = ordinal;
+        System.arraycopy(values, insertAt, result, insertAt + 1, cardinality - insertAt);
+        return ofValues(result, result.length);
+    }
+
+    /** @return this set without the given ordinal */
+    OrdinalSet without(int ordinal) {
+        if (!contains(ordinal)) {
+            return this;
+        }
+        return andNot(new OrdinalSet(new int[] {ordinal}, 1));
+    }
+
+    private int max() {
+        if (words == null) {
+            return values[cardinality - 1];
+        }
+        for (int w = words.length - 1; w >= 0; w--) {
+            if (words[w] != 0) {
+                return (w << 6) + 63 - Long.numberOfLeadingZeros(words[w]);
+            }
+        }
+        return -1;
+    }
+
+    private void orInto(long[] target) {
+        if (words != null) {
+            for (int w = 0; w < words.length; w++) {
+                target[w] |= words[w];
+            }
+        } else {
+            for (int i = 0; i < cardinality; i++) {
+                target[values[i] >>> 6] |= 1L << values[i];
+            }
+        }
+    }
+
+    private static int wordCount(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    /** Chooses the smaller representation for the given sorted, distinct ordinals. */
+    private static OrdinalSet ofValues(int[] values, int cardinality) {
+        if (cardinality == 0) {
+            return EMPTY;
+        }
+        int max = values[cardinality - 1];
+        if ((long) cardinality * 32 <= max) {
+            return new OrdinalSet(cardinality == values.length ? values : Arrays.copyOf(values, cardinality), cardinality);
+        }
+        long[] words = new long[wordCount(max + 1)];
+        for (int i = 0; i < cardinality; i++) {
+            words[values[i] >>> 6] |= 1L << values[i];
+        }
+        return new OrdinalSet(words, cardinality);
+    }
+
+    /** Chooses the smaller representation for the given bitmap. */
+    private static OrdinalSet ofWords(long[] words) {
+        int cardinality = 0;
+        int length = 0;
+        for (int w = 0; w < words.length; w++) {
+            if (words[w] != 0) {
+                cardinality += Long.bitCount(words[w]);
+                length = w + 1;
+            }
+        }
+        if (cardinality == 0) {
+            return EMPTY;
+        }
+        OrdinalSet dense = new OrdinalSet(length == words.length ? words : Arrays.copyOf(words, length), cardinality);
+        if ((long) cardinality * 32 <= dense.max()) {
+            return new OrdinalSet(dense.toArray(), cardinality);
+        }
+        return dense;
+    }
+
+    /**
+     * Collects ordinals into a set.
+     */
+    static final class Builder {
+
+        private int[] values = new int[8];
+        private int size;
+        private boolean sorted = true;
+
+        Builder add(int ordinal) {
+            if (size > 0) {
+                if (values[size - 1] == ordinal) {
+                    return this;
+                }
+                sorted &= values[size - 1] < ordinal;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = ordinal;
+            return this;
+        }
+
+        OrdinalSet build() {
+            if (sorted) {
+                return ofValues(values, size);
+            }
+            int[] distinct = Arrays.copyOf(values, size);
+            Arrays.sort(distinct);
+            int n = 0;
+            for (int i = 0; i < distinct.length; i++) {
+                if (n == 0 || distinct[n - 1] != distinct[i]) {
+                    distinct[n++] = distinct[i];
+                }
+            }
+            return ofValues(distinct, n);
+        }
+    }
+}
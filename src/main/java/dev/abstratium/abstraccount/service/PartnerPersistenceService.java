@@ -0,0 +1,167 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.PartnerEntity;
+import dev.abstratium.abstraccount.model.PartnerData;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.transaction.Transactional;
+import org.hibernate.query.NativeQuery;
+import org.jboss.logging.Logger;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service for persisting the partners of an organisation ({@code T_partner})
+ * and its change counter ({@code T_partner_version}).
+ * <p>
+ * Partners are read and written through {@link EntityManager}, so
+ * Hibernate's discriminator multi-tenancy scopes them to the caller's
+ * organisation and Envers audits every change. The change counter is not an
+ * entity; it is accessed by native queries with an explicit orgId.
+ * <p>
+ * Every change locks the organisation's counter row first
+ * ({@link #lockVersion(String)}) and increments it last
+ * ({@link #updateVersion(String, long)}), in the same transaction. The lock
+ * serialises writers across all nodes; the counter lets caches of the
+ * partners find out cheaply whether they are stale.
+ */
+@ApplicationScoped
+public class PartnerPersistenceService {
+
+    private static final Logger LOG = Logger.getLogger(PartnerPersistenceService.class);
+
+    /** The version of an organisation whose partners have never been written. */
+    public static final long NO_VERSION = -1;
+
+    @Inject
+    EntityManager entityManager;
+
+    /**
+     * @param orgId the organisation
+     * @return the organisation's change counter, or {@link #NO_VERSION}
+     */
+    @Transactional
+    public long findVersion(String orgId) {
+        List<?> versions = entityManager.createNativeQuery(
+                "SELECT version FROM T_partner_version WHERE org_id = ?1")
+            .setParameter(1, orgId)
+            .getResultList();
+        return versions.isEmpty() ? NO_VERSION : ((Number) versions.get(0)).longValue();
+    }
+
+    /**
+     * @return all partners of the current organisation, sorted by partner
+     *         number
+     */
+    @Transactional
+    public List<PartnerData> findAll() {
+        return entityManager.createQuery(
+                "SELECT p FROM PartnerEntity p ORDER BY p.partnerNumber", PartnerEntity.class)
+            .getResultList().stream()
+            .map(PartnerPersistenceService::toPartnerData)
+            .toList();
+    }
+
+    /**
+     * Locks the organisation's change counter until the end of the
+     * transaction, creating it if the organisation's partners have never been
+     * written. Writers on other nodes wait for the lock.
+     * <p>
+     * Only creating the counter is not serialised: if two nodes write the
+     * partners of a new organisation at the same instant, one of them fails
+     * on the primary key and its change can simply be retried.
+     *
+     * @param orgId the organisation
+     * @return the current value of the counter
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public long lockVersion(String orgId) {
+        List<?> versions = entityManager.createNativeQuery(
+                "SELECT version FROM T_partner_version WHERE org_id = ?1 FOR UPDATE")
+            .setParameter(1, orgId)
+            .getResultList();
+        if (!versions.isEmpty()) {
+            return ((Number) versions.get(0)).longValue();
+        }
+        versionUpdate("INSERT INTO T_partner_version (org_id, version) VALUES (?1, 0)")
+            .setParameter(1, orgId)
+            .executeUpdate();
+        return 0;
+    }
+
+    /**
+     * Sets the organisation's change counter, locked before by
+     * {@link #lockVersion(String)}.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void updateVersion(String orgId, long version) {
+        versionUpdate("UPDATE T_partner_version SET version = ?2 WHERE org_id = ?1")
+            .setParameter(1, orgId)
+            .setParameter(2, version)
+            .executeUpdate();
+    }
+
+    /**
+     * Creates a native statement changing only {@code T_partner_version}, so
+     * that executing it does not invalidate the whole second-level cache.
+     */
+    private Query versionUpdate(String sql) {
+        return entityManager.createNativeQuery(sql)
+            .unwrap(NativeQuery.class)
+            .addSynchronizedQuerySpace("T_partner_version");
+    }
+
+    /**
+     * Creates a partner for the current organisation.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void create(PartnerData partner) {
+        PartnerEntity entity = new PartnerEntity();
+        entity.setPartnerNumber(partner.partnerNumber());
+        entity.setName(partner.name());
+        entity.setActive(partner.active());
+        entityManager.persist(entity);
+    }
+
+    /**
+     * Makes the current organisation's partners equal to the given ones.
+     * Partners are matched by partner number: changed ones are updated,
+     * missing ones deleted and new ones created, so that the audit trail
+     * records what actually changed.
+     *
+     * @param partners the new partners, with unique partner numbers
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void replaceAll(Collection<PartnerData> partners) {
+        Map<String, PartnerEntity> existing = new HashMap<>();
+        for (PartnerEntity entity : entityManager.createQuery(
+                "SELECT p FROM PartnerEntity p", PartnerEntity.class).getResultList()) {
+            existing.put(entity.getPartnerNumber(), entity);
+        }
+
+        int created = 0;
+        int updated = 0;
+        for (PartnerData partner : partners) {
+            PartnerEntity entity = existing.remove(partner.partnerNumber());
+            if (entity == null) {
+                create(partner);
+                created++;
+            } else if (!entity.getName().equals(partner.name()) || entity.isActive() != partner.active()) {
+                entity.setName(partner.name());
+                entity.setActive(partner.active());
+                updated++;
+            }
+        }
+        existing.values().forEach(entityManager::remove);
+        LOG.debugf("Replaced partners: %d created, %d updated, %d deleted", created, updated, existing.size());
+    }
+
+    private static PartnerData toPartnerData(PartnerEntity entity) {
+        return new PartnerData(entity.getPartnerNumber(), entity.getName(), entity.isActive());
+    }
+}
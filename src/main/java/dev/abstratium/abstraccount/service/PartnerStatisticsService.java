@@ -0,0 +1,142 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.model.PartnerStatistics;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.transaction.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Aggregates the transactions of journals per partner: transaction count,
+ * turnover, open receivable and payable balances and last activity.
+ * <p>
+ * Everything is computed by a single grouped query over the entries of
+ * transactions with a partner, grouped by partner and commodity, and sorted
+ * and paged in the database, so that e.g. the top 50 customers by revenue
+ * only ever transfer 50 rows regardless of the number of transactions. The
+ * transaction side of the query is served by
+ * {@code I_transaction_org_journal_partner} and the entry side by
+ * {@code I_entry_org_transaction_amount}, both covering.
+ * <p>
+ * Receivables and payables are the balances on the same accounts as the
+ * open items, i.e. those whose code path matches
+ * {@code open-items.receivable-account-regex} and
+ * {@code open-items.payable-account-regex} (see {@link OpenItemService}), so
+ * that e.g. VAT or bank accounts do not count. Transactions tagged
+ * {@code Closing} are excluded, as in the journal KPIs, since they move
+ * balances rather than record business with the partner.
+ */
+@ApplicationScoped
+public class PartnerStatisticsService {
+
+    /** The orders in which statistics can be returned. */
+    public enum Sort {
+        REVENUE(sumOf("REVENUE", true)),
+        EXPENSES(sumOf("EXPENSE", false)),
+        RECEIVABLE("SUM(CASE WHEN e.accountId IN :receivableAccountIds THEN e.amount ELSE 0 END)"),
+        PAYABLE("SUM(CASE WHEN e.accountId IN :payableAccountIds THEN -e.amount ELSE 0 END)"),
+        TRANSACTIONS("COUNT(DISTINCT t.id)"),
+        LAST_ACTIVITY("MAX(t.transactionDate)"),
+        PARTNER("t.partnerId");
+
+        private final String expression;
+
+        Sort(String expression) {
+            this.expression = expression;
+        }
+    }
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    OpenItemService openItemService;
+
+    /**
+     * Computes one page of partner statistics for the current organisation.
+     *
+     * @param journalIds the journals to aggregate, e.g. a journal chain
+     * @param commodity  only aggregate entries in this commodity; null for all
+     * @param sort       the order of the results; ties are broken by partner
+     *                   number and commodity
+     * @param descending whether to sort descending
+     * @param offset     the number of results to skip
+     * @param limit      the maximum number of results
+     * @return one entry per partner and commodity
+     */
+    @Transactional
+    public List<PartnerStatistics> findPartnerStatistics(Collection<String> journalIds, String commodity,
+                                                         Sort sort, boolean descending, int offset, int limit) {
+        if (journalIds.isEmpty()) {
+            return List.of();
+        }
+        String direction = descending ? " DESC" : " ASC";
+        StringBuilder jpql = new StringBuilder()
+            .append("SELECT t.partnerId, e.commodity, ")
+            .append(Sort.TRANSACTIONS.expression).append(", ")
+            .append(Sort.REVENUE.expression).append(", ")
+            .append(Sort.EXPENSES.expression).append(", ")
+            .append(Sort.RECEIVABLE.expression).append(", ")
+            .append(Sort.PAYABLE.expression).append(", ")
+            .append(Sort.LAST_ACTIVITY.expression).append(' ')
+            .append("FROM EntryEntity e ")
+            .append("JOIN e.transaction t ")
+            .append("JOIN AccountEntity a ON a.id = e.accountId ")
+            .append("WHERE t.journalId IN :journalIds ")
+            .append("AND t.partnerId IS NOT NULL AND t.partnerId <> '' ");
+        if (commodity != null) {
+            jpql.append("AND e.commodity = :commodity ");
+        }
+        jpql.append("AND NOT EXISTS (SELECT tag FROM TagEntity tag WHERE tag.transaction = t AND tag.tagKey = :closingTag) ")
+            .append("GROUP BY t.partnerId, e.commodity ")
+            .append("ORDER BY ").append(sort.expression).append(direction);
+        if (sort != Sort.PARTNER) {
+            jpql.append(", t.partnerId");
+        }
+        jpql.append(", e.commodity");
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class)
+            .setParameter("journalIds", journalIds)
+            .setParameter("closingTag", "Closing")
+            .setParameter("receivableAccountIds", openItemService.findAccountIds(journalIds, OpenItemService.Kind.RECEIVABLE))
+            .setParameter("payableAccountIds", openItemService.findAccountIds(journalIds, OpenItemService.Kind.PAYABLE))
+            .setFirstResult(offset)
+            .setMaxResults(limit);
+        if (commodity != null) {
+            query.setParameter("commodity", commodity);
+        }
+        return query.getResultList().stream()
+            .map(row -> new PartnerStatistics(
+                (String) row[0],
+                (String) row[1],
+                ((Number) row[2]).longValue(),
+                amount(row[3]),
+                amount(row[4]),
+                amount(row[5]),
+                amount(row[6]),
+                (LocalDate) row[7]))
+            .toList();
+    }
+
+    /**
+     * @return the sum of the amounts booked on accounts of the given type,
+     *         negated for types with credit balances
+     */
+    private static String sumOf(String accountType, boolean negate) {
+        return "SUM(CASE WHEN a.type = dev.abstratium.abstraccount.model.AccountType." + accountType
+            + " THEN " + (negate ? "-" : "") + "e.amount ELSE 0 END)";
+    }
+
+    private static BigDecimal amount(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal decimal ? decimal : new BigDecimal(value.toString());
+    }
+}
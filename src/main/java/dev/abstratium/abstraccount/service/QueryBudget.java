@@ -0,0 +1,80 @@
+package dev.abstratium.abstraccount.service;
+
+import java.time.Duration;
+
+/**
+ * What one EQL query may cost: how many rows it may load and how long it may
+ * run. The loops evaluating a query call {@link #check()} as they go, and
+ * database queries are given {@link #maxRows()} and
+ * {@link #timeoutSeconds()}. A query can also be {@link #cancel() cancelled},
+ * e.g. when its client disconnects.
+ *
+ * <p>A budget belongs to one request; only {@link #cancel()} may be called
+ * from another thread.</p>
+ */
+public final class QueryBudget {
+
+    private final long maxRows;
+    private final Duration maxDuration;
+    private final long deadline;
+    private volatile boolean cancelled;
+
+    /**
+     * @param maxRows     the maximum number of rows a query may load
+     * @param maxDuration how long the query may run, starting now
+     */
+    public QueryBudget(long maxRows, Duration maxDuration) {
+        this.maxRows = maxRows;
+        this.maxDuration = maxDuration;
+        this.deadline = System.nanoTime() + maxDuration.toNanos();
+    }
+
+    /** Makes the next {@link #check()} fail. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @throws QueryLimitException if the query was cancelled or ran out of time
+     */
+    public void check() {
+        if (cancelled) {
+            throw new QueryLimitException(QueryLimitException.Limit.CANCELLED, "The query was cancelled");
+        }
+        if (System.nanoTime() - deadline > 0) {
+            throw timedOut();
+        }
+    }
+
+    /**
+     * @param rows the number of rows loaded
+     * @throws QueryLimitException if that is more than allowed
+     */
+    public void checkRows(long rows) {
+        if (rows > maxRows) {
+            throw new QueryLimitException(QueryLimitException.Limit.ROWS,
+                "The query would load more than " + maxRows + " rows; narrow it down, e.g. by date or account");
+        }
+    }
+
+    /** @return the maximum number of rows a query may load */
+    public long maxRows() {
+        return maxRows;
+    }
+
+    /**
+     * @return the seconds left, rounded up, for use as a JDBC query timeout
+     * @throws QueryLimitException if there is no time left
+     */
+    public int timeoutSeconds() {
+        check();
+        long nanos = deadline - System.nanoTime();
+        return (int) Math.max(1, (nanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    /** @return the exception of a query that ran out of time, e.g. in the database */
+    public QueryLimitException timedOut() {
+        return new QueryLimitException(QueryLimitException.Limit.DURATION,
+            "The query took longer than " + maxDuration.toMillis() + " ms; narrow it down, e.g. by date or account");
+    }
+}
@@ -0,0 +1,44 @@
+package dev.abstratium.abstraccount.service;
+
+/**
+ * Thrown when an EQL query exceeds one of the limits of its
+ * {@link QueryBudget}, or of the regular expressions it matches, so that a
+ * pathological query fails fast with a clear error instead of tying up a
+ * worker thread and a database connection.
+ */
+public class QueryLimitException extends RuntimeException {
+
+    /** The limits a query can exceed. */
+    public enum Limit {
+        /** More rows would be loaded than allowed. */
+        ROWS("too_many_rows"),
+        /** A regular expression or glob took too many steps to match a value. */
+        REGEX_STEPS("regex_too_complex"),
+        /** The query took longer than allowed. */
+        DURATION("query_timeout"),
+        /** The client went away. */
+        CANCELLED("query_cancelled");
+
+        private final String code;
+
+        Limit(String code) {
+            this.code = code;
+        }
+
+        /** @return the error code reported to the client */
+        public String getCode() {
+            return code;
+        }
+    }
+
+    private final Limit limit;
+
+    public QueryLimitException(Limit limit, String message) {
+        super(message);
+        this.limit = limit;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+}
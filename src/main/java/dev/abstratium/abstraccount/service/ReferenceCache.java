@@ -0,0 +1,121 @@
+package dev.abstratium.abstraccount.service;
+
+import com.google.common.cache.CacheBuilder;
+import dev.abstratium.abstraccount.entity.AccountEntity;
+import dev.abstratium.abstraccount.entity.JournalEntity;
+import dev.abstratium.abstraccount.entity.MacroEntity;
+import dev.abstratium.abstraccount.entity.ReportTemplateEntity;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds how stale the second-level cache of the reference entities read on
+ * nearly every request may get: journals with their commodities, accounts,
+ * macros and report templates, and the cached account lists of journals.
+ * <p>
+ * Hibernate includes the tenant, i.e. the organisation, in the keys of
+ * cached entities and query results, so one organisation never reads
+ * another's. Changes made through Hibernate on this node, including bulk
+ * and native updates, invalidate the affected entries at once; Envers only
+ * writes audit rows, which are not cached.
+ * <p>
+ * The cache is per node though, so it does not see changes made on other
+ * nodes. Readers call {@link #expireStale()}, which drops the cached
+ * reference entities of all organisations at most every
+ * {@code reference-cache.max-staleness}, so such changes are seen within
+ * that interval. Checks which must see the latest state, like whether a
+ * journal is locked, bypass the cache instead, and readers which rely on a
+ * journal's account version, like the cache of compiled EQL expressions,
+ * report it with {@link #accountVersionRead}, which drops the cached
+ * accounts at once when the version changed. The account lists are cached
+ * in their own query region, {@value #ACCOUNT_LISTS}, so that this drops
+ * nothing else.
+ */
+@ApplicationScoped
+public class ReferenceCache {
+
+    private static final Logger LOG = Logger.getLogger(ReferenceCache.class);
+
+    private static final List<Class<?>> ENTITIES =
+        List.of(JournalEntity.class, AccountEntity.class, MacroEntity.class, ReportTemplateEntity.class);
+
+    private static final String COMMODITIES = JournalEntity.class.getName() + ".commodities";
+
+    /** The query cache region of the account lists of journals. */
+    public static final String ACCOUNT_LISTS = "account-lists";
+
+    @ConfigProperty(name = "reference-cache.max-staleness", defaultValue = "PT5S")
+    Duration maxStaleness;
+
+    @ConfigProperty(name = "reference-cache.account-versions.max-size", defaultValue = "10000")
+    long accountVersionsMaxSize;
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    private final AtomicLong expiredAt = new AtomicLong(System.nanoTime());
+
+    /** The account version last read per journal ID, of the journals read most recently. */
+    private com.google.common.cache.Cache<String, Long> accountVersions;
+
+    @PostConstruct
+    void init() {
+        accountVersions = CacheBuilder.newBuilder()
+                .maximumSize(accountVersionsMaxSize)
+                .build();
+    }
+
+    /**
+     * Drops the cached reference entities and account lists, if they were
+     * last dropped more than {@code reference-cache.max-staleness} ago.
+     */
+    public void expireStale() {
+        long now = System.nanoTime();
+        long last = expiredAt.get();
+        if (now - last < maxStaleness.toNanos() || !expiredAt.compareAndSet(last, now)) {
+            return;
+        }
+        Cache cache = sessionFactory.getCache();
+        ENTITIES.forEach(cache::evictEntityData);
+        cache.evictCollectionData(COMMODITIES);
+        cache.evictQueryRegion(ACCOUNT_LISTS);
+        cache.evictDefaultQueryRegion();
+        LOG.debug("Expired the cached reference entities");
+    }
+
+    /**
+     * Drops the cached accounts and account lists if the account version of
+     * a journal differs from the one last read on this node, e.g. because its
+     * accounts were changed on another node, so that accounts loaded after
+     * reading the version are at least as new as the version.
+     * <p>
+     * The first version read of a journal, or the first since the journal
+     * dropped out of the {@code reference-cache.account-versions.max-size}
+     * journals read most recently, is only recorded: there is nothing to
+     * compare it with, and the cached accounts are at most
+     * {@code reference-cache.max-staleness} old anyway. Otherwise every
+     * journal read for the first time would drop the accounts of all.
+     *
+     * @param journalId      the journal
+     * @param accountVersion its account version, just read from the database
+     */
+    public void accountVersionRead(String journalId, long accountVersion) {
+        Long previous = accountVersions.asMap().put(journalId, accountVersion);
+        if (previous == null || previous == accountVersion) {
+            return;
+        }
+        Cache cache = sessionFactory.getCache();
+        cache.evictEntityData(AccountEntity.class);
+        cache.evictQueryRegion(ACCOUNT_LISTS);
+        LOG.debugf("Expired the cached accounts, as the accounts of journal %s are at version %d", journalId, accountVersion);
+    }
+}
@@ -0,0 +1,118 @@
+package dev.abstratium.abstraccount.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits texts into the words indexed by {@link JournalIndex}, and works out
+ * which words a text matched by an EQL match value must contain.
+ *
+ * <p>A word is a run of letters and digits, folded to lower case. Folding is
+ * at least as coarse as the case-insensitive matching of
+ * {@link EntryQueryParser.StringMatcher}, so that the words required by a
+ * match value are always found in the texts it matches.</p>
+ */
+final class TextTerms {
+
+    private TextTerms() {
+    }
+
+    /** @return the words of a text, in order, including repetitions; none if it is null */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int i = 0;
+        while (i < text.length()) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            words.add(fold(text, start, i));
+        }
+        return words;
+    }
+
+    /**
+     * @param pattern the text of a literal or glob match value, without
+     *                quotes
+     * @param glob    whether {@code *} and {@code ?} are wildcards
+     * @return the words every text matching the whole pattern contains; words
+     *         next to a wildcard may be part of longer words
+     */
+    static List<WordPattern> wordPatterns(String pattern, boolean glob) {
+        List<WordPattern> patterns = new ArrayList<>();
+        int i = 0;
+        while (i < pattern.length()) {
+            if (!Character.isLetterOrDigit(pattern.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < pattern.length() && Character.isLetterOrDigit(pattern.charAt(i))) {
+                i++;
+            }
+            boolean anyBefore = glob && start > 0 && isWildcard(pattern.charAt(start - 1));
+            boolean anyAfter = glob && i < pattern.length() && isWildcard(pattern.charAt(i));
+            patterns.add(new WordPattern(fold(pattern, start, i), anyBefore, anyAfter));
+        }
+        return patterns;
+    }
+
+    /**
+     * @return whether the text contains the words one after the other, the
+     *         last one possibly only as the start of a longer word
+     */
+    static boolean containsPhrase(String text, List<String> phrase, boolean lastIsPrefix) {
+        List<String> words = words(text);
+        int last = phrase.size() - 1;
+        for (int start = 0; start + last < words.size(); start++) {
+            int i = 0;
+            while (i < last && words.get(start + i).equals(phrase.get(i))) {
+                i++;
+            }
+            if (i == last && (lastIsPrefix
+                    ? words.get(start + last).startsWith(phrase.get(last))
+                    : words.get(start + last).equals(phrase.get(last)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWildcard(char c) {
+        return c == '*' || c == '?';
+    }
+
+    private static String fold(String text, int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            chars[i - start] = Character.toLowerCase(Character.toUpperCase(text.charAt(i)));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * A word a text must contain.
+     *
+     * @param word      the folded word
+     * @param anyBefore whether the text's word may have more characters
+     *                  before it
+     * @param anyAfter  whether the text's word may have more characters after
+     *                  it
+     */
+    record WordPattern(String word, boolean anyBefore, boolean anyAfter) {
+
+        boolean matches(String term) {
+            if (anyBefore) {
+                return anyAfter ? term.contains(word) : term.endsWith(word);
+            }
+            return anyAfter ? term.startsWith(word) : term.equals(word);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package dev.abstratium.core.filter;
+
+import dev.abstratium.abstraccount.boundary.QueryErrorDTO;
+import dev.abstratium.abstraccount.service.QueryLimitException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+import org.jboss.logging.Logger;
+
+/**
+ * Maps {@link QueryLimitException} to the same {@link QueryErrorDTO} body as
+ * EQL parse errors, so that clients show both alike.
+ *
+ * <p>A query loading too many rows or matching a too complex regular
+ * expression is the client's to narrow down, so it is a 400 Bad Request. A
+ * query running out of time or being cancelled may succeed later, so it is a
+ * 503 Service Unavailable.</p>
+ */
+@Provider
+public class QueryLimitExceptionMapper implements ExceptionMapper<QueryLimitException> {
+
+    private static final Logger LOG = Logger.getLogger(QueryLimitExceptionMapper.class);
+
+    @Override
+    public Response toResponse(QueryLimitException exception) {
+        LOG.warnf("EQL query exceeded its limit: %s", exception.getMessage());
+        Response.Status status = switch (exception.getLimit()) {
+            case ROWS, REGEX_STEPS -> Response.Status.BAD_REQUEST;
+            case DURATION, CANCELLED -> Response.Status.SERVICE_UNAVAILABLE;
+        };
+        return Response.status(status)
+            .entity(new QueryErrorDTO(exception.getLimit().getCode(), exception.getMessage(), 0))
+            .type(MediaType.APPLICATION_JSON)
+            .build();
+    }
+}
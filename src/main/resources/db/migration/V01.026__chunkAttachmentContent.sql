@@ -0,0 +1,19 @@
+-- Attachment content is stored as a sequence of fixed-size chunks rather than
+-- a single LONGBLOB, so that uploads and downloads can be streamed with only
+-- one chunk in memory at a time (see AttachmentContentChunkEntity javadoc).
+-- No org_id column: like the table it replaces, this table is only ever
+-- reached via the tenant-filtered T_attachment row.
+CREATE TABLE T_attachment_content_chunk (
+    attachment_id VARCHAR(36) NOT NULL,
+    chunk_index   INT         NOT NULL,
+    content       LONGBLOB    NOT NULL,
+    PRIMARY KEY (attachment_id, chunk_index),
+    CONSTRAINT FK_attachment_content_chunk_attachment FOREIGN KEY (attachment_id) REFERENCES T_attachment (id)
+);
+
+-- Existing content becomes a single chunk with index 0; readers make no
+-- assumption about chunk sizes.
+INSERT INTO T_attachment_content_chunk (attachment_id, chunk_index, content)
+SELECT attachment_id, 0, content FROM T_attachment_content;
+
+DROP TABLE T_attachment_content;
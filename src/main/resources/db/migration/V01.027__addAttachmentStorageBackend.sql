@@ -0,0 +1,15 @@
+-- Record which AttachmentStore holds each attachment's content, and under
+-- which key, so that database- and filesystem-backed attachments can coexist
+-- while content is migrated between backends.
+-- Existing content lives in T_attachment_content_chunk, keyed by attachment id.
+ALTER TABLE T_attachment ADD COLUMN storage_backend VARCHAR(20) NOT NULL DEFAULT 'database';
+ALTER TABLE T_attachment ADD COLUMN storage_key VARCHAR(255) NULL;
+UPDATE T_attachment SET storage_key = id;
+
+-- Used by the background migration job to find attachments still stored in
+-- another backend, and to check whether a content key is still referenced.
+CREATE INDEX I_attachment_storage ON T_attachment (org_id, storage_backend, storage_key);
+
+-- Mirror the new columns in the Envers audit table.
+ALTER TABLE T_attachment_AUD ADD COLUMN storage_backend VARCHAR(20);
+ALTER TABLE T_attachment_AUD ADD COLUMN storage_key VARCHAR(255);
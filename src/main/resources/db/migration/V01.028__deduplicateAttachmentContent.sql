@@ -0,0 +1,72 @@
+-- Attachment content is stored once per (organisation, SHA-256) in
+-- T_attachment_blob, and attachments reference it via blob_id. ref_count is
+-- the number of attachments referencing a blob; blobs whose count dropped to
+-- zero are deleted by a background garbage collection pass once released_at
+-- is older than a grace period (see AttachmentBlobEntity javadoc).
+CREATE TABLE T_attachment_blob (
+    id              VARCHAR(36)  NOT NULL PRIMARY KEY,
+    org_id          VARCHAR(36)  NOT NULL,
+    sha256          VARCHAR(64),
+    size_bytes      BIGINT       NOT NULL,
+    storage_backend VARCHAR(20)  NOT NULL,
+    storage_key     VARCHAR(255) NOT NULL,
+    ref_count       INT          NOT NULL,
+    created_at      TIMESTAMP    NOT NULL,
+    released_at     TIMESTAMP    NULL,
+    CONSTRAINT UK_attachment_blob_org_sha256 UNIQUE (org_id, sha256)
+);
+
+CREATE INDEX I_attachment_blob_org_storage ON T_attachment_blob (org_id, storage_backend);
+CREATE INDEX I_attachment_blob_gc ON T_attachment_blob (ref_count, released_at);
+
+-- One blob per distinct (org, sha256), taking over the content of the
+-- attachment with the smallest id. Its id is reused as the blob id, so that
+-- database content keyed by that attachment id stays valid.
+INSERT INTO T_attachment_blob (id, org_id, sha256, size_bytes, storage_backend, storage_key, ref_count, created_at, released_at)
+SELECT a.id, a.org_id, a.sha256, a.size_bytes, a.storage_backend, COALESCE(a.storage_key, a.id),
+       (SELECT COUNT(*) FROM T_attachment d WHERE d.org_id = a.org_id AND d.sha256 = a.sha256),
+       a.uploaded_at, NULL
+FROM T_attachment a
+WHERE a.sha256 IS NOT NULL
+  AND a.id = (SELECT MIN(m.id) FROM T_attachment m WHERE m.org_id = a.org_id AND m.sha256 = a.sha256);
+
+-- Attachments without a recorded hash cannot be deduplicated and keep their
+-- own blob.
+INSERT INTO T_attachment_blob (id, org_id, sha256, size_bytes, storage_backend, storage_key, ref_count, created_at, released_at)
+SELECT a.id, a.org_id, NULL, a.size_bytes, a.storage_backend, COALESCE(a.storage_key, a.id), 1, a.uploaded_at, NULL
+FROM T_attachment a
+WHERE a.sha256 IS NULL;
+
+ALTER TABLE T_attachment ADD COLUMN blob_id VARCHAR(36) NULL;
+UPDATE T_attachment SET blob_id = (
+    SELECT b.id FROM T_attachment_blob b WHERE b.org_id = T_attachment.org_id AND b.sha256 = T_attachment.sha256
+) WHERE sha256 IS NOT NULL;
+UPDATE T_attachment SET blob_id = id WHERE sha256 IS NULL;
+ALTER TABLE T_attachment ADD CONSTRAINT FK_attachment_blob FOREIGN KEY (blob_id) REFERENCES T_attachment_blob (id);
+
+-- Database-held content is now keyed by blob id. Only the chunks of blobs
+-- are carried over; chunks of duplicate attachments are dropped.
+CREATE TABLE T_attachment_blob_chunk (
+    blob_id     VARCHAR(36) NOT NULL,
+    chunk_index INT         NOT NULL,
+    content     LONGBLOB    NOT NULL,
+    PRIMARY KEY (blob_id, chunk_index),
+    CONSTRAINT FK_attachment_blob_chunk_blob FOREIGN KEY (blob_id) REFERENCES T_attachment_blob (id)
+);
+
+INSERT INTO T_attachment_blob_chunk (blob_id, chunk_index, content)
+SELECT c.attachment_id, c.chunk_index, c.content
+FROM T_attachment_content_chunk c
+JOIN T_attachment_blob b ON b.id = c.attachment_id AND b.storage_backend = 'database';
+
+DROP TABLE T_attachment_content_chunk;
+
+-- Where content lives is now recorded on the blob only.
+DROP INDEX I_attachment_storage ON T_attachment;
+ALTER TABLE T_attachment DROP COLUMN storage_backend;
+ALTER TABLE T_attachment DROP COLUMN storage_key;
+
+-- Mirror the changes in the Envers audit table.
+ALTER TABLE T_attachment_AUD DROP COLUMN storage_backend;
+ALTER TABLE T_attachment_AUD DROP COLUMN storage_key;
+ALTER TABLE T_attachment_AUD ADD COLUMN blob_id VARCHAR(36);
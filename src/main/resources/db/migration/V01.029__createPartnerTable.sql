@@ -0,0 +1,39 @@
+-- Partners (customers, suppliers, ...) of an organisation, referenced from
+-- entries by partner number. Until now they were kept in one CSV file per
+-- organisation under partner.data.dir; such a file is imported into this
+-- table the first time the organisation's partners are read (see
+-- PartnerDataAdapter). CSV remains the import/export format.
+CREATE TABLE T_partner (
+    id             VARCHAR(36)  NOT NULL PRIMARY KEY,
+    org_id         VARCHAR(36)  NOT NULL,
+    partner_number VARCHAR(50)  NOT NULL,
+    name           VARCHAR(255) NOT NULL,
+    active         BOOLEAN      NOT NULL,
+    CONSTRAINT UK_partner_org_number UNIQUE (org_id, partner_number)
+);
+
+-- One change counter per organisation whose partners have been written.
+-- Every change to T_partner locks the organisation's row first, which
+-- serialises writers across nodes, and increments it, which tells the
+-- partner caches of all nodes that they are stale. Bookkeeping only, so it is
+-- not an entity and not audited.
+CREATE TABLE T_partner_version (
+    org_id  VARCHAR(36) NOT NULL PRIMARY KEY,
+    version BIGINT      NOT NULL
+);
+
+-- Audit table for the @Audited PartnerEntity.
+CREATE TABLE IF NOT EXISTS T_partner_AUD (
+    id VARCHAR(36),
+    org_id VARCHAR(36),
+    partner_number VARCHAR(50),
+    name VARCHAR(255),
+    active BOOLEAN,
+    REV BIGINT NOT NULL,
+    REVTYPE TINYINT,
+    PRIMARY KEY (id, REV),
+    CONSTRAINT FK_partner_aud_rev FOREIGN KEY (REV) REFERENCES REVINFO(REV)
+);
+
+CREATE INDEX I_partner_aud_rev ON T_partner_AUD(REV);
+CREATE INDEX I_partner_aud_id ON T_partner_AUD(id);
@@ -0,0 +1,9 @@
+-- Covering indexes for the per-partner statistics (PartnerStatisticsService),
+-- which group the entries of a journal's transactions by partner. The
+-- transaction side is read from the first index, ordered by partner, and the
+-- entries of each transaction from the second without touching T_entry rows.
+CREATE INDEX I_transaction_org_journal_partner ON T_transaction (org_id, journal_id, partner_id, transaction_date);
+
+-- Replaces I_entry_org_transaction, which is a prefix of it.
+CREATE INDEX I_entry_org_transaction_amount ON T_entry (org_id, transaction_id, account_id, commodity, amount);
+DROP INDEX I_entry_org_transaction ON T_entry;
@@ -0,0 +1,33 @@
+-- Open items (unpaid invoices): the net balance of each invoice tag value on
+-- the configured receivable and payable accounts, per journal and commodity.
+-- Maintained by OpenItemService whenever a transaction carrying the tag is
+-- written; open items of a journal chain are the sums over its journals.
+-- Derived data, so not audited and without foreign keys.
+CREATE TABLE T_open_item (
+    id          VARCHAR(36)    NOT NULL PRIMARY KEY,
+    org_id      VARCHAR(36)    NOT NULL,
+    journal_id  VARCHAR(36)    NOT NULL,
+    tag_value   VARCHAR(500)   NOT NULL,
+    commodity   VARCHAR(10)    NOT NULL,
+    partner_id  VARCHAR(100),
+    first_date  DATE           NOT NULL,
+    last_date   DATE           NOT NULL,
+    receivable  DECIMAL(19, 4) NOT NULL,
+    payable     DECIMAL(19, 4) NOT NULL,
+    CONSTRAINT UK_open_item_org_journal_tag UNIQUE (org_id, journal_id, tag_value, commodity)
+);
+
+-- One row per journal whose open items are up to date, with the definition
+-- (tag key and account patterns) they were computed with. Journals without a
+-- row, e.g. freshly imported ones, are built when their open items are first
+-- queried.
+CREATE TABLE T_open_item_state (
+    journal_id  VARCHAR(36)    NOT NULL PRIMARY KEY,
+    org_id      VARCHAR(36)    NOT NULL,
+    definition  VARCHAR(1000)  NOT NULL
+);
+
+-- Finds the transactions of one invoice when recomputing its open item. The
+-- tag key is left out to stay within MySQL's index key length; tag values
+-- are selective enough on their own.
+CREATE INDEX I_tag_org_value ON T_tag (org_id, tag_value);
@@ -0,0 +1,10 @@
+-- One change counter per journal, maintained by JournalIndexService. Every
+-- change to a journal's transactions locks the journal's row and increments
+-- it, which tells the in-memory journal indexes of all nodes that they are
+-- stale. Journals without a row have never changed since this table was
+-- created, which counts as version 0. Bookkeeping only, so it is not an
+-- entity and not audited.
+CREATE TABLE T_journal_version (
+    journal_id VARCHAR(36) NOT NULL PRIMARY KEY,
+    version    BIGINT      NOT NULL
+);
@@ -0,0 +1,6 @@
+-- A second change counter per journal, for its accounts. Every change to a
+-- journal's accounts increments it, which tells the compiled EQL expressions
+-- cached by EntryQueryParser on all nodes, which resolve account names and
+-- types when they are compiled, that they are stale. Kept apart from version
+-- so that account changes do not force the journal indexes to be rebuilt.
+ALTER TABLE T_journal_version ADD COLUMN account_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,19 @@
+-- Composite indexes matching the access paths of entry search and reports
+-- (JournalPersistenceService.queryEntriesWithFilters and friends). Each
+-- replaces an index which is a prefix of it and which the foreign keys on
+-- the same leading columns can use instead.
+
+-- A journal's transactions, in or from a date range, read in date order.
+CREATE INDEX I_transaction_org_journal_date ON T_transaction (org_id, journal_id, transaction_date, transaction_order);
+DROP INDEX I_transaction_org_journal ON T_transaction;
+
+-- The EXISTS subqueries of tag filters, which look up a key of one
+-- transaction. tag_value is left out: with tag_key it would exceed MySQL's
+-- 3072 byte key limit in utf8mb4, and a transaction has few tags per key.
+CREATE INDEX I_tag_org_transaction_key ON T_tag (org_id, transaction_id, tag_key);
+DROP INDEX I_tag_org_transaction ON T_tag;
+
+-- The entries of some accounts, e.g. of an account type, joined to their
+-- transactions and summed without touching T_entry rows.
+CREATE INDEX I_entry_org_account_transaction ON T_entry (org_id, account_id, transaction_id, amount);
+DROP INDEX I_entry_org_account ON T_entry;
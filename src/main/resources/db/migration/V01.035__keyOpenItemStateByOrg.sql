@@ -0,0 +1,11 @@
+-- Keys the open item state by organisation and journal, so that a state row
+-- of one organisation can never stand for a journal of another. The states
+-- are derived data: journals without one are rebuilt when next queried.
+DROP TABLE T_open_item_state;
+
+CREATE TABLE T_open_item_state (
+    org_id      VARCHAR(36)    NOT NULL,
+    journal_id  VARCHAR(36)    NOT NULL,
+    definition  VARCHAR(1000)  NOT NULL,
+    PRIMARY KEY (org_id, journal_id)
+);
@@ -36,6 +36,7 @@ describe('Controller', () => {
       fileName: 'receipt.pdf',
       contentType: 'application/pdf',
       sizeBytes: 1024,
+      sha256: 'abc123',
       uploadedAt: '2024-01-15T10:00:00Z',
       uploadedBy: 'testuser'
     };
@@ -86,6 +87,10 @@ describe('Controller', () => {
       expect(controller.getAttachmentDownloadUrl('att-1')).toBe('/api/attachment/att-1');
     });
 
+    it('should build a content-addressed attachment download URL when the hash is known', () => {
+      expect(controller.getAttachmentDownloadUrl('att-1', 'abc123')).toBe('/api/attachment/att-1?v=abc123');
+    });
+
     it('should build the journal attachments zip URL without a date range', () => {
       expect(controller.getJournalAttachmentsZipUrl('journal-1')).toBe('/api/attachment/journal/journal-1/zip');
     });
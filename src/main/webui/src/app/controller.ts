@@ -12,6 +12,7 @@ export interface TransactionDTO {
   partnerName: string | null;
   tags: TagDTO[];
   entries: EntryDTO[];
+  attachmentCount?: number;
   journalId?: string; // Set when loading from journal chain
   journalName?: string; // Set when loading from journal chain
 }
@@ -84,6 +85,9 @@ export interface PartnerDTO {
   name: string;
 }
 
+/** Maximum number of partners offered by partner autocompletes. */
+export const PARTNER_AUTOCOMPLETE_LIMIT = 50;
+
 export interface CreatePartnerResponseDTO {
   partnerNumber: string;
   name: string;
@@ -290,6 +294,7 @@ export interface EntrySearchDTO {
   transactionPartnerId: string | null;
   transactionPartnerName: string | null;
   transactionTags: TagDTO[];
+  transactionAttachmentCount?: number;
   
   // Journal fields
   journalId: string;
@@ -339,6 +344,7 @@ export interface AttachmentDTO {
   fileName: string;
   contentType: string;
   sizeBytes: number;
+  sha256: string | null;
   uploadedAt: string;
   uploadedBy: string | null;
 }
@@ -886,14 +892,18 @@ export class Controller {
   }
 
   /**
-   * Search for partners.
+   * Search for partners, best matches first. Without a limit all matches are
+   * returned.
    */
-  async searchPartners(searchTerm: string): Promise<PartnerDTO[]> {
+  async searchPartners(searchTerm: string, limit?: number): Promise<PartnerDTO[]> {
     try {
       let params = new HttpParams();
       if (searchTerm) {
         params = params.set('q', searchTerm);
       }
+      if (limit) {
+        params = params.set('limit', limit);
+      }
 
       return await firstValueFrom(
         this.http.get<PartnerDTO[]>('/api/partners/search', { params })
@@ -922,7 +932,7 @@ export class Controller {
 
   /**
    * Replace all partners from an imported CSV file.
-   * The backend validates the CSV before overwriting the partner file.
+   * The backend validates the CSV before replacing the partners.
    * On validation failure (HTTP 400) the error body is returned as a
    * resolved promise with the list of errors, so the UI can display them.
    */
@@ -1126,9 +1136,12 @@ export class Controller {
   /**
    * URL to view/download an attachment's raw bytes (e.g. for an <iframe> preview
    * or an <a> download link). No separate HTTP call needed to build this.
+   * Passing the content's sha256 makes the URL content-addressed, so the
+   * browser may cache the response for good.
    */
-  getAttachmentDownloadUrl(attachmentId: string): string {
-    return `/api/attachment/${attachmentId}`;
+  getAttachmentDownloadUrl(attachmentId: string, sha256?: string | null): string {
+    const url = `/api/attachment/${attachmentId}`;
+    return sha256 ? `${url}?v=${encodeURIComponent(sha256)}` : url;
   }
 
   /**
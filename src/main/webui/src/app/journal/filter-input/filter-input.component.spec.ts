@@ -115,6 +115,13 @@ describe('FilterInputComponent', () => {
     expect(component.suggestions().some(s => s.text.startsWith('date:'))).toBeTrue();
   });
 
+  it('suggests the free text keyword', () => {
+    component.cursorPosition = 2;
+    component.filterText.set('te');
+    component['updateSuggestions']('te');
+    expect(component.suggestions().some(s => s.text === 'text:')).toBeTrue();
+  });
+
   it('shows tag key suggestions when typing tag:', () => {
     component.cursorPosition = 4;
     component.filterText.set('tag:');
@@ -279,8 +279,10 @@ export class FilterInputComponent implements OnInit, OnDestroy {
       { text: 'amount:eq:', description: 'Amount = value' },
       { text: 'note:', description: 'Entry note (glob/regex, e.g. note:*receipt*)' },
       { text: 'tag:', description: 'Tag key (e.g. tag:invoice) or key+value (e.g. tag:invoice:PI001)' },
+      { text: 'text:', description: 'Words anywhere: description, notes, tags (e.g. text:"office supp*")' },
       { text: 'accounttype:', description: 'Account type: ASSET, LIABILITY, EQUITY, REVENUE, EXPENSE, CASH' },
       { text: 'accountname:', description: 'Account path (glob/regex, e.g. accountname:*Expenses:Marketing*)' },
+      { text: 'journal:', description: 'Journal title or ID, when searching several journals (e.g. journal:*2024*)' },
     ];
 
     // Filter keywords by current token prefix
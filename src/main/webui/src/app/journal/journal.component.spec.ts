@@ -278,6 +278,7 @@ describe('JournalComponent', () => {
       fileName: 'receipt.pdf',
       contentType: 'application/pdf',
       sizeBytes: 2048,
+      sha256: 'abc123',
       uploadedAt: '2024-01-15T10:00:00Z',
       uploadedBy: 'testuser'
     };
@@ -302,6 +303,15 @@ describe('JournalComponent', () => {
       expect(component.contextMenuAttachments).toEqual([mockAttachment]);
     });
 
+    it('keeps the transaction attachment count in sync with the loaded attachments', async () => {
+      component.transactions = [{ id: 'tx-1', attachmentCount: 0 } as any];
+      controller.listAttachments.and.returnValue(Promise.resolve([mockAttachment]));
+
+      await component.loadContextMenuAttachments('tx-1');
+
+      expect(component.transactions[0].attachmentCount).toBe(1);
+    });
+
     it('surfaces an error if loading attachments fails', async () => {
       controller.listAttachments.and.returnValue(Promise.reject(new Error('boom')));
 
@@ -361,9 +371,10 @@ describe('JournalComponent', () => {
     });
 
     it('builds the download URL via the controller', () => {
-      controller.getAttachmentDownloadUrl.and.returnValue('/api/attachment/att-1');
+      controller.getAttachmentDownloadUrl.and.returnValue('/api/attachment/att-1?v=abc123');
 
-      expect(component.getAttachmentDownloadUrl(mockAttachment)).toBe('/api/attachment/att-1');
+      expect(component.getAttachmentDownloadUrl(mockAttachment)).toBe('/api/attachment/att-1?v=abc123');
+      expect(controller.getAttachmentDownloadUrl).toHaveBeenCalledWith('att-1', 'abc123');
     });
 
     it('deletes an attachment after confirmation and refreshes the list', async () => {
@@ -294,6 +294,10 @@ export class JournalComponent implements OnInit {
     this.contextMenuAttachmentError = null;
     try {
       this.contextMenuAttachments = await this.controller.listAttachments(transactionId);
+      const transaction = this.transactions.find(tx => tx.id === transactionId);
+      if (transaction) {
+        transaction.attachmentCount = this.contextMenuAttachments.length;
+      }
     } catch (err: any) {
       this.contextMenuAttachmentError = 'Failed to load attachments: ' + err.message;
     } finally {
@@ -322,7 +326,7 @@ export class JournalComponent implements OnInit {
   }
 
   getAttachmentDownloadUrl(attachment: AttachmentDTO): string {
-    return this.controller.getAttachmentDownloadUrl(attachment.id);
+    return this.controller.getAttachmentDownloadUrl(attachment.id, attachment.sha256);
   }
 
   async deleteContextMenuAttachment(attachment: AttachmentDTO): Promise<void> {
@@ -2,7 +2,7 @@ import { Component, OnInit, Signal, inject, effect, HostListener } from '@angula
 import { CommonModule } from '@angular/common';
 import { FormsModule } from '@angular/forms';
 import { Router } from '@angular/router';
-import { Controller, MacroDTO, MacroParameterDTO, ImportResult, ImportConflict, MacroBatchExecuteResult } from '../controller';
+import { Controller, MacroDTO, MacroParameterDTO, ImportResult, ImportConflict, MacroBatchExecuteResult, PARTNER_AUTOCOMPLETE_LIMIT } from '../controller';
 import { ModelService } from '../model.service';
 import { AutocompleteComponent, AutocompleteOption } from '../core/autocomplete/autocomplete.component';
 import { ConfirmDialogService } from '../core/confirm-dialog/confirm-dialog.service';
@@ -412,7 +412,7 @@ export class MacrosComponent implements OnInit {
   // Autocomplete fetch function for partners
   async fetchPartners(searchTerm: string): Promise<AutocompleteOption[]> {
     try {
-      const partners = await this.controller.searchPartners(searchTerm);
+      const partners = await this.controller.searchPartners(searchTerm, PARTNER_AUTOCOMPLETE_LIMIT);
       return partners.map(p => ({
         value: p.partnerNumber,
         label: `${p.partnerNumber} ${p.name}`
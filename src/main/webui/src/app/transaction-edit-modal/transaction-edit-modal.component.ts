@@ -1,7 +1,7 @@
 import { CommonModule } from '@angular/common';
 import { Component, EventEmitter, HostListener, inject, Input, OnInit, Output } from '@angular/core';
 import { FormsModule } from '@angular/forms';
-import { Controller, CreateEntryRequest, CreateTransactionRequest, TransactionDTO, UpdateEntryRequest, UpdateTransactionRequest, TagDTO } from '../controller';
+import { Controller, CreateEntryRequest, CreateTransactionRequest, TransactionDTO, UpdateEntryRequest, UpdateTransactionRequest, TagDTO, PARTNER_AUTOCOMPLETE_LIMIT } from '../controller';
 import { ModelService } from '../model.service';
 import { AutocompleteComponent, AutocompleteOption } from '../core/autocomplete/autocomplete.component';
 
@@ -241,7 +241,7 @@ export class TransactionEditModalComponent implements OnInit {
    */
   fetchPartnerOptions = async (searchTerm: string): Promise<AutocompleteOption[]> => {
     try {
-      const partners = await this.controller.searchPartners(searchTerm);
+      const partners = await this.controller.searchPartners(searchTerm, PARTNER_AUTOCOMPLETE_LIMIT);
       return partners.map(p => ({
         value: p.partnerNumber,
         label: `${p.partnerNumber} - ${p.name}`
@@ -0,0 +1,79 @@
+package dev.abstratium.abstraccount.adapters;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.abstratium.abstraccount.service.AttachmentStore;
+
+/**
+ * Tests for {@link FilesystemAttachmentStore} outside of a transaction, where
+ * deletions take effect immediately.
+ */
+class FilesystemAttachmentStoreTest {
+
+    private static final byte[] CONTENT = "%PDF-1.4\n%filesystem content".getBytes();
+
+    @TempDir
+    Path baseDir;
+
+    private FilesystemAttachmentStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new FilesystemAttachmentStore();
+        store.baseDir = baseDir.toString();
+    }
+
+    @Test
+    void testWriteIsContentAddressedPerOrganisation() throws IOException {
+        AttachmentStore.StoredContent first = store.write("org-a", "blob-1", new ByteArrayInputStream(CONTENT));
+        AttachmentStore.StoredContent otherOrg = store.write("org-b", "blob-2", new ByteArrayInputStream(CONTENT));
+
+        assertEquals(CONTENT.length, first.sizeBytes());
+        assertEquals("org-a/" + first.sha256().substring(0, 2) + "/" + first.sha256() + ".blob-1", first.storageKey());
+        assertEquals(first.sha256(), otherOrg.sha256());
+        assertTrue(otherOrg.storageKey().startsWith("org-b/"));
+
+        try (InputStream in = store.open(first.storageKey()).orElseThrow()) {
+            assertArrayEquals(CONTENT, in.readAllBytes());
+        }
+        assertTrue(store.localPath(first.storageKey()).isPresent());
+
+        // no temporary files are left behind
+        try (Stream<Path> temp = Files.list(baseDir.resolve(".tmp"))) {
+            assertEquals(0, temp.count());
+        }
+    }
+
+    @Test
+    void testDeleteOutsideTransactionIsImmediate() {
+        AttachmentStore.StoredContent stored = store.write("org-a", "blob-1", new ByteArrayInputStream(CONTENT));
+
+        store.delete(stored.storageKey());
+
+        assertTrue(store.open(stored.storageKey()).isEmpty());
+        assertFalse(store.localPath(stored.storageKey()).isPresent());
+    }
+
+    @Test
+    void testRejectsUnsafeKeysAndOrganisations() {
+        assertThrows(IllegalArgumentException.class, () -> store.resolve("../outside"));
+        assertThrows(IllegalArgumentException.class, () -> store.resolve(".tmp/partial.part"));
+        assertThrows(IllegalArgumentException.class,
+            () -> store.write("../org", "blob-1", new ByteArrayInputStream(CONTENT)));
+    }
+}
@@ -7,6 +7,8 @@ import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.junit.QuarkusTestProfile;
 import io.quarkus.test.junit.TestProfile;
 import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,6 +19,7 @@ import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -30,11 +33,9 @@ class PartnerDataAdapterTest {
         public Map<String, String> getConfigOverrides() {
             return Map.of(
                 "partner.data.dir", "target/test-partners",
-                // Disable the file watcher for these tests. The watcher is tested
-                // in its own dedicated test class; here it causes interference
-                // because it processes events from other tests' file writes
-                // asynchronously, leading to flaky failures.
-                "partner.watcher.enabled", "false"
+                // Check the change counter on every read, so that changes
+                // made "by another node" below are seen at once.
+                "partner.cache.version-check-interval", "PT0S"
             );
         }
     }
@@ -42,11 +43,15 @@ class PartnerDataAdapterTest {
     @Inject
     PartnerDataAdapter adapter;
 
+    @Inject
+    EntityManager em;
+
     private Path testDir;
 
     @BeforeEach
     void setUp() throws IOException {
         testDir = Path.of("target/test-partners");
+        deletePartners();
         adapter.clearCache();
         cleanTestDir();
         Files.createDirectories(testDir);
@@ -72,6 +77,46 @@ class PartnerDataAdapterTest {
         }
     }
 
+    @Transactional
+    void deletePartners() {
+        em.createNativeQuery("DELETE FROM T_partner").executeUpdate();
+        em.createNativeQuery("DELETE FROM T_partner_version").executeUpdate();
+    }
+
+    /** Writes a partner as another node sharing the database would, bypassing this node's cache. */
+    @Transactional
+    void insertPartnerOnOtherNode(String orgId, String partnerNumber, String name) {
+        em.createNativeQuery("INSERT INTO T_partner (id, org_id, partner_number, name, active) VALUES (?1, ?2, ?3, ?4, TRUE)")
+            .setParameter(1, UUID.randomUUID().toString())
+            .setParameter(2, orgId)
+            .setParameter(3, partnerNumber)
+            .setParameter(4, name)
+            .executeUpdate();
+    }
+
+    @Transactional
+    void renamePartnerOnOtherNode(String orgId, String partnerNumber, String name) {
+        em.createNativeQuery("UPDATE T_partner SET name = ?3 WHERE org_id = ?1 AND partner_number = ?2")
+            .setParameter(1, orgId)
+            .setParameter(2, partnerNumber)
+            .setParameter(3, name)
+            .executeUpdate();
+    }
+
+    @Transactional
+    void bumpVersionOnOtherNode(String orgId) {
+        em.createNativeQuery("UPDATE T_partner_version SET version = version + 1 WHERE org_id = ?1")
+            .setParameter(1, orgId)
+            .executeUpdate();
+    }
+
+    @Transactional
+    long countPartnerRows(String orgId) {
+        return ((Number) em.createNativeQuery("SELECT COUNT(*) FROM T_partner WHERE org_id = ?1")
+            .setParameter(1, orgId)
+            .getSingleResult()).longValue();
+    }
+
     private Path orgFile(String orgId) {
         return testDir.resolve(orgId + ".csv");
     }
@@ -194,27 +239,42 @@ class PartnerDataAdapterTest {
     }
 
     @Test
-    void testReloadForOrgUpdatesCache() throws IOException {
-        // Given - initial data
+    void testLegacyFileIsImportedOnlyOnce() throws IOException {
+        // Given - a file from before the registry existed, imported on first read
         writeOrgFile("org1", """
             "Partner Number","Name","Active"
             "P00000001","Ant","true"
             """);
-        adapter.getAllPartners("org1");
         assertEquals(1, adapter.getAllPartners("org1").size());
+        assertEquals(1, countPartnerRows("org1"));
 
-        // When - reload with different data
+        // When - the file changes afterwards
         writeOrgFile("org1", """
             "Partner Number","Name","Active"
             "P00000003","other company","false"
             """);
-        adapter.reloadPartnerDataForOrg("org1");
+        adapter.clearCache();
 
-        // Then - old data is gone, new data is present; other orgs unaffected
+        // Then - the database is the source of truth
         List<PartnerData> partners = adapter.getAllPartners("org1");
         assertEquals(1, partners.size());
-        assertFalse(adapter.getPartner("org1", "P00000001").isPresent());
-        assertTrue(adapter.getPartner("org1", "P00000003").isPresent());
+        assertEquals("Ant", adapter.getPartner("org1", "P00000001").orElseThrow().name());
+        assertFalse(adapter.getPartner("org1", "P00000003").isPresent());
+    }
+
+    @Test
+    void testCacheIsKeptWhileVersionIsUnchanged() {
+        adapter.addPartner("org-cache", "Ant");
+
+        // A change without a new version is not seen...
+        renamePartnerOnOtherNode("org-cache", "P00000001", "Renamed");
+        assertEquals("Ant", adapter.getPartner("org-cache", "P00000001").orElseThrow().name());
+
+        // ...until the change counter moves
+        bumpVersionOnOtherNode("org-cache");
+        assertEquals("Renamed", adapter.getPartner("org-cache", "P00000001").orElseThrow().name());
+        assertEquals(List.of("P00000001"), adapter.searchPartners("org-cache", "renamed", 10).stream()
+            .map(PartnerData::partnerNumber).toList());
     }
 
     @Test
@@ -470,11 +530,11 @@ class PartnerDataAdapterTest {
     }
 
     @Test
-    void testAddPartner_persistsToFile() throws IOException {
+    void testAddPartner_persistsToDatabase() {
         adapter.addPartner("org-add", "Persisted Partner");
 
-        // Reload from file to verify it was written
-        adapter.reloadPartnerDataForOrg("org-add");
+        // Read back from the database to verify it was written
+        adapter.clearCache();
         Optional<PartnerData> partner = adapter.getPartner("org-add", "P00000001");
         assertTrue(partner.isPresent());
         assertEquals("Persisted Partner", partner.get().name());
@@ -482,31 +542,11 @@ class PartnerDataAdapterTest {
     }
 
     @Test
-    void testAddPartner_createsFileWithHeaderIfNotExists() throws IOException {
-        Path filePath = testDir.resolve("new-org.csv");
-        assertFalse(Files.exists(filePath));
-
+    void testAddPartner_doesNotWriteCsvFile() {
         adapter.addPartner("new-org", "First Partner");
 
-        assertTrue(Files.exists(filePath));
-        String content = Files.readString(filePath);
-        assertTrue(content.contains("\"Partner Number\",\"Name\",\"Active\""));
-        assertTrue(content.contains("\"P00000001\",\"First Partner\",\"true\""));
-    }
-
-    @Test
-    void testAddPartner_appendsToExistingFile() throws IOException { //NOPMD
-        writeOrgFile("org-add", """
-            "Partner Number","Name","Active"
-            "P00000001","First","true"
-            """);
-        adapter.getAllPartners("org-add"); // load cache
-
-        adapter.addPartner("org-add", "Second");
-
-        String content = Files.readString(orgFile("org-add"));
-        assertTrue(content.contains("\"P00000001\",\"First\",\"true\""));
-        assertTrue(content.contains("\"P00000002\",\"Second\",\"true\""));
+        assertFalse(Files.exists(testDir.resolve("new-org.csv")));
+        assertEquals(1, countPartnerRows("new-org"));
     }
 
     @Test
@@ -542,20 +582,20 @@ class PartnerDataAdapterTest {
     }
 
     @Test
-    void testAddPartner_nameWithComma_persistsCorrectly() throws IOException {
+    void testAddPartner_nameWithComma_persistsCorrectly() {
         adapter.addPartner("org-add", "Smith, John");
 
-        adapter.reloadPartnerDataForOrg("org-add");
+        adapter.clearCache();
         Optional<PartnerData> partner = adapter.getPartner("org-add", "P00000001");
         assertTrue(partner.isPresent());
         assertEquals("Smith, John", partner.get().name());
     }
 
     @Test
-    void testAddPartner_nameWithQuotes_persistsCorrectly() throws IOException {
+    void testAddPartner_nameWithQuotes_persistsCorrectly() {
         adapter.addPartner("org-add", "Partner \"The Best\" Co");
 
-        adapter.reloadPartnerDataForOrg("org-add");
+        adapter.clearCache();
         Optional<PartnerData> partner = adapter.getPartner("org-add", "P00000001");
         assertTrue(partner.isPresent());
         assertEquals("Partner \"The Best\" Co", partner.get().name());
@@ -573,6 +613,47 @@ class PartnerDataAdapterTest {
         assertTrue(adapter.getPartner("org-add", "P00000003").isPresent());
     }
 
+    @Test
+    void testAddPartner_catchesUpWithPartnersAddedByAnotherNode() {
+        adapter.addPartner("org-add", "First");
+        // Another node sharing the database adds a partner
+        insertPartnerOnOtherNode("org-add", "P00000002", "From Other Node");
+        bumpVersionOnOtherNode("org-add");
+
+        CreatePartnerResult result = adapter.addPartner("org-add", "Second");
+
+        assertEquals("P00000003", result.partner().partnerNumber());
+        assertEquals("From Other Node", adapter.getPartner("org-add", "P00000002").orElseThrow().name());
+    }
+
+    @Test
+    void testAddPartner_concurrentAddsAcrossOrgs_assignUniqueNumbers() throws InterruptedException {
+        int perThread = 25;
+        Thread[] writers = new Thread[4];
+        for (int i = 0; i < writers.length; i++) {
+            String orgId = "org-concurrent-" + (i % 2);
+            String prefix = "Writer " + i + " ";
+            writers[i] = new Thread(() -> {
+                for (int j = 0; j < perThread; j++) {
+                    adapter.addPartner(orgId, prefix + j);
+                }
+            });
+            writers[i].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        adapter.clearCache();
+        for (String orgId : List.of("org-concurrent-0", "org-concurrent-1")) {
+            // Every number was handed out once
+            assertEquals(2 * perThread, countPartnerRows(orgId));
+            List<PartnerData> partners = adapter.getAllPartners(orgId);
+            assertEquals(2 * perThread, partners.size());
+            assertTrue(adapter.getPartner(orgId, String.format("P%08d", 2 * perThread)).isPresent());
+        }
+    }
+
     @Test
     void testComputeNextPartnerNumber_emptyCache() {
         assertEquals("P00000001", adapter.computeNextPartnerNumber(Map.of()));
@@ -692,7 +773,7 @@ class PartnerDataAdapterTest {
     // ========================================================================
 
     @Test
-    void testReplacePartners_validCsv_replacesFileAndReloadsCache() throws IOException {
+    void testReplacePartners_validCsv_replacesPartnersAndCache() throws IOException {
         // Given - existing data
         writeOrgFile("org-replace", """
             "Partner Number","Name","Active"
@@ -725,15 +806,14 @@ class PartnerDataAdapterTest {
         assertFalse(adapter.getAllPartners("org-replace").stream()
             .anyMatch(p -> p.name().equals("Old Partner")));
 
-        // File on disk has the new content
-        String fileContent = Files.readString(orgFile("org-replace"));
-        assertTrue(fileContent.contains("New Partner A"));
-        assertTrue(fileContent.contains("New Partner B"));
-        assertFalse(fileContent.contains("Old Partner"));
+        // The database has the new content
+        assertEquals(2, countPartnerRows("org-replace"));
+        adapter.clearCache();
+        assertEquals("New Partner A", adapter.getPartner("org-replace", "P00000001").orElseThrow().name());
     }
 
     @Test
-    void testReplacePartners_invalidHeader_returnsErrorAndLeavesFileUnchanged() throws IOException {
+    void testReplacePartners_invalidHeader_returnsErrorAndLeavesPartnersUnchanged() throws IOException {
         String originalCsv = """
             "Partner Number","Name","Active"
             "P00000001","Old Partner","true"
@@ -753,10 +833,10 @@ class PartnerDataAdapterTest {
         assertFalse(result.errors().isEmpty());
         assertTrue(result.errors().get(0).contains("invalid header"));
 
-        // File unchanged
+        // Partners unchanged
+        assertEquals("Old Partner", adapter.getPartner("org-replace", "P00000001").orElseThrow().name());
+        adapter.clearCache();
         assertEquals("Old Partner", adapter.getPartner("org-replace", "P00000001").orElseThrow().name());
-        String fileContent = Files.readString(orgFile("org-replace"));
-        assertTrue(fileContent.contains("Old Partner"));
     }
 
     @Test
@@ -868,8 +948,8 @@ class PartnerDataAdapterTest {
     }
 
     @Test
-    void testReplacePartners_createsFileIfNotExists() {
-        // No file exists for "new-org"
+    void testReplacePartners_newOrg() {
+        // "new-org" has no partners yet
         String csv = """
             "Partner Number","Name","Active"
             "P00000001","Brand New","true"
@@ -879,7 +959,8 @@ class PartnerDataAdapterTest {
 
         assertTrue(result.isValid());
         assertEquals(1, result.importedCount());
-        assertTrue(Files.exists(orgFile("new-org")));
+        assertEquals(1, countPartnerRows("new-org"));
+        assertFalse(Files.exists(orgFile("new-org")));
         assertEquals("Brand New", adapter.getPartner("new-org", "P00000001").orElseThrow().name());
     }
 
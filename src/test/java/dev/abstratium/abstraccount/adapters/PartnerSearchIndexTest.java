@@ -0,0 +1,89 @@
+package dev.abstratium.abstraccount.adapters;
+
+import dev.abstratium.abstraccount.model.PartnerData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartnerSearchIndexTest {
+
+    private static final List<PartnerData> PARTNERS = List.of(
+        new PartnerData("P00000004", "Bäckerei Müller AG", true),
+        new PartnerData("P00000001", "Müller", true),
+        new PartnerData("P00000002", "Hans Mueller", true),
+        new PartnerData("P00000003", "Schmuller GmbH", true),
+        new PartnerData("P00000005", "Müller Inactive", false),
+        new PartnerData("P00000006", "Zürich Versicherung", true)
+    );
+
+    private final PartnerSearchIndex index = PartnerSearchIndex.build(PARTNERS);
+
+    @Test
+    void testNormalize() {
+        assertEquals("backerei muller ag", PartnerSearchIndex.normalize("  Bäckerei   MÜLLER\tAG "));
+        assertEquals("zurich", PartnerSearchIndex.normalize("Zürich"));
+    }
+
+    @Test
+    void testBlankQueryReturnsActivePartnersByNumber() {
+        assertEquals(List.of("P00000001", "P00000002", "P00000003", "P00000004", "P00000006"),
+            numbers(index.search("  ", Integer.MAX_VALUE)));
+        assertEquals(List.of("P00000001", "P00000002"), numbers(index.search(null, 2)));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    void testRanksExactThenPrefixThenWordThenAnywhere() {
+        // exact name, word prefix (in number order), anywhere; never the inactive one
+        assertEquals(List.of("P00000001", "P00000004", "P00000003"), numbers(index.search("muller", 10)));
+        assertEquals(List.of("P00000001", "P00000004", "P00000003"), numbers(index.search("MÜLLER", 10)));
+    }
+
+    @Test
+    void testLimitKeepsBestMatches() {
+        assertEquals(List.of("P00000001", "P00000004"), numbers(index.search("müller", 2)));
+        assertEquals(List.of(), index.search("müller", 0));
+    }
+
+    @Test
+    void testShortQueriesMatchWordAndNumberPrefixes() {
+        assertEquals(List.of("P00000006"), numbers(index.search("zu", 10)));
+        assertEquals(List.of("P00000002"), numbers(index.search("h", 10)));
+        // "ue" only occurs inside a word
+        assertEquals(List.of(), index.search("ue", 10));
+        assertEquals(5, index.search("p0", 10).size());
+    }
+
+    @Test
+    void testMatchesNumbersAndAcrossWords() {
+        assertEquals(List.of("P00000003"), numbers(index.search("00000003", 10)));
+        assertEquals(List.of("P00000002"), numbers(index.search("p00000002", 10)));
+        assertEquals(List.of("P00000002"), numbers(index.search("hans mue", 10)));
+        assertEquals(List.of(), index.search("zzz", 10));
+    }
+
+    @Test
+    void testScalesToManyPartners() {
+        List<PartnerData> many = new ArrayList<>();
+        for (int i = 1; i <= 50_000; i++) {
+            many.add(new PartnerData(String.format("P%08d", i), "Partner " + i, true));
+        }
+        PartnerSearchIndex large = PartnerSearchIndex.build(many);
+
+        assertEquals(List.of("P00012345"), numbers(large.search("partner 12345", 1)));
+        assertEquals(List.of("P00000001", "P00000002", "P00000003"), numbers(large.search("partner", 3)));
+    }
+
+    @Test
+    void testEmpty() {
+        assertSame(PartnerSearchIndex.EMPTY, PartnerSearchIndex.build(List.of()));
+        assertEquals(List.of(), PartnerSearchIndex.EMPTY.search("x", 10));
+    }
+
+    private static List<String> numbers(List<PartnerData> partners) {
+        return partners.stream().map(PartnerData::partnerNumber).toList();
+    }
+}
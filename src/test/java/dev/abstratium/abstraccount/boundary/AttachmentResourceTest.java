@@ -19,8 +19,19 @@ import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.security.MessageDigest;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
@@ -128,6 +139,138 @@ class AttachmentResourceTest {
         org.junit.jupiter.api.Assertions.assertArrayEquals(PDF_BYTES, downloaded);
     }
 
+    @Test
+    @TestSecurity(user = "testuser", roles = {Roles.USER})
+    void testUploadAndDownloadAttachmentSpanningSeveralChunks() throws Exception {
+        // Larger than two 256KB storage chunks and not a multiple of the
+        // chunk size, so the last chunk is a partial one.
+        byte[] largePdf = Arrays.copyOf(PDF_BYTES, 600 * 1024 + 17);
+        for (int i = PDF_BYTES.length; i < largePdf.length; i++) {
+            largePdf[i] = (byte) (i % 251);
+        }
+
+        String attachmentId = given()
+            .multiPart("file", "statement.pdf", largePdf, "application/pdf")
+        .when()
+            .post("/api/attachment/transaction/{transactionId}", transactionId)
+        .then()
+            .statusCode(200)
+            .body("sizeBytes", equalTo(largePdf.length))
+            .extract().path("id");
+
+        byte[] downloaded = given()
+        .when()
+            .get("/api/attachment/{attachmentId}", attachmentId)
+        .then()
+            .statusCode(200)
+            .header("Content-Length", String.valueOf(largePdf.length))
+            .extract().asByteArray();
+        org.junit.jupiter.api.Assertions.assertArrayEquals(largePdf, downloaded);
+
+        String expectedSha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(largePdf));
+        org.junit.jupiter.api.Assertions.assertEquals(expectedSha256,
+            attachmentPersistenceService.findById(attachmentId).orElseThrow().getSha256());
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = {Roles.USER})
+    void testDownloadSupportsConditionalRequestsAndCaching() {
+        String attachmentId = uploadReceipt(transactionId, "receipt.pdf");
+        String sha256 = attachmentPersistenceService.findById(attachmentId).orElseThrow().getSha256();
+        String etag = "\"" + sha256 + "\"";
+
+        given()
+        .when()
+            .get("/api/attachment/{attachmentId}", attachmentId)
+        .then()
+            .statusCode(200)
+            .header("ETag", etag)
+            .header("Accept-Ranges", "bytes")
+            .header("Cache-Control", "private, no-cache");
+
+        given()
+            .header("If-None-Match", etag)
+        .when()
+            .get("/api/attachment/{attachmentId}", attachmentId)
+        .then()
+            .statusCode(304);
+
+        // Content-addressed URL: safe to cache forever
+        given()
+            .queryParam("v", sha256)
+        .when()
+            .get("/api/attachment/{attachmentId}", attachmentId)
+        .then()
+            .statusCode(200)
+            .header("Cache-Control", containsString("immutable"));
+
+        given()
+            .header("If-None-Match", "\"something-else\"")
+        .when()
+            .get("/api/attachment/{attachmentId}", attachmentId)
+        .then()
+            .statusCode(200);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = {Roles.USER})
+    void testDownloadRange() {
+        byte[] largePdf = new byte[600 * 1024];
+        System.arraycopy(PDF_BYTES, 0, largePdf, 0, PDF_BYTES.length);
+        for (int i = PDF_BYTES.length; i < largePdf.length; i++) {
+            largePdf[i] = (byte) (i % 251);
+        }
+        String attachmentId = given()
+            .multiPart("file", "statement.pdf", largePdf, "application/pdf")
+        .when()
+            .post("/api/attachment/transaction/{transactionId}", transactionId)
+        .then()
+            .statusCode(200)
+            .extract().path("id");
+
+        // A range spanning a chunk boundary
+        int start = 256 * 1024 - 10;
+        int end = 256 * 1024 + 9;
+        byte[] part = given()
+            .header("Range", "bytes=" + start + "-" + end)
+        .when()
+            .get("/api/attachment/{attachmentId}", attachmentId)
+        .then()
+            .statusCode(206)
+            .header("Content-Range", "bytes " + start + "-" + end + "/" + largePdf.length)
+            .header("Content-Length", "20")
+            .extract().asByteArray();
+        org.junit.jupiter.api.Assertions.assertArrayEquals(Arrays.copyOfRange(largePdf, start, end + 1), part);
+
+        byte[] suffix = given()
+            .header("Range", "bytes=-5")
+        .when()
+            .get("/api/attachment/{attachmentId}", attachmentId)
+        .then()
+            .statusCode(206)
+            .extract().asByteArray();
+        org.junit.jupiter.api.Assertions.assertArrayEquals(
+            Arrays.copyOfRange(largePdf, largePdf.length - 5, largePdf.length), suffix);
+
+        given()
+            .header("Range", "bytes=" + largePdf.length + "-")
+        .when()
+            .get("/api/attachment/{attachmentId}", attachmentId)
+        .then()
+            .statusCode(416)
+            .header("Content-Range", "bytes */" + largePdf.length);
+
+        // A stale If-Range yields the full content
+        given()
+            .header("Range", "bytes=0-9")
+            .header("If-Range", "\"stale\"")
+        .when()
+            .get("/api/attachment/{attachmentId}", attachmentId)
+        .then()
+            .statusCode(200)
+            .header("Content-Length", String.valueOf(largePdf.length));
+    }
+
     @Test
     @TestSecurity(user = "testuser", roles = {Roles.USER})
     void testReplaceAttachment() {
@@ -223,6 +366,76 @@ class AttachmentResourceTest {
             .statusCode(404);
     }
 
+    @Test
+    @TestSecurity(user = "testuser", roles = {Roles.USER})
+    void testSummaryAndAttachmentCounts() {
+        uploadReceipt(transactionId, "first.pdf");
+        uploadReceipt(transactionId, "second.pdf");
+
+        given()
+            .contentType("application/json")
+            .body(Map.of("transactionIds", List.of(transactionId, "non-existent-transaction")))
+        .when()
+            .post("/api/attachment/summary")
+        .then()
+            .statusCode(200)
+            .body("size()", equalTo(1))
+            .body("[0].transactionId", equalTo(transactionId))
+            .body("[0].attachmentCount", equalTo(2))
+            .body("[0].attachments.fileName", hasItems("first.pdf", "second.pdf"));
+
+        given()
+        .when()
+            .get("/api/attachment/journal/{journalId}/summary?from=2024-01-01&to=2024-12-31", journalId)
+        .then()
+            .statusCode(200)
+            .body("size()", equalTo(1))
+            .body("[0].attachmentCount", equalTo(2));
+
+        given()
+        .when()
+            .get("/api/attachment/journal/{journalId}/summary?from=2025-01-01", journalId)
+        .then()
+            .statusCode(200)
+            .body("size()", equalTo(0));
+
+        // The count is also embedded in transaction lists
+        given()
+        .when()
+            .get("/api/journal/{journalId}/transactions", journalId)
+        .then()
+            .statusCode(200)
+            .body("[0].attachmentCount", equalTo(2));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = {Roles.USER})
+    void testSummary_missingTransactionIds_returns400() {
+        given()
+            .contentType("application/json")
+            .body("{}")
+        .when()
+            .post("/api/attachment/summary")
+        .then()
+            .statusCode(400);
+    }
+
+    @Test
+    @TestSecurity(user = "second-org-user", roles = {Roles.USER})
+    @OidcSecurity(claims = @Claim(key = "orgId", value = "second-org"))
+    void testSummary_anotherOrganizationsTransaction_isEmpty() {
+        uploadAsDefaultOrg();
+
+        given()
+            .contentType("application/json")
+            .body(Map.of("transactionIds", List.of(transactionId)))
+        .when()
+            .post("/api/attachment/summary")
+        .then()
+            .statusCode(200)
+            .body("size()", equalTo(0));
+    }
+
     @Test
     @TestSecurity(user = "testuser", roles = {Roles.USER})
     void testListAttachments_unknownTransaction_returns404() {
@@ -284,6 +497,43 @@ class AttachmentResourceTest {
             .header("Content-Disposition", not(containsString("\n")));
     }
 
+    @Test
+    @TestSecurity(user = "testuser", roles = {Roles.USER})
+    void testDownloadJournalZip_containsEveryAttachmentStored() throws IOException {
+        uploadReceipt(transactionId, "receipt.pdf");
+        uploadReceipt(transactionId, "receipt.pdf");
+        byte[] otherPdf = "%PDF-1.4\n%another receipt".getBytes();
+        given()
+            .multiPart("file", "other.pdf", otherPdf, "application/pdf")
+        .when()
+            .post("/api/attachment/transaction/{transactionId}", transactionId)
+        .then()
+            .statusCode(200);
+
+        byte[] zipBytes = given()
+        .when()
+            .get("/api/attachment/journal/{journalId}/zip", journalId)
+        .then()
+            .statusCode(200)
+            .extract().asByteArray();
+
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                org.junit.jupiter.api.Assertions.assertEquals(ZipEntry.STORED, entry.getMethod(),
+                    "PDFs should not be deflated again");
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        org.junit.jupiter.api.Assertions.assertEquals(
+            Set.of(transactionId + "_receipt.pdf", transactionId + "_receipt_2.pdf", transactionId + "_other.pdf"),
+            entries.keySet());
+        org.junit.jupiter.api.Assertions.assertArrayEquals(PDF_BYTES, entries.get(transactionId + "_receipt.pdf"));
+        org.junit.jupiter.api.Assertions.assertArrayEquals(PDF_BYTES, entries.get(transactionId + "_receipt_2.pdf"));
+        org.junit.jupiter.api.Assertions.assertArrayEquals(otherPdf, entries.get(transactionId + "_other.pdf"));
+    }
+
     @Test
     @TestSecurity(user = "testuser", roles = {Roles.USER})
     void testDownloadJournalZip_invalidDate_returns400() {
@@ -390,7 +640,7 @@ class AttachmentResourceTest {
     @Transactional
     String uploadAsDefaultOrg() {
         return attachmentPersistenceService
-            .create(transactionId, "receipt.pdf", "application/pdf", PDF_BYTES, "default-org-user")
+            .create(transactionId, "receipt.pdf", "application/pdf", () -> new ByteArrayInputStream(PDF_BYTES), "default-org-user")
             .getId();
     }
 
@@ -0,0 +1,50 @@
+package dev.abstratium.abstraccount.boundary;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ByteRangeTest {
+
+    @Test
+    void testParse_closedRange() {
+        ByteRange range = ByteRange.parse("bytes=10-19", 100).orElseThrow();
+
+        assertEquals(10, range.start());
+        assertEquals(19, range.end());
+        assertEquals(10, range.length());
+        assertEquals("bytes 10-19/100", range.contentRange(100));
+    }
+
+    @Test
+    void testParse_openRangeAndEndBeyondSizeAreClamped() {
+        assertEquals(new ByteRange(90, 99), ByteRange.parse("bytes=90-", 100).orElseThrow());
+        assertEquals(new ByteRange(90, 99), ByteRange.parse("bytes=90-500", 100).orElseThrow());
+    }
+
+    @Test
+    void testParse_suffixRange() {
+        assertEquals(new ByteRange(95, 99), ByteRange.parse("bytes=-5", 100).orElseThrow());
+        assertEquals(new ByteRange(0, 99), ByteRange.parse("bytes=-500", 100).orElseThrow());
+    }
+
+    @Test
+    void testParse_unsatisfiable() {
+        assertFalse(ByteRange.parse("bytes=100-", 100).orElseThrow().isSatisfiable());
+        assertFalse(ByteRange.parse("bytes=-0", 100).orElseThrow().isSatisfiable());
+        assertFalse(ByteRange.parse("bytes=0-", 0).orElseThrow().isSatisfiable());
+        assertTrue(ByteRange.parse("bytes=99-", 100).orElseThrow().isSatisfiable());
+    }
+
+    @Test
+    void testParse_ignoredHeaders() {
+        assertTrue(ByteRange.parse(null, 100).isEmpty());
+        assertTrue(ByteRange.parse("bytes=0-1,5-6", 100).isEmpty());
+        assertTrue(ByteRange.parse("items=0-1", 100).isEmpty());
+        assertTrue(ByteRange.parse("bytes=20-10", 100).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-", 100).isEmpty());
+        assertTrue(ByteRange.parse("bytes=99999999999999999999-", 100).isEmpty());
+    }
+}
@@ -1,6 +1,7 @@
 package dev.abstratium.abstraccount.boundary;
 
 import dev.abstratium.abstraccount.Roles;
+import dev.abstratium.abstraccount.entity.JournalEntity;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
@@ -14,10 +15,16 @@ import org.junit.jupiter.api.Test;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.security.TestSecurity;
 import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
 
 @QuarkusTest
 class EntrySearchResourceTest {
     
+    @Inject
+    EntityManager em;
+
     private String journalId;
     
     @BeforeEach
@@ -523,4 +530,280 @@ class EntrySearchResourceTest {
         assert withoutFilter.length == withEmptyFilter.length :
             "Empty filter should return same count as no filter";
     }
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void testAggregateGroupedByTheDatabaseMatchesEntries() {
+        EntryAggregateDTO aggregate = aggregate("accounttype:EXPENSE", "month,account");
+
+        assert aggregate.pushedDown() : "Expected accounttype filter to be grouped by the database";
+        assert aggregate.columns().equals(java.util.List.of("month", "account", "sum", "count"))
+            : "Unexpected columns " + aggregate.columns();
+        assertAggregateMatchesEntries(aggregate, "accounttype:EXPENSE");
+    }
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void testAggregateGroupedInMemoryMatchesEntries() {
+        EntryAggregateDTO aggregate = aggregate("tag:category:shopping", "month,account");
+
+        assert !aggregate.pushedDown() : "Expected tag filter to be grouped in memory";
+        assertAggregateMatchesEntries(aggregate, "tag:category:shopping");
+    }
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void testAggregateUnknownGroupByReturns400() {
+        given()
+            .queryParam("journalId", journalId)
+            .queryParam("groupBy", "month,weekday")
+            .when().get("/api/entry-search/aggregate")
+            .then()
+            .statusCode(400)
+            .body("error", equalTo("invalid_parameter"))
+            .body("message", containsString("weekday"));
+    }
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void testExplainReportsPlanAndStages() {
+        EntrySearchDTO[] entries = given()
+            .queryParam("journalId", journalId)
+            .queryParam("filter", "tag:category:shopping AND description:/./")
+            .when().get("/api/entry-search/entries")
+            .then()
+            .statusCode(200)
+            .extract().as(EntrySearchDTO[].class);
+
+        given()
+            .queryParam("journalId", journalId)
+            .queryParam("filter", "tag:category:shopping AND description:/./")
+            .when().get("/api/entry-search/explain")
+            .then()
+            .statusCode(200)
+            .body("results", equalTo(entries.length))
+            .body("plan.cached", equalTo(true))
+            .body("plan.jpql", nullValue())
+            .body("fetch.jpql", containsString("t.id IN :transactionIds"))
+            .body("fetch.journalIds", empty())
+            .body("fetch.candidateTransactions", greaterThan(0))
+            .body("fetch.accountIds", nullValue())
+            .body("plan.root.operator", equalTo("AND"))
+            .body("plan.root.evaluation", equalTo("NARROWED"))
+            .body("plan.root.operands[0].predicate", equalTo("tag:category:shopping"))
+            .body("plan.root.operands[0].evaluation", equalTo("INDEX"))
+            .body("plan.root.operands[1].evaluation", equalTo("MEMORY"))
+            .body("stages.name", contains("compile", "fetch", "filter", "mapping"))
+            .body("stages[3].rows", equalTo(entries.length));
+    }
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void testExplainModeAddsServerTiming() {
+        given()
+            .queryParam("journalId", journalId)
+            .queryParam("filter", "accounttype:EXPENSE")
+            .queryParam("explain", true)
+            .when().get("/api/entry-search/entries")
+            .then()
+            .statusCode(200)
+            .header("Server-Timing", allOf(containsString("compile;dur="), containsString("mapping;dur=")))
+            .header("Link", allOf(containsString("/api/entry-search/explain?"), containsString("journalId=" + journalId),
+                not(containsString("explain=true")), containsString("rel=\"explain\"")));
+
+        given()
+            .queryParam("journalId", journalId)
+            .when().get("/api/entry-search/entries")
+            .then()
+            .statusCode(200)
+            .header("Server-Timing", nullValue())
+            .header("Link", nullValue());
+    }
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void testExplainInvalidSyntaxReturns400() {
+        given()
+            .queryParam("journalId", journalId)
+            .queryParam("filter", "tag:invoice )")
+            .when().get("/api/entry-search/explain")
+            .then()
+            .statusCode(400)
+            .body("error", equalTo("query_parse_error"));
+    }
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void testChainScopeSearchesSuccessorJournals() throws Exception {
+        String successorId = uploadSuccessorJournal();
+        EntrySearchDTO[] single = given()
+            .queryParam("journalId", journalId)
+            .queryParam("filter", "accounttype:EXPENSE")
+            .when().get("/api/entry-search/entries")
+            .then()
+            .statusCode(200)
+            .extract().as(EntrySearchDTO[].class);
+
+        EntrySearchDTO[] chain = given()
+            .queryParam("journalId", journalId)
+            .queryParam("scope", "chain")
+            .queryParam("filter", "accounttype:EXPENSE")
+            .when().get("/api/entry-search/entries")
+            .then()
+            .statusCode(200)
+            .extract().as(EntrySearchDTO[].class);
+
+        assert chain.length == 2 * single.length : "Expected the entries of both journals of the chain";
+        for (int i = 1; i < chain.length; i++) {
+            assert !chain[i].transactionDate().isAfter(chain[i - 1].transactionDate())
+                : "Expected entries ordered by date, newest first";
+        }
+
+        EntrySearchDTO[] successorOnly = given()
+            .queryParam("journalId", journalId)
+            .queryParam("scope", "chain")
+            .queryParam("filter", "accounttype:EXPENSE AND journal:\"Test Journal Successor\"")
+            .when().get("/api/entry-search/entries")
+            .then()
+            .statusCode(200)
+            .extract().as(EntrySearchDTO[].class);
+
+        assert successorOnly.length == single.length : "Expected the journal predicate to select the successor";
+        assert java.util.Arrays.stream(successorOnly).allMatch(entry -> entry.journalId().equals(successorId))
+            : "Expected only entries of the successor journal";
+    }
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void testChainScopeMatchesAccountsByPath() throws Exception {
+        uploadSuccessorJournal();
+        EntrySearchDTO[] single = given()
+            .queryParam("journalId", journalId)
+            .queryParam("filter", "accounttype:EXPENSE")
+            .when().get("/api/entry-search/entries")
+            .then()
+            .statusCode(200)
+            .extract().as(EntrySearchDTO[].class);
+        String accountId = single[0].accountId();
+        long inAccount = java.util.Arrays.stream(single).filter(entry -> entry.accountId().equals(accountId)).count();
+
+        EntrySearchDTO[] chain = given()
+            .queryParam("journalId", journalId)
+            .queryParam("scope", "chain")
+            .queryParam("accountId", accountId)
+            .when().get("/api/entry-search/entries")
+            .then()
+            .statusCode(200)
+            .extract().as(EntrySearchDTO[].class);
+
+        assert chain.length == 2 * inAccount : "Expected the entries of the account with the same path in both journals";
+        assert java.util.Arrays.stream(chain).map(EntrySearchDTO::accountName).distinct().count() == 1
+            : "Expected a single account name";
+    }
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void testChainScopeMatchesRenamedAccountsByCodePath() throws Exception {
+        uploadSuccessorJournal(content -> content.replace("5000 Expenses", "5000 Operating Expenses"));
+        EntrySearchDTO[] single = given()
+            .queryParam("journalId", journalId)
+            .queryParam("filter", "accounttype:EXPENSE")
+            .when().get("/api/entry-search/entries")
+            .then()
+            .statusCode(200)
+            .extract().as(EntrySearchDTO[].class);
+        String accountId = single[0].accountId();
+        long inAccount = java.util.Arrays.stream(single).filter(entry -> entry.accountId().equals(accountId)).count();
+
+        EntrySearchDTO[] chain = given()
+            .queryParam("journalId", journalId)
+            .queryParam("scope", "chain")
+            .queryParam("accountId", accountId)
+            .when().get("/api/entry-search/entries")
+            .then()
+            .statusCode(200)
+            .extract().as(EntrySearchDTO[].class);
+
+        assert chain.length == 2 * inAccount : "Expected the entries of the account with the same code in both journals";
+        assert java.util.Arrays.stream(chain).map(EntrySearchDTO::accountName).distinct().count() == 2
+            : "Expected the account under both of its names";
+    }
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void testUnknownScopeReturns400() {
+        given()
+            .queryParam("journalId", journalId)
+            .queryParam("scope", "world")
+            .when().get("/api/entry-search/entries")
+            .then()
+            .statusCode(400)
+            .body("error", equalTo("invalid_parameter"));
+    }
+
+    /** Uploads a copy of the test journal, which follows it in a chain. */
+    private String uploadSuccessorJournal() throws Exception {
+        return uploadSuccessorJournal(content -> content);
+    }
+
+    /** Uploads an edited copy of the test journal, which follows it in a chain. */
+    private String uploadSuccessorJournal(java.util.function.UnaryOperator<String> edit) throws Exception {
+        String journalContent = edit.apply(Files.readString(Paths.get("src/test/resources/test-journal.txt"))
+            .replace("; title: Test Journal", "; title: Test Journal Successor"));
+        String successorId = given()
+            .contentType(ContentType.TEXT)
+            .body(journalContent)
+            .when().post("/api/journal/upload?replaceExisting=true")
+            .then()
+            .statusCode(200)
+            .extract().jsonPath().getString("journalId");
+        linkToPrevious(successorId, journalId);
+        return successorId;
+    }
+
+    @Transactional
+    void linkToPrevious(String successorId, String previousId) {
+        em.find(JournalEntity.class, successorId).setPreviousJournalId(previousId);
+    }
+
+    private EntryAggregateDTO aggregate(String filter, String groupBy) {
+        return given()
+            .queryParam("journalId", journalId)
+            .queryParam("filter", filter)
+            .queryParam("groupBy", groupBy)
+            .queryParam("measure", "sum,count")
+            .when().get("/api/entry-search/aggregate")
+            .then()
+            .statusCode(200)
+            .extract().as(EntryAggregateDTO.class);
+    }
+
+    private void assertAggregateMatchesEntries(EntryAggregateDTO aggregate, String filter) {
+        EntrySearchDTO[] entries = given()
+            .queryParam("journalId", journalId)
+            .queryParam("filter", filter)
+            .when().get("/api/entry-search/entries")
+            .then()
+            .statusCode(200)
+            .extract().as(EntrySearchDTO[].class);
+
+        java.util.Map<String, java.math.BigDecimal> sums = new java.util.HashMap<>();
+        java.util.Map<String, Integer> counts = new java.util.HashMap<>();
+        for (EntrySearchDTO entry : entries) {
+            String group = java.time.YearMonth.from(entry.transactionDate()) + "/" + entry.accountId();
+            sums.merge(group, entry.entryAmount(), java.math.BigDecimal::add);
+            counts.merge(group, 1, Integer::sum);
+        }
+
+        assert aggregate.rows().size() == sums.size()
+            : "Expected " + sums.size() + " groups but got " + aggregate.rows().size();
+        for (java.util.List<Object> row : aggregate.rows()) {
+            String group = row.get(0) + "/" + row.get(1);
+            assert sums.containsKey(group) : "Unexpected group " + group;
+            assert new java.math.BigDecimal(row.get(2).toString()).compareTo(sums.get(group)) == 0
+                : "Sum of " + group + " is " + row.get(2) + " but entries sum to " + sums.get(group);
+            assert ((Number) row.get(3)).intValue() == counts.get(group)
+                : "Count of " + group + " is " + row.get(3) + " but there are " + counts.get(group) + " entries";
+        }
+    }
 }
@@ -0,0 +1,135 @@
+package dev.abstratium.abstraccount.boundary;
+
+import dev.abstratium.abstraccount.Roles;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+
+/**
+ * Asserts the number of SQL statements of the endpoints reading transactions,
+ * so that lazily loaded entries and tags are fetched per use case and in
+ * batches, rather than with a select per transaction.
+ */
+@QuarkusTest
+class FetchStatementCountTest {
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void listingTransactionsDoesNotSelectPerTransaction() {
+        String small = uploadJournal("Fetch Small", 10);
+        String large = uploadJournal("Fetch Large", 80);
+
+        assertNotMore("transactions", () -> getOk("/api/journal/" + large + "/transactions"),
+            () -> getOk("/api/journal/" + small + "/transactions"));
+    }
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void searchingEntriesDoesNotSelectPerTransaction() {
+        String small = uploadJournal("Fetch Search Small", 10);
+        String large = uploadJournal("Fetch Search Large", 80);
+
+        assertNotMore("entry search", () -> getOk("/api/entry-search/entries?journalId=" + large),
+            () -> getOk("/api/entry-search/entries?journalId=" + small));
+    }
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void exportingDoesNotSelectPerTransaction() {
+        String small = uploadJournal("Fetch Export Small", 10);
+        String large = uploadJournal("Fetch Export Large", 80);
+
+        assertNotMore("export", () -> getOk("/api/journal/" + large + "/export"),
+            () -> getOk("/api/journal/" + small + "/export"));
+    }
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void readingATransactionSelectsItWithItsEntriesAndTags() {
+        String journalId = uploadJournal("Fetch Edit", 3);
+        String transactionId = given()
+            .when().get("/api/journal/" + journalId + "/transactions")
+            .then()
+            .statusCode(200)
+            .extract().jsonPath().getString("[0].id");
+
+        long statements = statements(() -> getOk("/api/transaction/" + transactionId));
+
+        // The transaction with its entries and tags, the journal's accounts, and its attachment count
+        assertTrue(statements <= 3, "Expected at most 3 statements to read a transaction, but got " + statements);
+    }
+
+    @Test
+    @TestSecurity(user = "testUser", roles = {Roles.USER})
+    void readingJournalMetadataSelectsTheJournalWithItsCommodities() {
+        String journalId = uploadJournal("Fetch Metadata", 3);
+
+        long statements = statements(() -> getOk("/api/journal/" + journalId + "/metadata"));
+
+        assertTrue(statements <= 1, "Expected 1 statement to read a journal, but got " + statements);
+    }
+
+    private void assertNotMore(String endpoint, Runnable large, Runnable small) {
+        // Warm up, e.g. the journals' indexes
+        large.run();
+        small.run();
+        long smallStatements = statements(small);
+        long largeStatements = statements(large);
+        assertTrue(largeStatements <= smallStatements,
+            "Expected " + endpoint + " to run as many statements for 80 transactions as for 10, but got "
+                + largeStatements + " instead of " + smallStatements);
+    }
+
+    private long statements(Runnable request) {
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        request.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private static void getOk(String path) {
+        given()
+            .when().get(path)
+            .then()
+            .statusCode(200);
+    }
+
+    /** Uploads a journal whose transactions each have two entries and two tags. */
+    private static String uploadJournal(String title, int transactions) {
+        StringBuilder journal = new StringBuilder()
+            .append("; title: ").append(title).append('\n')
+            .append("; currency: USD\n\n")
+            .append("commodity USD 1000.00\n\n")
+            .append("account 1000 Assets\n  ; type:Asset\n\n")
+            .append("account 1100 Assets:Cash\n  ; type:Cash\n\n")
+            .append("account 5000 Expenses\n  ; type:Expense\n\n");
+        for (int i = 0; i < transactions; i++) {
+            journal.append(LocalDate.of(2025, 1, 1).plusDays(i)).append(" * Purchase ").append(i).append('\n')
+                .append("    ; invoice:PI").append(String.format("%05d", i)).append('\n')
+                .append("    ; category:shopping\n")
+                .append("    5000 Expenses  USD  10.00\n")
+                .append("    Assets:Cash  USD  -10.00\n\n");
+        }
+        return given()
+            .contentType(ContentType.TEXT)
+            .body(journal.toString())
+            .when().post("/api/journal/upload?replaceExisting=true")
+            .then()
+            .statusCode(200)
+            .extract().jsonPath().getString("journalId");
+    }
+}
@@ -0,0 +1,73 @@
+package dev.abstratium.abstraccount.boundary;
+
+import dev.abstratium.abstraccount.Roles;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.quarkus.test.security.oidc.Claim;
+import io.quarkus.test.security.oidc.OidcSecurity;
+import org.junit.jupiter.api.Test;
+
+import static io.restassured.RestAssured.given;
+
+@QuarkusTest
+class OpenItemResourceTest {
+
+    private static final String TEST_ORG_ID = "open-item-test-org";
+
+    @Test
+    @TestSecurity(user = "testuser", roles = {Roles.USER})
+    @OidcSecurity(claims = @Claim(key = "orgId", value = TEST_ORG_ID))
+    void testOpenItems_missingJournalId_returns400() {
+        given()
+        .when()
+            .get("/api/open-items")
+        .then()
+            .statusCode(400);
+        given()
+        .when()
+            .get("/api/open-items/aging")
+        .then()
+            .statusCode(400);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = {Roles.USER})
+    @OidcSecurity(claims = @Claim(key = "orgId", value = TEST_ORG_ID))
+    void testOpenItems_invalidParameters_return400() {
+        given().queryParam("journalId", "j").queryParam("kind", "both")
+            .when().get("/api/open-items").then().statusCode(400);
+        given().queryParam("journalId", "j").queryParam("asOf", "31.12.2025")
+            .when().get("/api/open-items/aging").then().statusCode(400);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = {Roles.USER})
+    @OidcSecurity(claims = @Claim(key = "orgId", value = TEST_ORG_ID))
+    void testOpenItems_unknownJournal_returns404() {
+        given()
+            .queryParam("journalId", "nonexistent-journal")
+            .queryParam("chain", false)
+            .queryParam("kind", "payable")
+        .when()
+            .get("/api/open-items")
+        .then()
+            .statusCode(404);
+        given()
+            .queryParam("journalId", "nonexistent-journal")
+            .queryParam("asOf", "2025-12-31")
+        .when()
+            .get("/api/open-items/aging")
+        .then()
+            .statusCode(404);
+    }
+
+    @Test
+    void testOpenItems_unauthenticated_returns401() {
+        given()
+            .queryParam("journalId", "j")
+        .when()
+            .get("/api/open-items")
+        .then()
+            .statusCode(401);
+    }
+}
@@ -10,6 +10,8 @@ import io.quarkus.test.security.oidc.Claim;
 import io.quarkus.test.security.oidc.OidcSecurity;
 import io.restassured.http.ContentType;
 import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -38,11 +40,15 @@ class PartnerResourceTest {
     @Inject
     PartnerDataAdapter partnerDataAdapter;
 
+    @Inject
+    EntityManager em;
+
     private Path testDir;
 
     @BeforeEach
     void setUp() throws IOException {
         testDir = Path.of("target/partner-resource-test-partners");
+        deletePartners();
         partnerDataAdapter.clearCache();
         cleanTestDir();
         Files.createDirectories(testDir);
@@ -54,9 +60,16 @@ class PartnerResourceTest {
             "P00000003","John Smith","true"
             "P00000099","Inactive Partner","false"
             """;
+        // Imported into the database on first access
         Files.writeString(testDir.resolve(TEST_ORG_ID + ".csv"), csvContent);
     }
 
+    @Transactional
+    void deletePartners() {
+        em.createNativeQuery("DELETE FROM T_partner").executeUpdate();
+        em.createNativeQuery("DELETE FROM T_partner_version").executeUpdate();
+    }
+
     @AfterEach
     void tearDown() throws IOException {
         partnerDataAdapter.clearCache();
@@ -136,6 +149,45 @@ class PartnerResourceTest {
             .body("[0].name", equalToIgnoringCase("John Smith"));
     }
 
+    @Test
+    @TestSecurity(user = "testuser", roles = {Roles.USER})
+    @OidcSecurity(claims = @Claim(key = "orgId", value = TEST_ORG_ID))
+    void testSearchPartners_ignoresDiacritics() {
+        given()
+            .contentType(ContentType.JSON)
+            .queryParam("q", "SARL")
+        .when()
+            .get("/api/partners/search")
+        .then()
+            .statusCode(200)
+            .body("$", hasSize(1))
+            .body("[0].partnerNumber", equalTo("P00000002"));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = {Roles.USER})
+    @OidcSecurity(claims = @Claim(key = "orgId", value = TEST_ORG_ID))
+    void testSearchPartners_withLimit_returnsBestMatchesOnly() {
+        given()
+            .contentType(ContentType.JSON)
+            .queryParam("q", "P0000000")
+            .queryParam("limit", 1)
+        .when()
+            .get("/api/partners/search")
+        .then()
+            .statusCode(200)
+            .body("$", hasSize(1))
+            .body("[0].partnerNumber", equalTo("P00000001"));
+
+        given()
+            .contentType(ContentType.JSON)
+            .queryParam("limit", 0)
+        .when()
+            .get("/api/partners/search")
+        .then()
+            .statusCode(400);
+    }
+
     @Test
     @TestSecurity(user = "testuser", roles = {Roles.USER})
     @OidcSecurity(claims = @Claim(key = "orgId", value = TEST_ORG_ID))
@@ -175,6 +227,46 @@ class PartnerResourceTest {
             .statusCode(404);
     }
 
+    @Test
+    @TestSecurity(user = "testuser", roles = {Roles.USER})
+    @OidcSecurity(claims = @Claim(key = "orgId", value = TEST_ORG_ID))
+    void testPartnerStatistics_missingJournalId_returns400() {
+        given()
+        .when()
+            .get("/api/partners/statistics")
+        .then()
+            .statusCode(400);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = {Roles.USER})
+    @OidcSecurity(claims = @Claim(key = "orgId", value = TEST_ORG_ID))
+    void testPartnerStatistics_invalidParameters_return400() {
+        given().queryParam("journalId", "j").queryParam("sort", "name")
+            .when().get("/api/partners/statistics").then().statusCode(400);
+        given().queryParam("journalId", "j").queryParam("order", "up")
+            .when().get("/api/partners/statistics").then().statusCode(400);
+        given().queryParam("journalId", "j").queryParam("limit", 0)
+            .when().get("/api/partners/statistics").then().statusCode(400);
+        given().queryParam("journalId", "j").queryParam("offset", -1)
+            .when().get("/api/partners/statistics").then().statusCode(400);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = {Roles.USER})
+    @OidcSecurity(claims = @Claim(key = "orgId", value = TEST_ORG_ID))
+    void testPartnerStatistics_unknownJournal_returnsEmpty() {
+        given()
+            .queryParam("journalId", "nonexistent-journal")
+            .queryParam("chain", true)
+            .queryParam("sort", "lastActivity")
+        .when()
+            .get("/api/partners/statistics")
+        .then()
+            .statusCode(200)
+            .body("size()", is(0));
+    }
+
     @Test
     @TestSecurity(user = "testuser", roles = {Roles.USER})
     @OidcSecurity(claims = @Claim(key = "orgId", value = TEST_ORG_ID))
@@ -0,0 +1,222 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.AccountEntity;
+import dev.abstratium.abstraccount.entity.AttachmentEntity;
+import dev.abstratium.abstraccount.entity.EntryEntity;
+import dev.abstratium.abstraccount.entity.JournalEntity;
+import dev.abstratium.abstraccount.entity.TransactionEntity;
+import dev.abstratium.abstraccount.model.AccountType;
+import dev.abstratium.abstraccount.model.TransactionStatus;
+import dev.abstratium.core.util.TestTransactionHelper;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests content deduplication with reference counting in
+ * {@link AttachmentPersistenceService} and the removal of unreferenced
+ * content by {@link AttachmentBlobGarbageCollector}.
+ */
+@QuarkusTest
+class AttachmentBlobGarbageCollectorTest {
+
+    private static final byte[] STATEMENT = "%PDF-1.4\n%monthly statement".getBytes();
+    private static final byte[] RECEIPT = "%PDF-1.4\n%single receipt".getBytes();
+
+    @Inject
+    JournalPersistenceService persistenceService;
+
+    @Inject
+    AttachmentPersistenceService attachmentPersistenceService;
+
+    @Inject
+    AttachmentBlobGarbageCollector garbageCollector;
+
+    @Inject
+    TestTransactionHelper testTransactionHelper;
+
+    @Inject
+    EntityManager entityManager;
+
+    private String transactionId;
+
+    @BeforeEach
+    @Transactional
+    void setUp() {
+        testTransactionHelper.deleteAllData();
+
+        JournalEntity journal = new JournalEntity();
+        journal.setTitle("Deduplication Journal");
+        journal.setCurrency("CHF");
+        journal = persistenceService.saveJournal(journal);
+
+        AccountEntity cash = new AccountEntity();
+        cash.setJournalId(journal.getId());
+        cash.setName("1000 Cash");
+        cash.setType(AccountType.ASSET);
+        cash = persistenceService.saveAccount(cash);
+
+        AccountEntity expense = new AccountEntity();
+        expense.setJournalId(journal.getId());
+        expense.setName("6000 Expenses");
+        expense.setType(AccountType.EXPENSE);
+        expense = persistenceService.saveAccount(expense);
+
+        TransactionEntity transaction = new TransactionEntity();
+        transaction.setJournalId(journal.getId());
+        transaction.setTransactionDate(LocalDate.of(2024, 3, 1));
+        transaction.setStatus(TransactionStatus.CLEARED);
+        transaction.setDescription("Office supplies");
+
+        EntryEntity entry1 = new EntryEntity();
+        entry1.setAccountId(expense.getId());
+        entry1.setCommodity("CHF");
+        entry1.setAmount(new BigDecimal("25.00"));
+        entry1.setEntryOrder(0);
+        transaction.addEntry(entry1);
+
+        EntryEntity entry2 = new EntryEntity();
+        entry2.setAccountId(cash.getId());
+        entry2.setCommodity("CHF");
+        entry2.setAmount(new BigDecimal("-25.00"));
+        entry2.setEntryOrder(1);
+        transaction.addEntry(entry2);
+
+        transactionId = persistenceService.saveTransaction(transaction).getId();
+    }
+
+    @Test
+    void testIdenticalContentIsStoredOnceAndCollectedWhenUnreferenced() throws IOException {
+        AttachmentEntity first = upload(STATEMENT);
+        AttachmentEntity second = upload(STATEMENT);
+        AttachmentEntity other = upload(RECEIPT);
+
+        assertEquals(first.getBlobId(), second.getBlobId());
+        assertNotEquals(first.getBlobId(), other.getBlobId());
+        assertEquals(2, refCount(first.getBlobId()));
+        assertEquals(1, chunkCount(first.getBlobId()));
+
+        // Deleting one reference keeps the shared content
+        assertTrue(attachmentPersistenceService.delete(first.getId()));
+        assertEquals(1, refCount(second.getBlobId()));
+        assertEquals(0, garbageCollector.collectAll(Instant.now().plusSeconds(60)));
+        try (InputStream in = attachmentPersistenceService.openContent(second).orElseThrow()) {
+            assertArrayEquals(STATEMENT, in.readAllBytes());
+        }
+
+        // Replacing the last reference releases the content, but only the
+        // garbage collector deletes it, and only after the grace period
+        attachmentPersistenceService.replace(second.getId(), "receipt.pdf", "application/pdf",
+            () -> new ByteArrayInputStream(RECEIPT), "tester");
+        assertEquals(0, refCount(first.getBlobId()));
+        assertEquals(2, refCount(other.getBlobId()));
+        assertEquals(0, garbageCollector.collectAll(Instant.now().minusSeconds(60)));
+        assertEquals(1, chunkCount(first.getBlobId()));
+
+        assertEquals(1, garbageCollector.collectAll(Instant.now().plusSeconds(60)));
+        assertEquals(0, chunkCount(first.getBlobId()));
+        assertEquals(-1, refCount(first.getBlobId()));
+        assertEquals(2, refCount(other.getBlobId()));
+    }
+
+    @Test
+    void testReleasedContentIsReusedBeforeItIsCollected() {
+        AttachmentEntity first = upload(STATEMENT);
+        assertTrue(attachmentPersistenceService.delete(first.getId()));
+        assertEquals(0, refCount(first.getBlobId()));
+
+        AttachmentEntity again = upload(STATEMENT);
+
+        assertEquals(first.getBlobId(), again.getBlobId());
+        assertEquals(1, refCount(again.getBlobId()));
+        assertEquals(0, garbageCollector.collectAll(Instant.now().plusSeconds(60)));
+    }
+
+    @Test
+    void testConcurrentFirstUploadsOfTheSameContentShareOneBlob() throws InterruptedException {
+        CyclicBarrier hashed = new CyclicBarrier(2);
+        AttachmentEntity[] uploaded = new AttachmentEntity[2];
+        Throwable[] failures = new Throwable[2];
+
+        Thread[] uploaders = new Thread[2];
+        for (int i = 0; i < uploaders.length; i++) {
+            final int index = i;
+            AtomicBoolean opened = new AtomicBoolean();
+            uploaders[i] = new Thread(() -> {
+                try {
+                    // Both uploads hash the content, then find no blob for it
+                    // and store it at the same time.
+                    uploaded[index] = attachmentPersistenceService.create(transactionId, "statement.pdf", "application/pdf",
+                        () -> {
+                            if (!opened.getAndSet(true)) {
+                                awaitQuietly(hashed);
+                            }
+                            return new ByteArrayInputStream(STATEMENT);
+                        }, "tester");
+                } catch (Throwable e) {
+                    failures[index] = e;
+                }
+            });
+            uploaders[i].start();
+        }
+        for (Thread uploader : uploaders) {
+            uploader.join();
+        }
+
+        assertNull(failures[0]);
+        assertNull(failures[1]);
+        assertEquals(uploaded[0].getBlobId(), uploaded[1].getBlobId());
+        assertEquals(2, refCount(uploaded[0].getBlobId()));
+        assertEquals(1, chunkCount(uploaded[0].getBlobId()));
+        assertEquals(0, garbageCollector.collectAll(Instant.now().plusSeconds(60)));
+    }
+
+    private static void awaitQuietly(CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private AttachmentEntity upload(byte[] content) {
+        return attachmentPersistenceService.create(transactionId, "statement.pdf", "application/pdf",
+            () -> new ByteArrayInputStream(content), "tester");
+    }
+
+    /**
+     * @return the blob's reference count, or -1 if the blob does not exist
+     */
+    @Transactional
+    int refCount(String blobId) {
+        List<?> refCounts = entityManager.createNativeQuery("SELECT ref_count FROM T_attachment_blob WHERE id = ?1")
+            .setParameter(1, blobId)
+            .getResultList();
+        return refCounts.isEmpty() ? -1 : ((Number) refCounts.get(0)).intValue();
+    }
+
+    @Transactional
+    long chunkCount(String blobId) {
+        return ((Number) entityManager.createNativeQuery("SELECT COUNT(*) FROM T_attachment_blob_chunk WHERE blob_id = ?1")
+            .setParameter(1, blobId)
+            .getSingleResult()).longValue();
+    }
+}
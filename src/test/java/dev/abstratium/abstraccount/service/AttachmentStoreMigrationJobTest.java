@@ -0,0 +1,120 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.AccountEntity;
+import dev.abstratium.abstraccount.entity.AttachmentEntity;
+import dev.abstratium.abstraccount.entity.EntryEntity;
+import dev.abstratium.abstraccount.entity.JournalEntity;
+import dev.abstratium.abstraccount.entity.TransactionEntity;
+import dev.abstratium.abstraccount.model.AccountType;
+import dev.abstratium.abstraccount.model.TransactionStatus;
+import dev.abstratium.core.util.TestTransactionHelper;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests moving attachment content between the database and filesystem
+ * stores with {@link AttachmentStoreMigrationJob}.
+ */
+@QuarkusTest
+class AttachmentStoreMigrationJobTest {
+
+    private static final byte[] PDF_BYTES = "%PDF-1.4\n%migrated receipt content".getBytes();
+
+    @Inject
+    JournalPersistenceService persistenceService;
+
+    @Inject
+    AttachmentPersistenceService attachmentPersistenceService;
+
+    @Inject
+    AttachmentStoreMigrationJob migrationJob;
+
+    @Inject
+    TestTransactionHelper testTransactionHelper;
+
+    private String transactionId;
+
+    @BeforeEach
+    @Transactional
+    void setUp() {
+        testTransactionHelper.deleteAllData();
+
+        JournalEntity journal = new JournalEntity();
+        journal.setTitle("Migration Journal");
+        journal.setCurrency("CHF");
+        journal = persistenceService.saveJournal(journal);
+
+        AccountEntity cash = new AccountEntity();
+        cash.setJournalId(journal.getId());
+        cash.setName("1000 Cash");
+        cash.setType(AccountType.ASSET);
+        cash = persistenceService.saveAccount(cash);
+
+        AccountEntity expense = new AccountEntity();
+        expense.setJournalId(journal.getId());
+        expense.setName("6000 Expenses");
+        expense.setType(AccountType.EXPENSE);
+        expense = persistenceService.saveAccount(expense);
+
+        TransactionEntity transaction = new TransactionEntity();
+        transaction.setJournalId(journal.getId());
+        transaction.setTransactionDate(LocalDate.of(2024, 3, 1));
+        transaction.setStatus(TransactionStatus.CLEARED);
+        transaction.setDescription("Office supplies");
+
+        EntryEntity entry1 = new EntryEntity();
+        entry1.setAccountId(expense.getId());
+        entry1.setCommodity("CHF");
+        entry1.setAmount(new BigDecimal("25.00"));
+        entry1.setEntryOrder(0);
+        transaction.addEntry(entry1);
+
+        EntryEntity entry2 = new EntryEntity();
+        entry2.setAccountId(cash.getId());
+        entry2.setCommodity("CHF");
+        entry2.setAmount(new BigDecimal("-25.00"));
+        entry2.setEntryOrder(1);
+        transaction.addEntry(entry2);
+
+        transactionId = persistenceService.saveTransaction(transaction).getId();
+    }
+
+    @Test
+    void testMigrateToFilesystemAndBack() throws IOException {
+        String attachmentId = attachmentPersistenceService
+            .create(transactionId, "receipt.pdf", "application/pdf", () -> new ByteArrayInputStream(PDF_BYTES), "tester")
+            .getId();
+        AttachmentEntity attachment = attachmentPersistenceService.findById(attachmentId).orElseThrow();
+        assertTrue(attachmentPersistenceService.localContentPath(attachment).isEmpty(), "Content should start out in the database");
+
+        assertEquals(1, migrationJob.migrateAll(AttachmentStore.FILESYSTEM));
+
+        Path file = attachmentPersistenceService.localContentPath(attachment).orElseThrow();
+        assertTrue(file.getFileName().toString().startsWith(attachment.getSha256() + "."));
+        assertArrayEquals(PDF_BYTES, Files.readAllBytes(file));
+
+        // Nothing left to move
+        assertEquals(0, migrationJob.migrateAll(AttachmentStore.FILESYSTEM));
+
+        assertEquals(1, migrationJob.migrateAll(AttachmentStore.DATABASE));
+
+        assertTrue(attachmentPersistenceService.localContentPath(attachment).isEmpty());
+        assertFalse(Files.exists(file), "File should be deleted once the content has moved");
+        try (InputStream in = attachmentPersistenceService.openContent(attachment).orElseThrow()) {
+            assertArrayEquals(PDF_BYTES, in.readAllBytes());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.AccountEntity;
+import dev.abstratium.abstraccount.entity.AttachmentEntity;
+import dev.abstratium.abstraccount.entity.EntryEntity;
+import dev.abstratium.abstraccount.entity.JournalEntity;
+import dev.abstratium.abstraccount.entity.TransactionEntity;
+import dev.abstratium.abstraccount.model.AccountType;
+import dev.abstratium.abstraccount.model.TransactionStatus;
+import dev.abstratium.core.util.TestTransactionHelper;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that {@link AttachmentZipExporter} only reads attachments ahead that
+ * fit its shared byte budget, and streams the others into the ZIP.
+ */
+@QuarkusTest
+@TestProfile(AttachmentZipExporterTest.TestProfile.class)
+class AttachmentZipExporterTest {
+
+    private static final int BUDGET_BYTES = 64;
+    private static final byte[] SMALL = "%PDF-1.4\n%small receipt".getBytes();
+    private static final byte[] LARGE = ("%PDF-1.4\n%" + "large statement ".repeat(20)).getBytes();
+
+    public static class TestProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                "attachment.zip.prefetch.threads", "2",
+                "attachment.zip.prefetch.max-bytes", String.valueOf(BUDGET_BYTES));
+        }
+    }
+
+    @Inject
+    JournalPersistenceService persistenceService;
+
+    @Inject
+    AttachmentPersistenceService attachmentPersistenceService;
+
+    @Inject
+    AttachmentZipExporter exporter;
+
+    @Inject
+    TestTransactionHelper testTransactionHelper;
+
+    private String transactionId;
+
+    @BeforeEach
+    @Transactional
+    void setUp() {
+        testTransactionHelper.deleteAllData();
+
+        JournalEntity journal = new JournalEntity();
+        journal.setTitle("Export Journal");
+        journal.setCurrency("CHF");
+        journal = persistenceService.saveJournal(journal);
+
+        AccountEntity cash = new AccountEntity();
+        cash.setJournalId(journal.getId());
+        cash.setName("1000 Cash");
+        cash.setType(AccountType.ASSET);
+        cash = persistenceService.saveAccount(cash);
+
+        AccountEntity expense = new AccountEntity();
+        expense.setJournalId(journal.getId());
+        expense.setName("6000 Expenses");
+        expense.setType(AccountType.EXPENSE);
+        expense = persistenceService.saveAccount(expense);
+
+        TransactionEntity transaction = new TransactionEntity();
+        transaction.setJournalId(journal.getId());
+        transaction.setTransactionDate(LocalDate.of(2024, 3, 1));
+        transaction.setStatus(TransactionStatus.CLEARED);
+        transaction.setDescription("Office supplies");
+
+        EntryEntity entry1 = new EntryEntity();
+        entry1.setAccountId(expense.getId());
+        entry1.setCommodity("CHF");
+        entry1.setAmount(new BigDecimal("25.00"));
+        entry1.setEntryOrder(0);
+        transaction.addEntry(entry1);
+
+        EntryEntity entry2 = new EntryEntity();
+        entry2.setAccountId(cash.getId());
+        entry2.setCommodity("CHF");
+        entry2.setAmount(new BigDecimal("-25.00"));
+        entry2.setEntryOrder(1);
+        transaction.addEntry(entry2);
+
+        transactionId = persistenceService.saveTransaction(transaction).getId();
+    }
+
+    @Test
+    void testAttachmentsLargerThanTheBudgetAreStreamed() throws IOException {
+        assertTrue(LARGE.length > BUDGET_BYTES);
+        List<AttachmentEntity> attachments = List.of(
+            upload("small.pdf", SMALL),
+            upload("large.pdf", LARGE),
+            upload("again.pdf", SMALL));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        exporter.writeZip(attachments, AttachmentEntity::getFileName, output);
+
+        Map<String, byte[]> contents = new HashMap<>();
+        Map<String, Integer> methods = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                contents.put(entry.getName(), zip.readAllBytes());
+                methods.put(entry.getName(), entry.getMethod());
+            }
+        }
+        assertArrayEquals(SMALL, contents.get("small.pdf"));
+        assertArrayEquals(LARGE, contents.get("large.pdf"));
+        assertArrayEquals(SMALL, contents.get("again.pdf"));
+        // Read ahead into memory, so written with their CRC up front
+        assertEquals(ZipEntry.STORED, methods.get("small.pdf"));
+        assertEquals(ZipEntry.STORED, methods.get("again.pdf"));
+        // Streamed, so its CRC is only known once it has been written
+        assertEquals(ZipEntry.DEFLATED, methods.get("large.pdf"));
+
+        assertEquals(BUDGET_BYTES, exporter.budget.availablePermits(), "the whole budget is returned");
+    }
+
+    @Test
+    void testAttachmentsAreStreamedWhileOtherExportsHoldTheBudget() throws IOException {
+        List<AttachmentEntity> attachments = List.of(upload("small.pdf", SMALL));
+
+        exporter.budget.acquireUninterruptibly(BUDGET_BYTES);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            exporter.writeZip(attachments, AttachmentEntity::getFileName, output);
+        } finally {
+            exporter.budget.release(BUDGET_BYTES);
+        }
+
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            ZipEntry entry = zip.getNextEntry();
+            assertEquals("small.pdf", entry.getName());
+            assertArrayEquals(SMALL, zip.readAllBytes());
+            assertNull(zip.getNextEntry());
+        }
+    }
+
+    private AttachmentEntity upload(String fileName, byte[] content) {
+        return attachmentPersistenceService.create(transactionId, fileName, "application/pdf",
+            () -> new ByteArrayInputStream(content), "tester");
+    }
+}
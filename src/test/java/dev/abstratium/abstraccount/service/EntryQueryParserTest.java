@@ -12,6 +12,7 @@ import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -88,7 +89,7 @@ class EntryQueryParserTest {
     private Predicate<TransactionEntity> parseWithPartnerNames(String query, java.util.function.Function<String, java.util.Optional<String>> nameLookup) {
         EntryQueryParser.Lexer lexer = new EntryQueryParser.Lexer(query);
         java.util.List<EntryQueryParser.Token> tokens = lexer.tokenize();
-        return new EntryQueryParser.Parser(tokens, accounts, nameLookup).parse();
+        return new EntryQueryParser.Parser(tokens, accounts, nameLookup).parse().bind(null).predicate();
     }
 
     // -------------------------------------------------------------------------
@@ -461,6 +462,345 @@ class EntryQueryParserTest {
         }
     }
 
+    // -------------------------------------------------------------------------
+    // text predicate
+    // -------------------------------------------------------------------------
+
+    @Nested
+    class TextPredicateTests {
+
+        @Test
+        void text_matches_words_in_description_notes_and_tags() {
+            TransactionEntity t = tx(LocalDate.now(), "Office supplies, March", null);
+            entryWithNote(t, "a1", "CHF", BigDecimal.ONE, "Receipt no. 12345");
+            tag(t, "invoice", "PI00001");
+
+            assertTrue(parse("text:office").test(t));
+            assertTrue(parse("text:MARCH").test(t));
+            assertTrue(parse("text:12345").test(t));
+            assertTrue(parse("text:pi00001").test(t));
+            assertTrue(parse("text:invoice").test(t));
+            assertFalse(parse("text:offices").test(t));
+            assertFalse(parse("text:1234").test(t));
+        }
+
+        @Test
+        void text_trailing_star_matches_word_prefix() {
+            TransactionEntity t = tx(LocalDate.now(), "Office supplies", null);
+
+            assertTrue(parse("text:supp*").test(t));
+            assertTrue(parse("text:\"office supp*\"").test(t));
+            assertFalse(parse("text:upp*").test(t));
+        }
+
+        @Test
+        void text_quoted_phrase_requires_words_in_order() {
+            TransactionEntity t = tx(LocalDate.now(), "Office supplies - March", null);
+
+            assertTrue(parse("text:\"office supplies\"").test(t));
+            assertTrue(parse("text:\"supplies march\"").test(t));
+            assertFalse(parse("text:\"supplies office\"").test(t));
+            assertFalse(parse("text:\"office march\"").test(t));
+        }
+
+        @Test
+        void text_without_words_throws() {
+            assertThrows(EntryQueryParser.QueryParseException.class, () -> parse("text:*"));
+            assertThrows(EntryQueryParser.QueryParseException.class, () -> parse("text:"));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // predicates answered from the journal index and its columns
+    // -------------------------------------------------------------------------
+
+    @Nested
+    class IndexedPredicateTests {
+
+        private final List<TransactionEntity> txs = new ArrayList<>();
+
+        private TransactionEntity indexedTx(String id, String description) {
+            TransactionEntity t = tx(LocalDate.of(2025, 1, 1), description, null);
+            t.setId(id);
+            txs.add(t);
+            return t;
+        }
+
+        private JournalIndex index() {
+            return index(true);
+        }
+
+        private JournalIndex index(boolean withColumns) {
+            List<Object[]> rows = new ArrayList<>();
+            List<Object[]> entries = new ArrayList<>();
+            List<Object[]> tags = new ArrayList<>();
+            for (TransactionEntity t : txs) {
+                rows.add(new Object[] {t.getId(), t.getDescription(), t.getTransactionDate(), t.getStatus(), t.getPartnerId()});
+                for (EntryEntity e : t.getEntries()) {
+                    entries.add(new Object[] {t.getId(), e.getAccountId(), e.getCommodity(), e.getAmount(), e.getNote()});
+                }
+                for (TagEntity tag : t.getTags()) {
+                    tags.add(new Object[] {t.getId(), tag.getTagKey(), tag.getTagValue()});
+                }
+            }
+            return JournalIndex.build("j1", 0, rows, entries, tags, withColumns);
+        }
+
+        private List<String> matching(Predicate<TransactionEntity> predicate) {
+            return txs.stream().filter(predicate).map(TransactionEntity::getId).toList();
+        }
+
+        @BeforeEach
+        void setUpTransactions() {
+            account("a1", "Cash", AccountType.CASH, null);
+            account("a2", "Rent", AccountType.EXPENSE, null);
+            TransactionEntity t1 = indexedTx("t1", "Office supplies");
+            tag(t1, "invoice", "PI00001");
+            entry(t1, "a1", "USD", new BigDecimal("-12.50"));
+            TransactionEntity t2 = indexedTx("t2", "Consulting");
+            tag(t2, "invoice", "SI00001");
+            t2.setPartnerId("P00002");
+            TransactionEntity t3 = indexedTx("t3", "Rent");
+            tag(t3, "invoice", "pi00002");
+            tag(t3, "Closing", null);
+            entry(t3, "a2", "CHF", new BigDecimal("1500"));
+            TransactionEntity t4 = indexedTx("t4", "Year end");
+            tag(t4, "OpeningBalances", "");
+            t4.setTransactionDate(LocalDate.of(2025, 12, 31));
+            entryWithNote(indexedTx("t5", "Untagged"), "a1", "CHF", BigDecimal.ONE, "Receipt for office chairs");
+        }
+
+        @Test
+        void indexed_results_equal_unindexed_results() {
+            JournalIndex index = index();
+            for (String query : List.of(
+                    "tag:invoice", "tag:invoice:PI*", "tag:invoice:pi00001", "tag:invoice:*00001",
+                    "tag:/inv.*/:/^PI/", "tag:/INV.*/i:/^pi/i", "tag:Closing", "tag:Opening*",
+                    "NOT tag:Closing", "tag:invoice AND NOT tag:invoice:SI*",
+                    "tag:invoice OR description:Untagged", "NOT (tag:invoice OR tag:Opening*)",
+                    "description:rent", "description:*supp*", "description:\"office supplies\"", "description:Off*",
+                    "description:/^Con/", "note:*chair*", "NOT description:*end", "text:office", "text:pi00001",
+                    "text:\"office ch*\"", "text:opening*", "text:rent AND description:/R.nt/",
+                    "date:eq:2025-01-01", "date:lt:2025-12-31", "date:gte:2025-12-31", "date:between:2025-01-01..2025-06-30",
+                    "partner:P00002", "partner:P*", "NOT partner:P00002", "commodity:usd", "NOT commodity:CHF",
+                    "amount:gt:1", "amount:lte:-12.5", "amount:eq:1.0000", "amount:eq:1.00001", "amount:lt:0.00001",
+                    "accounttype:cash", "accounttype:expense OR partner:P*", "accountname:R*", "NOT accountname:Cash")) {
+                assertEquals(matching(parse(query)),
+                        matching(parser.compile(query, accounts, "org1", index).predicate()), query);
+            }
+        }
+
+        @Test
+        void candidates_narrow_down_to_tagged_transactions() {
+            JournalIndex index = index();
+            assertEquals(List.of("t3"), parser.compile("tag:Closing", accounts, "org1", index).candidateTransactionIds());
+            assertEquals(List.of("t1", "t3"),
+                    parser.compile("tag:invoice:PI* AND date:gte:2025-01-01", accounts, "org1", index).candidateTransactionIds());
+            assertEquals(List.of("t1", "t2", "t4", "t5"),
+                    parser.compile("NOT tag:Closing", accounts, "org1", index).candidateTransactionIds());
+        }
+
+        @Test
+        void candidates_narrow_down_to_transactions_containing_the_words() {
+            JournalIndex index = index();
+            assertEquals(List.of("t1"), parser.compile("description:*supplies*", accounts, "org1", index).candidateTransactionIds());
+            assertEquals(List.of("t3"), parser.compile("description:*ent", accounts, "org1", index).candidateTransactionIds());
+            assertEquals(List.of("t1", "t5"), parser.compile("text:office", accounts, "org1", index).candidateTransactionIds());
+            assertEquals(List.of("t5"), parser.compile("text:\"office chair*\"", accounts, "org1", index).candidateTransactionIds());
+            assertEquals(List.of("t3"),
+                    parser.compile("description:/^R/ AND text:rent", accounts, "org1", index).candidateTransactionIds());
+        }
+
+        @Test
+        void candidates_narrow_down_by_columns() {
+            JournalIndex index = index();
+            assertEquals(List.of("t4"), parser.compile("date:gt:2025-01-01", accounts, "org1", index).candidateTransactionIds());
+            assertEquals(List.of("t2"), parser.compile("partner:P*", accounts, "org1", index).candidateTransactionIds());
+            assertEquals(List.of("t1"), parser.compile("commodity:usd", accounts, "org1", index).candidateTransactionIds());
+            assertEquals(List.of("t3"), parser.compile("amount:gte:1000", accounts, "org1", index).candidateTransactionIds());
+            assertEquals(List.of("t1", "t5"),
+                    parser.compile("accounttype:cash", accounts, "org1", index).candidateTransactionIds());
+            assertEquals(List.of("t1", "t3", "t4", "t5"),
+                    parser.compile("NOT partner:P*", accounts, "org1", index).candidateTransactionIds());
+        }
+
+        @Test
+        void no_candidates_when_not_narrowed_by_the_index() {
+            JournalIndex index = index(false);
+            assertNull(parser.compile("date:gte:2025-01-01", accounts, "org1", index).candidateTransactionIds());
+            assertNull(parser.compile("description:/rent/i", accounts, "org1", index).candidateTransactionIds());
+            assertNull(parser.compile("tag:Closing OR description:/Rent/", accounts, "org1", index).candidateTransactionIds());
+            assertNull(parser.compile("NOT (tag:Closing AND description:Rent)", accounts, "org1", index).candidateTransactionIds());
+        }
+
+        @Test
+        void journal_predicate_matches_the_journal_of_the_index_by_id_or_title() {
+            JournalIndex index = index();
+            java.util.function.Function<String, EntryQuery> compile = query -> EntryQueryParser.compile(
+                    new EntryQueryParser.Parser(new EntryQueryParser.Lexer(query).tokenize(), accounts,
+                            id -> java.util.Optional.empty(),
+                            id -> java.util.Optional.of(id.equals("j1") ? "Fiscal 2025" : "Other"),
+                            EntryQueryParser.StringMatcher.MAX_REGEX_STEPS).parse(), index);
+
+            assertEquals(List.of("t1", "t2", "t3", "t4", "t5"), compile.apply("journal:j1").candidateTransactionIds());
+            assertEquals(List.of("t1", "t3"), compile.apply("journal:*2025 AND tag:invoice:PI*").candidateTransactionIds());
+            assertEquals(List.of(), compile.apply("journal:\"Fiscal 2024\" AND tag:invoice").candidateTransactionIds());
+            assertTrue(compile.apply("NOT journal:Other").predicate().test(txs.get(0)));
+        }
+
+        @Test
+        void explains_which_predicates_the_index_answers() {
+            EntryQueryPlan.Node root = EntryQueryParser.explain(new EntryQueryParser.Parser(
+                    new EntryQueryParser.Lexer("tag:Closing AND (description:/R.nt/ OR NOT commodity:usd)").tokenize(),
+                    accounts, id -> java.util.Optional.empty()).parse(), index());
+
+            assertEquals("AND", root.operator());
+            assertEquals(EntryQueryPlan.Evaluation.NARROWED, root.evaluation());
+            assertEquals(Integer.valueOf(1), root.transactions());
+            assertNull(root.jpql());
+            EntryQueryPlan.Node tag = root.operands().get(0);
+            assertEquals(List.of("PREDICATE", "tag:Closing", 0, EntryQueryPlan.Evaluation.INDEX, 1),
+                    List.of(tag.operator(), tag.predicate(), tag.position(), tag.evaluation(), tag.transactions()));
+            EntryQueryPlan.Node or = root.operands().get(1);
+            assertEquals("OR", or.operator());
+            assertEquals(EntryQueryPlan.Evaluation.MEMORY, or.evaluation());
+            assertEquals(EntryQueryPlan.Evaluation.MEMORY, or.operands().get(0).evaluation());
+            EntryQueryPlan.Node not = or.operands().get(1);
+            assertEquals("NOT", not.operator());
+            assertEquals("NOT (UPPER(e.commodity) = :p0)", not.jpql());
+            assertEquals("commodity:usd", not.operands().get(0).predicate());
+        }
+
+        @Test
+        void parsed_expressions_bind_to_each_index_anew() {
+            EntryQueryParser.Expression expression = new EntryQueryParser.Parser(
+                    new EntryQueryParser.Lexer("tag:invoice AND accounttype:cash").tokenize(), accounts,
+                    id -> java.util.Optional.empty()).parse();
+            JournalIndex before = index();
+            tag(txs.stream().filter(t -> t.getId().equals("t5")).findFirst().orElseThrow(), "invoice", "PI00003");
+            JournalIndex after = index();
+
+            assertEquals(List.of("t1"), EntryQueryParser.compile(expression, before).candidateTransactionIds());
+            assertEquals(List.of("t1", "t5"), EntryQueryParser.compile(expression, after).candidateTransactionIds());
+            assertEquals(List.of("t1"), EntryQueryParser.compile(expression, before).candidateTransactionIds());
+        }
+
+        @Test
+        void transactions_missing_from_index_are_tested_directly() {
+            JournalIndex index = index();
+            TransactionEntity created = tx(LocalDate.of(2025, 2, 1), "New", null);
+            created.setId("t6");
+            tag(created, "invoice", "PI00003");
+
+            assertTrue(parser.compile("tag:invoice:PI*", accounts, "org1", index).predicate().test(created));
+            assertFalse(parser.compile("NOT tag:invoice", accounts, "org1", index).predicate().test(created));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // single entries, as tested by entry search
+    // -------------------------------------------------------------------------
+
+    @Nested
+    class EntryMatcherTests {
+
+        private EntryMatcher matcher(String query, java.util.function.Function<String, java.util.Optional<String>> nameLookup) {
+            List<EntryQueryParser.Token> tokens = new EntryQueryParser.Lexer(query).tokenize();
+            return EntryQueryParser.compile(new EntryQueryParser.Parser(tokens, accounts, nameLookup).parse(), null)
+                    .entryMatcher();
+        }
+
+        private EntryMatcher matcher(String query) {
+            return matcher(query, id -> java.util.Optional.empty());
+        }
+
+        @Test
+        void entry_predicates_test_each_entry_on_its_own() {
+            account("a1", "Bank", AccountType.CASH, null);
+            account("a2", "Revenue", AccountType.REVENUE, null);
+            TransactionEntity t = tx(LocalDate.of(2025, 1, 1), "Sale", null);
+            EntryEntity bank = entry(t, "a1", "CHF", new BigDecimal("100"));
+            EntryEntity revenue = entryWithNote(t, "a2", "CHF", new BigDecimal("-100"), "Consulting");
+
+            EntryMatcher cash = matcher("accounttype:cash");
+            assertTrue(cash.matches(bank));
+            assertFalse(cash.matches(revenue));
+            EntryMatcher mixed = matcher("description:Sale AND (amount:lt:0 OR note:consulting)");
+            assertFalse(mixed.matches(bank));
+            assertTrue(mixed.matches(revenue));
+            EntryMatcher negated = matcher("NOT accountname:Bank AND date:eq:2025-01-01");
+            assertFalse(negated.matches(bank));
+            assertTrue(negated.matches(revenue));
+        }
+
+        @Test
+        void text_in_another_entrys_note_does_not_match() {
+            TransactionEntity t = tx(LocalDate.of(2025, 1, 1), "Sale", null);
+            EntryEntity plain = entry(t, "a1", "CHF", new BigDecimal("100"));
+            EntryEntity noted = entryWithNote(t, "a2", "CHF", new BigDecimal("-100"), "Office chairs");
+
+            EntryMatcher chairs = matcher("text:chairs");
+            assertFalse(chairs.matches(plain));
+            assertTrue(chairs.matches(noted));
+            assertTrue(matcher("text:sale").matches(plain));
+        }
+
+        @Test
+        void transaction_predicates_are_evaluated_once_per_transaction() {
+            List<String> lookedUp = new ArrayList<>();
+            EntryMatcher byName = matcher("partner:Acme AND amount:gt:0", id -> {
+                lookedUp.add(id);
+                return java.util.Optional.of("Acme");
+            });
+            TransactionEntity first = tx(LocalDate.of(2025, 1, 1), "A", "P1");
+            TransactionEntity second = tx(LocalDate.of(2025, 1, 2), "B", "P2");
+            List<EntryEntity> entries = List.of(
+                    entry(first, "a1", "CHF", new BigDecimal("10")),
+                    entry(first, "a2", "CHF", new BigDecimal("-10")),
+                    entry(first, "a3", "CHF", new BigDecimal("5")),
+                    entry(second, "a1", "CHF", new BigDecimal("-7")),
+                    entry(second, "a2", "CHF", new BigDecimal("7")));
+
+            assertEquals(List.of(true, false, true, false, true), entries.stream().map(byName::matches).toList());
+            assertEquals(List.of("P1", "P2"), lookedUp);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // JPQL conditions
+    // -------------------------------------------------------------------------
+
+    @Nested
+    class ConditionTests {
+
+        private EntryQueryParser.Condition condition(String query) {
+            List<EntryQueryParser.Token> tokens = new EntryQueryParser.Lexer(query).tokenize();
+            return EntryQueryParser.compile(new EntryQueryParser.Parser(tokens, accounts, id -> java.util.Optional.empty()).parse(), null)
+                    .condition();
+        }
+
+        @Test
+        void entry_and_date_predicates_are_written_as_jpql() {
+            account("a1", "Bank", AccountType.CASH, null);
+            EntryQueryParser.Condition condition = condition("accounttype:cash AND (amount:gt:10 OR NOT date:lt:2025-01-01)");
+
+            assertEquals("(e.accountId IN :p0) AND ((e.amount > :p1) OR (NOT (t.transactionDate < :p2)))",
+                    condition.render("p"));
+            assertEquals(List.of(List.of("a1"), new BigDecimal("10"), LocalDate.of(2025, 1, 1)), condition.parameters());
+        }
+
+        @Test
+        void accounts_matching_nothing_are_false() {
+            assertEquals(EntryQueryParser.Condition.FALSE, condition("accountname:Nowhere"));
+        }
+
+        @Test
+        void text_and_tag_predicates_have_no_condition() {
+            assertNull(condition("amount:gt:10 AND tag:invoice"));
+            assertNull(condition("text:chairs OR date:eq:2025-01-01"));
+        }
+    }
+
     // -------------------------------------------------------------------------
     // accounttype predicate
     // -------------------------------------------------------------------------
@@ -689,11 +1029,36 @@ class EntryQueryParserTest {
             assertFalse(EntryQueryParser.StringMatcher.of("/hello/").matches("HELLO"));
         }
 
+        @Test
+        void prefix_is_literal_text_before_wildcards() {
+            assertEquals("PI00001", EntryQueryParser.StringMatcher.of("PI00001").prefix());
+            assertEquals("hello world", EntryQueryParser.StringMatcher.of("\"hello world\"").prefix());
+            assertEquals("PI", EntryQueryParser.StringMatcher.of("PI*").prefix());
+            assertEquals("h", EntryQueryParser.StringMatcher.of("h?llo").prefix());
+            assertEquals("", EntryQueryParser.StringMatcher.of("*00001").prefix());
+            assertEquals("", EntryQueryParser.StringMatcher.of("/^PI/").prefix());
+        }
+
         @Test
         void invalid_regex_throws() {
             assertThrows(EntryQueryParser.QueryParseException.class,
                     () -> EntryQueryParser.StringMatcher.of("/[invalid/"));
         }
+
+        @Test
+        void catastrophic_regex_gives_up_after_its_steps() {
+            EntryQueryParser.StringMatcher matcher = EntryQueryParser.StringMatcher.of("/(.*a){12}z/", 10_000);
+            QueryLimitException e = assertThrows(QueryLimitException.class,
+                    () -> matcher.matches("a".repeat(40) + "!"));
+            assertEquals(QueryLimitException.Limit.REGEX_STEPS, e.getLimit());
+            assertTrue(EntryQueryParser.StringMatcher.of("/^a+z$/", 10_000).matches("a".repeat(40) + "z"));
+        }
+
+        @Test
+        void globs_and_literals_match_within_their_steps() {
+            assertTrue(EntryQueryParser.StringMatcher.of("*world*", 100).matches("hello world!"));
+            assertTrue(EntryQueryParser.StringMatcher.of("hello", 1).matches("Hello"));
+        }
     }
 
     // -------------------------------------------------------------------------
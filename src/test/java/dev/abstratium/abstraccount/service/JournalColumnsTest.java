@@ -0,0 +1,151 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.model.TransactionStatus;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalColumnsTest {
+
+    private final List<Object[]> transactions = new ArrayList<>();
+    private final List<Object[]> entries = new ArrayList<>();
+
+    private void transaction(String id, LocalDate date, String partnerId) {
+        transactions.add(new Object[] {id, "Description", date, TransactionStatus.CLEARED, partnerId});
+    }
+
+    private void entry(String transactionId, String accountId, String commodity, String amount) {
+        entries.add(new Object[] {transactionId, accountId, commodity, new BigDecimal(amount), null});
+    }
+
+    private JournalIndex index() {
+        return JournalIndex.build("j1", 0, transactions, entries, List.of(), true);
+    }
+
+    private static List<String> ids(JournalIndex index, OrdinalSet ordinals) {
+        List<String> ids = new ArrayList<>();
+        ordinals.forEach(ordinal -> ids.add(index.transactionId(ordinal)));
+        return ids;
+    }
+
+    private void setUpJournal() {
+        transaction("t1", LocalDate.of(2025, 1, 10), "P1");
+        transaction("t2", LocalDate.of(2025, 2, 10), null);
+        transaction("t3", LocalDate.of(2025, 3, 10), "P2");
+        // Entries in any order, as read from the database
+        entry("t3", "bank", "CHF", "-40.25");
+        entry("t1", "bank", "CHF", "100.00");
+        entry("t2", "bank", "USD", "7.5");
+        entry("t1", "revenue", "CHF", "-100.00");
+        entry("t3", "rent", "CHF", "40.25");
+    }
+
+    @Test
+    void dates_are_selected_by_range() {
+        setUpJournal();
+        JournalIndex index = index();
+        long february = LocalDate.of(2025, 2, 10).toEpochDay();
+
+        assertEquals(List.of("t2"), ids(index, index.columns().dated(index.all(), february, february)));
+        assertEquals(List.of("t2", "t3"), ids(index, index.columns().dated(index.all(), february, Long.MAX_VALUE)));
+        assertEquals(List.of("t1"), ids(index, index.columns().dated(index.all(), Long.MIN_VALUE, february - 1)));
+    }
+
+    @Test
+    void partners_are_tested_once_per_distinct_value() {
+        setUpJournal();
+        transaction("t4", LocalDate.of(2025, 4, 10), "P1");
+        JournalIndex index = index();
+        List<String> tested = new ArrayList<>();
+
+        OrdinalSet matching = index.columns().withPartner(index.all(), partnerId -> {
+            tested.add(partnerId);
+            return partnerId.equals("P1");
+        });
+
+        assertEquals(List.of("t1", "t4"), ids(index, matching));
+        assertEquals(List.of("P1", "P2"), tested);
+    }
+
+    @Test
+    void entries_are_matched_by_account_commodity_and_amount() {
+        setUpJournal();
+        JournalIndex index = index();
+        JournalColumns columns = index.columns();
+
+        assertEquals(List.of("t2"), ids(index, columns.withEntry(index.all(), null, "USD"::equals, null)));
+        assertEquals(List.of("t1", "t3"),
+            ids(index, columns.withEntry(index.all(), "bank"::equals, "CHF"::equals, null)));
+        assertEquals(List.of("t3"), ids(index, columns.withEntry(index.all(), "bank"::equals, null, units -> units < 0)));
+        assertEquals(List.of("t2"), ids(index, columns.withEntry(index.all(), null, null,
+            units -> units == JournalColumns.units(new BigDecimal("7.50")))));
+    }
+
+    @Test
+    void sums_are_taken_per_account_over_the_given_transactions() {
+        setUpJournal();
+        JournalIndex index = index();
+
+        Map<String, BigDecimal> sums = index.columns().sumByAccount(index.all());
+
+        assertEquals(new BigDecimal("67.2500"), sums.get("bank"));
+        assertEquals(new BigDecimal("-100.0000"), sums.get("revenue"));
+        assertEquals(new BigDecimal("40.2500"), sums.get("rent"));
+        assertEquals(Map.of("bank", new BigDecimal("100.0000"), "revenue", new BigDecimal("-100.0000")),
+            index.columns().sumByAccount(OrdinalSet.EMPTY.with(index.ordinalOf("t1"))));
+    }
+
+    @Test
+    void sums_that_overflow_are_not_returned() {
+        transaction("t1", LocalDate.of(2025, 1, 10), null);
+        entry("t1", "bank", "CHF", "900000000000000");
+        entry("t1", "bank", "CHF", "900000000000000");
+        JournalIndex index = index();
+
+        assertNull(index.columns().sumByAccount(index.all()));
+    }
+
+    @Test
+    void amounts_that_do_not_fit_leave_the_index_without_columns() {
+        transaction("t1", LocalDate.of(2025, 1, 10), null);
+        entry("t1", "bank", "CHF", "1E+20");
+
+        assertNull(index().columns());
+        assertNull(JournalColumns.units(new BigDecimal("0.00001")));
+        assertEquals(123_400L, (long) JournalColumns.units(new BigDecimal("12.34")));
+    }
+
+    @Test
+    void changes_are_appended_under_the_ordinals_the_index_assigns() {
+        setUpJournal();
+        JournalIndex index = index();
+        JournalIndex.Change changed = new JournalIndex.Change("t1", "Changed", LocalDate.of(2025, 5, 1),
+            TransactionStatus.PENDING, "P3",
+            List.of(new JournalIndex.Posting("bank", "CHF", new BigDecimal("5"), null),
+                new JournalIndex.Posting("revenue", "CHF", new BigDecimal("-5"), null)),
+            List.of());
+        JournalIndex.Change created = new JournalIndex.Change("t4", "Created", LocalDate.of(2025, 6, 1),
+            TransactionStatus.CLEARED, null,
+            List.of(new JournalIndex.Posting("bank", "EUR", new BigDecimal("1"), null)), List.of());
+
+        JournalIndex applied = index.apply(List.of(JournalIndex.Change.deleted("t2"), changed, created), 1);
+        JournalColumns columns = applied.columns();
+
+        assertEquals(List.of("t1"), ids(applied, columns.withPartner(applied.all(), "P3"::equals)));
+        assertEquals(List.of("t4"), ids(applied, columns.withEntry(applied.all(), null, "EUR"::equals, null)));
+        long may = LocalDate.of(2025, 5, 1).toEpochDay();
+        assertEquals(List.of("t1", "t4"), ids(applied, columns.dated(applied.all(), may, Long.MAX_VALUE)));
+        Map<String, BigDecimal> sums = columns.sumByAccount(applied.all());
+        assertEquals(new BigDecimal("-34.2500"), sums.get("bank"));
+        assertEquals(new BigDecimal("-5.0000"), sums.get("revenue"));
+        assertTrue(columns.bytes() > index.columns().bytes());
+        // The index applied to is unchanged
+        assertEquals(new BigDecimal("67.2500"), index.columns().sumByAccount(index.all()).get("bank"));
+    }
+}
@@ -0,0 +1,318 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.AccountEntity;
+import dev.abstratium.abstraccount.entity.EntryEntity;
+import dev.abstratium.abstraccount.entity.JournalEntity;
+import dev.abstratium.abstraccount.entity.TagEntity;
+import dev.abstratium.abstraccount.entity.TransactionEntity;
+import dev.abstratium.abstraccount.model.AccountType;
+import dev.abstratium.abstraccount.model.TransactionStatus;
+import dev.abstratium.core.util.TestTransactionHelper;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+class JournalIndexServiceTest {
+
+    @Inject
+    JournalIndexService service;
+
+    @Inject
+    JournalPersistenceService journalPersistenceService;
+
+    @Inject
+    EntryQueryParser entryQueryParser;
+
+    @Inject
+    TestTransactionHelper testTransactionHelper;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    DataSource dataSource;
+
+    private String journalId;
+    private String bank;
+    private String revenue;
+
+    @BeforeEach
+    void setUp() {
+        testTransactionHelper.deleteAllData();
+        service.clearCache();
+        JournalEntity journal = new JournalEntity();
+        journal.setTitle("Index");
+        journal.setCurrency("CHF");
+        journalId = journalPersistenceService.saveJournal(journal).getId();
+        bank = createAccount("1020 Bank", AccountType.CASH);
+        revenue = createAccount("3400 Services", AccountType.REVENUE);
+    }
+
+    @Test
+    void testBuildsIndexOnFirstQuery() {
+        book("SI1");
+        book("SI2");
+        book(null);
+
+        JournalIndex index = service.get(journalId);
+
+        assertEquals(3, index.version());
+        assertEquals(3, index.all().cardinality());
+        assertEquals(2, index.tagged(EntryQueryParser.StringMatcher.of("invoice")).cardinality());
+        assertSame(index, service.get(journalId));
+    }
+
+    @Test
+    void testMaintainsIndexIncrementallyOnWrites() {
+        TransactionEntity first = book("SI1");
+        service.get(journalId);
+
+        TransactionEntity second = book("SI2");
+        JournalIndex index = service.get(journalId);
+        assertEquals(2, index.version());
+        assertEquals(2, invoices(index, "SI*"));
+
+        TransactionEntity retagged = transaction("PI1");
+        retagged.setId(first.getId());
+        journalPersistenceService.saveTransaction(retagged);
+        index = service.get(journalId);
+        assertEquals(1, invoices(index, "SI*"));
+        assertEquals(1, invoices(index, "PI*"));
+        assertEquals(2, index.all().cardinality());
+
+        journalPersistenceService.deleteTransaction(second.getId());
+        index = service.get(journalId);
+        assertEquals(0, invoices(index, "SI*"));
+        assertEquals(1, index.all().cardinality());
+        assertEquals(4, index.version());
+    }
+
+    @Test
+    void testMaintainsWordsIncrementallyOnWrites() {
+        TransactionEntity booked = book("SI1");
+        service.get(journalId);
+
+        TransactionEntity changed = transaction("SI1");
+        changed.setId(booked.getId());
+        changed.setDescription("Office chairs");
+        changed.getEntries().get(0).setNote("Receipt 4711");
+        journalPersistenceService.saveTransaction(changed);
+
+        JournalIndex index = service.get(journalId);
+        assertEquals(0, words(index, JournalIndex.Field.DESCRIPTION, "invoice"));
+        assertEquals(1, words(index, JournalIndex.Field.DESCRIPTION, "office"));
+        assertEquals(1, words(index, JournalIndex.Field.NOTE, "4711"));
+        assertEquals(1, words(index, JournalIndex.Field.TAG, "si1"));
+    }
+
+    @Test
+    void testMaintainsColumnsIncrementallyOnWrites() {
+        TransactionEntity booked = book("SI1");
+        assertNotNull(service.get(journalId).columns());
+
+        TransactionEntity changed = transaction("SI1");
+        changed.setId(booked.getId());
+        changed.setPartnerId("P00001");
+        changed.getEntries().get(0).setAmount(new BigDecimal("250.00"));
+        changed.getEntries().get(1).setAmount(new BigDecimal("-250.00"));
+        journalPersistenceService.saveTransaction(changed);
+        book(null);
+
+        JournalIndex index = service.get(journalId);
+        assertEquals(3, index.version());
+        assertEquals(1, index.columns().withPartner(index.all(), "P00001"::equals).cardinality());
+        assertEquals(Map.of(bank, new BigDecimal("350.0000"), revenue, new BigDecimal("-350.0000")),
+            index.columns().sumByAccount(index.all()));
+    }
+
+    @Test
+    void testSumsByAccountTypeExcludeClosingTransactions() {
+        book("SI1");
+        book("SI2");
+        TransactionEntity closing = transaction(null);
+        TagEntity tag = new TagEntity();
+        tag.setTagKey("Closing");
+        closing.addTag(tag);
+        journalPersistenceService.saveTransaction(closing);
+
+        Map<AccountType, BigDecimal> sums = journalPersistenceService.sumsByAccountType(journalId);
+
+        assertEquals(new BigDecimal("200.0000"), sums.get(AccountType.CASH));
+        assertEquals(new BigDecimal("-200.0000"), sums.get(AccountType.REVENUE));
+        assertFalse(sums.containsKey(AccountType.EXPENSE));
+    }
+
+    @Test
+    void testRebuildsIndexChangedElsewhere() {
+        book("SI1");
+        JournalIndex index = service.get(journalId);
+
+        bumpVersion();
+
+        JournalIndex rebuilt = service.get(journalId);
+        assertNotSame(index, rebuilt);
+        assertEquals(index.version() + 1, rebuilt.version());
+    }
+
+    @Test
+    void testCompiledQueryNarrowsDownToTaggedTransactions() {
+        TransactionEntity invoice = book("SI1");
+        book("SI2");
+        book(null);
+
+        EntryQuery query = entryQueryParser.compile("tag:invoice:SI1", Map::of, null, journalId);
+
+        assertEquals(List.of(invoice.getId()), query.candidateTransactionIds());
+        assertTrue(query.predicate().test(invoice));
+    }
+
+    @Test
+    void testCachesCompiledQueriesUntilAccountsChange() {
+        entryQueryParser.clearCache();
+        TransactionEntity invoice = book("SI1");
+        int[] loads = {0};
+        Supplier<Map<String, AccountEntity>> accounts = () -> {
+            loads[0]++;
+            return journalPersistenceService.loadAllAccounts(journalId).stream()
+                .collect(Collectors.toMap(AccountEntity::getId, account -> account));
+        };
+        long hits = entryQueryParser.expressionCacheStats().hitCount();
+
+        assertFalse(entryQueryParser.compile("accountname:*Sales", accounts, null, journalId).predicate().test(invoice));
+        assertFalse(entryQueryParser.compile("accountname:*Sales", accounts, null, journalId).predicate().test(invoice));
+        assertEquals(1, loads[0]);
+        assertEquals(hits + 1, entryQueryParser.expressionCacheStats().hitCount());
+
+        AccountEntity account = journalPersistenceService.loadAllAccounts(journalId).stream()
+            .filter(a -> a.getId().equals(revenue))
+            .findFirst().orElseThrow();
+        account.setName("3400 Sales");
+        journalPersistenceService.saveAccount(account);
+
+        assertTrue(entryQueryParser.compile("accountname:*Sales", accounts, null, journalId).predicate().test(invoice));
+        assertEquals(2, loads[0]);
+        // Two accounts created in setUp, one renamed
+        assertEquals(3L, service.accountVersion(journalId));
+    }
+
+    @Test
+    void testCompilesAgainstAccountsChangedOnAnotherNodeBehindTheCache() throws SQLException {
+        entryQueryParser.clearCache();
+        TransactionEntity invoice = book("SI1");
+        Supplier<Map<String, AccountEntity>> accounts = () -> journalPersistenceService.loadAllAccounts(journalId).stream()
+            .collect(Collectors.toMap(AccountEntity::getId, account -> account));
+
+        // Warms the second-level cache with the accounts
+        assertFalse(entryQueryParser.compile("accountname:*Sales", accounts, null, journalId).predicate().test(invoice));
+        journalPersistenceService.loadAllAccounts(journalId);
+
+        renameAccountOnOtherNode(revenue, "3400 Sales");
+
+        assertTrue(entryQueryParser.compile("accountname:*Sales", accounts, null, journalId).predicate().test(invoice));
+    }
+
+    @Test
+    void testDeletingJournalDropsVersion() {
+        book("SI1");
+        service.get(journalId);
+        assertEquals(1L, countVersions());
+
+        journalPersistenceService.deleteJournal(journalId);
+
+        assertEquals(0L, countVersions());
+    }
+
+    private static int invoices(JournalIndex index, String value) {
+        return index.tagged(EntryQueryParser.StringMatcher.of("invoice"), EntryQueryParser.StringMatcher.of(value))
+            .cardinality();
+    }
+
+    private static int words(JournalIndex index, JournalIndex.Field field, String word) {
+        return index.containing(Set.of(field), List.of(new TextTerms.WordPattern(word, false, false))).cardinality();
+    }
+
+    /**
+     * Renames an account and counts the change as another node would, i.e.
+     * without going through, and so invalidating, this node's caches.
+     */
+    void renameAccountOnOtherNode(String accountId, String name) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement rename = connection.prepareStatement("UPDATE T_account SET account_name = ? WHERE id = ?");
+             PreparedStatement bump = connection.prepareStatement(
+                 "UPDATE T_journal_version SET account_version = account_version + 1 WHERE journal_id = ?")) {
+            rename.setString(1, name);
+            rename.setString(2, accountId);
+            rename.executeUpdate();
+            bump.setString(1, journalId);
+            bump.executeUpdate();
+        }
+    }
+
+    @Transactional
+    void bumpVersion() {
+        em.createNativeQuery("UPDATE T_journal_version SET version = version + 1 WHERE journal_id = ?1")
+            .setParameter(1, journalId)
+            .executeUpdate();
+    }
+
+    @Transactional
+    long countVersions() {
+        return ((Number) em.createNativeQuery("SELECT COUNT(*) FROM T_journal_version").getSingleResult()).longValue();
+    }
+
+    private String createAccount(String name, AccountType type) {
+        AccountEntity account = new AccountEntity();
+        account.setJournalId(journalId);
+        account.setName(name);
+        account.setType(type);
+        return journalPersistenceService.saveAccount(account).getId();
+    }
+
+    private TransactionEntity book(String invoice) {
+        return journalPersistenceService.saveTransaction(transaction(invoice));
+    }
+
+    private TransactionEntity transaction(String invoice) {
+        TransactionEntity transaction = new TransactionEntity();
+        transaction.setJournalId(journalId);
+        transaction.setTransactionDate(LocalDate.of(2025, 1, 10));
+        transaction.setStatus(TransactionStatus.CLEARED);
+        transaction.setDescription("Invoice");
+        transaction.addEntry(entry(bank, "100.00", 0));
+        transaction.addEntry(entry(revenue, "-100.00", 1));
+        if (invoice != null) {
+            TagEntity tag = new TagEntity();
+            tag.setTagKey("invoice");
+            tag.setTagValue(invoice);
+            transaction.addTag(tag);
+        }
+        return transaction;
+    }
+
+    private static EntryEntity entry(String accountId, String amount, int order) {
+        EntryEntity entry = new EntryEntity();
+        entry.setAccountId(accountId);
+        entry.setCommodity("CHF");
+        entry.setAmount(new BigDecimal(amount));
+        entry.setEntryOrder(order);
+        return entry;
+    }
+}
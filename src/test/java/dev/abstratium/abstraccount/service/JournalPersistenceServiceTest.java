@@ -11,6 +11,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
@@ -1204,4 +1205,80 @@ class JournalPersistenceServiceTest {
         // Should get both entries
         assertEquals(2, entries.size());
     }
+
+    @Test
+    void testQueryEntriesReadsTransactionsWithTheirTagsWithoutManagingThem() {
+        AccountEntity account = createSimpleAccount("Projection Test Account");
+
+        TransactionEntity tx = new TransactionEntity();
+        tx.setTransactionDate(LocalDate.of(2024, 6, 1));
+        tx.setStatus(TransactionStatus.CLEARED);
+        tx.setDescription("Projected tx");
+        tx.setPartnerId("P00000001");
+        tx.setJournalId(testJournalId);
+        EntryEntity e1 = new EntryEntity();
+        e1.setAccountId(account.getId()); e1.setCommodity("USD"); e1.setAmount(new BigDecimal("10.00")); e1.setEntryOrder(0);
+        tx.addEntry(e1);
+        EntryEntity e2 = new EntryEntity();
+        e2.setAccountId(account.getId()); e2.setCommodity("USD"); e2.setAmount(new BigDecimal("-10.00")); e2.setEntryOrder(1);
+        e2.setNote("second");
+        tx.addEntry(e2);
+        TagEntity t1 = new TagEntity();
+        t1.setTagKey("invoice"); t1.setTagValue("INV-100");
+        tx.addTag(t1);
+        TagEntity t2 = new TagEntity();
+        t2.setTagKey("Closing"); t2.setTagValue("");
+        tx.addTag(t2);
+        service.saveTransaction(tx);
+
+        List<EntryEntity> entries = service.queryEntriesWithFilters(
+            testJournalId, null, null, null, null, null, null, null, null, null
+        );
+
+        assertEquals(2, entries.size());
+        TransactionEntity read = entries.get(0).getTransaction();
+        assertSame(read, entries.get(1).getTransaction());
+        assertEquals(tx.getId(), read.getId());
+        assertEquals(LocalDate.of(2024, 6, 1), read.getTransactionDate());
+        assertEquals(TransactionStatus.CLEARED, read.getStatus());
+        assertEquals("P00000001", read.getPartnerId());
+        assertEquals(testJournalId, read.getJournalId());
+        assertEquals(List.of(e1.getId(), e2.getId()), read.getEntries().stream().map(EntryEntity::getId).toList());
+        assertEquals("second", read.getEntries().get(1).getNote());
+        assertEquals(2, read.getTags().size());
+        assertTrue(read.getTags().stream().anyMatch(t -> t.getTagKey().equals("invoice") && t.getTagValue().equals("INV-100")));
+
+        // The projection is not managed, so changing it changes nothing
+        read.setDescription("Changed");
+        entries.get(0).setAmount(new BigDecimal("99.00"));
+        TransactionEntity loaded = service.findTransactionWithEntriesAndTags(tx.getId()).orElseThrow();
+        assertEquals("Projected tx", loaded.getDescription());
+        assertEquals(0, new BigDecimal("10.00").compareTo(loaded.getEntries().get(0).getAmount()));
+    }
+
+    @Test
+    void testQueryEntriesWithFiltersStopsAtTheRowsOfItsBudget() {
+        AccountEntity account = createSimpleAccount("Budget Test Account");
+
+        TransactionEntity tx = new TransactionEntity();
+        tx.setTransactionDate(LocalDate.of(2024, 6, 1));
+        tx.setStatus(TransactionStatus.CLEARED);
+        tx.setDescription("Budgeted tx");
+        tx.setJournalId(testJournalId);
+        EntryEntity e1 = new EntryEntity();
+        e1.setAccountId(account.getId()); e1.setCommodity("USD"); e1.setAmount(new BigDecimal("10.00")); e1.setEntryOrder(0);
+        tx.addEntry(e1);
+        EntryEntity e2 = new EntryEntity();
+        e2.setAccountId(account.getId()); e2.setCommodity("USD"); e2.setAmount(new BigDecimal("-10.00")); e2.setEntryOrder(1);
+        tx.addEntry(e2);
+        service.saveTransaction(tx);
+
+        assertEquals(2, service.queryEntriesWithFilters(testJournalId, null, null, null, null, null,
+            null, null, null, null, null, new QueryBudget(2, Duration.ofSeconds(30))).size());
+
+        QueryLimitException e = assertThrows(QueryLimitException.class, () ->
+            service.queryEntriesWithFilters(testJournalId, null, null, null, null, null,
+                null, null, null, null, null, new QueryBudget(1, Duration.ofSeconds(30))));
+        assertEquals(QueryLimitException.Limit.ROWS, e.getLimit());
+    }
 }
@@ -0,0 +1,311 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.AccountEntity;
+import dev.abstratium.abstraccount.entity.EntryEntity;
+import dev.abstratium.abstraccount.entity.JournalEntity;
+import dev.abstratium.abstraccount.entity.TagEntity;
+import dev.abstratium.abstraccount.entity.TransactionEntity;
+import dev.abstratium.abstraccount.model.AccountType;
+import dev.abstratium.abstraccount.model.OpenItem;
+import dev.abstratium.abstraccount.model.OpenItemAging;
+import dev.abstratium.abstraccount.model.TransactionStatus;
+import dev.abstratium.core.service.CurrentOrgContext;
+import dev.abstratium.core.util.TestTransactionHelper;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+class OpenItemServiceTest {
+
+    @Inject
+    OpenItemService service;
+
+    @Inject
+    JournalPersistenceService journalPersistenceService;
+
+    @Inject
+    AccountService accountService;
+
+    @Inject
+    TestTransactionHelper testTransactionHelper;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    CurrentOrgContext currentOrgContext;
+
+    @ConfigProperty(name = "default.org.uuid")
+    String defaultOrgId;
+
+    private String journalId;
+    private String bank;
+    private String receivables;
+    private String payables;
+    private String revenue;
+    private String expenses;
+
+    @BeforeEach
+    void setUp() {
+        testTransactionHelper.deleteAllData();
+        journalId = createJournal(null);
+        String assets = createAccount(journalId, "1 Assets", AccountType.ASSET, null);
+        String current = createAccount(journalId, "10 Current Assets", AccountType.ASSET, assets);
+        bank = createAccount(journalId, "1020 Bank", AccountType.CASH, current);
+        receivables = createAccount(journalId, "1100 Debtors", AccountType.ASSET, current);
+        payables = createAccount(journalId, "2000 Creditors", AccountType.LIABILITY, null);
+        revenue = createAccount(journalId, "3400 Services", AccountType.REVENUE, null);
+        expenses = createAccount(journalId, "6500 Office", AccountType.EXPENSE, null);
+    }
+
+    @Test
+    void testBuildsOpenItemsOnFirstQuery() {
+        book(journalId, "2025-01-10", "P1", "SI1", receivables, "107.70", revenue, "-107.70");
+        book(journalId, "2025-02-01", null, "SI1", bank, "50.00", receivables, "-50.00");
+        book(journalId, "2025-01-15", "P2", "SI2", receivables, "20.00", revenue, "-20.00");
+        book(journalId, "2025-01-20", "P2", "SI2", bank, "20.00", receivables, "-20.00");
+        book(journalId, "2025-01-25", "P3", null, receivables, "99.00", revenue, "-99.00");
+
+        List<OpenItem> open = service.findOpenItems(List.of(journalId), OpenItemService.Kind.RECEIVABLE);
+
+        assertEquals(1, open.size());
+        OpenItem item = open.get(0);
+        assertEquals("SI1", item.tagValue());
+        assertEquals("P1", item.partnerId());
+        assertEquals("CHF", item.commodity());
+        assertEquals(LocalDate.of(2025, 1, 10), item.invoiceDate());
+        assertEquals(LocalDate.of(2025, 2, 1), item.lastActivity());
+        assertAmount("57.70", item.balance());
+        assertEquals(List.of(), service.findOpenItems(List.of(journalId), OpenItemService.Kind.PAYABLE));
+    }
+
+    @Test
+    void testMaintainsOpenItemsIncrementallyOnWrites() {
+        TransactionEntity invoice = book(journalId, "2025-01-10", "P1", "SI1", receivables, "100.00", revenue, "-100.00");
+        assertAmount("100.00", single(OpenItemService.Kind.RECEIVABLE).balance());
+
+        TransactionEntity payment = book(journalId, "2025-02-01", "P1", "SI1", bank, "60.00", receivables, "-60.00");
+        assertAmount("40.00", single(OpenItemService.Kind.RECEIVABLE).balance());
+
+        // Correct the invoice amount and date
+        TransactionEntity corrected = transaction(journalId, "2025-01-05", "P1", "SI1", receivables, "60.00", revenue, "-60.00");
+        corrected.setId(invoice.getId());
+        journalPersistenceService.saveTransaction(corrected);
+        assertEquals(List.of(), service.findOpenItems(List.of(journalId), OpenItemService.Kind.RECEIVABLE));
+
+        journalPersistenceService.deleteTransaction(payment.getId());
+        OpenItem item = single(OpenItemService.Kind.RECEIVABLE);
+        assertAmount("60.00", item.balance());
+        assertEquals(LocalDate.of(2025, 1, 5), item.invoiceDate());
+        assertEquals(LocalDate.of(2025, 1, 5), item.lastActivity());
+
+        // Moving the invoice to another tag value moves its open item
+        TransactionEntity retagged = transaction(journalId, "2025-01-05", "P1", "SI9", receivables, "60.00", revenue, "-60.00");
+        retagged.setId(invoice.getId());
+        journalPersistenceService.saveTransaction(retagged);
+        assertEquals("SI9", single(OpenItemService.Kind.RECEIVABLE).tagValue());
+        assertEquals(1L, countRows());
+    }
+
+    @Test
+    void testIncrementalMaintenanceMatchesRebuild() {
+        service.findOpenItems(List.of(journalId), OpenItemService.Kind.RECEIVABLE);
+        book(journalId, "2025-01-10", "P1", "SI1", receivables, "100.00", revenue, "-100.00");
+        book(journalId, "2025-01-11", "P2", "PI1", expenses, "80.00", payables, "-80.00");
+        book(journalId, "2025-01-12", "P1", "SI1", bank, "30.00", receivables, "-30.00");
+        book(journalId, "2025-01-13", "P2", "PI1", payables, "80.00", bank, "-80.00");
+        book(journalId, "2025-01-14", "P3", "SI2", receivables, "15.00", revenue, "-15.00");
+
+        List<OpenItem> receivable = service.findOpenItems(List.of(journalId), OpenItemService.Kind.RECEIVABLE);
+        List<OpenItem> payable = service.findOpenItems(List.of(journalId), OpenItemService.Kind.PAYABLE);
+        invalidate(journalId);
+
+        assertOpenItemsEqual(receivable, service.findOpenItems(List.of(journalId), OpenItemService.Kind.RECEIVABLE));
+        assertOpenItemsEqual(payable, service.findOpenItems(List.of(journalId), OpenItemService.Kind.PAYABLE));
+        assertEquals(2, receivable.size());
+        assertEquals(0, payable.size());
+    }
+
+    @Test
+    void testPayablesAreCreditBalances() {
+        book(journalId, "2025-03-01", "P2", "PI1", expenses, "200.00", payables, "-200.00");
+
+        OpenItem item = single(OpenItemService.Kind.PAYABLE);
+        assertEquals("PI1", item.tagValue());
+        assertAmount("200.00", item.balance());
+    }
+
+    @Test
+    void testInvoicePaidInNextJournalIsOnlyOpenInItsOwnJournal() {
+        String nextJournalId = createJournal(journalId);
+        String nextBank = createAccount(nextJournalId, "1020 Bank", AccountType.CASH, null);
+        String nextReceivables = createAccount(nextJournalId, "1100 Debtors", AccountType.ASSET, null);
+        book(journalId, "2024-12-15", "P1", "SI1", receivables, "100.00", revenue, "-100.00");
+        book(nextJournalId, "2025-01-15", "P1", "SI1", nextBank, "100.00", nextReceivables, "-100.00");
+
+        assertEquals(1, service.findOpenItems(List.of(journalId), OpenItemService.Kind.RECEIVABLE).size());
+        assertEquals(List.of(), service.findOpenItems(
+            journalPersistenceService.getJournalChainIds(nextJournalId), OpenItemService.Kind.RECEIVABLE));
+    }
+
+    @Test
+    void testAgingBuckets() {
+        book(journalId, "2025-06-20", "P1", "SI1", receivables, "10.00", revenue, "-10.00");
+        book(journalId, "2025-05-20", "P1", "SI2", receivables, "20.00", revenue, "-20.00");
+        book(journalId, "2025-04-20", "P1", "SI3", receivables, "30.00", revenue, "-30.00");
+        book(journalId, "2025-01-20", "P1", "SI4", receivables, "40.00", revenue, "-40.00");
+        book(journalId, "2025-01-21", "P1", "SI5", receivables, "5.00", revenue, "-5.00");
+
+        List<OpenItemAging> aging = service.findAging(List.of(journalId), OpenItemService.Kind.RECEIVABLE,
+            LocalDate.of(2025, 6, 30));
+
+        assertEquals(1, aging.size());
+        OpenItemAging chf = aging.get(0);
+        assertEquals("CHF", chf.commodity());
+        assertEquals(5, chf.itemCount());
+        assertAmount("10.00", chf.days0To30());
+        assertAmount("20.00", chf.days31To60());
+        assertAmount("30.00", chf.days61To90());
+        assertAmount("45.00", chf.over90());
+        assertAmount("105.00", chf.total());
+    }
+
+    @Test
+    void testRenamingAccountRebuildsOpenItems() {
+        book(journalId, "2025-01-10", "P1", "SI1", receivables, "100.00", revenue, "-100.00");
+        assertEquals(1, service.findOpenItems(List.of(journalId), OpenItemService.Kind.RECEIVABLE).size());
+
+        AccountEntity renamed = new AccountEntity();
+        renamed.setName("1101 Other Debtors");
+        renamed.setType(AccountType.ASSET);
+        renamed.setParentAccountId(accountService.loadAllAccounts(journalId).stream()
+            .filter(a -> a.getId().equals(receivables)).findFirst().orElseThrow().getParentAccountId());
+        accountService.updateAccount(receivables, renamed);
+
+        assertEquals(List.of(), service.findOpenItems(List.of(journalId), OpenItemService.Kind.RECEIVABLE));
+    }
+
+    @Test
+    void testDeletingJournalDropsOpenItems() {
+        book(journalId, "2025-01-10", "P1", "SI1", receivables, "100.00", revenue, "-100.00");
+        service.findOpenItems(List.of(journalId), OpenItemService.Kind.RECEIVABLE);
+        assertEquals(1L, countRows());
+
+        journalPersistenceService.deleteJournal(journalId);
+
+        assertEquals(0L, countRows());
+    }
+
+    @Test
+    void testAnotherOrganisationCannotBuildTheOpenItemsOfAJournal() {
+        book(journalId, "2025-01-10", "P1", "SI1", receivables, "100.00", revenue, "-100.00");
+
+        try {
+            currentOrgContext.setOrgId("second-org");
+            assertEquals(List.of(), service.findOpenItems(List.of(journalId), OpenItemService.Kind.RECEIVABLE));
+        } finally {
+            currentOrgContext.setOrgId(defaultOrgId);
+        }
+
+        assertEquals(0L, countStates());
+        assertEquals(1, service.findOpenItems(List.of(journalId), OpenItemService.Kind.RECEIVABLE).size());
+    }
+
+    private OpenItem single(OpenItemService.Kind kind) {
+        List<OpenItem> open = service.findOpenItems(List.of(journalId), kind);
+        assertEquals(1, open.size());
+        return open.get(0);
+    }
+
+    private static void assertAmount(String expected, BigDecimal actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual), () -> "expected " + expected + " but was " + actual);
+    }
+
+    private static void assertOpenItemsEqual(List<OpenItem> expected, List<OpenItem> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).tagValue(), actual.get(i).tagValue());
+            assertEquals(expected.get(i).partnerId(), actual.get(i).partnerId());
+            assertEquals(expected.get(i).invoiceDate(), actual.get(i).invoiceDate());
+            assertEquals(expected.get(i).lastActivity(), actual.get(i).lastActivity());
+            assertAmount(expected.get(i).balance().toPlainString(), actual.get(i).balance());
+        }
+    }
+
+    @Transactional
+    void invalidate(String journal) {
+        service.invalidate(journal);
+    }
+
+    @Transactional
+    long countRows() {
+        return ((Number) em.createNativeQuery("SELECT COUNT(*) FROM T_open_item").getSingleResult()).longValue();
+    }
+
+    @Transactional
+    long countStates() {
+        return ((Number) em.createNativeQuery("SELECT COUNT(*) FROM T_open_item_state").getSingleResult()).longValue();
+    }
+
+    private String createJournal(String previousJournalId) {
+        JournalEntity journal = new JournalEntity();
+        journal.setTitle("Open Items");
+        journal.setCurrency("CHF");
+        journal.setPreviousJournalId(previousJournalId);
+        return journalPersistenceService.saveJournal(journal).getId();
+    }
+
+    private String createAccount(String journal, String name, AccountType type, String parentId) {
+        AccountEntity account = new AccountEntity();
+        account.setJournalId(journal);
+        account.setName(name);
+        account.setType(type);
+        account.setParentAccountId(parentId);
+        return journalPersistenceService.saveAccount(account).getId();
+    }
+
+    private TransactionEntity book(String journal, String date, String partnerId, String invoice,
+                                   String debitAccount, String debit, String creditAccount, String credit) {
+        return journalPersistenceService.saveTransaction(
+            transaction(journal, date, partnerId, invoice, debitAccount, debit, creditAccount, credit));
+    }
+
+    private static TransactionEntity transaction(String journal, String date, String partnerId, String invoice,
+                                                 String debitAccount, String debit, String creditAccount, String credit) {
+        TransactionEntity transaction = new TransactionEntity();
+        transaction.setJournalId(journal);
+        transaction.setTransactionDate(LocalDate.parse(date));
+        transaction.setStatus(TransactionStatus.CLEARED);
+        transaction.setDescription(partnerId == null ? "Payment" : partnerId + " | Invoice");
+        transaction.setPartnerId(partnerId);
+        transaction.addEntry(entry(debitAccount, debit, 0));
+        transaction.addEntry(entry(creditAccount, credit, 1));
+        if (invoice != null) {
+            TagEntity tag = new TagEntity();
+            tag.setTagKey("invoice");
+            tag.setTagValue(invoice);
+            transaction.addTag(tag);
+        }
+        return transaction;
+    }
+
+    private static EntryEntity entry(String accountId, String amount, int order) {
+        EntryEntity entry = new EntryEntity();
+        entry.setAccountId(accountId);
+        entry.setCommodity("CHF");
+        entry.setAmount(new BigDecimal(amount));
+        entry.setEntryOrder(order);
+        return entry;
+    }
+}
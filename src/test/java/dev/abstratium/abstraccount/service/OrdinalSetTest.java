@@ -0,0 +1,107 @@
+package dev.abstratium.abstraccount.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrdinalSetTest {
+
+    private static OrdinalSet of(int... ordinals) {
+        OrdinalSet.Builder builder = new OrdinalSet.Builder();
+        for (int ordinal : ordinals) {
+            builder.add(ordinal);
+        }
+        return builder.build();
+    }
+
+    @Test
+    void builder_sorts_and_removes_duplicates() {
+        assertArrayEquals(new int[] {1, 5, 9}, of(9, 1, 5, 5, 1).toArray());
+        assertTrue(of().isEmpty());
+    }
+
+    @Test
+    void sparse_sets_are_stored_as_arrays_and_dense_sets_as_bitmaps() {
+        assertEquals(16 + 8, of(1000, 2000).bytes());
+        assertEquals(16 + 8 * 16, OrdinalSet.range(1000).bytes());
+    }
+
+    @Test
+    void range_contains_exactly_the_ordinals_below_size() {
+        OrdinalSet range = OrdinalSet.range(70);
+        assertEquals(70, range.cardinality());
+        assertTrue(range.contains(0));
+        assertTrue(range.contains(69));
+        assertFalse(range.contains(70));
+        assertFalse(range.contains(-1));
+        assertTrue(OrdinalSet.range(0).isEmpty());
+    }
+
+    @Test
+    void set_operations_on_mixed_representations() {
+        OrdinalSet sparse = of(3, 64, 500);
+        OrdinalSet dense = OrdinalSet.range(100);
+
+        assertArrayEquals(new int[] {3, 64}, sparse.and(dense).toArray());
+        assertArrayEquals(new int[] {3, 64}, dense.and(sparse).toArray());
+        assertEquals(101, sparse.or(dense).cardinality());
+        assertTrue(sparse.or(dense).contains(500));
+        assertArrayEquals(new int[] {500}, sparse.andNot(dense).toArray());
+        assertEquals(98, dense.andNot(sparse).cardinality());
+        assertFalse(dense.andNot(sparse).contains(64));
+    }
+
+    @Test
+    void with_and_without_return_new_sets() {
+        OrdinalSet set = of(2, 4);
+        assertArrayEquals(new int[] {2, 3, 4}, set.with(3).toArray());
+        assertArrayEquals(new int[] {4}, set.without(2).toArray());
+        assertSame(set, set.with(2));
+        assertSame(set, set.without(3));
+        assertArrayEquals(new int[] {2, 4}, set.toArray());
+        assertTrue(OrdinalSet.range(64).with(200).contains(200));
+    }
+
+    @Test
+    void random_operations_agree_with_tree_sets() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            int size = 1 + random.nextInt(1000);
+            TreeSet<Integer> a = randomSet(random, size);
+            TreeSet<Integer> b = randomSet(random, size);
+            OrdinalSet x = of(a.stream().mapToInt(Integer::intValue).toArray());
+            OrdinalSet y = of(b.stream().mapToInt(Integer::intValue).toArray());
+
+            TreeSet<Integer> expected = new TreeSet<>(a);
+            expected.retainAll(b);
+            assertEquals(expected, toSet(x.and(y)));
+            expected = new TreeSet<>(a);
+            expected.addAll(b);
+            assertEquals(expected, toSet(x.or(y)));
+            expected = new TreeSet<>(a);
+            expected.removeAll(b);
+            assertEquals(expected, toSet(x.andNot(y)));
+        }
+    }
+
+    private static TreeSet<Integer> randomSet(Random random, int size) {
+        double density = random.nextDouble() * random.nextDouble();
+        TreeSet<Integer> set = new TreeSet<>();
+        for (int i = 0; i < size; i++) {
+            if (random.nextDouble() < density) {
+                set.add(i);
+            }
+        }
+        return set;
+    }
+
+    private static TreeSet<Integer> toSet(OrdinalSet set) {
+        TreeSet<Integer> result = new TreeSet<>();
+        set.forEach(result::add);
+        assertEquals(result.size(), set.cardinality());
+        return result;
+    }
+}
@@ -0,0 +1,219 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.AccountEntity;
+import dev.abstratium.abstraccount.entity.EntryEntity;
+import dev.abstratium.abstraccount.entity.JournalEntity;
+import dev.abstratium.abstraccount.entity.TagEntity;
+import dev.abstratium.abstraccount.entity.TransactionEntity;
+import dev.abstratium.abstraccount.model.AccountType;
+import dev.abstratium.abstraccount.model.PartnerStatistics;
+import dev.abstratium.abstraccount.model.TransactionStatus;
+import dev.abstratium.core.util.TestTransactionHelper;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+class PartnerStatisticsServiceTest {
+
+    @Inject
+    PartnerStatisticsService service;
+
+    @Inject
+    JournalPersistenceService journalPersistenceService;
+
+    @Inject
+    TestTransactionHelper testTransactionHelper;
+
+    private String journalId;
+    private String bank;
+    private String receivables;
+    private String payables;
+    private String revenue;
+    private String expenses;
+    private String equity;
+
+    @BeforeEach
+    void setUp() {
+        testTransactionHelper.deleteAllData();
+        journalId = createJournal(null);
+        bank = createAccount(journalId, "1020 Bank", AccountType.CASH);
+        receivables = createAccount(journalId, "1100 Receivables", AccountType.ASSET);
+        payables = createAccount(journalId, "2000 Payables", AccountType.LIABILITY);
+        equity = createAccount(journalId, "2979 Profit", AccountType.EQUITY);
+        revenue = createAccount(journalId, "3400 Services", AccountType.REVENUE);
+        expenses = createAccount(journalId, "6500 Office", AccountType.EXPENSE);
+    }
+
+    @Test
+    void testAggregatesTurnoverAndOpenBalancesPerPartner() {
+        // Customer P1: two invoices of which one is paid
+        book(journalId, "2025-01-10", "P1", "CHF", receivables, "100.00", revenue, "-100.00");
+        book(journalId, "2025-02-10", "P1", "CHF", receivables, "50.00", revenue, "-50.00");
+        book(journalId, "2025-03-01", "P1", "CHF", bank, "100.00", receivables, "-100.00");
+        // Supplier P2: one unpaid bill
+        book(journalId, "2025-01-20", "P2", "CHF", expenses, "30.00", payables, "-30.00");
+        // No partner
+        book(journalId, "2025-04-01", null, "CHF", bank, "999.00", revenue, "-999.00");
+
+        List<PartnerStatistics> statistics = find(PartnerStatisticsService.Sort.REVENUE, true, 0, 10);
+
+        assertEquals(2, statistics.size());
+        PartnerStatistics customer = statistics.get(0);
+        assertEquals("P1", customer.partnerNumber());
+        assertEquals("CHF", customer.commodity());
+        assertEquals(3, customer.transactionCount());
+        assertEquals(0, new BigDecimal("150.00").compareTo(customer.revenue()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(customer.expenses()));
+        assertEquals(0, new BigDecimal("50.00").compareTo(customer.receivable()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(customer.payable()));
+        assertEquals(LocalDate.of(2025, 3, 1), customer.lastActivity());
+
+        PartnerStatistics supplier = statistics.get(1);
+        assertEquals("P2", supplier.partnerNumber());
+        assertEquals(1, supplier.transactionCount());
+        assertEquals(0, new BigDecimal("30.00").compareTo(supplier.expenses()));
+        assertEquals(0, new BigDecimal("30.00").compareTo(supplier.payable()));
+    }
+
+    @Test
+    void testCountsOnlyTheOpenItemAccountsAsReceivableAndPayable() {
+        String inputVat = createAccount(journalId, "1170 Input VAT", AccountType.ASSET);
+        String vatOwed = createAccount(journalId, "2200 VAT owed", AccountType.LIABILITY);
+        book(journalId, "2025-01-10", "P1", "CHF", receivables, "100.00", revenue, "-100.00");
+        book(journalId, "2025-01-10", "P1", "CHF", inputVat, "7.70", bank, "-7.70");
+        book(journalId, "2025-01-20", "P1", "CHF", expenses, "8.10", vatOwed, "-8.10");
+
+        PartnerStatistics statistics = find(PartnerStatisticsService.Sort.RECEIVABLE, true, 0, 10).get(0);
+
+        assertEquals(0, new BigDecimal("100.00").compareTo(statistics.receivable()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(statistics.payable()));
+    }
+
+    @Test
+    void testSortsAndPagesInTheDatabase() {
+        for (int i = 1; i <= 5; i++) {
+            book(journalId, "2025-01-0" + i, "P" + i, "CHF", receivables, i + "0.00", revenue, "-" + i + "0.00");
+        }
+
+        assertEquals(List.of("P5", "P4"), partners(find(PartnerStatisticsService.Sort.REVENUE, true, 0, 2)));
+        assertEquals(List.of("P3", "P2"), partners(find(PartnerStatisticsService.Sort.REVENUE, true, 2, 2)));
+        assertEquals(List.of("P1", "P2", "P3"), partners(find(PartnerStatisticsService.Sort.PARTNER, false, 0, 3)));
+        assertEquals(List.of("P5"), partners(find(PartnerStatisticsService.Sort.LAST_ACTIVITY, true, 0, 1)));
+        assertEquals(List.of(), find(PartnerStatisticsService.Sort.REVENUE, true, 5, 2));
+    }
+
+    @Test
+    void testSeparatesCommoditiesAndFiltersByCommodity() {
+        book(journalId, "2025-01-10", "P1", "CHF", receivables, "100.00", revenue, "-100.00");
+        book(journalId, "2025-01-11", "P1", "EUR", receivables, "20.00", revenue, "-20.00");
+
+        List<PartnerStatistics> all = find(PartnerStatisticsService.Sort.PARTNER, false, 0, 10);
+        assertEquals(List.of("CHF", "EUR"), all.stream().map(PartnerStatistics::commodity).toList());
+
+        List<PartnerStatistics> eur = service.findPartnerStatistics(List.of(journalId), "EUR",
+            PartnerStatisticsService.Sort.REVENUE, true, 0, 10);
+        assertEquals(1, eur.size());
+        assertEquals(0, new BigDecimal("20.00").compareTo(eur.get(0).revenue()));
+    }
+
+    @Test
+    void testExcludesClosingTransactions() {
+        book(journalId, "2025-01-10", "P1", "CHF", receivables, "100.00", revenue, "-100.00");
+        TransactionEntity closing = transaction(journalId, "2025-12-31", "P1", "CHF", revenue, "100.00", equity, "-100.00");
+        TagEntity tag = new TagEntity();
+        tag.setTagKey("Closing");
+        tag.setTagValue("");
+        closing.addTag(tag);
+        journalPersistenceService.saveTransaction(closing);
+
+        PartnerStatistics statistics = find(PartnerStatisticsService.Sort.REVENUE, true, 0, 10).get(0);
+        assertEquals(1, statistics.transactionCount());
+        assertEquals(0, new BigDecimal("100.00").compareTo(statistics.revenue()));
+    }
+
+    @Test
+    void testAggregatesJournalChain() {
+        String nextJournalId = createJournal(journalId);
+        String nextBank = createAccount(nextJournalId, "1020 Bank", AccountType.CASH);
+        String nextReceivables = createAccount(nextJournalId, "1100 Receivables", AccountType.ASSET);
+
+        book(journalId, "2024-12-10", "P1", "CHF", receivables, "100.00", revenue, "-100.00");
+        book(nextJournalId, "2025-01-15", "P1", "CHF", nextBank, "100.00", nextReceivables, "-100.00");
+
+        PartnerStatistics single = service.findPartnerStatistics(List.of(nextJournalId), null,
+            PartnerStatisticsService.Sort.REVENUE, true, 0, 10).get(0);
+        assertEquals(0, new BigDecimal("-100.00").compareTo(single.receivable()));
+
+        PartnerStatistics chained = service.findPartnerStatistics(journalPersistenceService.getJournalChainIds(nextJournalId),
+            null, PartnerStatisticsService.Sort.REVENUE, true, 0, 10).get(0);
+        assertEquals(2, chained.transactionCount());
+        assertEquals(0, BigDecimal.ZERO.compareTo(chained.receivable()));
+        assertEquals(LocalDate.of(2025, 1, 15), chained.lastActivity());
+    }
+
+    @Test
+    void testNoJournalsReturnsNothing() {
+        assertEquals(List.of(), service.findPartnerStatistics(List.of(), null,
+            PartnerStatisticsService.Sort.REVENUE, true, 0, 10));
+    }
+
+    private List<PartnerStatistics> find(PartnerStatisticsService.Sort sort, boolean descending, int offset, int limit) {
+        return service.findPartnerStatistics(List.of(journalId), null, sort, descending, offset, limit);
+    }
+
+    private static List<String> partners(List<PartnerStatistics> statistics) {
+        return statistics.stream().map(PartnerStatistics::partnerNumber).toList();
+    }
+
+    private String createJournal(String previousJournalId) {
+        JournalEntity journal = new JournalEntity();
+        journal.setTitle("Partner Statistics");
+        journal.setCurrency("CHF");
+        journal.setPreviousJournalId(previousJournalId);
+        return journalPersistenceService.saveJournal(journal).getId();
+    }
+
+    private String createAccount(String journal, String name, AccountType type) {
+        AccountEntity account = new AccountEntity();
+        account.setJournalId(journal);
+        account.setName(name);
+        account.setType(type);
+        return journalPersistenceService.saveAccount(account).getId();
+    }
+
+    private void book(String journal, String date, String partnerId, String commodity,
+                      String debitAccount, String debit, String creditAccount, String credit) {
+        journalPersistenceService.saveTransaction(
+            transaction(journal, date, partnerId, commodity, debitAccount, debit, creditAccount, credit));
+    }
+
+    private static TransactionEntity transaction(String journal, String date, String partnerId, String commodity,
+                                                 String debitAccount, String debit, String creditAccount, String credit) {
+        TransactionEntity transaction = new TransactionEntity();
+        transaction.setJournalId(journal);
+        transaction.setTransactionDate(LocalDate.parse(date));
+        transaction.setStatus(TransactionStatus.CLEARED);
+        transaction.setDescription(partnerId == null ? "No partner" : partnerId + " | Business");
+        transaction.setPartnerId(partnerId);
+        transaction.addEntry(entry(debitAccount, commodity, debit, 0));
+        transaction.addEntry(entry(creditAccount, commodity, credit, 1));
+        return transaction;
+    }
+
+    private static EntryEntity entry(String accountId, String commodity, String amount, int order) {
+        EntryEntity entry = new EntryEntity();
+        entry.setAccountId(accountId);
+        entry.setCommodity(commodity);
+        entry.setAmount(new BigDecimal(amount));
+        entry.setEntryOrder(order);
+        return entry;
+    }
+}
@@ -0,0 +1,54 @@
+package dev.abstratium.abstraccount.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link QueryBudget}.
+ */
+class QueryBudgetTest {
+
+    @Test
+    void rows_up_to_the_maximum_are_allowed() {
+        QueryBudget budget = new QueryBudget(10, Duration.ofMinutes(1));
+
+        assertDoesNotThrow(() -> budget.checkRows(10));
+        QueryLimitException e = assertThrows(QueryLimitException.class, () -> budget.checkRows(11));
+        assertEquals(QueryLimitException.Limit.ROWS, e.getLimit());
+        assertEquals("too_many_rows", e.getLimit().getCode());
+    }
+
+    @Test
+    void a_budget_with_time_left_passes_checks() {
+        QueryBudget budget = new QueryBudget(10, Duration.ofMinutes(1));
+
+        assertDoesNotThrow(budget::check);
+        assertTrue(budget.timeoutSeconds() >= 1 && budget.timeoutSeconds() <= 60);
+    }
+
+    @Test
+    void a_budget_out_of_time_fails_checks() throws InterruptedException {
+        QueryBudget budget = new QueryBudget(10, Duration.ZERO);
+        Thread.sleep(1);
+
+        assertEquals(QueryLimitException.Limit.DURATION,
+            assertThrows(QueryLimitException.class, budget::check).getLimit());
+        assertEquals(QueryLimitException.Limit.DURATION,
+            assertThrows(QueryLimitException.class, budget::timeoutSeconds).getLimit());
+    }
+
+    @Test
+    void a_cancelled_budget_fails_checks() {
+        QueryBudget budget = new QueryBudget(10, Duration.ofMinutes(1));
+        budget.cancel();
+
+        assertEquals(QueryLimitException.Limit.CANCELLED,
+            assertThrows(QueryLimitException.class, budget::check).getLimit());
+    }
+}
@@ -0,0 +1,152 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.AccountEntity;
+import dev.abstratium.abstraccount.entity.EntryEntity;
+import dev.abstratium.abstraccount.entity.JournalEntity;
+import dev.abstratium.abstraccount.entity.TagEntity;
+import dev.abstratium.abstraccount.entity.TransactionEntity;
+import dev.abstratium.abstraccount.model.AccountType;
+import dev.abstratium.abstraccount.model.TransactionStatus;
+import dev.abstratium.core.service.CurrentOrgContext;
+import io.quarkus.test.TestTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies with {@code EXPLAIN} that the hot query shapes of entry search use
+ * the composite indexes of migration V01.034. Works against H2, which the
+ * tests use, and MySQL, whose tree format names the index the same way.
+ */
+@QuarkusTest
+class QueryIndexTest {
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    CurrentOrgContext currentOrgContext;
+
+    @ConfigProperty(name = "default.org.uuid")
+    String defaultOrgId;
+
+    @ConfigProperty(name = "quarkus.datasource.db-kind")
+    String dbKind;
+
+    private String journalId;
+    private String accountId;
+    private String transactionId;
+
+    @BeforeEach
+    void setUp() {
+        currentOrgContext.setOrgId(defaultOrgId);
+    }
+
+    private void createJournal() {
+        JournalEntity journal = new JournalEntity();
+        journal.setTitle("Index Journal");
+        journal.setCurrency("CHF");
+        entityManager.persist(journal);
+        journalId = journal.getId();
+
+        AccountEntity account = new AccountEntity();
+        account.setName("Bank");
+        account.setType(AccountType.CASH);
+        account.setJournalId(journalId);
+        account.setAccountOrder(1);
+        entityManager.persist(account);
+        accountId = account.getId();
+
+        for (int i = 0; i < 20; i++) {
+            TransactionEntity tx = new TransactionEntity();
+            tx.setJournalId(journalId);
+            tx.setTransactionDate(LocalDate.of(2025, 1, 1).plusDays(i));
+            tx.setTransactionOrder((long) i);
+            tx.setDescription("Transaction " + i);
+            tx.setStatus(TransactionStatus.CLEARED);
+            TagEntity tag = new TagEntity();
+            tag.setTagKey("invoice");
+            tag.setTagValue("PI" + i);
+            tag.setTransaction(tx);
+            tx.addTag(tag);
+            EntryEntity entry = new EntryEntity();
+            entry.setAccountId(accountId);
+            entry.setCommodity("CHF");
+            entry.setAmount(BigDecimal.TEN);
+            entry.setEntryOrder(0);
+            tx.addEntry(entry);
+            entityManager.persist(tx);
+            transactionId = tx.getId();
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    @TestTransaction
+    void transactionsOfAJournalByDateUseTheJournalDateIndex() {
+        createJournal();
+
+        String plan = explain("""
+                SELECT t.id FROM T_transaction t
+                WHERE t.org_id = ?1 AND t.journal_id = ?2 AND t.transaction_date >= ?3
+                ORDER BY t.transaction_date DESC, t.transaction_order DESC
+                """, defaultOrgId, journalId, LocalDate.of(2025, 1, 10));
+
+        assertUses("I_transaction_org_journal_date", plan);
+    }
+
+    @Test
+    @TestTransaction
+    void tagFiltersOfATransactionUseTheTransactionKeyIndex() {
+        createJournal();
+
+        String plan = explain("""
+                SELECT g.tag_value FROM T_tag g
+                WHERE g.org_id = ?1 AND g.transaction_id = ?2 AND g.tag_key = ?3
+                """, defaultOrgId, transactionId, "invoice");
+
+        assertUses("I_tag_org_transaction_key", plan);
+    }
+
+    @Test
+    @TestTransaction
+    void entriesOfAnAccountUseTheCoveringAccountIndex() {
+        createJournal();
+
+        String plan = explain("""
+                SELECT e.transaction_id, e.amount FROM T_entry e
+                WHERE e.org_id = ?1 AND e.account_id = ?2
+                """, defaultOrgId, accountId);
+
+        assertUses("I_entry_org_account_transaction", plan);
+    }
+
+    /** @return the plan of a native query, as text naming the indexes used */
+    private String explain(String sql, Object... parameters) {
+        String prefix = dbKind.equalsIgnoreCase("mysql") ? "EXPLAIN FORMAT=TREE " : "EXPLAIN ";
+        Query query = entityManager.createNativeQuery(prefix + sql);
+        for (int i = 0; i < parameters.length; i++) {
+            query.setParameter(i + 1, parameters[i]);
+        }
+        @SuppressWarnings("unchecked")
+        List<Object> rows = query.getResultList();
+        return rows.stream().map(String::valueOf).collect(Collectors.joining("\n"));
+    }
+
+    private static void assertUses(String index, String plan) {
+        assertTrue(plan.toUpperCase(Locale.ROOT).contains(index.toUpperCase(Locale.ROOT)),
+            "Expected the plan to use " + index + ":\n" + plan);
+    }
+}
@@ -0,0 +1,152 @@
+package dev.abstratium.abstraccount.service;
+
+import dev.abstratium.abstraccount.entity.AccountEntity;
+import dev.abstratium.abstraccount.entity.JournalEntity;
+import dev.abstratium.abstraccount.model.AccountType;
+import dev.abstratium.core.service.CurrentOrgContext;
+import dev.abstratium.core.util.TestTransactionHelper;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Asserts that journals and account lists are read from the second-level
+ * cache once read, without statements, and that the cache is neither shared
+ * between organisations nor stale after changes made on this node.
+ */
+@QuarkusTest
+class ReferenceCacheTest {
+
+    @Inject
+    JournalPersistenceService service;
+
+    @Inject
+    TestTransactionHelper testTransactionHelper;
+
+    @Inject
+    CurrentOrgContext currentOrgContext;
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Inject
+    ReferenceCache referenceCache;
+
+    @ConfigProperty(name = "default.org.uuid")
+    String defaultOrgId;
+
+    private String journalId;
+
+    @BeforeEach
+    void setUp() {
+        currentOrgContext.setOrgId(defaultOrgId);
+        testTransactionHelper.deleteAllData();
+
+        JournalEntity journal = new JournalEntity();
+        journal.setTitle("Cached Journal");
+        journal.setCurrency("CHF");
+        journal.setCommodities(new HashMap<>(Map.of("CHF", "1000.00")));
+        journalId = service.saveJournal(journal).getId();
+
+        createAccount("1000 Assets", AccountType.ASSET);
+        createAccount("2000 Liabilities", AccountType.LIABILITY);
+    }
+
+    @Test
+    void loadingAccountsAgainRunsNoStatement() {
+        service.loadAllAccounts(journalId);
+
+        Statistics statistics = statistics();
+        List<AccountEntity> accounts = service.loadAllAccounts(journalId);
+
+        assertEquals(2, accounts.size());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    void onlyAChangedAccountVersionDropsTheCachedAccounts() {
+        service.loadAllAccounts(journalId);
+
+        // The first version read has nothing to compare with, so it is only recorded
+        referenceCache.accountVersionRead(journalId, 1);
+        referenceCache.accountVersionRead(journalId, 1);
+        Statistics statistics = statistics();
+        service.loadAllAccounts(journalId);
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        referenceCache.accountVersionRead(journalId, 2);
+        statistics = statistics();
+        assertEquals(2, service.loadAllAccounts(journalId).size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findingAJournalAgainRunsNoStatement() {
+        service.findJournalById(journalId);
+
+        Statistics statistics = statistics();
+        JournalEntity journal = service.findJournalById(journalId).orElseThrow();
+
+        assertEquals("Cached Journal", journal.getTitle());
+        assertEquals(Map.of("CHF", "1000.00"), journal.getCommodities());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void changingAnAccountIsSeenAtOnce() {
+        assertEquals(2, service.loadAllAccounts(journalId).size());
+
+        createAccount("3000 Equity", AccountType.EQUITY);
+
+        assertEquals(3, service.loadAllAccounts(journalId).size());
+    }
+
+    @Test
+    void lockingAJournalIsSeenAtOnce() {
+        assertFalse(service.findJournalById(journalId).orElseThrow().isLocked());
+
+        service.setJournalLocked(journalId, true);
+
+        assertTrue(service.findJournalById(journalId).orElseThrow().isLocked());
+        assertThrows(JournalLockedException.class, () -> service.requireNotLocked(journalId));
+    }
+
+    @Test
+    void cachedJournalsAndAccountsAreNotSharedBetweenOrganisations() {
+        assertTrue(service.findJournalById(journalId).isPresent());
+        assertEquals(2, service.loadAllAccounts(journalId).size());
+
+        try {
+            currentOrgContext.setOrgId("second-org");
+            assertTrue(service.findJournalById(journalId).isEmpty());
+            assertTrue(service.loadAllAccounts(journalId).isEmpty());
+        } finally {
+            currentOrgContext.setOrgId(defaultOrgId);
+        }
+    }
+
+    private void createAccount(String name, AccountType type) {
+        AccountEntity account = new AccountEntity();
+        account.setName(name);
+        account.setType(type);
+        account.setJournalId(journalId);
+        service.saveAccount(account);
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
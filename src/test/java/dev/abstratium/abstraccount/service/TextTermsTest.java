@@ -0,0 +1,56 @@
+package dev.abstratium.abstraccount.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextTermsTest {
+
+    private static TextTerms.WordPattern word(String word, boolean anyBefore, boolean anyAfter) {
+        return new TextTerms.WordPattern(word, anyBefore, anyAfter);
+    }
+
+    @Test
+    void words_are_folded_runs_of_letters_and_digits() {
+        assertEquals(List.of("office", "supplies", "q1", "2025", "märz"), TextTerms.words("Office-supplies, Q1/2025 (MÄRZ)"));
+        assertEquals(List.of(), TextTerms.words(" - "));
+        assertEquals(List.of(), TextTerms.words(null));
+    }
+
+    @Test
+    void literal_requires_all_its_words() {
+        assertEquals(List.of(word("office", false, false), word("supplies", false, false)),
+                TextTerms.wordPatterns("Office supplies", false));
+        assertEquals(List.of(word("a", false, false), word("b", false, false)), TextTerms.wordPatterns("a*b", false));
+    }
+
+    @Test
+    void glob_words_next_to_wildcards_are_partial() {
+        assertEquals(List.of(word("office", true, false), word("supp", false, true)),
+                TextTerms.wordPatterns("*office supp*", true));
+        assertEquals(List.of(word("pi", false, true), word("0001", true, false)),
+                TextTerms.wordPatterns("PI?0001", true));
+        assertEquals(List.of(), TextTerms.wordPatterns("*", true));
+    }
+
+    @Test
+    void word_pattern_matches_whole_words_or_parts() {
+        assertTrue(word("rent", false, false).matches("rent"));
+        assertFalse(word("rent", false, false).matches("rental"));
+        assertTrue(word("rent", false, true).matches("rental"));
+        assertTrue(word("rent", true, false).matches("current"));
+        assertFalse(word("rent", true, false).matches("rental"));
+        assertTrue(word("ren", true, true).matches("currently"));
+    }
+
+    @Test
+    void contains_phrase_requires_consecutive_words() {
+        assertTrue(TextTerms.containsPhrase("Office supplies, March", List.of("supplies", "march"), false));
+        assertFalse(TextTerms.containsPhrase("Office supplies, March", List.of("office", "march"), false));
+        assertTrue(TextTerms.containsPhrase("Office supplies", List.of("office", "sup"), true));
+        assertFalse(TextTerms.containsPhrase("Office supplies", List.of("office", "sup"), false));
+        assertFalse(TextTerms.containsPhrase(null, List.of("office"), false));
+    }
+}
@@ -0,0 +1,63 @@
+package dev.abstratium.core.filter;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import org.junit.jupiter.api.Test;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+
+/**
+ * Tests for QueryLimitExceptionMapper verifying that QueryLimitException is
+ * mapped to a query error with 400 or 503, depending on the limit.
+ */
+@QuarkusTest
+class QueryLimitExceptionMapperTest {
+
+    @Test
+    @TestSecurity(user = "testuser", roles = {"user"})
+    void testTooManyRowsReturnsBadRequest() {
+        given()
+            .when()
+            .get("/api/test/query-limit?limit=ROWS")
+            .then()
+            .statusCode(400)
+            .contentType(containsString("json"))
+            .body("error", is("too_many_rows"))
+            .body("message", containsString("Limit exceeded: ROWS"));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = {"user"})
+    void testRegexTooComplexReturnsBadRequest() {
+        given()
+            .when()
+            .get("/api/test/query-limit?limit=REGEX_STEPS")
+            .then()
+            .statusCode(400)
+            .body("error", is("regex_too_complex"));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = {"user"})
+    void testTimeoutReturnsServiceUnavailable() {
+        given()
+            .when()
+            .get("/api/test/query-limit?limit=DURATION")
+            .then()
+            .statusCode(503)
+            .body("error", is("query_timeout"));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = {"user"})
+    void testCancelledReturnsServiceUnavailable() {
+        given()
+            .when()
+            .get("/api/test/query-limit?limit=CANCELLED")
+            .then()
+            .statusCode(503)
+            .body("error", is("query_cancelled"));
+    }
+}
@@ -0,0 +1,22 @@
+package dev.abstratium.core.filter;
+
+import dev.abstratium.abstraccount.service.QueryLimitException;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+
+/**
+ * Test-only JAX-RS resource that throws QueryLimitException,
+ * used to verify that QueryLimitExceptionMapper maps it correctly.
+ */
+@Path("/api/test/query-limit")
+public class QueryLimitTestResource {
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public void triggerQueryLimit(@QueryParam("limit") String limit) {
+        throw new QueryLimitException(QueryLimitException.Limit.valueOf(limit), "Limit exceeded: " + limit);
+    }
+}
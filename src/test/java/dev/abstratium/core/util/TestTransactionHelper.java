@@ -51,8 +51,12 @@ public class TestTransactionHelper {
     public void deleteAllData() {
         // Use native SQL so we bypass Hibernate's @TenantId filter and clean up data
         // that may have been created under any tenant / orgId.
-        entityManager.createNativeQuery("DELETE FROM T_attachment_content").executeUpdate();
+        entityManager.createNativeQuery("DELETE FROM T_open_item").executeUpdate();
+        entityManager.createNativeQuery("DELETE FROM T_open_item_state").executeUpdate();
+        entityManager.createNativeQuery("DELETE FROM T_journal_version").executeUpdate();
         entityManager.createNativeQuery("DELETE FROM T_attachment").executeUpdate();
+        entityManager.createNativeQuery("DELETE FROM T_attachment_blob_chunk").executeUpdate();
+        entityManager.createNativeQuery("DELETE FROM T_attachment_blob").executeUpdate();
         entityManager.createNativeQuery("DELETE FROM T_tag").executeUpdate();
         entityManager.createNativeQuery("DELETE FROM T_entry").executeUpdate();
         entityManager.createNativeQuery("DELETE FROM T_transaction").executeUpdate();